@@ -213,6 +213,7 @@ public class BenchmarkRunner {
                         new ObservationTest(),
                         new RevisionGCTest(),
                         new ContinuousRevisionGCTest(),
+                        new ManyChildrenDiffTest(),
                         new XmlImportTest(),
                         new FlatTreeWithAceForSamePrincipalTest(),
                         new ReadDeepTreeTest(
@@ -345,6 +346,7 @@ public class BenchmarkRunner {
             ReadManyTest.uniform("UniformReadFiles", 1, ReadManyTest.FILES),
             ReadManyTest.uniform("UniformReadNodes", 1, ReadManyTest.NODES),
             new ConcurrentCreateNodesTest(),
+            new ConcurrentCommitTest(),
             new SequentialCreateNodesTest(),
             new CreateManyIndexedNodesTest(),
                         new GetPoliciesTest(),
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Concurrent writers, each saving small changes to its own subtree. The
+ * writers do not conflict with each other, so the throughput is limited by
+ * how well commits scale on the node store. Run with increasing concurrency
+ * levels, e.g. {@code --concurrency 1,8,32,64,128,200}, to see how the
+ * commit rate scales with the number of writers.
+ */
+public class ConcurrentCommitTest extends AbstractTest<Node> {
+
+    private static final String NT_UNSTRUCTURED = "nt:unstructured";
+
+    private static final int SAVES_PER_TEST = Integer.getInteger("savesPerTest", 100);
+
+    private final String testNodeName = "test" + TEST_ID;
+
+    private final AtomicInteger writerCount = new AtomicInteger();
+
+    private Node testNode;
+
+    @Override
+    public void beforeSuite() throws Exception {
+        Session session = loginWriter();
+        session.getRootNode().addNode(testNodeName, NT_UNSTRUCTURED);
+        session.save();
+        logout(session);
+        testNode = prepareThreadExecutionContext();
+    }
+
+    @Override
+    public void afterSuite() throws Exception {
+        Session session = loginWriter();
+        session.refresh(false);
+        session.getRootNode().getNode(testNodeName).remove();
+        session.save();
+        logout(session);
+        disposeThreadExecutionContext(testNode);
+    }
+
+    @Override
+    protected Node prepareThreadExecutionContext() throws Exception {
+        Session session = loginWriter();
+        Node writerNode = session.getRootNode().getNode(testNodeName)
+                .addNode("writer-" + writerCount.incrementAndGet(), NT_UNSTRUCTURED);
+        session.save();
+        return writerNode;
+    }
+
+    @Override
+    protected void disposeThreadExecutionContext(Node context) {
+        logout(context.getSession());
+    }
+
+    @Override
+    protected void beforeTest(Node executionContext) {
+        try {
+            executionContext.getSession().refresh(false);
+        } catch (RepositoryException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    protected void runTest(Node executionContext) throws Exception {
+        Session session = executionContext.getSession();
+        for (int i = 0; i < SAVES_PER_TEST; i++) {
+            executionContext.setProperty("p", i);
+            Node n = executionContext.addNode("node-" + i, NT_UNSTRUCTURED);
+            n.setProperty("value", i);
+            session.save();
+            n.remove();
+            session.save();
+        }
+    }
+
+    @Override
+    protected void beforeTest() throws Exception {
+        beforeTest(testNode);
+    }
+
+    @Override
+    protected void runTest() throws Exception {
+        runTest(testNode);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.fixture.JcrCreator;
+import org.apache.jackrabbit.oak.fixture.OakRepositoryFixture;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.DefaultNodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * A benchmark for the diff of a flat node with many children on a
+ * {@link DocumentNodeStore}, where a large number of the children were
+ * changed, like after a bulk import. The journal diff is disabled, which
+ * means the changed children are read from the DocumentStore.
+ * <p>
+ * The number of children and the number of changed children per diff are
+ * set with the system properties {@code children} (default 5'000'000) and
+ * {@code changes} (default 100'000).
+ */
+public class ManyChildrenDiffTest extends Benchmark {
+
+    private static final int CHILDREN = Integer.getInteger("children", 5000000);
+
+    private static final int CHANGES = Integer.getInteger("changes", 100000);
+
+    private static final int ITERATIONS = Integer.getInteger("iterations", 5);
+
+    private static final int BATCH_SIZE = 10000;
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        for (RepositoryFixture fixture : fixtures) {
+            if (fixture.isAvailable(1)) {
+                System.out.format("%s: ManyChildrenDiff benchmark%n", fixture);
+                if (!(fixture instanceof OakRepositoryFixture)) {
+                    System.err.format("%s: ManyChildrenDiff benchmark only runs on Oak%n", fixture);
+                    return;
+                }
+                String disableJournalDiff = System.setProperty("oak.disableJournalDiff", "true");
+                try {
+                    final AtomicReference<Oak> oakRef = new AtomicReference<Oak>();
+                    ((OakRepositoryFixture) fixture).setUpCluster(1, new JcrCreator() {
+                        @Override
+                        public Jcr customize(Oak oak) {
+                            oakRef.set(oak);
+                            return new Jcr(oak);
+                        }
+                    });
+                    try {
+                        NodeStore ns = RevisionGCTest.getNodeStore(oakRef.get());
+                        if (ns instanceof DocumentNodeStore) {
+                            run((DocumentNodeStore) ns);
+                        } else {
+                            System.err.format("%s: ManyChildrenDiff benchmark only runs on DocumentNodeStore%n", fixture);
+                        }
+                    } finally {
+                        fixture.tearDownCluster();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    if (disableJournalDiff == null) {
+                        System.clearProperty("oak.disableJournalDiff");
+                    } else {
+                        System.setProperty("oak.disableJournalDiff", disableJournalDiff);
+                    }
+                }
+            }
+        }
+    }
+
+    private void run(DocumentNodeStore ns) throws Exception {
+        System.out.format("Creating %d children ", CHILDREN);
+        Stopwatch sw = Stopwatch.createStarted();
+        for (int i = 0; i < CHILDREN; i += BATCH_SIZE) {
+            NodeBuilder builder = ns.getRoot().builder();
+            NodeBuilder flat = builder.child("flat");
+            for (int j = i; j < Math.min(i + BATCH_SIZE, CHILDREN); j++) {
+                flat.child("node-" + j);
+            }
+            merge(ns, builder);
+            if (i % (BATCH_SIZE * 10) == 0) {
+                System.out.print(".");
+            }
+        }
+        ns.runBackgroundOperations();
+        System.out.format("%ndone in %s%n", sw);
+
+        System.out.println("changes\tdiff (ms)\theap (MB)");
+        for (int i = 0; i < ITERATIONS; i++) {
+            NodeState before = ns.getRoot().getChildNode("flat");
+            for (int j = 0; j < CHANGES; j += BATCH_SIZE) {
+                NodeBuilder builder = ns.getRoot().builder();
+                NodeBuilder flat = builder.child("flat");
+                for (int k = j; k < Math.min(j + BATCH_SIZE, CHANGES); k++) {
+                    int idx = (int) (((long) k * CHILDREN) / CHANGES);
+                    flat.child("node-" + idx).setProperty("p", i);
+                }
+                merge(ns, builder);
+            }
+            ns.runBackgroundOperations();
+            NodeState after = ns.getRoot().getChildNode("flat");
+
+            System.gc();
+            Runtime rt = Runtime.getRuntime();
+            long heap = rt.totalMemory() - rt.freeMemory();
+            ChangeCounter counter = new ChangeCounter();
+            sw = Stopwatch.createStarted();
+            after.compareAgainstBaseState(before, counter);
+            sw.stop();
+            heap = Math.max(0, rt.totalMemory() - rt.freeMemory() - heap);
+            System.out.format("%d\t%d\t%d%n", counter.changes,
+                    sw.elapsed(TimeUnit.MILLISECONDS),
+                    heap / (1024 * 1024));
+        }
+    }
+
+    private static void merge(NodeStore ns, NodeBuilder builder)
+            throws CommitFailedException {
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    private static final class ChangeCounter extends DefaultNodeStateDiff {
+
+        private long changes;
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            changes++;
+            return true;
+        }
+
+        @Override
+        public boolean childNodeChanged(String name,
+                                        NodeState before,
+                                        NodeState after) {
+            changes++;
+            return true;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            changes++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DocumentStore} that can also perform operations asynchronously.
+ * The asynchronous methods have the same semantics as their synchronous
+ * counterparts, but return a {@link CompletionStage} instead of blocking
+ * the calling thread. A {@link DocumentStoreException} is reported by
+ * completing the stage exceptionally, never by throwing it from the method
+ * itself.
+ * <p>
+ * Operations that are issued concurrently do not have a defined order. A
+ * caller that depends on the effect of an operation must wait for its stage
+ * to complete before issuing the dependent operation.
+ * <p>
+ * Use {@link org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores}
+ * to call these methods on a {@link DocumentStore} that may or may not
+ * implement this interface.
+ */
+public interface AsyncDocumentStore extends DocumentStore {
+
+    /**
+     * Asynchronous variant of {@link #find(Collection, String, int)}. The
+     * stage completes with {@code null} if the document does not exist.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param key the key
+     * @param maxCacheAge the maximum age of the cached document (in ms)
+     * @return the stage for the document.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+                                                      String key,
+                                                      int maxCacheAge);
+
+    /**
+     * Asynchronous variant of {@link #query(Collection, String, String, int)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param fromKey the start value (excluding)
+     * @param toKey the end value (excluding)
+     * @param limit the maximum number of entries to return
+     * @return the stage for the list of documents.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+                                                             String fromKey,
+                                                             String toKey,
+                                                             int limit);
+
+    /**
+     * Asynchronous variant of {@link #create(Collection, List)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param updateOps the list of documents to add
+     * @return the stage for the result of the create operation.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+                                                              List<UpdateOp> updateOps);
+
+    /**
+     * Asynchronous variant of {@link #createOrUpdate(Collection, UpdateOp)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param update the update operation
+     * @return the stage for the old document or {@code null} if it didn't
+     *          exist before.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+                                                                UpdateOp update);
+
+    /**
+     * Asynchronous variant of {@link #createOrUpdate(Collection, List)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param updateOps the update operation list
+     * @return the stage for the list containing old documents or
+     *          {@code null} values if they didn't exist before.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                      List<UpdateOp> updateOps);
+
+    /**
+     * Asynchronous variant of {@link #findAndUpdate(Collection, UpdateOp)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param update the update operation
+     * @return the stage for the old document or {@code null} if the
+     *          condition is not met or the document doesn't exist.
+     */
+    @NotNull
+    <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+                                                               UpdateOp update);
+
+    /**
+     * Returns whether this store supports the asynchronous operations. A
+     * wrapper implements this interface independent of the store it wraps
+     * and must return whether the wrapped store is asynchronous.
+     *
+     * @return {@code true} if this store supports asynchronous operations;
+     *          {@code false} otherwise.
+     */
+    default boolean isAsync() {
+        return true;
+    }
+}
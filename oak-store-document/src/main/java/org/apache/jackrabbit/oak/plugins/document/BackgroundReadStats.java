@@ -26,6 +26,8 @@ class BackgroundReadStats {
     long readHead;
     long cacheInvalidationTime;
     long populateDiffCache;
+    long prepareDiffCache;
+    long numJournalReaders;
     long lock;
     long dispatchChanges;
     long totalReadTime;
@@ -43,6 +45,8 @@ class BackgroundReadStats {
                 ", head:" + readHead +
                 ", cache:" + cacheInvalidationTime +
                 ", diff: " + populateDiffCache +
+                ", prepareDiff:" + prepareDiffCache +
+                ", journalReaders:" + numJournalReaders +
                 ", lock:" + lock +
                 ", dispatch:" + dispatchChanges +
                 ", numExternalChanges:" + numExternalChanges +
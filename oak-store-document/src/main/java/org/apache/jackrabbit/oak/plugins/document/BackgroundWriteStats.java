@@ -23,24 +23,39 @@ class BackgroundWriteStats {
 
     long clean;
     long split;
+    /**
+     * The number of split candidates at the start of the split phase.
+     */
+    long splitCandidates;
+    /**
+     * The estimated size of the largest split candidate.
+     */
+    long splitMaxDocSize;
     long refresh;
     long sweep;
     long lock;
     long write;
     long num;
     long calls;
+    /**
+     * The maximum number of concurrent batches while writing back _lastRev.
+     */
+    long writeParallelism;
     long totalWriteTime;
 
     @Override
     public String toString() {
         return "clean:" + clean +
                 ", split:" + split +
+                ", splitCandidates:" + splitCandidates +
+                ", splitMaxDocSize:" + splitMaxDocSize +
                 ", refresh:" + refresh +
                 ", sweep:" + sweep +
                 ", lock:" + lock +
                 ", write:" + write +
                 ", num:" + num +
                 ", calls:" + calls +
+                ", writeParallelism:" + writeParallelism +
                 ", totalWriteTime:" + totalWriteTime;
     }
 }
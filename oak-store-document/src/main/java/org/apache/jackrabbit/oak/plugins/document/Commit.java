@@ -25,6 +25,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Function;
@@ -49,6 +51,10 @@ import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Document.MOD_COUNT;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.COLLISIONS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.SPLIT_CANDIDATE_THRESHOLD;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.await;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.createAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.createOrUpdateAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.isAsync;
 
 /**
  * A higher level object representing a commit.
@@ -347,12 +353,18 @@ public class Commit {
         }
 
         // push branch changes to journal
+        CompletionStage<Boolean> journalUpdate = null;
         if (baseBranchRevision != null) {
             // store as external change
             JournalEntry doc = JOURNAL.newDocument(store);
             doc.modified(modifiedNodes);
             Revision r = revision.asBranchRevision();
-            store.create(JOURNAL, singletonList(doc.asUpdateOp(r)));
+            // an async store writes the journal entry while the changes
+            // are written. it is awaited before the commit root is written
+            journalUpdate = createAsync(store, JOURNAL, singletonList(doc.asUpdateOp(r)));
+            if (!isAsync(store)) {
+                await(journalUpdate);
+            }
         }
 
         int commitRootDepth = commitRootPath.getDepth();
@@ -373,10 +385,25 @@ public class Commit {
                 success = true;
             } else {
                 int batchSize = nodeStore.getCreateOrUpdateBatchSize();
-                for (List<UpdateOp> updates : partition(changedNodes, batchSize)) {
-                    List<NodeDocument> oldDocs = store.createOrUpdate(NODES, updates);
+                List<List<UpdateOp>> batches = partition(changedNodes, batchSize);
+                GroupCommitQueue groupCommitQueue = nodeStore.getGroupCommitQueue();
+                if (batches.size() > 1 && isAsync(store)) {
+                    applyConcurrently(store, batches);
+                } else if (batches.size() == 1 && groupCommitQueue != null) {
+                    // share the round trip with concurrent commits
+                    List<UpdateOp> updates = batches.get(0);
+                    List<NodeDocument> oldDocs = groupCommitQueue.createOrUpdate(updates);
                     checkConflicts(oldDocs, updates);
                     checkSplitCandidate(oldDocs);
+                } else {
+                    for (List<UpdateOp> updates : batches) {
+                        List<NodeDocument> oldDocs = store.createOrUpdate(NODES, updates);
+                        checkConflicts(oldDocs, updates);
+                        checkSplitCandidate(oldDocs);
+                    }
+                }
+                if (journalUpdate != null) {
+                    await(journalUpdate);
                 }
 
                 // finally write the commit root (the commit root might be written
@@ -439,12 +466,46 @@ public class Commit {
                 }
             }
         } finally {
+            if (journalUpdate != null) {
+                // do not leave the journal entry pending when the commit
+                // failed. the rollback must not run concurrently with it
+                journalUpdate.toCompletableFuture().handle((r, t) -> null).join();
+            }
             if (success) {
                 rollback = Rollback.NONE;
             }
         }
     }
 
+    /**
+     * Issues the given batches of changes concurrently to an async store and
+     * checks the results once all of them completed. The commit root must
+     * only be written after this method returned.
+     *
+     * @param store the async document store.
+     * @param batches the batches of changes.
+     * @throws ConflictException if there was a conflict with a change of
+     *          another commit.
+     * @throws DocumentStoreException if a batch could not be written.
+     */
+    private void applyConcurrently(DocumentStore store,
+                                   List<List<UpdateOp>> batches)
+            throws ConflictException, DocumentStoreException {
+        List<CompletableFuture<List<NodeDocument>>> results = new ArrayList<>();
+        for (List<UpdateOp> updates : batches) {
+            results.add(createOrUpdateAsync(store, NODES, updates).toCompletableFuture());
+        }
+        // wait until all batches are done, even when one of them failed.
+        // otherwise a rollback may run concurrently with pending updates
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .handle((r, t) -> null).join();
+        for (int i = 0; i < batches.size(); i++) {
+            List<NodeDocument> oldDocs = await(results.get(i));
+            checkConflicts(oldDocs, batches.get(i));
+            checkSplitCandidate(oldDocs);
+        }
+    }
+
     private boolean conditionalCommit(List<UpdateOp> changedNodes,
                                       String commitValue)
             throws DocumentStoreException {
@@ -538,7 +599,7 @@ public class Commit {
             return;
         }
         if (doc.getMemory() > SPLIT_CANDIDATE_THRESHOLD || doc.hasBinary()) {
-            nodeStore.addSplitCandidate(doc.getId());
+            nodeStore.addSplitCandidate(doc.getId(), doc.getMemory());
         }
     }
 
@@ -19,28 +19,35 @@ package org.apache.jackrabbit.oak.plugins.document;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * The queue does not use locks. Its entries are linked in the order of their
+ * revisions: a new entry is appended with a compare-and-set on the next
+ * pointer of the last entry, using a revision created after the last entry
+ * was read. If another entry was appended in the meantime, the revision is
+ * discarded and a new one is created. The head of the queue is the first
+ * entry that was not yet removed. A thread that removes an entry releases
+ * the entry that is the head afterwards.
  */
 final class CommitQueue {
 
@@ -51,12 +58,26 @@ final class CommitQueue {
      */
     static final long DEFAULT_SUSPEND_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+    /**
+     * The entries in the queue by revision.
+     */
+    private final ConcurrentMap<Revision, Entry> commits = new ConcurrentHashMap<Revision, Entry>();
+
+    /**
+     * Points to an entry that was already removed from the queue. Its
+     * successor (if any) is the first candidate for the head of the queue.
+     */
+    private final AtomicReference<Entry> head;
+
+    /**
+     * Points to the last or second to last entry in the queue.
+     */
+    private final AtomicReference<Entry> tail;
 
     /**
-     * Map of currently suspended commits until a given Revision is visible.
+     * The currently suspended commits until a given Revision is visible.
      */
-    private final Map<Semaphore, SuspendedCommit> suspendedCommits = Maps.newIdentityHashMap();
+    private final Set<SuspendedCommit> suspendedCommits = Sets.newConcurrentHashSet();
 
     private final RevisionContext context;
 
@@ -70,6 +91,10 @@ final class CommitQueue {
 
     CommitQueue(@NotNull RevisionContext context) {
         this.context = checkNotNull(context);
+        Entry sentinel = new Entry(null);
+        sentinel.removed = true;
+        this.head = new AtomicReference<Entry>(sentinel);
+        this.tail = new AtomicReference<Entry>(sentinel);
     }
 
     void setStatisticsCollector(@NotNull DocumentNodeStoreStatsCollector collector) {
@@ -84,17 +109,33 @@ final class CommitQueue {
     @NotNull
     SortedSet<Revision> createRevisions(int num) {
         checkArgument(num > 0);
-        SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
-        Revision rev = null;
-        synchronized (this) {
+        for (;;) {
+            Entry last = tail.get();
+            Entry next = last.next.get();
+            if (next != null) {
+                // help to advance the tail
+                tail.compareAndSet(last, next);
+                continue;
+            }
+            // revisions are created after the last entry was read and
+            // are therefore newer than the revision of the last entry
+            SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
+            Revision rev = null;
             for (int i = 0; i < num; i++) {
                 rev = context.newRevision();
                 revs.add(rev);
             }
-            commits.put(rev, new Entry(rev));
+            Entry entry = new Entry(rev);
+            commits.put(rev, entry);
+            if (last.next.compareAndSet(null, entry)) {
+                tail.compareAndSet(last, entry);
+                LOG.debug("created commit {}", rev);
+                return revs;
+            }
+            // another entry was appended concurrently, retry with
+            // newer revisions
+            commits.remove(rev);
         }
-        LOG.debug("created commit {}", rev);
-        return revs;
     }
 
     void done(@NotNull Revision revision, @NotNull Callback c) {
@@ -108,9 +149,7 @@ final class CommitQueue {
     }
 
     boolean contains(@NotNull Revision revision) {
-        synchronized (this) {
-            return commits.containsKey(checkNotNull(revision));
-        }
+        return commits.containsKey(checkNotNull(revision));
     }
 
     /**
@@ -149,27 +188,17 @@ final class CommitQueue {
      */
     void suspendUntilAll(@NotNull Set<Revision> revisions, long suspendTimeoutMillis) 
             throws InterruptedException {
-        Semaphore s;
-        int addedRevisions;
-        synchronized (suspendedCommits) {
-            RevisionVector headRevision = context.getHeadRevision();
-            Set<Revision> afterHead = new HashSet<Revision>(revisions.size());
-            for (Revision r : revisions) {
-                if (headRevision.isRevisionNewer(r)) {
-                    afterHead.add(r);
-                }
-            }
-
-            s = new Semaphore(0);
-            suspendedCommits.put(s, new SuspendedCommit(s, afterHead));
-            addedRevisions = afterHead.size();
-        }
+        Semaphore s = new Semaphore(0);
+        SuspendedCommit suspended = new SuspendedCommit(s, revisions);
+        suspendedCommits.add(suspended);
         try {
-            s.tryAcquire(addedRevisions, suspendTimeoutMillis, TimeUnit.MILLISECONDS);
+            // check visibility after the suspended commit was added,
+            // otherwise a concurrent change of the head revision may
+            // not release it
+            suspended.removeRevisionsVisibleFrom(context.getHeadRevision());
+            s.tryAcquire(revisions.size(), suspendTimeoutMillis, TimeUnit.MILLISECONDS);
         } finally {
-            synchronized (suspendedCommits) {
-                suspendedCommits.remove(s);
-            }
+            suspendedCommits.remove(suspended);
         }
     }
 
@@ -185,9 +214,7 @@ final class CommitQueue {
      * @return the number of suspended threads on this commit queue.
      */
     int numSuspendedThreads() {
-        synchronized (suspendedCommits) {
-            return suspendedCommits.size();
-        }
+        return suspendedCommits.size();
     }
 
     /**
@@ -208,60 +235,45 @@ final class CommitQueue {
     //------------------------< internal >--------------------------------------
 
     private void notifySuspendedCommits() {
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            RevisionVector headRevision = context.getHeadRevision();
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        RevisionVector headRevision = context.getHeadRevision();
+        for (SuspendedCommit suspended : suspendedCommits) {
+            if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
+                suspendedCommits.remove(suspended);
             }
         }
     }
 
     private void notifySuspendedCommits(@NotNull Revision revision) {
         checkNotNull(revision);
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        for (SuspendedCommit suspended : suspendedCommits) {
+            if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
+                suspendedCommits.remove(suspended);
             }
         }
     }
 
     private void removeCommit(@NotNull Revision rev) {
         // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
+        Entry entry = commits.get(rev);
+        if (entry != null) {
+            boolean wasHead = first() == entry;
+            remove(entry);
             LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
         }
     }
 
     private void waitUntilHeadOfQueue(@NotNull Revision rev,
                                       @NotNull Callback c) {
-        assert !commits.isEmpty();
+        Entry commitEntry = commits.get(rev);
+        assert commitEntry != null;
 
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
-        if (isHead) {
+        if (first() == commitEntry) {
             statsCollector.doneWaitUntilHead(0);
         } else {
             LOG.debug("not head: {}, waiting...", rev);
@@ -270,22 +282,46 @@ final class CommitQueue {
         try {
             c.headOfQueue(rev);
         } finally {
-            synchronized (this) {
-                commits.remove(rev);
-                try {
-                    LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-                } finally {
-                    // notify next if there is any
-                    notifyHead();
-                }
+            remove(commitEntry);
+            if (LOG.isDebugEnabled()) {
+                Entry next = first();
+                LOG.debug("removed {}, head is now {}", rev, next == null ? null : next.revision);
             }
         }
     }
 
-    private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
+    /**
+     * Removes the entry from the queue and releases the entry that is the
+     * head of the queue afterwards.
+     */
+    private void remove(@NotNull Entry entry) {
+        entry.removed = true;
+        commits.remove(entry.revision);
+        // notify next if there is any
+        Entry next = first();
+        if (next != null) {
+            LOG.debug("release {}", next.revision);
+            next.release();
+        }
+    }
+
+    /**
+     * @return the entry at the head of the queue or {@code null} if the
+     *          queue is empty.
+     */
+    @Nullable
+    private Entry first() {
+        for (;;) {
+            Entry h = head.get();
+            Entry next = h.next.get();
+            if (next == null) {
+                return null;
+            } else if (next.removed) {
+                // skip removed entry
+                head.compareAndSet(h, next);
+            } else {
+                return next;
+            }
         }
     }
 
@@ -305,6 +341,16 @@ final class CommitQueue {
          */
         private final CountDownLatch latch = new CountDownLatch(1);
 
+        /**
+         * The next entry in the queue.
+         */
+        private final AtomicReference<Entry> next = new AtomicReference<Entry>();
+
+        /**
+         * Whether the entry was removed from the queue.
+         */
+        private volatile boolean removed;
+
         Entry(Revision revision) {
             this.revision = revision;
         }
@@ -344,15 +390,15 @@ final class CommitQueue {
 
         private SuspendedCommit(Semaphore semaphore, Set<Revision> revisions) {
             this.semaphore = semaphore;
-            this.revisions = revisions;
+            this.revisions = Sets.newConcurrentHashSet(revisions);
         }
 
         private boolean removeRevisionsVisibleFrom(RevisionVector revision) {
-            Iterator<Revision> it = revisions.iterator();
             boolean removed = false;
-            while (it.hasNext()) {
-                if (!revision.isRevisionNewer(it.next())) {
-                    it.remove();
+            for (Revision r : revisions) {
+                // only release the semaphore if this thread removed
+                // the revision
+                if (!revision.isRevisionNewer(r) && revisions.remove(r)) {
                     semaphore.release();
                     removed = true;
                 }
@@ -107,6 +107,14 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilde
                     "but slightly lower cache hit rate)")
     int cacheStackMoveDistance() default DEFAULT_CACHE_STACK_MOVE_DISTANCE;
 
+    @AttributeDefinition(
+            name = "Off-Heap Document Cache Size (in MB)",
+            description = "Size in MB of the off-heap tier for documents " +
+                    "evicted from the Document cache. The off-heap tier is " +
+                    "disabled when set to 0 (default) and is only available " +
+                    "with the LIRS cache")
+    int offHeapDocumentCache() default DocumentNodeStoreService.DEFAULT_OFF_HEAP_DOCUMENT_CACHE;
+
     @AttributeDefinition(
             name = "Blob Cache Size (in MB)",
             description = "Cache size to store blobs in memory. Used only with default BlobStore " +
@@ -151,6 +159,12 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilde
                     "be pre-fetched in a background thread.")
     boolean prefetchExternalChanges() default DocumentNodeStoreService.DEFAULT_PREFETCH_EXTERNAL_CHANGES;
 
+    @AttributeDefinition(
+            name = "Shared diff cache",
+            description = "Boolean value indicating if expensive diffs should " +
+                    "be persisted in the journal and shared with other cluster nodes.")
+    boolean sharedDiffCache() default DocumentNodeStoreService.DEFAULT_SHARED_DIFF_CACHE;
+
     @AttributeDefinition(
             name = "NodeStoreProvider role",
             description = "Property indicating that this component will not register as a NodeStore but as a " +
@@ -189,6 +203,28 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilde
                     "The default value is " + DocumentNodeStoreService.DEFAULT_RGC_DELAY_FACTOR)
     double versionGCDelayFactor() default DocumentNodeStoreService.DEFAULT_RGC_DELAY_FACTOR;
 
+    @AttributeDefinition(
+            name = "Parallelism of a Version GC run",
+            description = "Number of threads a Version GC run uses to collect and delete documents " +
+                    "of deleted nodes. The default value is " + DocumentNodeStoreService.DEFAULT_RGC_PARALLELISM)
+    int versionGCParallelism() default DocumentNodeStoreService.DEFAULT_RGC_PARALLELISM;
+
+    @AttributeDefinition(
+            name = "Rate limit for a Version GC run",
+            description = "Maximum number of documents per second a Version GC run deletes or updates " +
+                    "when it removes documents of deleted nodes. The default value is " +
+                    DocumentNodeStoreService.DEFAULT_RGC_RATE_LIMIT + " (no limit)")
+    double versionGCRateLimit() default DocumentNodeStoreService.DEFAULT_RGC_RATE_LIMIT;
+
+    @AttributeDefinition(
+            name = "Continuous Version GC",
+            description = "Boolean value indicating whether scheduled Version GC runs collect garbage " +
+                    "in small increments trailing the sweep revisions, finding documents of deleted " +
+                    "nodes with the journal instead of an index query. Use with a Version GC " +
+                    "expression that runs frequently, e.g. every few minutes. The default value is " +
+                    DocumentNodeStoreService.DEFAULT_RGC_CONTINUOUS)
+    boolean versionGCContinuous() default DocumentNodeStoreService.DEFAULT_RGC_CONTINUOUS;
+
     @AttributeDefinition(
             name = "Blob GC Max Age (in secs)",
             description = "Blob Garbage Collector (GC) logic will only consider those blobs for GC which " +
@@ -155,6 +155,14 @@ abstract class DiffCache {
     interface Loader {
 
         String call();
+
+        /**
+         * @return {@code true} if computing the diff with {@link #call()} is
+         *          expected to be expensive, {@code false} otherwise.
+         */
+        default boolean isExpensive() {
+            return true;
+        }
     }
 
     interface Diff {
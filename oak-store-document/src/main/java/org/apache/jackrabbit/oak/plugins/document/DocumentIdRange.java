@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A range of {@link NodeDocument} ids. Both bounds are exclusive, like the
+ * keys passed to {@link DocumentStore#query(Collection, String, String, int)}.
+ */
+final class DocumentIdRange {
+
+    /**
+     * Documents with a depth less than this value are not in the same
+     * partition as documents of another depth less than this value. Deeper
+     * documents share the partition with the depth their id sorts after,
+     * e.g. depth 30 to 39 with depth 2, because {@code "2:" < "30:" < "3:"}.
+     * Such deep documents are rare and the limit keeps the number of
+     * partitions small.
+     */
+    static final int PARTITIONED_DEPTH_LIMIT = 30;
+
+    private static final List<DocumentIdRange> PARTITIONS;
+
+    static {
+        // the id of a node document starts with the depth of its path
+        // followed by a colon. the sorted prefixes for the depths below
+        // the limit partition the id space into disjoint ranges, which
+        // together cover all documents
+        List<String> prefixes = new ArrayList<>();
+        for (int depth = 0; depth < PARTITIONED_DEPTH_LIMIT; depth++) {
+            prefixes.add(depth + ":");
+        }
+        Collections.sort(prefixes);
+        List<DocumentIdRange> partitions = new ArrayList<>();
+        // there are no ids before the first prefix
+        String from = NodeDocument.MIN_ID_VALUE;
+        for (String to : prefixes.subList(1, prefixes.size())) {
+            partitions.add(new DocumentIdRange(from, to));
+            from = to;
+        }
+        partitions.add(new DocumentIdRange(from, NodeDocument.MAX_ID_VALUE));
+        PARTITIONS = Collections.unmodifiableList(partitions);
+    }
+
+    private final String fromId;
+
+    private final String toId;
+
+    DocumentIdRange(@NotNull String fromId, @NotNull String toId) {
+        this.fromId = checkNotNull(fromId);
+        this.toId = checkNotNull(toId);
+    }
+
+    /**
+     * Returns disjoint ranges, which together cover all node document ids.
+     * The ranges are ordered by their bounds and the number of ranges does
+     * not change.
+     *
+     * @return the partitions of the node document id space.
+     */
+    @NotNull
+    static List<DocumentIdRange> partitions() {
+        return PARTITIONS;
+    }
+
+    /**
+     * @return the lower bound (exclusive) of this range.
+     */
+    @NotNull
+    String getFromId() {
+        return fromId;
+    }
+
+    /**
+     * @return the upper bound (exclusive) of this range.
+     */
+    @NotNull
+    String getToId() {
+        return toId;
+    }
+
+    /**
+     * @param id a document id.
+     * @return whether the given id is within this range.
+     */
+    boolean contains(@NotNull String id) {
+        return fromId.compareTo(id) < 0 && toId.compareTo(id) > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + fromId + ", " + toId + ")";
+    }
+}
@@ -16,7 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,6 +34,7 @@ import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.json.JsopWriter;
 import org.apache.jackrabbit.oak.json.JsonSerializer;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingStats;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlorUtils;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.Matcher;
@@ -54,6 +55,7 @@ import com.google.common.collect.Iterators;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
@@ -517,7 +519,11 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
             return null;
         }
 
-        return store.getNode(new Path(getPath(), childNodeName), lastRevision);
+        BundlingStats stats = store.getBundlingConfigHandler().getStats();
+        if (stats != null) {
+            stats.childNodeRead(this, childNodeName);
+        }
+        return store.getNode(PathInterner.child(getPath(), childNodeName), lastRevision);
     }
 
     @Nullable
@@ -577,30 +583,33 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
     public static class Children implements CacheValue {
 
         /**
-         * Ascending sorted list of names of child nodes.
+         * Ascending sorted list of names of child nodes, front coded to
+         * reduce the memory used by similar names.
          */
-        final ArrayList<String> children = new ArrayList<String>();
+        final FrontCodedNames children;
         long cachedMemory;
         boolean hasMore;
 
+        public Children() {
+            this(new FrontCodedNames());
+        }
+
+        private Children(FrontCodedNames children) {
+            this.children = children;
+        }
+
+        /**
+         * Returns the estimated memory used by this instance. The first
+         * call also releases unused capacity of the list of names, which
+         * is usually complete when this instance is put into a cache.
+         */
         @Override
         public int getMemory() {
             if (cachedMemory == 0) {
-                long size = 48;
-                if (!children.isEmpty()) {
-                    size = 114;
-                    for (String c : children) {
-                        size += (long)estimateMemoryUsage(c) + 8;
-                    }
-                }
-                cachedMemory = size;
-            }
-            if (cachedMemory > Integer.MAX_VALUE) {
-                log.debug("Estimated memory footprint larger than Integer.MAX_VALUE: {}.", cachedMemory);
-                return Integer.MAX_VALUE;
-            } else {
-                return (int)cachedMemory;
+                children.compact();
+                cachedMemory = 48 + children.getMemory();
             }
+            return (int) cachedMemory;
         }
 
         @Override
@@ -623,6 +632,38 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
             return json.toString();            
         }
         
+        /**
+         * Returns a binary representation of this instance, which is
+         * usually much smaller than the one returned by {@link #asString()}
+         * and can be read without parsing the names.
+         *
+         * @return the binary representation.
+         * @see #fromBytes(byte[])
+         */
+        public byte[] asBytes() {
+            byte[] names = children.getData();
+            byte[] bytes = new byte[names.length + 1];
+            bytes[0] = (byte) (hasMore ? 1 : 0);
+            System.arraycopy(names, 0, bytes, 1, names.length);
+            return bytes;
+        }
+
+        /**
+         * Creates children from the binary representation returned by
+         * {@link #asBytes()}.
+         *
+         * @param bytes the binary representation.
+         * @return the children.
+         * @throws IllegalArgumentException if the bytes are malformed.
+         */
+        public static Children fromBytes(byte[] bytes) {
+            checkArgument(bytes.length > 0, "Malformed data");
+            Children c = new Children(FrontCodedNames.fromData(
+                    Arrays.copyOfRange(bytes, 1, bytes.length)));
+            c.hasMore = bytes[0] != 0;
+            return c;
+        }
+
         public static Children fromString(String s) {
             JsopTokenizer json = new JsopTokenizer(s);
             Children children = new Children();
@@ -715,7 +756,7 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
     private AbstractDocumentNodeState createBundledState(String childNodeName, Matcher child) {
         return new DocumentNodeState(
                 store,
-                new Path(path, childNodeName),
+                PathInterner.child(path, childNodeName),
                 lastRevision,
                 rootRevision,
                 fromExternalChange,
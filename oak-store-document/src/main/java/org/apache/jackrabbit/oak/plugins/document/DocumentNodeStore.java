@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.partition;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.reverse;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -46,17 +47,28 @@ import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -191,6 +203,13 @@ public final class DocumentNodeStore
      */
     private int journalPushThreshold = SystemPropertySupplier.create("oak.journalPushThreshold", 100000).loggingTo(LOG).get();
 
+    /**
+     * The number of modified child documents read with a single query when
+     * a diff is computed for a node with many children.
+     */
+    private int diffManyChildrenBatchSize = SystemPropertySupplier.create("oak.documentMK.diffManyChildrenBatchSize", 1000)
+            .loggingTo(LOG).get();
+
     /**
      * How many collision entries to collect in a single call.
      */
@@ -204,10 +223,53 @@ public final class DocumentNodeStore
     private final int createOrUpdateBatchSize = SystemPropertySupplier.create("oak.documentMK.createOrUpdateBatchSize", 1000)
             .loggingTo(LOG).get();
 
+    /**
+     * Feature flag to enable group commits. When enabled, the document
+     * updates of concurrent commits are written with a shared call to
+     * {@link DocumentStore#createOrUpdate(Collection, List)}.
+     */
+    private final boolean groupCommit = SystemPropertySupplier.create("oak.documentMK.groupCommit", Boolean.FALSE)
+            .loggingTo(LOG).get();
+
+    /**
+     * The maximum time in microseconds a group commit waits for concurrent
+     * commits to join while other groups are written. A higher value trades
+     * commit latency for fewer round trips to the {@link DocumentStore}.
+     */
+    private final long groupCommitMaxDelayMicros = SystemPropertySupplier.create("oak.documentMK.groupCommitMaxDelayMicros", 1000L)
+            .loggingTo(LOG).get();
+
+    /**
+     * Feature flag to disable the prefetch of child documents in
+     * {@link #getChildNodes(DocumentNodeState, String, int)}.
+     */
+    private boolean disablePrefetchChildren = SystemPropertySupplier.create("oak.documentMK.disablePrefetchChildren", Boolean.FALSE)
+            .loggingTo(LOG).get();
+
+    /**
+     * The minimum number of child nodes returned by
+     * {@link #getChildNodes(DocumentNodeState, String, int)} to check whether
+     * their documents should be prefetched. Shorter lists are not scanned.
+     */
+    private int prefetchChildrenMinSize = SystemPropertySupplier.create("oak.documentMK.prefetchChildrenMinSize", 10)
+            .loggingTo(LOG).get();
+
     public static final String SYS_PROP_DISABLE_SWEEP2 = "oak.documentMK.disableSweep2";
     private boolean disableSweep2 = SystemPropertySupplier.create(SYS_PROP_DISABLE_SWEEP2, Boolean.FALSE).loggingTo(LOG)
             .get();
 
+    /**
+     * Prefix of the id of the {@link SweepCheckpoint} for a partitioned sweep
+     * of this clusterId in the settings collection.
+     */
+    static final String SWEEP_CHECKPOINT_ID_PREFIX = "sweepCheckpoint-";
+
+    /**
+     * The id of the {@link SweepCheckpoint} for a partitioned sweep2 in the
+     * settings collection.
+     */
+    static final String SWEEP2_CHECKPOINT_ID = "sweep2Checkpoint";
+
     /**
      * The document store without potentially lease checking wrapper.
      */
@@ -233,6 +295,11 @@ public final class DocumentNodeStore
      */
     private final BatchCommitQueue batchCommitQueue;
 
+    /**
+     * Queue for group commits or {@code null} if disabled.
+     */
+    private final GroupCommitQueue groupCommitQueue;
+
     /**
      * The change dispatcher for this node store.
      */
@@ -300,9 +367,10 @@ public final class DocumentNodeStore
     private final UnsavedModifications unsavedLastRevisions = new UnsavedModifications();
 
     /**
-     * Set of IDs for documents that may need to be split.
+     * IDs for documents that may need to be split, mapped to the estimated
+     * size of the document when it was added as a candidate.
      */
-    private final Map<String, String> splitCandidates = Maps.newConcurrentMap();
+    private final Map<String, Integer> splitCandidates = Maps.newConcurrentMap();
 
     /**
      * Summary of changes done by this cluster node to persist by the background
@@ -490,6 +558,30 @@ public final class DocumentNodeStore
     
     private final Executor executor;
 
+    /**
+     * Executor to read external changes in parallel or {@code null} if
+     * external changes are read serially by the background read thread.
+     */
+    @Nullable
+    private final ExecutorService backgroundReadExecutor;
+
+    /**
+     * Executor to write back _lastRev updates with concurrent batches or
+     * {@code null} if they are written by the background update thread.
+     */
+    @Nullable
+    private final ExecutorService backgroundWriteExecutor;
+
+    /**
+     * The maximum number of concurrent batches to write back _lastRev updates.
+     */
+    private final int backgroundWriteParallelism;
+
+    /**
+     * The number of concurrent partitions when documents are swept.
+     */
+    private final int sweepParallelism;
+
     private final MissingLastRevSeeker lastRevSeeker;
 
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
@@ -587,6 +679,14 @@ public final class DocumentNodeStore
             clusterNodeInfo.setLeaseFailureHandler(builder.getLeaseFailureHandler());
         }
         String threadNamePostfix = "(" + clusterId + ")";
+        backgroundReadExecutor = createBackgroundExecutor(
+                builder.getBackgroundReadParallelism(),
+                "DocumentNodeStore background read worker " + threadNamePostfix);
+        backgroundWriteParallelism = builder.getBackgroundWriteParallelism();
+        sweepParallelism = builder.getSweepParallelism();
+        backgroundWriteExecutor = readOnlyMode ? null : createBackgroundExecutor(
+                backgroundWriteParallelism,
+                "DocumentNodeStore background write worker " + threadNamePostfix);
         leaseUpdateThread = new Thread(new BackgroundLeaseUpdate(this, stopLeaseUpdateThread),
                 "DocumentNodeStore lease update thread " + threadNamePostfix);
         leaseUpdateThread.setDaemon(true);
@@ -695,6 +795,8 @@ public final class DocumentNodeStore
         commitQueue = new CommitQueue(this);
         commitQueue.setStatisticsCollector(nodeStoreStatsCollector);
         batchCommitQueue = new BatchCommitQueue(store);
+        groupCommitQueue = groupCommit ? new GroupCommitQueue(store,
+                createOrUpdateBatchSize, groupCommitMaxDelayMicros) : null;
         // prepare background threads
         backgroundReadThread = new Thread(
                 new BackgroundReadOperation(this, isDisposed),
@@ -829,6 +931,9 @@ public final class DocumentNodeStore
                 backgroundUpdateThread,
                 backgroundSweepThread,
                 backgroundSweep2Thread);
+        if (backgroundReadExecutor != null) {
+            backgroundReadExecutor.shutdownNow();
+        }
 
         DocumentStoreException ex = null;
 
@@ -921,6 +1026,10 @@ public final class DocumentNodeStore
             clusterNodeInfo.dispose();
         }
 
+        if (backgroundWriteExecutor != null) {
+            backgroundWriteExecutor.shutdownNow();
+        }
+
         store.dispose();
 
         try {
@@ -1144,6 +1253,15 @@ public final class DocumentNodeStore
         return changeSetMaxDepth;
     }
 
+    /**
+     * @return the executor to read external changes in parallel or
+     *          {@code null} if external changes are read serially.
+     */
+    @Nullable
+    ExecutorService getBackgroundReadExecutor() {
+        return backgroundReadExecutor;
+    }
+
     public void setChangeSetMaxDepth(int changeSetMaxDepth) {
         this.changeSetMaxDepth = changeSetMaxDepth;
     }
@@ -1164,6 +1282,19 @@ public final class DocumentNodeStore
         this.journalPushThreshold = journalPushThreshold;
     }
 
+    void setDiffManyChildrenBatchSize(int batchSize) {
+        checkArgument(batchSize > 0);
+        this.diffManyChildrenBatchSize = batchSize;
+    }
+
+    void setDisablePrefetchChildren(boolean disablePrefetchChildren) {
+        this.disablePrefetchChildren = disablePrefetchChildren;
+    }
+
+    void setPrefetchChildrenMinSize(int minSize) {
+        this.prefetchChildrenMinSize = minSize;
+    }
+
     @NotNull
     public ClusterNodeInfo getClusterInfo() {
         return clusterNodeInfo;
@@ -1226,7 +1357,17 @@ public final class DocumentNodeStore
      * @param id the id of the document to check if it needs to be split.
      */
     void addSplitCandidate(String id) {
-        splitCandidates.put(id, id);
+        addSplitCandidate(id, 0);
+    }
+
+    /**
+     * Enqueue the document with the given id as a split candidate.
+     *
+     * @param id the id of the document to check if it needs to be split.
+     * @param memory the estimated size of the document.
+     */
+    void addSplitCandidate(String id, int memory) {
+        splitCandidates.merge(id, memory, Math::max);
     }
 
     @Nullable
@@ -1284,6 +1425,51 @@ public final class DocumentNodeStore
         }
     }
 
+    /**
+     * Prefetches the nodes at the given paths and their ancestors as seen
+     * from the given root state. The documents that are not yet cached are
+     * read from the {@link DocumentStore} with as few round trips as
+     * possible and the node states are then put into the node cache. A
+     * later read of one of these nodes, e.g. when the results of a query are
+     * iterated, is then served from the cache. This method does nothing if
+     * the root state is not a {@link DocumentNodeState}.
+     *
+     * @param paths the paths of the nodes to prefetch.
+     * @param rootState the root state to read the nodes from.
+     * @throws DocumentStoreException if reading from the store failed.
+     */
+    public void prefetch(@NotNull Iterable<String> paths,
+                         @NotNull NodeState rootState)
+            throws DocumentStoreException {
+        if (!(checkNotNull(rootState) instanceof DocumentNodeState)) {
+            return;
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        List<Path> toLoad = new ArrayList<>();
+        for (String p : paths) {
+            Path path = Path.fromString(p);
+            toLoad.add(path);
+            // add ancestors until one is found that was already added
+            for (Path a = path; !a.isRoot(); a = a.getParent()) {
+                if (!ids.add(Utils.getIdFromPath(a))) {
+                    break;
+                }
+            }
+        }
+        ids.add(Utils.getIdFromPath(Path.ROOT));
+        store.prefetch(Collection.NODES, ids);
+        // walk down to the nodes to put them into the node cache
+        for (Path path : toLoad) {
+            NodeState state = rootState;
+            for (String name : path.elements()) {
+                state = state.getChildNode(name);
+                if (!state.exists()) {
+                    break;
+                }
+            }
+        }
+    }
+
     @NotNull
     DocumentNodeState.Children getChildren(@NotNull final AbstractDocumentNodeState parent,
                                            @NotNull final String name,
@@ -1433,10 +1619,13 @@ public final class DocumentNodeStore
         }
 
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        List<String> children = getChildren(parent, name, limit).children;
+        prefetchChildren(parent.getPath(), readRevision,
+                children.subList(0, Math.min(limit, children.size())));
+        return transform(children, new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
-                Path p = new Path(parent.getPath(), input);
+                Path p = PathInterner.child(parent.getPath(), input);
                 DocumentNodeState result = getNode(p, readRevision);
                 if (result == null) {
                     // This is very unexpected situation - parent's child list
@@ -1479,12 +1668,48 @@ public final class DocumentNodeStore
         });
     }
 
+    /**
+     * Reads the documents of the given children with a single
+     * {@link DocumentStore#prefetch(Collection, Iterable)} call when more than
+     * one of them is neither in the node cache nor in the document cache.
+     * This is the case when the names of the children are served from the
+     * children cache, but the child nodes were evicted from the caches. The
+     * caches are not checked when the prefetch is disabled or when there are
+     * less than {@link #prefetchChildrenMinSize} children.
+     *
+     * @param parent the path of the parent node.
+     * @param readRevision the read revision of the children.
+     * @param names the names of the children.
+     */
+    private void prefetchChildren(@NotNull Path parent,
+                                  @NotNull RevisionVector readRevision,
+                                  @NotNull List<String> names) {
+        if (disablePrefetchChildren
+                || names.size() < Math.max(2, prefetchChildrenMinSize)) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (String name : names) {
+            Path p = PathInterner.child(parent, name);
+            if (nodeCache.getIfPresent(new PathRev(p, readRevision)) != null) {
+                continue;
+            }
+            String id = Utils.getIdFromPath(p);
+            if (store.getIfCached(Collection.NODES, id) == null) {
+                ids.add(id);
+            }
+        }
+        if (ids.size() > 1) {
+            store.prefetch(Collection.NODES, ids);
+        }
+    }
+
     @Nullable
     private DocumentNodeState readNode(Path path, RevisionVector readRevision) {
         final long start = PERFLOG.start();
         String id = Utils.getIdFromPath(path);
         Revision lastRevision = getPendingModifications().get(path);
-        NodeDocument doc = store.find(Collection.NODES, id);
+        NodeDocument doc = store.find(Collection.NODES, id, readRevision);
         if (doc == null) {
             PERFLOG.end(start, 1,
                     "readNode: (document not found) path={}, readRevision={}",
@@ -1915,6 +2140,14 @@ public final class DocumentNodeStore
                     public String call() {
                         return diffImpl(base, node);
                     }
+
+                    @Override
+                    public boolean isExpensive() {
+                        // the classic diff of nodes with many
+                        // children reads all modified children
+                        return getChildren(base, "", MANY_CHILDREN_THRESHOLD).hasMore
+                                || getChildren(node, "", MANY_CHILDREN_THRESHOLD).hasMore;
+                    }
                 })).withoutPropertyChanges().compare(node, base, diff);
     }
 
@@ -2195,7 +2428,8 @@ public final class DocumentNodeStore
             long cleanTime = clock.getTime() - time;
             time = clock.getTime();
             // split documents (does not create new revisions)
-            backgroundSplit();
+            int splitCandidatesCount = splitCandidates.size();
+            long splitMaxDocSize = backgroundSplit();
             long splitTime = clock.getTime() - time;
             time = clock.getTime();
             maybeRefreshHeadRevision();
@@ -2204,6 +2438,8 @@ public final class DocumentNodeStore
             stats = backgroundWrite();
             stats.refresh = refreshTime;
             stats.split = splitTime;
+            stats.splitCandidates = splitCandidatesCount;
+            stats.splitMaxDocSize = splitMaxDocSize;
             stats.clean = cleanTime;
             stats.totalWriteTime = clock.getTime() - start;
             String msg = "Background operations stats ({})";
@@ -2362,6 +2598,43 @@ public final class DocumentNodeStore
                 stats.cacheStats = store.invalidateCache();
             }
 
+            /**
+             * The diff cache entry for the external changes populated
+             * by {@link #prepareUpdateHead(Set, Iterable)} or {@code null}
+             * if there is none. The value of the future is the revision
+             * the diff starts from.
+             */
+            private Future<RevisionVector> preparedDiff;
+
+            @Override
+            void prepareUpdateHead(@NotNull Set<Revision> externalChanges,
+                                   @NotNull Iterable<String> changedPaths) {
+                if (backgroundReadExecutor == null) {
+                    return;
+                }
+                // populate the diff cache while caches are invalidated.
+                // the head revision may change until updateHead() acquires
+                // the lock, but only with local changes. the diff between
+                // from and to then is still correct, though not used
+                RevisionVector from = getHeadRevision();
+                RevisionVector to = from;
+                for (Revision r : externalChanges) {
+                    to = to.update(r);
+                }
+                RevisionVector diffTo = to;
+                Iterator<String> paths = changedPaths.iterator();
+                try {
+                    preparedDiff = backgroundReadExecutor.submit(() -> {
+                        long start = clock.getTime();
+                        JournalEntry.applyTo(() -> paths, diffCache, ROOT, from, diffTo);
+                        stats.prepareDiffCache = clock.getTime() - start;
+                        return from;
+                    });
+                } catch (RejectedExecutionException e) {
+                    LOG.debug("backgroundRead: unable to prepare diff cache entry", e);
+                }
+            }
+
             @Override
             void updateHead(@NotNull Set<Revision> externalChanges,
                             @NotNull RevisionVector sweepRevs,
@@ -2383,7 +2656,8 @@ public final class DocumentNodeStore
 
                     commitQueue.headRevisionChanged();
                     time = clock.getTime();
-                    if (changedPaths != null) {
+                    if (changedPaths != null
+                            && !oldHead.equals(awaitPreparedDiff())) {
                         // then there were external changes and reading them
                         // was successful -> apply them to the diff cache
                         try {
@@ -2405,9 +2679,49 @@ public final class DocumentNodeStore
                 }
                 stats.dispatchChanges = clock.getTime() - time;
             }
+
+            /**
+             * Waits for the diff cache entry prepared by
+             * {@link #prepareUpdateHead(Set, Iterable)}.
+             *
+             * @return the revision the prepared diff starts from or
+             *          {@code null} if no diff was prepared.
+             */
+            @Nullable
+            private RevisionVector awaitPreparedDiff() {
+                if (preparedDiff == null) {
+                    return null;
+                }
+                try {
+                    return preparedDiff.get();
+                } catch (InterruptedException e) {
+                    preparedDiff.cancel(true);
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOG.warn("backgroundRead: Exception while preparing diff cache entry: " + e.getCause(), e.getCause());
+                }
+                return null;
+            }
         }.process();
     }
 
+    @Nullable
+    static ExecutorService createBackgroundExecutor(int parallelism,
+                                                            final String name) {
+        if (parallelism <= 1) {
+            return null;
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
     private static CommitInfo newCommitInfo(@NotNull ChangeSet changeSet, JournalPropertyHandler journalPropertyHandler) {
         CommitContext commitContext = new SimpleCommitContext();
         commitContext.set(COMMIT_CONTEXT_OBSERVATION_CHANGESET, changeSet);
@@ -2477,7 +2791,14 @@ public final class DocumentNodeStore
         }
     }
 
-    private void backgroundSplit() {
+    /**
+     * Splits the documents in {@link #splitCandidates}, largest documents
+     * first.
+     *
+     * @return the estimated size of the largest split candidate or zero if
+     *          there were no candidates.
+     */
+    private long backgroundSplit() {
         final int initialCapacity = getCreateOrUpdateBatchSize() + 4;
         Set<Path> invalidatedPaths = new HashSet<>(initialCapacity);
         Set<Path> pathsToInvalidate = new HashSet<>(initialCapacity);
@@ -2505,42 +2826,64 @@ public final class DocumentNodeStore
         // phase2 contains main document updateOps.
         List<UpdateOp> splitOpsPhase2 = new ArrayList<>(initialCapacity);
         List<String> removeCandidates = new ArrayList<>(initialCapacity);
-        for (String id : splitCandidates.keySet()) {
-            removeCandidates.add(id);
-            NodeDocument doc = store.find(Collection.NODES, id);
-            if (doc == null) {
-                continue;
+        // split the largest documents first, they are the ones
+        // at risk of hitting the document size limit of the store.
+        // sort by the size estimate and only read the documents of
+        // a chunk right before it is split
+        final Map<String, Integer> estimates = new HashMap<>(splitCandidates);
+        List<String> ids = new ArrayList<>(estimates.keySet());
+        Collections.sort(ids, new Comparator<String>() {
+            @Override
+            public int compare(String id1, String id2) {
+                return Integer.compare(estimates.get(id2), estimates.get(id1));
             }
-            cleanCollisions(doc, collisionGarbageBatchSize);
-            Iterator<UpdateOp> it = doc.split(this, head, binarySize).iterator();
-            while(it.hasNext()) {
-                UpdateOp op = it.next();
-                Path path = doc.getPath();
-                // add an invalidation journal entry, unless the path
-                // already has a pending _lastRev update or an invalidation
-                // entry was already added in this backgroundSplit() call
-                if (unsavedLastRevisions.get(path) == null && !invalidatedPaths.contains(path)) {
-                    pathsToInvalidate.add(path);
-                }
-                // the last entry is the main document update
-                // (as per updated NodeDocument.split documentation).
-                if (it.hasNext()) {
-                    splitOpsPhase1.add(op);
+        });
+        long maxDocSize = 0;
+        for (List<String> chunkIds : partition(ids, getCreateOrUpdateBatchSize())) {
+            List<NodeDocument> chunk = new ArrayList<>(chunkIds.size());
+            for (String id : chunkIds) {
+                NodeDocument doc = store.find(Collection.NODES, id);
+                if (doc == null) {
+                    removeCandidates.add(id);
                 } else {
-                    splitOpsPhase2.add(op);
+                    chunk.add(doc);
+                    maxDocSize = Math.max(maxDocSize, doc.getMemory());
                 }
             }
-            if (splitOpsPhase1.size() >= getCreateOrUpdateBatchSize()
-                    || splitOpsPhase2.size() >= getCreateOrUpdateBatchSize()) {
-                invalidatePaths(pathsToInvalidate);
-                batchSplit(splitOpsPhase1);
-                batchSplit(splitOpsPhase2);
-                invalidatedPaths.addAll(pathsToInvalidate);
-                pathsToInvalidate.clear();
-                splitOpsPhase1.clear();
-                splitOpsPhase2.clear();
-                splitCandidates.keySet().removeAll(removeCandidates);
-                removeCandidates.clear();
+            List<List<UpdateOp>> chunkOps = splitDocuments(chunk, head);
+            for (int i = 0; i < chunk.size(); i++) {
+                NodeDocument doc = chunk.get(i);
+                removeCandidates.add(doc.getId());
+                Iterator<UpdateOp> it = chunkOps.get(i).iterator();
+                while(it.hasNext()) {
+                    UpdateOp op = it.next();
+                    Path path = doc.getPath();
+                    // add an invalidation journal entry, unless the path
+                    // already has a pending _lastRev update or an invalidation
+                    // entry was already added in this backgroundSplit() call
+                    if (unsavedLastRevisions.get(path) == null && !invalidatedPaths.contains(path)) {
+                        pathsToInvalidate.add(path);
+                    }
+                    // the last entry is the main document update
+                    // (as per updated NodeDocument.split documentation).
+                    if (it.hasNext()) {
+                        splitOpsPhase1.add(op);
+                    } else {
+                        splitOpsPhase2.add(op);
+                    }
+                }
+                if (splitOpsPhase1.size() >= getCreateOrUpdateBatchSize()
+                        || splitOpsPhase2.size() >= getCreateOrUpdateBatchSize()) {
+                    invalidatePaths(pathsToInvalidate);
+                    batchSplit(splitOpsPhase1);
+                    batchSplit(splitOpsPhase2);
+                    invalidatedPaths.addAll(pathsToInvalidate);
+                    pathsToInvalidate.clear();
+                    splitOpsPhase1.clear();
+                    splitOpsPhase2.clear();
+                    splitCandidates.keySet().removeAll(removeCandidates);
+                    removeCandidates.clear();
+                }
             }
         }
 
@@ -2550,6 +2893,68 @@ public final class DocumentNodeStore
             batchSplit(splitOpsPhase2);
         }
         splitCandidates.keySet().removeAll(removeCandidates);
+        return maxDocSize;
+    }
+
+    /**
+     * Cleans collisions on the given documents and computes their split
+     * operations. The documents are processed concurrently with the
+     * background write executor if there is one.
+     *
+     * @param docs the documents to split.
+     * @param head the current head revision.
+     * @return the split operations of each document in the same order as
+     *          the documents.
+     * @throws DocumentStoreException if the split operations cannot be
+     *          computed for one of the documents.
+     */
+    @NotNull
+    private List<List<UpdateOp>> splitDocuments(@NotNull List<NodeDocument> docs,
+                                                @NotNull final RevisionVector head)
+            throws DocumentStoreException {
+        List<List<UpdateOp>> ops = new ArrayList<>(docs.size());
+        if (backgroundWriteExecutor == null || docs.size() < 2) {
+            for (NodeDocument doc : docs) {
+                ops.add(splitDocument(doc, head));
+            }
+            return ops;
+        }
+        List<FutureTask<List<UpdateOp>>> tasks = new ArrayList<>(docs.size());
+        for (final NodeDocument doc : docs) {
+            FutureTask<List<UpdateOp>> task = new FutureTask<>(new Callable<List<UpdateOp>>() {
+                @Override
+                public List<UpdateOp> call() {
+                    return splitDocument(doc, head);
+                }
+            });
+            try {
+                backgroundWriteExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            tasks.add(task);
+        }
+        DocumentStoreException failure = null;
+        for (FutureTask<List<UpdateOp>> task : tasks) {
+            try {
+                ops.add(getUninterruptibly(task));
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = DocumentStoreException.convert(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return ops;
+    }
+
+    @NotNull
+    private List<UpdateOp> splitDocument(@NotNull NodeDocument doc,
+                                         @NotNull RevisionVector head) {
+        cleanCollisions(doc, collisionGarbageBatchSize);
+        return Lists.newArrayList(doc.split(this, head, binarySize));
     }
 
     private void invalidatePaths(@NotNull Set<Path> pathsToInvalidate) {
@@ -2615,6 +3020,11 @@ public final class DocumentNodeStore
         return createOrUpdateBatchSize;
     }
 
+    @Nullable
+    GroupCommitQueue getGroupCommitQueue() {
+        return groupCommitQueue;
+    }
+
     //-----------------------------< internal >---------------------------------
 
     private BackgroundWriteStats backgroundWrite() {
@@ -2629,7 +3039,8 @@ public final class DocumentNodeStore
             public void acquiring(Revision mostRecent) {
                 pushJournalEntry(mostRecent);
             }
-        }, backgroundOperationLock.writeLock());
+        }, backgroundOperationLock.writeLock(),
+                backgroundWriteExecutor, backgroundWriteParallelism);
     }
 
     private void maybeRefreshHeadRevision() {
@@ -2748,70 +3159,66 @@ public final class DocumentNodeStore
         CommitValueResolver cvr = new CachingCommitValueResolver(
                 0 /* disable caching for sweep2 as caching has a risk of propagating wrong values */,
                 () -> emptySweepRevision);
+        if (sweepParallelism > 1) {
+            return forcePartitionedSweep2(cvr, includedClusterIds);
+        }
         MissingBcSweeper2 sweeper = new MissingBcSweeper2(this, cvr, includedClusterIds, isDisposed);
         LOG.info("Starting document sweep2. Head: {}, starting at 0", getHeadRevision());
         Iterable<NodeDocument> docs = lastRevSeeker.getCandidates(0);
         try {
             final AtomicInteger numUpdates = new AtomicInteger();
+            sweeper.sweep2(docs, newSweepListener("sweep2", numUpdates));
+            return numUpdates.get();
+        } finally {
+            Utils.closeIfCloseable(docs);
+        }
+    }
 
-            sweeper.sweep2(docs, new NodeDocumentSweepListener() {
+    /**
+     * Executes a sweep2 with concurrent partitions of the documents. The
+     * progress is recorded with a {@link SweepCheckpoint}, which means a
+     * sweep2 interrupted by a shutdown resumes with the partitions not yet
+     * completed.
+     */
+    private int forcePartitionedSweep2(final CommitValueResolver cvr,
+                                       final List<Integer> includedClusterIds)
+            throws DocumentStoreException {
+        List<DocumentIdRange> ranges = DocumentIdRange.partitions();
+        String key = includedClusterIds == null ? "[]" : includedClusterIds.toString();
+        final SweepCheckpoint checkpoint = SweepCheckpoint.open(store,
+                SWEEP2_CHECKPOINT_ID, key, null, ranges.size());
+        LOG.info("Starting partitioned document sweep2. Head: {}, partitions: {}, parallelism: {}",
+                getHeadRevision(), ranges.size(), sweepParallelism);
+        final AtomicInteger numUpdates = new AtomicInteger();
+        final NodeDocumentSweepListener listener = newSweepListener("sweep2", numUpdates);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (checkpoint.isDone(i)) {
+                continue;
+            }
+            final int partition = i;
+            final DocumentIdRange range = ranges.get(i);
+            final MissingBcSweeper2 sweeper = new MissingBcSweeper2(
+                    this, cvr, includedClusterIds, isDisposed);
+            tasks.add(new Callable<Void>() {
                 @Override
-                public void sweepUpdate(final Map<Path, UpdateOp> updates)
-                        throws DocumentStoreException {
-                    // create a synthetic commit. this commit does not have any
-                    // changes, we just use it to create a journal entry for
-                    // cache invalidation and apply the sweep updates
-                    backgroundOperationLock.readLock().lock();
+                public Void call() {
+                    Iterable<NodeDocument> docs = lastRevSeeker.getCandidates(
+                            0, range.getFromId(), range.getToId());
                     try {
-                        boolean success = false;
-                        Revision r = commitQueue.createRevision();
-                        try {
-                            commitQueue.done(r, new CommitQueue.Callback() {
-                                @Override
-                                public void headOfQueue(@NotNull Revision revision) {
-                                    writeUpdates(updates, revision);
-                                }
-                            });
-                            success = true;
-                        } finally {
-                            if (!success && commitQueue.contains(r)) {
-                                commitQueue.canceled(r);
-                            }
-                        }
+                        sweeper.sweep2(docs, listener);
                     } finally {
-                        backgroundOperationLock.readLock().unlock();
+                        Utils.closeIfCloseable(docs);
                     }
-                }
-
-                private void writeUpdates(Map<Path, UpdateOp> updates,
-                                          Revision revision)
-                        throws DocumentStoreException {
-                    // create journal entry
-                    JournalEntry entry = JOURNAL.newDocument(getDocumentStore());
-                    entry.modified(updates.keySet());
-                    Revision r = newRevision().asBranchRevision();
-                    if (!store.create(JOURNAL, singletonList(entry.asUpdateOp(r)))) {
-                        String msg = "Unable to create journal entry for " +
-                                "document invalidation. Will be retried with " +
-                                "next background sweep2 operation.";
-                        throw new DocumentStoreException(msg);
-                    }
-                    changes.invalidate(Collections.singleton(r));
-                    unsavedLastRevisions.put(ROOT, revision);
-                    RevisionVector newHead = getHeadRevision().update(revision);
-                    setRoot(newHead);
-                    commitQueue.headRevisionChanged();
-
-                    store.createOrUpdate(NODES, Lists.newArrayList(updates.values()));
-                    numUpdates.addAndGet(updates.size());
-                    LOG.debug("Background sweep2 updated {}", updates.keySet());
+                    checkpoint.done(partition);
+                    return null;
                 }
             });
-
-            return numUpdates.get();
-        } finally {
-            Utils.closeIfCloseable(docs);
         }
+        runConcurrently(tasks, sweepParallelism,
+                "DocumentNodeStore sweep2 worker (" + clusterId + ")");
+        checkpoint.remove();
+        return numUpdates.get();
     }
 
     private int backgroundSweep() throws DocumentStoreException {
@@ -2864,6 +3271,9 @@ public final class DocumentNodeStore
     }
 
     private int forceBackgroundSweep(Revision startRev, String reason) throws DocumentStoreException {
+        if (sweepParallelism > 1) {
+            return forcePartitionedSweep(startRev, reason);
+        }
         NodeDocumentSweeper sweeper = new NodeDocumentSweeper(this, false);
         LOG.info("Starting document sweep. Head: {}, starting at {} (reason: {})",
                 sweeper.getHeadRevision(), startRev, reason);
@@ -2871,69 +3281,198 @@ public final class DocumentNodeStore
         try {
             final AtomicInteger numUpdates = new AtomicInteger();
 
-            Revision newSweepRev = sweeper.sweep(docs, new NodeDocumentSweepListener() {
+            Revision newSweepRev = sweeper.sweep(docs, newSweepListener("sweep", numUpdates));
+
+            if (newSweepRev != null) {
+                updateSweepRevision(newSweepRev);
+            }
+            return numUpdates.get();
+        } finally {
+            Utils.closeIfCloseable(docs);
+        }
+    }
+
+    /**
+     * Executes a sweep with concurrent partitions of the documents. The
+     * progress is recorded with a {@link SweepCheckpoint}. A sweep with the
+     * same start revision, e.g. after a crash, resumes with the partitions not
+     * yet completed. The new sweep revision is then the head revision of the
+     * interrupted sweep, because the completed partitions were only swept up
+     * to that revision.
+     */
+    private int forcePartitionedSweep(Revision startRev, String reason)
+            throws DocumentStoreException {
+        List<DocumentIdRange> ranges = DocumentIdRange.partitions();
+        final SweepCheckpoint checkpoint = SweepCheckpoint.open(store,
+                SWEEP_CHECKPOINT_ID_PREFIX + clusterId, startRev.toString(),
+                getHeadRevision().getRevision(clusterId), ranges.size());
+        LOG.info("Starting partitioned document sweep. Head: {}, starting at {} " +
+                        "(reason: {}, partitions: {}, parallelism: {})",
+                getHeadRevision(), startRev, reason, ranges.size(), sweepParallelism);
+        final long startTime = startRev.getTimestamp();
+        final AtomicInteger numUpdates = new AtomicInteger();
+        final NodeDocumentSweepListener listener = newSweepListener("sweep", numUpdates);
+        List<Callable<Revision>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (checkpoint.isDone(i)) {
+                continue;
+            }
+            final int partition = i;
+            final DocumentIdRange range = ranges.get(i);
+            final NodeDocumentSweeper sweeper = new NodeDocumentSweeper(this, false);
+            tasks.add(new Callable<Revision>() {
                 @Override
-                public void sweepUpdate(final Map<Path, UpdateOp> updates)
-                        throws DocumentStoreException {
-                    // create a synthetic commit. this commit does not have any
-                    // changes, we just use it to create a journal entry for
-                    // cache invalidation and apply the sweep updates
-                    backgroundOperationLock.readLock().lock();
+                public Revision call() {
+                    Iterable<NodeDocument> docs = lastRevSeeker.getCandidates(
+                            startTime, range.getFromId(), range.getToId());
+                    Revision rev;
                     try {
-                        boolean success = false;
-                        Revision r = commitQueue.createRevision();
-                        try {
-                            commitQueue.done(r, new CommitQueue.Callback() {
-                                @Override
-                                public void headOfQueue(@NotNull Revision revision) {
-                                    writeUpdates(updates, revision);
-                                }
-                            });
-                            success = true;
-                        } finally {
-                            if (!success && commitQueue.contains(r)) {
-                                commitQueue.canceled(r);
-                            }
-                        }
+                        rev = sweeper.sweep(docs, listener);
                     } finally {
-                        backgroundOperationLock.readLock().unlock();
+                        Utils.closeIfCloseable(docs);
                     }
+                    checkpoint.done(partition);
+                    return rev;
                 }
+            });
+        }
+        Revision newSweepRev = null;
+        if (checkpoint.isResumed()) {
+            newSweepRev = checkpoint.getHead();
+        }
+        for (Revision r : runConcurrently(tasks, sweepParallelism,
+                "DocumentNodeStore sweep worker (" + clusterId + ")")) {
+            if (r == null) {
+                // no sweep revision when head does not have an entry
+                // for this clusterId
+                newSweepRev = null;
+                break;
+            }
+            newSweepRev = newSweepRev == null ? r : Utils.min(newSweepRev, r);
+        }
+        if (newSweepRev != null) {
+            updateSweepRevision(newSweepRev);
+        }
+        checkpoint.remove();
+        return numUpdates.get();
+    }
 
-                private void writeUpdates(Map<Path, UpdateOp> updates,
-                                          Revision revision)
-                        throws DocumentStoreException {
-                    // create journal entry
-                    JournalEntry entry = JOURNAL.newDocument(getDocumentStore());
-                    entry.modified(updates.keySet());
-                    Revision r = newRevision().asBranchRevision();
-                    if (!store.create(JOURNAL, singletonList(entry.asUpdateOp(r)))) {
-                        String msg = "Unable to create journal entry for " +
-                                "document invalidation. Will be retried with " +
-                                "next background sweep operation.";
-                        throw new DocumentStoreException(msg);
+    /**
+     * Runs the given tasks with at most {@code parallelism} tasks concurrently
+     * on threads created for this call. This method returns when all tasks
+     * are done.
+     *
+     * @param tasks the tasks to run.
+     * @param parallelism the maximum number of concurrent tasks. With one,
+     *          the tasks run on the calling thread.
+     * @param name the name prefix of the threads.
+     * @return the results of the tasks in the same order as the tasks.
+     * @throws DocumentStoreException if one of the tasks failed.
+     */
+    static <T> List<T> runConcurrently(List<Callable<T>> tasks,
+                                       int parallelism,
+                                       String name)
+            throws DocumentStoreException {
+        ExecutorService executor = createBackgroundExecutor(
+                Math.min(parallelism, tasks.size()), name);
+        try {
+            List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                FutureTask<T> f = new FutureTask<>(task);
+                if (executor == null) {
+                    f.run();
+                } else {
+                    executor.execute(f);
+                }
+                futures.add(f);
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            DocumentStoreException failure = null;
+            for (FutureTask<T> f : futures) {
+                try {
+                    results.add(getUninterruptibly(f));
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = DocumentStoreException.convert(e.getCause());
                     }
-                    changes.invalidate(Collections.singleton(r));
-                    unsavedLastRevisions.put(ROOT, revision);
-                    RevisionVector newHead = getHeadRevision().update(revision);
-                    setRoot(newHead);
-                    commitQueue.headRevisionChanged();
-
-                    store.createOrUpdate(NODES, Lists.newArrayList(updates.values()));
-                    numUpdates.addAndGet(updates.size());
-                    LOG.debug("Background sweep updated {}", updates.keySet());
                 }
-            });
-
-            if (newSweepRev != null) {
-                updateSweepRevision(newSweepRev);
             }
-            return numUpdates.get();
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
         } finally {
-            Utils.closeIfCloseable(docs);
+            if (executor != null) {
+                executor.shutdown();
+            }
         }
     }
 
+    /**
+     * Creates a listener, which applies sweep updates with a synthetic commit.
+     * The listener is thread-safe.
+     *
+     * @param name the name of the sweep.
+     * @param numUpdates incremented with the number of updated documents.
+     * @return the listener.
+     */
+    private NodeDocumentSweepListener newSweepListener(final String name,
+                                                       final AtomicInteger numUpdates) {
+        return new NodeDocumentSweepListener() {
+            @Override
+            public void sweepUpdate(final Map<Path, UpdateOp> updates)
+                    throws DocumentStoreException {
+                // create a synthetic commit. this commit does not have any
+                // changes, we just use it to create a journal entry for
+                // cache invalidation and apply the sweep updates
+                backgroundOperationLock.readLock().lock();
+                try {
+                    boolean success = false;
+                    Revision r = commitQueue.createRevision();
+                    try {
+                        commitQueue.done(r, new CommitQueue.Callback() {
+                            @Override
+                            public void headOfQueue(@NotNull Revision revision) {
+                                writeUpdates(updates, revision);
+                            }
+                        });
+                        success = true;
+                    } finally {
+                        if (!success && commitQueue.contains(r)) {
+                            commitQueue.canceled(r);
+                        }
+                    }
+                } finally {
+                    backgroundOperationLock.readLock().unlock();
+                }
+            }
+
+            private void writeUpdates(Map<Path, UpdateOp> updates,
+                                      Revision revision)
+                    throws DocumentStoreException {
+                // create journal entry
+                JournalEntry entry = JOURNAL.newDocument(getDocumentStore());
+                entry.modified(updates.keySet());
+                Revision r = newRevision().asBranchRevision();
+                if (!store.create(JOURNAL, singletonList(entry.asUpdateOp(r)))) {
+                    String msg = "Unable to create journal entry for " +
+                            "document invalidation. Will be retried with " +
+                            "next background " + name + " operation.";
+                    throw new DocumentStoreException(msg);
+                }
+                changes.invalidate(Collections.singleton(r));
+                unsavedLastRevisions.put(ROOT, revision);
+                RevisionVector newHead = getHeadRevision().update(revision);
+                setRoot(newHead);
+                commitQueue.headRevisionChanged();
+
+                store.createOrUpdate(NODES, Lists.newArrayList(updates.values()));
+                numUpdates.addAndGet(updates.size());
+                LOG.debug("Background {} updated {}", name, updates.keySet());
+            }
+        };
+    }
+
     /**
      * Updates the local sweep revision.
      *
@@ -3284,6 +3823,14 @@ public final class DocumentNodeStore
         return diff;
     }
 
+    /**
+     * Computes the diff of the children of a node with many children. The
+     * documents of modified children are read in batches of
+     * {@link #diffManyChildrenBatchSize} sorted by ID and each child is
+     * compared as soon as it is read, so the memory used does not depend on
+     * the number of modified children. Children with modifications not yet
+     * written to the store are merged in the same order.
+     */
     private void diffManyChildren(JsopWriter w, Path path,
                                   RevisionVector fromRev,
                                   RevisionVector toRev) {
@@ -3300,66 +3847,89 @@ public final class DocumentNodeStore
         long minValue = NodeDocument.getModifiedInSecs(minTimestamp);
         String fromKey = Utils.getKeyLowerLimit(path);
         String toKey = Utils.getKeyUpperLimit(path);
-        Set<Path> paths = Sets.newHashSet();
 
         LOG.debug("diffManyChildren: path: {}, fromRev: {}, toRev: {}", path, fromRev, toRev);
 
-        for (NodeDocument doc : store.query(Collection.NODES, fromKey, toKey,
-                NodeDocument.MODIFIED_IN_SECS, minValue, Integer.MAX_VALUE)) {
-            paths.add(doc.getPath());
-        }
-
-        LOG.debug("diffManyChildren: Affected paths: {}", paths.size());
         // also consider nodes with not yet stored modifications (OAK-1107)
+        // sorted by id like the documents returned by the store
+        SortedMap<String, Path> pending = new TreeMap<String, Path>();
         Revision minRev = new Revision(minTimestamp, 0, getClusterId());
-        addPathsForDiff(path, paths, getPendingModifications().getPaths(minRev));
+        addPathsForDiff(path, pending, getPendingModifications().getPaths(minRev));
         for (RevisionVector rv : new RevisionVector[]{fromRev, toRev}) {
             if (rv.isBranch()) {
                 Revision r = rv.getBranchRevision();
                 Branch b = branches.getBranch(rv);
                 if (b != null) {
-                    addPathsForDiff(path, paths, b.getModifiedPathsUntil(r));
+                    addPathsForDiff(path, pending, b.getModifiedPathsUntil(r));
                 }
             }
         }
-        for (Path p : paths) {
-            DocumentNodeState fromNode = getNode(p, fromRev);
-            DocumentNodeState toNode = getNode(p, toRev);
-            String name = p.getName();
-
-            LOG.trace("diffManyChildren: Changed Path {}", path);
-
-            if (fromNode != null) {
-                // exists in fromRev
-                if (toNode != null) {
-                    // exists in both revisions
-                    // check if different
-                    RevisionVector a = fromNode.getLastRevision();
-                    RevisionVector b = toNode.getLastRevision();
-                    if (a == null && b == null) {
-                        // ok
-                    } else if (a == null || b == null || !a.equals(b)) {
-                        w.tag('^').key(name).object().endObject();
-                    }
-                } else {
-                    // does not exist in toRev -> was removed
-                    w.tag('-').value(name);
+        int batchSize = diffManyChildrenBatchSize;
+        long numPaths = 0;
+        List<NodeDocument> docs;
+        do {
+            docs = store.query(Collection.NODES, fromKey, toKey,
+                    NodeDocument.MODIFIED_IN_SECS, minValue, batchSize);
+            for (NodeDocument doc : docs) {
+                String id = doc.getId();
+                SortedMap<String, Path> before = pending.headMap(id);
+                for (Path p : before.values()) {
+                    diffChild(w, p, fromRev, toRev);
+                    numPaths++;
                 }
-            } else {
-                // does not exist in fromRev
-                if (toNode != null) {
-                    // exists in toRev
-                    w.tag('+').key(name).object().endObject();
-                } else {
-                    // does not exist in either revisions
-                    // -> do nothing
+                before.clear();
+                pending.remove(id);
+                diffChild(w, doc.getPath(), fromRev, toRev);
+                numPaths++;
+                fromKey = id;
+            }
+        } while (docs.size() == batchSize);
+        for (Path p : pending.values()) {
+            diffChild(w, p, fromRev, toRev);
+            numPaths++;
+        }
+        LOG.debug("diffManyChildren: Affected paths: {}", numPaths);
+    }
+
+    private void diffChild(JsopWriter w, Path p,
+                           RevisionVector fromRev,
+                           RevisionVector toRev) {
+        DocumentNodeState fromNode = getNode(p, fromRev);
+        DocumentNodeState toNode = getNode(p, toRev);
+        String name = p.getName();
+
+        LOG.trace("diffManyChildren: Changed Path {}", p);
+
+        if (fromNode != null) {
+            // exists in fromRev
+            if (toNode != null) {
+                // exists in both revisions
+                // check if different
+                RevisionVector a = fromNode.getLastRevision();
+                RevisionVector b = toNode.getLastRevision();
+                if (a == null && b == null) {
+                    // ok
+                } else if (a == null || b == null || !a.equals(b)) {
+                    w.tag('^').key(name).object().endObject();
                 }
+            } else {
+                // does not exist in toRev -> was removed
+                w.tag('-').value(name);
+            }
+        } else {
+            // does not exist in fromRev
+            if (toNode != null) {
+                // exists in toRev
+                w.tag('+').key(name).object().endObject();
+            } else {
+                // does not exist in either revisions
+                // -> do nothing
             }
         }
     }
 
     private static void addPathsForDiff(Path path,
-                                        Set<Path> paths,
+                                        Map<String, Path> paths,
                                         Iterable<Path> modified) {
         for (Path p : modified) {
             if (p.isRoot()) {
@@ -3367,7 +3937,7 @@ public final class DocumentNodeStore
             }
             Path parent = p.getParent();
             if (path.equals(parent)) {
-                paths.add(p);
+                paths.put(Utils.getIdFromPath(p), p);
             }
         }
     }
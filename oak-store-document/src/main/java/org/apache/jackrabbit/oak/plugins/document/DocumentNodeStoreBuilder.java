@@ -41,6 +41,7 @@ import org.apache.jackrabbit.oak.plugins.blob.BlobStoreStats;
 import org.apache.jackrabbit.oak.plugins.blob.CachingBlobStore;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.OffHeapDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
@@ -101,6 +102,36 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
      */
     private static final boolean LIRS_CACHE = !Boolean.getBoolean("oak.documentMK.guavaCache");
 
+    /**
+     * The default size in bytes of the off-heap tier for the document cache.
+     * Zero disables the off-heap tier.
+     */
+    private static final long DEFAULT_OFF_HEAP_DOCUMENT_CACHE_SIZE =
+            Long.getLong("oak.documentMK.offHeapDocumentCacheSize", 0);
+
+    /**
+     * The default number of threads used to read external changes from the
+     * journal of other cluster nodes. A value of one reads them serially on
+     * the background read thread.
+     */
+    private static final int DEFAULT_BACKGROUND_READ_PARALLELISM =
+            Integer.getInteger("oak.documentMK.backgroundReadParallelism", 1);
+
+    /**
+     * The default maximum number of concurrent batches when _lastRev updates
+     * are written back. A value of one writes them serially on the background
+     * update thread.
+     */
+    private static final int DEFAULT_BACKGROUND_WRITE_PARALLELISM =
+            Integer.getInteger("oak.documentMK.backgroundWriteParallelism", 1);
+
+    /**
+     * The default number of concurrent partitions when documents are swept.
+     * A value of one sweeps all documents serially.
+     */
+    private static final int DEFAULT_SWEEP_PARALLELISM =
+            Integer.getInteger("oak.documentMK.sweepParallelism", 1);
+
     /**
      * Number of content updates that need to happen before the updates
      * are automatically purged to the private branch.
@@ -125,9 +156,14 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     private int diffCachePercentage = DEFAULT_DIFF_CACHE_PERCENTAGE;
     private int cacheSegmentCount = DEFAULT_CACHE_SEGMENT_COUNT;
     private int cacheStackMoveDistance = DEFAULT_CACHE_STACK_MOVE_DISTANCE;
+    private long offHeapDocumentCacheSize = DEFAULT_OFF_HEAP_DOCUMENT_CACHE_SIZE;
     private boolean useSimpleRevision;
     private boolean disableBranches;
     private boolean prefetchExternalChanges;
+    private boolean sharedDiffCache;
+    private int backgroundReadParallelism = DEFAULT_BACKGROUND_READ_PARALLELISM;
+    private int backgroundWriteParallelism = DEFAULT_BACKGROUND_WRITE_PARALLELISM;
+    private int sweepParallelism = DEFAULT_SWEEP_PARALLELISM;
     private Clock clock = Clock.SIMPLE;
     private Executor executor;
     private String persistentCacheURI = DEFAULT_PERSISTENT_CACHE_URI;
@@ -301,6 +337,9 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     public DiffCache getDiffCache(int clusterId) {
         if (diffCache == null) {
             diffCache = new TieredDiffCache(this, clusterId);
+            if (sharedDiffCache) {
+                diffCache = new SharedDiffCache(getDocumentStore(), getClock(), diffCache);
+            }
         }
         return diffCache;
     }
@@ -359,6 +398,25 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return thisBuilder();
     }
 
+    /**
+     * Sets the size in bytes of the off-heap tier for documents evicted from
+     * the on-heap document cache. A value of zero (default) disables the
+     * off-heap tier. The off-heap tier is only used with the LIRS cache
+     * implementation.
+     *
+     * @param offHeapDocumentCacheSize the size in bytes.
+     * @return this
+     */
+    public T setOffHeapDocumentCacheSize(long offHeapDocumentCacheSize) {
+        checkArgument(offHeapDocumentCacheSize >= 0);
+        this.offHeapDocumentCacheSize = offHeapDocumentCacheSize;
+        return thisBuilder();
+    }
+
+    public long getOffHeapDocumentCacheSize() {
+        return offHeapDocumentCacheSize;
+    }
+
     public int getClusterId() {
         return clusterId;
     }
@@ -547,6 +605,85 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return prefetchExternalChanges;
     }
 
+    /**
+     * Enables or disables sharing of expensive diffs with other cluster
+     * nodes through the journal. When enabled, diffs computed by one cluster
+     * node are persisted and re-used by other cluster nodes and after a
+     * restart, until they are removed by the journal garbage collector.
+     * The default is disabled.
+     *
+     * @param b whether to share diffs.
+     * @return this
+     */
+    public T setSharedDiffCache(boolean b) {
+        sharedDiffCache = b;
+        return thisBuilder();
+    }
+
+    public boolean isSharedDiffCache() {
+        return sharedDiffCache;
+    }
+
+    /**
+     * Sets the number of threads used by the background read to read the
+     * journal of other cluster nodes in parallel and to populate the diff
+     * cache with external changes while caches are invalidated. The default
+     * is one, which reads external changes serially.
+     *
+     * @param parallelism the number of threads.
+     * @return this
+     */
+    public T setBackgroundReadParallelism(int parallelism) {
+        checkArgument(parallelism > 0);
+        this.backgroundReadParallelism = parallelism;
+        return thisBuilder();
+    }
+
+    public int getBackgroundReadParallelism() {
+        return backgroundReadParallelism;
+    }
+
+    /**
+     * Sets the maximum number of concurrent batches when pending _lastRev
+     * updates are written back to the DocumentStore. Documents on the same
+     * depth are then updated concurrently, while parents are still updated
+     * after their children. The default is one, which writes all batches
+     * serially.
+     *
+     * @param parallelism the maximum number of concurrent batches.
+     * @return this
+     */
+    public T setBackgroundWriteParallelism(int parallelism) {
+        checkArgument(parallelism > 0);
+        this.backgroundWriteParallelism = parallelism;
+        return thisBuilder();
+    }
+
+    public int getBackgroundWriteParallelism() {
+        return backgroundWriteParallelism;
+    }
+
+    /**
+     * Sets the number of concurrent partitions when documents are swept for
+     * uncommitted changes and missing branch commit entries. The documents
+     * are then partitioned by id ranges and the progress is recorded in the
+     * settings collection, which allows an interrupted sweep to resume with
+     * the remaining partitions. The default is one, which sweeps all
+     * documents serially.
+     *
+     * @param parallelism the number of concurrent partitions.
+     * @return this
+     */
+    public T setSweepParallelism(int parallelism) {
+        checkArgument(parallelism > 0);
+        this.sweepParallelism = parallelism;
+        return thisBuilder();
+    }
+
+    public int getSweepParallelism() {
+        return sweepParallelism;
+    }
+
     public T setJournalPropertyHandlerFactory(JournalPropertyHandlerFactory factory) {
         journalPropertyHandlerFactory = factory;
         return thisBuilder();
@@ -652,18 +789,42 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return buildCache(CacheType.DOCUMENT, getDocumentCacheSize(), null, docStore);
     }
 
+    private Cache<CacheValue, NodeDocument> buildDocumentCache(DocumentStore docStore,
+                                                               @Nullable OffHeapDocumentCache offHeapCache) {
+        EvictionListener<CacheValue, NodeDocument> listener = null;
+        if (offHeapCache != null) {
+            listener = offHeapCache.asEvictionListener();
+        }
+        return buildCache(CacheType.DOCUMENT, getDocumentCacheSize(), null, docStore, listener);
+    }
+
     public Cache<StringValue, NodeDocument> buildPrevDocumentsCache(DocumentStore docStore) {
         return buildCache(CacheType.PREV_DOCUMENT, getPrevDocumentCacheSize(), null, docStore);
     }
 
     public NodeDocumentCache buildNodeDocumentCache(DocumentStore docStore, NodeDocumentLocks locks) {
-        Cache<CacheValue, NodeDocument> nodeDocumentsCache = buildDocumentCache(docStore);
+        OffHeapDocumentCache offHeapCache = buildOffHeapDocumentCache(docStore);
+        Cache<CacheValue, NodeDocument> nodeDocumentsCache = buildDocumentCache(docStore, offHeapCache);
         CacheStats nodeDocumentsCacheStats = new CacheStats(nodeDocumentsCache, "Document-Documents", getWeigher(), getDocumentCacheSize());
 
         Cache<StringValue, NodeDocument> prevDocumentsCache = buildPrevDocumentsCache(docStore);
         CacheStats prevDocumentsCacheStats = new CacheStats(prevDocumentsCache, "Document-PrevDocuments", getWeigher(), getPrevDocumentCacheSize());
 
-        return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats, locks);
+        return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats, locks, offHeapCache);
+    }
+
+    @Nullable
+    private OffHeapDocumentCache buildOffHeapDocumentCache(DocumentStore docStore) {
+        if (offHeapDocumentCacheSize <= 0) {
+            return null;
+        }
+        // the off-heap tier relies on eviction callbacks being called while
+        // the cache segment is locked, which is only the case for CacheLIRS
+        if (!LIRS_CACHE || getDocumentCacheSize() <= 0) {
+            LOG.warn("Off-heap document cache requires the LIRS cache implementation; disabled");
+            return null;
+        }
+        return new OffHeapDocumentCache(docStore, offHeapDocumentCacheSize);
     }
 
     /**
@@ -692,13 +853,25 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return nodeCachePredicate;
     }
 
-    @SuppressWarnings("unchecked")
     private <K extends CacheValue, V extends CacheValue> Cache<K, V> buildCache(
             CacheType cacheType,
             long maxWeight,
             DocumentNodeStore docNodeStore,
             DocumentStore docStore) {
+        return buildCache(cacheType, maxWeight, docNodeStore, docStore, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K extends CacheValue, V extends CacheValue> Cache<K, V> buildCache(
+            CacheType cacheType,
+            long maxWeight,
+            DocumentNodeStore docNodeStore,
+            DocumentStore docStore,
+            @Nullable EvictionListener<K, V> evictionListener) {
         Set<EvictionListener<K, V>> listeners = new CopyOnWriteArraySet<EvictionListener<K,V>>();
+        if (evictionListener != null) {
+            listeners.add(evictionListener);
+        }
         Cache<K, V> cache = buildCache(cacheType.name(), maxWeight, listeners);
         PersistentCache p = null;
         if (cacheType == CacheType.DIFF || cacheType == CacheType.LOCAL_DIFF) {
@@ -86,4 +86,15 @@ public interface DocumentNodeStoreMBean {
             @Description("Possible values are: DIFF, NODE, NODECHILDREN")
             @Name("name")
             String name);
+
+    @Description("Returns the bundling patterns recommended by the bundling statistics,\n" +
+            "one line per node type with the number of added nodes, the patterns, the\n" +
+            "expected documents saved per node and the child node reads from separate\n" +
+            "documents that would be avoided. Statistics are only collected when the\n" +
+            "system property oak.documentMK.bundlingStats is set to true.")
+    String[] getBundlingRecommendations();
+
+    @Description("Adds the recommended bundling patterns to the bundlor configuration for\n" +
+            "node types without configuration. The patterns apply to new nodes.")
+    String applyBundlingRecommendations();
 }
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.text.SimpleDateFormat;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import javax.management.NotCompliantMBeanException;
@@ -28,8 +29,10 @@ import com.google.common.base.Predicate;
 
 import org.apache.jackrabbit.api.stats.RepositoryStatistics;
 import org.apache.jackrabbit.api.stats.TimeSeries;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingStats;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.stats.TimeSeriesStatsUtil;
 import org.slf4j.Logger;
@@ -264,4 +267,28 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
                 return "ERROR: Invalid cache name received.";
         }
     }
+
+    @Override
+    public String[] getBundlingRecommendations() {
+        BundlingStats stats = nodeStore.getBundlingConfigHandler().getStats();
+        if (stats == null) {
+            return new String[0];
+        }
+        return stats.getReport().toArray(new String[0]);
+    }
+
+    @Override
+    public String applyBundlingRecommendations() {
+        if (nodeStore.getBundlingConfigHandler().getStats() == null) {
+            return "ERROR: Bundling statistics are disabled.";
+        }
+        try {
+            Set<String> types = nodeStore.getBundlingConfigHandler()
+                    .applyRecommendations(nodeStore);
+            return "Bundling configuration added for " + types;
+        } catch (CommitFailedException e) {
+            log.warn("Unable to apply bundling recommendations", e);
+            return "ERROR: " + e.getMessage();
+        }
+    }
 }
@@ -131,6 +131,7 @@ public class DocumentNodeStoreService {
     static final String DEFAULT_URI = "mongodb://localhost:27017/oak";
     static final int DEFAULT_CACHE = (int) (DEFAULT_MEMORY_CACHE_SIZE / MB);
     static final int DEFAULT_BLOB_CACHE_SIZE = 16;
+    static final int DEFAULT_OFF_HEAP_DOCUMENT_CACHE = 0;
     static final String DEFAULT_DB = "oak";
     static final boolean DEFAULT_SO_KEEP_ALIVE = true;
     static final String DEFAULT_PERSISTENT_CACHE = "cache";
@@ -140,10 +141,14 @@ public class DocumentNodeStoreService {
     public static final String CLASSIC_RGC_EXPR = "0 0 2 * * ?";
     public static final long DEFAULT_RGC_TIME_LIMIT_SECS = 3*60*60; // default is 3 hours
     public static final double DEFAULT_RGC_DELAY_FACTOR = 0;
+    public static final int DEFAULT_RGC_PARALLELISM = 1;
+    public static final double DEFAULT_RGC_RATE_LIMIT = 0;
+    public static final boolean DEFAULT_RGC_CONTINUOUS = false;
     private static final String DESCRIPTION = "oak.nodestore.description";
     static final long DEFAULT_JOURNAL_GC_INTERVAL_MILLIS = 5*60*1000; // default is 5min
     static final long DEFAULT_JOURNAL_GC_MAX_AGE_MILLIS = 24*60*60*1000; // default is 24hours
     static final boolean DEFAULT_PREFETCH_EXTERNAL_CHANGES = false;
+    static final boolean DEFAULT_SHARED_DIFF_CACHE = false;
     private static final String DEFAULT_PROP_HOME = "./repository";
     static final long DEFAULT_MAX_REPLICATION_LAG = 6 * 60 * 60;
     static final boolean DEFAULT_BUNDLING_DISABLED = false;
@@ -429,6 +434,7 @@ public class DocumentNodeStoreService {
                         config.diffCachePercentage()).
                 setCacheSegmentCount(config.cacheSegmentCount()).
                 setCacheStackMoveDistance(config.cacheStackMoveDistance()).
+                setOffHeapDocumentCacheSize(config.offHeapDocumentCache() * MB).
                 setBundlingDisabled(config.bundlingDisabled()).
                 setJournalPropertyHandlerFactory(journalPropertyHandlerFactory).
                 setLeaseCheckMode(ClusterNodeInfo.DEFAULT_LEASE_CHECK_DISABLED ? LeaseCheckMode.DISABLED : LeaseCheckMode.valueOf(config.leaseCheckMode())).
@@ -455,6 +461,7 @@ public class DocumentNodeStoreService {
                     }
                 }).
                 setPrefetchExternalChanges(config.prefetchExternalChanges()).
+                setSharedDiffCache(config.sharedDiffCache()).
                 setUpdateLimit(config.updateLimit()).
                 setJournalGCMaxAge(config.journalGCMaxAge()).
                 setNodeCachePathPredicate(createCachePredicate());
@@ -758,7 +765,8 @@ public class DocumentNodeStoreService {
                     BlobGCMBean.TYPE, "Document node store blob garbage collection"));
         }
 
-        Runnable startGC = new RevisionGCJob(store, versionGcMaxAgeInSecs, 0, DEFAULT_RGC_DELAY_FACTOR);
+        Runnable startGC = new RevisionGCJob(store, versionGcMaxAgeInSecs, 0, DEFAULT_RGC_DELAY_FACTOR,
+                config.versionGCParallelism(), config.versionGCRateLimit(), false);
         Runnable cancelGC = () -> store.getVersionGarbageCollector().cancel();
         Supplier<String> status = () -> store.getVersionGarbageCollector().getStatus();
         RevisionGC revisionGC = new RevisionGC(startGC, cancelGC, status, executor);
@@ -770,6 +778,11 @@ public class DocumentNodeStoreService {
                 RevisionGCStatsMBean.TYPE,
                 "Document node store revision garbage collection statistics"));
 
+        addRegistration(registerMBean(whiteboard, LastRevRecoveryStatsMBean.class,
+                store.getLastRevRecoveryAgent().getStats(),
+                LastRevRecoveryStatsMBean.TYPE,
+                "Document node store last revision recovery statistics"));
+
         BlobStoreStats blobStoreStats = mkBuilder.getBlobStoreStats();
         if (!customBlobStore && blobStoreStats != null) {
             addRegistration(registerMBean(whiteboard,
@@ -819,9 +832,13 @@ public class DocumentNodeStoreService {
         long versionGcMaxAgeInSecs = config.versionGcMaxAgeInSecs();
         long versionGCTimeLimitInSecs = config.versionGCTimeLimitInSecs();
         double versionGCDelayFactor = config.versionGCDelayFactor();
+        int versionGCParallelism = config.versionGCParallelism();
+        double versionGCRateLimit = config.versionGCRateLimit();
+        boolean versionGCContinuous = config.versionGCContinuous();
         addRegistration(scheduleWithFixedDelay(whiteboard,
                 new RevisionGCJob(nodeStore, versionGcMaxAgeInSecs,
-                        versionGCTimeLimitInSecs, versionGCDelayFactor),
+                        versionGCTimeLimitInSecs, versionGCDelayFactor,
+                        versionGCParallelism, versionGCRateLimit, versionGCContinuous),
                 props, MODIFIED_IN_SECS_RESOLUTION, true, true));
     }
 
@@ -902,6 +919,9 @@ public class DocumentNodeStoreService {
         private final long versionGCMaxAgeInSecs;
         private final long versionGCTimeLimitInSecs;
         private final double versionGCDelayFactor;
+        private final int versionGCParallelism;
+        private final double versionGCRateLimit;
+        private final boolean versionGCContinuous;
         private volatile Object lastResult = "";
         private long lastLogTime;
         private VersionGCStats stats;
@@ -909,18 +929,26 @@ public class DocumentNodeStoreService {
         RevisionGCJob(DocumentNodeStore ns,
                       long versionGcMaxAgeInSecs,
                       long versionGCTimeLimitInSecs,
-                      double versionGCDelayFactor) {
+                      double versionGCDelayFactor,
+                      int versionGCParallelism,
+                      double versionGCRateLimit,
+                      boolean versionGCContinuous) {
             this.nodeStore = ns;
             this.versionGCMaxAgeInSecs = versionGcMaxAgeInSecs;
             this.versionGCTimeLimitInSecs = versionGCTimeLimitInSecs;
             this.versionGCDelayFactor = versionGCDelayFactor;
+            this.versionGCParallelism = versionGCParallelism;
+            this.versionGCRateLimit = versionGCRateLimit;
+            this.versionGCContinuous = versionGCContinuous;
             resetStats();
         }
 
         @Override
         public void run() {
             VersionGarbageCollector gc = nodeStore.getVersionGarbageCollector();
-            gc.setOptions(gc.getOptions().withMaxDuration(TimeUnit.SECONDS, versionGCTimeLimitInSecs).withDelayFactor(versionGCDelayFactor));
+            gc.setOptions(gc.getOptions().withMaxDuration(TimeUnit.SECONDS, versionGCTimeLimitInSecs).withDelayFactor(versionGCDelayFactor)
+                    .withParallelism(versionGCParallelism).withRateLimit(versionGCRateLimit)
+                    .withContinuous(versionGCContinuous));
             try {
                 VersionGCStats s = gc.gc(versionGCMaxAgeInSecs, TimeUnit.SECONDS);
                 stats.addRun(s);
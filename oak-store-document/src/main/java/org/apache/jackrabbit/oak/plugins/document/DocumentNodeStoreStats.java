@@ -31,6 +31,8 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private static final String BGR_READ_HEAD = "DOCUMENT_NS_BGR_READ_HEAD";
     private static final String BGR_CACHE_INVALIDATE = "DOCUMENT_NS_BGR_CACHE_INVALIDATE";
     private static final String BGR_DIFF_CACHE = "DOCUMENT_NS_BGR_DIFF_CACHE";
+    private static final String BGR_PREPARE_DIFF_CACHE = "DOCUMENT_NS_BGR_PREPARE_DIFF_CACHE";
+    private static final String BGR_JOURNAL_READERS = "DOCUMENT_NS_BGR_JOURNAL_READERS";
     private static final String BGR_LOCK = "DOCUMENT_NS_BGR_LOCK";
     private static final String BGR_DISPATCH = "DOCUMENT_NS_BGR_DISPATCH";
     private static final String BGR_TOTAL_TIME = "DOCUMENT_NS_BGR_TOTAL_TIME";
@@ -40,9 +42,12 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
     private static final String BGW_CLEAN = "DOCUMENT_NS_BGW_CLEAN";
     private static final String BGW_SPLIT = "DOCUMENT_NS_BGW_SPLIT";
+    static final String BGW_SPLIT_CANDIDATES = "DOCUMENT_NS_BGW_SPLIT_CANDIDATES";
+    static final String BGW_SPLIT_MAX_DOC_SIZE = "DOCUMENT_NS_BGW_SPLIT_MAX_DOC_SIZE";
     private static final String BGW_WRITE = "DOCUMENT_NS_BGW_LOCK";
     private static final String BGW_SWEEP = "DOCUMENT_NS_BGW_SWEEP";
     static final String BGW_NUM = "DOCUMENT_NS_BGW_NUM";
+    private static final String BGW_WRITE_PARALLELISM = "DOCUMENT_NS_BGW_WRITE_PARALLELISM";
     static final String BGW_NUM_WRITES_RATE = "DOCUMENT_NS_BGW_NUM_WRITE_RATE";
     private static final String BGW_TOTAL = "DOCUMENT_NS_BGW_TOTAL_TIME";
 
@@ -69,6 +74,8 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final TimerStats readHead;
     private final TimerStats readCacheInvalidate;
     private final TimerStats readDiffCache;
+    private final TimerStats readPrepareDiffCache;
+    private final HistogramStats readJournalReaders;
     private final TimerStats readLock;
     private final TimerStats readDispatch;
     private final TimerStats readTotalTime;
@@ -79,8 +86,11 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     // background update
     private final TimerStats writeClean;
     private final TimerStats writeSplit;
+    private final HistogramStats writeSplitCandidates;
+    private final HistogramStats writeSplitMaxDocSize;
     private final TimerStats writeSweep;
     private final HistogramStats writeNum;
+    private final HistogramStats writeParallelism;
     private final TimerStats writeWrite;
     private final TimerStats writeTotal;
     private final MeterStats numWritesRate;
@@ -112,6 +122,8 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         readHead = sp.getTimer(BGR_READ_HEAD, StatsOptions.METRICS_ONLY);
         readCacheInvalidate = sp.getTimer(BGR_CACHE_INVALIDATE, StatsOptions.METRICS_ONLY);
         readDiffCache = sp.getTimer(BGR_DIFF_CACHE, StatsOptions.METRICS_ONLY);
+        readPrepareDiffCache = sp.getTimer(BGR_PREPARE_DIFF_CACHE, StatsOptions.METRICS_ONLY);
+        readJournalReaders = sp.getHistogram(BGR_JOURNAL_READERS, StatsOptions.METRICS_ONLY);
         readLock = sp.getTimer(BGR_LOCK, StatsOptions.METRICS_ONLY);
         readDispatch = sp.getTimer(BGR_DISPATCH, StatsOptions.METRICS_ONLY);
         readTotalTime = sp.getTimer(BGR_TOTAL_TIME, StatsOptions.METRICS_ONLY);
@@ -121,10 +133,13 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
         writeClean = sp.getTimer(BGW_CLEAN, StatsOptions.METRICS_ONLY);
         writeSplit = sp.getTimer(BGW_SPLIT, StatsOptions.METRICS_ONLY);
+        writeSplitCandidates = sp.getHistogram(BGW_SPLIT_CANDIDATES, StatsOptions.METRICS_ONLY);
+        writeSplitMaxDocSize = sp.getHistogram(BGW_SPLIT_MAX_DOC_SIZE, StatsOptions.METRICS_ONLY);
         writeSweep = sp.getTimer(BGW_SWEEP, StatsOptions.METRICS_ONLY);
         writeWrite = sp.getTimer(BGW_WRITE, StatsOptions.METRICS_ONLY);
         writeTotal = sp.getTimer(BGW_TOTAL, StatsOptions.METRICS_ONLY);
         writeNum = sp.getHistogram(BGW_NUM, StatsOptions.METRICS_ONLY);
+        writeParallelism = sp.getHistogram(BGW_WRITE_PARALLELISM, StatsOptions.METRICS_ONLY);
         numWritesRate = sp.getMeter(BGW_NUM_WRITES_RATE, StatsOptions.DEFAULT); //Enable time series
 
         leaseUpdate = sp.getTimer(LEASE_UPDATE, StatsOptions.METRICS_ONLY);
@@ -152,6 +167,8 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         readHead.update(stats.readHead, TimeUnit.MILLISECONDS);
         readCacheInvalidate.update(stats.cacheInvalidationTime, TimeUnit.MILLISECONDS);
         readDiffCache.update(stats.populateDiffCache, TimeUnit.MILLISECONDS);
+        readPrepareDiffCache.update(stats.prepareDiffCache, TimeUnit.MILLISECONDS);
+        readJournalReaders.update(stats.numJournalReaders);
         readLock.update(stats.lock, TimeUnit.MILLISECONDS);
         readDispatch.update(stats.dispatchChanges, TimeUnit.MILLISECONDS);
         readTotalTime.update(stats.totalReadTime, TimeUnit.MILLISECONDS);
@@ -173,6 +190,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         writeTotal.update(stats.totalWriteTime, TimeUnit.MILLISECONDS);
 
         writeNum.update(stats.num);
+        writeSplitCandidates.update(stats.splitCandidates);
+        writeSplitMaxDocSize.update(stats.splitMaxDocSize);
+        writeParallelism.update(stats.writeParallelism);
 
         //Record rate of num of bg writes pushed per second
         numWritesRate.mark(stats.num);
@@ -81,6 +81,33 @@ public interface DocumentStore {
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge)
             throws DocumentStoreException;
 
+    /**
+     * Get the document with the {@code key} as needed to read the state at the
+     * given {@code readRevision}, which must already be visible. The returned
+     * document contains at least all changes visible at the read revision,
+     * but may not reflect more recent changes. This allows an implementation
+     * to serve the read from a replica that already applied all changes
+     * visible at the read revision. The default implementation calls
+     * {@link #find(Collection, String)}.
+     * <p>
+     * The returned document is immutable.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param key the key
+     * @param readRevision the read revision.
+     * @return the document, or null if not found
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @Nullable
+    default <T extends Document> T find(Collection<T> collection,
+                                        String key,
+                                        RevisionVector readRevision)
+            throws DocumentStoreException {
+        return find(collection, key);
+    }
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
@@ -411,6 +438,23 @@ public interface DocumentStore {
     @Nullable
     <T extends Document> T getIfCached(Collection<T> collection, String key);
 
+    /**
+     * Reads the documents with the given keys into the cache of this store,
+     * with as few round trips as possible. Documents that are already cached
+     * are not read again. This method is a hint and an implementation is
+     * free to ignore it. The default implementation does nothing.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys of the documents to prefetch.
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    default <T extends Document> void prefetch(Collection<T> collection,
+                                               Iterable<String> keys)
+            throws DocumentStoreException {
+    }
+
     /**
      * Set the level of guarantee for read and write operations, if supported by this backend.
      *
@@ -50,6 +50,9 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
     static final String NODES_FIND_MISSING = "DOCUMENT_NODES_FIND_MISSING";
     static final String NODES_FIND_MISSING_TIMER = "DOCUMENT_NODES_FIND_MISSING_TIMER";
     static final String NODES_FIND_TIMER = "DOCUMENT_NODES_FIND";
+    static final String NODES_FIND_PROJECTED = "DOCUMENT_NODES_FIND_PROJECTED";
+    static final String NODES_FIND_PROJECTED_SAVED_BYTES = "DOCUMENT_NODES_FIND_PROJECTED_SAVED_BYTES";
+    static final String NODES_FIND_PROJECTED_TIMER = "DOCUMENT_NODES_FIND_PROJECTED_TIMER";
 
     static final String NODES_QUERY_FIND_READ_COUNT = "DOCUMENT_NODES_QUERY_FIND";
     static final String NODES_QUERY_FILTER = "DOCUMENT_NODES_QUERY_FILTER";
@@ -85,6 +88,9 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
     private final MeterStats findNodesSlave;
     private final TimerStats findNodesTimer;
     private final MeterStats findNodesPrimary;
+    private final MeterStats findNodesProjected;
+    private final MeterStats findNodesProjectedSavedBytes;
+    private final TimerStats findNodesProjectedTimer;
     private final MeterStats queryNodesSlave;
     private final MeterStats queryNodesPrimary;
     private final MeterStats queryNodesResult;
@@ -121,6 +127,10 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
         findNodesSlave = provider.getMeter(NODES_FIND_SLAVE, StatsOptions.DEFAULT);
         findNodesPrimary = provider.getMeter(NODES_FIND_PRIMARY, StatsOptions.DEFAULT);
 
+        findNodesProjected = provider.getMeter(NODES_FIND_PROJECTED, StatsOptions.DEFAULT);
+        findNodesProjectedSavedBytes = provider.getMeter(NODES_FIND_PROJECTED_SAVED_BYTES, StatsOptions.DEFAULT);
+        findNodesProjectedTimer = provider.getTimer(NODES_FIND_PROJECTED_TIMER, StatsOptions.METRICS_ONLY);
+
         queryNodesSlave = provider.getMeter(NODES_QUERY_SLAVE, StatsOptions.DEFAULT);
         queryNodesPrimary = provider.getMeter(NODES_QUERY_PRIMARY, StatsOptions.DEFAULT);
         queryNodesResult = provider.getMeter(NODES_QUERY_FIND_READ_COUNT, StatsOptions.DEFAULT);
@@ -189,6 +199,18 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
         perfLog(timeTakenNanos, "findUncached on key={}, isSlaveOk={}", key, isSlaveOk);
     }
 
+    @Override
+    public void doneFindProjected(long timeTakenNanos, Collection<? extends Document> collection, String key,
+                                  long savedBytes) {
+        if (collection == Collection.NODES) {
+            findNodesProjected.mark();
+            findNodesProjectedSavedBytes.mark(savedBytes);
+            findNodesProjectedTimer.update(timeTakenNanos, TimeUnit.NANOSECONDS);
+        }
+
+        perfLog(timeTakenNanos, "findProjected on key={}, savedBytes={}", key, savedBytes);
+    }
+
     @Override
     public void doneQuery(long timeTakenNanos, Collection<? extends Document> collection, String fromKey, String toKey,
                           boolean indexedProperty, int resultSize, long lockTime, boolean isSlaveOk) {
@@ -326,6 +348,16 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
         return findNodesMissing.getCount();
     }
 
+    @Override
+    public long getNodesFindProjectedCount() {
+        return findNodesProjected.getCount();
+    }
+
+    @Override
+    public long getNodesFindProjectedSavedBytes() {
+        return findNodesProjectedSavedBytes.getCount();
+    }
+
     @Override
     public long getNodesReadByQueryCount() {
         return queryNodesResult.getCount();
@@ -386,6 +418,18 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
                 "Number of un-cached find node document calls that returned no document.");
     }
 
+    @Override
+    public CompositeData getFindNodesProjectedHistory() {
+        return getTimeSeriesData(NODES_FIND_PROJECTED,
+                "Number of un-cached find node document calls with a projection of revision entries.");
+    }
+
+    @Override
+    public CompositeData getFindNodesProjectedSavedBytesHistory() {
+        return getTimeSeriesData(NODES_FIND_PROJECTED_SAVED_BYTES,
+                "Number of bytes not read by find node document calls with a projection of revision entries.");
+    }
+
     @Override
     public CompositeData getQueryNodesFromSlaveHistory() {
         return getTimeSeriesData(NODES_QUERY_SLAVE,
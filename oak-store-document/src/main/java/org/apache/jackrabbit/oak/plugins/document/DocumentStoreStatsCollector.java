@@ -40,6 +40,18 @@ public interface DocumentStoreStatsCollector {
      */
     void doneFindUncached(long timeTakenNanos, Collection<? extends Document> collection, String key, boolean docFound, boolean isSlaveOk);
 
+    /**
+     * Called when a document with given key is read from remote store with a
+     * projection of its revision entries.
+     * @param timeTakenNanos time taken
+     * @param collection the collection
+     * @param key collection key
+     * @param savedBytes number of bytes not read because of the projection
+     */
+    default void doneFindProjected(long timeTakenNanos, Collection<? extends Document> collection, String key,
+                                   long savedBytes) {
+    }
+
     /**
      * Called when query with given parameters is performed
      * @param timeTakenNanos time taken
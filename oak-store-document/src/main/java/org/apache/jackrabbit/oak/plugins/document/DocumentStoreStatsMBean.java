@@ -34,6 +34,10 @@ public interface DocumentStoreStatsMBean {
 
     long getNodesFindMissingCount();
 
+    long getNodesFindProjectedCount();
+
+    long getNodesFindProjectedSavedBytes();
+
     long getNodesReadByQueryCount();
 
     long getNodesCreateCount();
@@ -56,6 +60,10 @@ public interface DocumentStoreStatsMBean {
 
     CompositeData getFindNodesMissingHistory();
 
+    CompositeData getFindNodesProjectedHistory();
+
+    CompositeData getFindNodesProjectedSavedBytesHistory();
+
     CompositeData getQueryNodesFromSlaveHistory();
 
     CompositeData getQueryNodesFromPrimaryHistory();
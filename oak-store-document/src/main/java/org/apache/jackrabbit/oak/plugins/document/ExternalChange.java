@@ -16,12 +16,24 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
+
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
@@ -32,6 +44,8 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.collect.Iterables.concat;
+import static com.google.common.collect.Iterators.peekingIterator;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.oak.commons.IOUtils.closeQuietly;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
@@ -88,6 +102,22 @@ abstract class ExternalChange {
                              @NotNull RevisionVector sweepRevisions,
                              @Nullable Iterable<String> changedPaths);
 
+    /**
+     * Called when external changes were read successfully from the journal
+     * and before caches are invalidated. Implementations may use this method
+     * to prepare the update of the head revision, while caches are
+     * invalidated. The default implementation does nothing.
+     *
+     * @param externalChanges the head revision of other cluster nodes that
+     *                        changed.
+     * @param changedPaths paths of nodes that are affected by those external
+     *                     changes. Implementations must call
+     *                     {@link Iterable#iterator()} on the calling thread.
+     */
+    void prepareUpdateHead(@NotNull Set<Revision> externalChanges,
+                           @NotNull Iterable<String> changedPaths) {
+    }
+
     /**
      * Processes external changes if there are any.
      *
@@ -108,14 +138,11 @@ abstract class ExternalChange {
             throw new RuntimeException("Background read interrupted", e);
         }
 
-        StringSort externalSort = newSorter();
-        StringSort invalidate = newSorter();
+        // sorted paths of changed nodes and paths of documents to
+        // invalidate, one entry per journal reader
+        List<StringSort> externalSorts = new ArrayList<>();
+        List<StringSort> invalidateSorts = new ArrayList<>();
         AtomicLong oldestTimestamp = new AtomicLong(Long.MAX_VALUE);
-        Consumer<JournalEntry> journalEntryConsumer = journalEntry -> {
-            // track timestamp of oldest journal entry
-            oldestTimestamp.set(Math.min(oldestTimestamp.get(),
-                    journalEntry.getRevisionTimestamp()));
-        };
 
         Map<Integer, Revision> lastRevMap = doc.getLastRev();
         try {
@@ -123,6 +150,8 @@ abstract class ExternalChange {
                     store.getChangeSetMaxItems(), store.getChangeSetMaxDepth());
             RevisionVector headRevision = store.getHeadRevision();
             Set<Revision> externalChanges = newHashSet();
+            // journal ranges to read: to revision -> from revision
+            Map<Revision, Revision> journalRanges = new LinkedHashMap<>();
             for (Map.Entry<Integer, Revision> e : lastRevMap.entrySet()) {
                 int machineId = e.getKey();
                 if (machineId == clusterId) {
@@ -140,54 +169,57 @@ abstract class ExternalChange {
                     // only consider as external change if
                     // the revision changed for the machineId
                     externalChanges.add(r);
-                    // collect external changes
-                    if (externalSort != null) {
-                        // add changes for this particular clusterId to the externalSort
-                        try {
-                            fillExternalChanges(externalSort, invalidate,
-                                    Path.ROOT, last, r,
-                                    store.getDocumentStore(), journalEntryConsumer,
-                                    changeSetBuilder, journalPropertyHandler);
-                        } catch (Exception e1) {
-                            LOG.error("backgroundRead: Exception while reading external changes from journal: " + e1, e1);
-                            closeQuietly(externalSort);
-                            closeQuietly(invalidate);
-                            externalSort = null;
-                            invalidate = null;
-                        }
-                    }
+                    journalRanges.put(r, last);
                 }
             }
 
+            // collect external changes
+            boolean journalRead = true;
+            if (!journalRanges.isEmpty()) {
+                journalRead = readJournal(journalRanges, externalSorts,
+                        invalidateSorts, oldestTimestamp);
+            }
+
             stats.readHead = clock.getTime() - time;
             time = clock.getTime();
 
+            Iterable<String> changedPaths = null;
+            if (journalRead) {
+                changedPaths = mergeSorted(externalSorts);
+                if (!externalChanges.isEmpty()) {
+                    prepareUpdateHead(externalChanges, changedPaths);
+                }
+            }
+
             // invalidate cache
-            if (cacheInvalidationNeeded(externalSort, invalidate)) {
-                // invalidate caches
-                if (externalSort == null) {
-                    // if no externalSort available, then invalidate everything
+            if (!journalRead) {
+                // if external changes are not available, then invalidate everything
+                invalidateCache();
+                stats.cacheInvalidationTime = clock.getTime() - time;
+            } else if (cacheInvalidationNeeded(externalSorts, invalidateSorts)) {
+                for (StringSort sort : externalSorts) {
+                    stats.numExternalChanges += sort.getSize();
+                }
+                // invalidate changed nodes and documents in one batch
+                List<StringSort> sorts = new ArrayList<>(externalSorts);
+                sorts.addAll(invalidateSorts);
+                try {
+                    invalidateCache(mergeSorted(sorts));
+                } catch (Exception e) {
+                    LOG.error("backgroundRead: got exception during cache invalidation (as a result, invalidating entire cache): " + e, e);
                     invalidateCache();
-                } else {
-                    stats.numExternalChanges = externalSort.getSize();
-                    try {
-                        sortAndInvalidate(externalSort);
-                        sortAndInvalidate(invalidate);
-                    } catch (Exception ioe) {
-                        LOG.error("backgroundRead: got IOException during external sorting/cache invalidation (as a result, invalidating entire cache): "+ioe, ioe);
-                        invalidateCache();
-                    }
                 }
                 stats.cacheInvalidationTime = clock.getTime() - time;
             }
 
             // update head
             if (!externalChanges.isEmpty()) {
-                updateHead(externalChanges, doc.getSweepRevisions(), externalSort);
+                updateHead(externalChanges, doc.getSweepRevisions(), changedPaths);
             }
         } finally {
-            closeQuietly(externalSort);
-            closeQuietly(invalidate);
+            for (StringSort sort : concat(externalSorts, invalidateSorts)) {
+                closeQuietly(sort);
+            }
         }
 
         if (oldestTimestamp.get() != Long.MAX_VALUE) {
@@ -206,17 +238,155 @@ abstract class ExternalChange {
 
     //-------------------------< internal >-------------------------------------
 
-    private boolean cacheInvalidationNeeded(StringSort externalSort,
-                                            StringSort invalidate) {
-        return externalSort == null || invalidate == null
-                || !externalSort.isEmpty() || !invalidate.isEmpty();
+    /**
+     * Reads the external changes in the given journal ranges and adds sorted
+     * paths to the lists of {@link StringSort}s. The journal of different
+     * cluster nodes is read in parallel if the {@link DocumentNodeStore} has
+     * an executor for background reads.
+     *
+     * @param journalRanges the journal ranges to read. The key is the upper
+     *          bound (inclusive) and the value the lower bound (exclusive) of
+     *          the range.
+     * @param externalSorts receives the sorted paths of changed nodes.
+     * @param invalidateSorts receives the sorted paths of documents to
+     *          invalidate.
+     * @param oldestTimestamp tracks the timestamp of the oldest journal entry.
+     * @return {@code true} if the journal was read successfully,
+     *          {@code false} otherwise.
+     */
+    private boolean readJournal(Map<Revision, Revision> journalRanges,
+                                List<StringSort> externalSorts,
+                                List<StringSort> invalidateSorts,
+                                AtomicLong oldestTimestamp) {
+        DocumentStore docStore = store.getDocumentStore();
+        ExecutorService executor = store.getBackgroundReadExecutor();
+        if (executor == null || journalRanges.size() < 2) {
+            StringSort externalSort = newSorter();
+            StringSort invalidate = newSorter();
+            externalSorts.add(externalSort);
+            invalidateSorts.add(invalidate);
+            stats.numJournalReaders = 1;
+            try {
+                for (Map.Entry<Revision, Revision> e : journalRanges.entrySet()) {
+                    // add changes for this particular clusterId to the externalSort
+                    fillExternalChanges(externalSort, invalidate,
+                            Path.ROOT, e.getValue(), e.getKey(), docStore,
+                            entry -> trackTimestamp(oldestTimestamp, entry),
+                            changeSetBuilder, journalPropertyHandler);
+                }
+                externalSort.sort();
+                invalidate.sort();
+                return true;
+            } catch (Exception e) {
+                LOG.error("backgroundRead: Exception while reading external changes from journal: " + e, e);
+                return false;
+            }
+        }
+
+        // read the journal of each cluster node in parallel. the
+        // ChangeSetBuilder and JournalPropertyHandler are not thread-safe
+        // and are updated by the consumer while holding a lock
+        Object lock = new Object();
+        Consumer<JournalEntry> consumer = entry -> {
+            synchronized (lock) {
+                entry.addTo(changeSetBuilder);
+                journalPropertyHandler.readFrom(entry);
+                trackTimestamp(oldestTimestamp, entry);
+            }
+        };
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Map.Entry<Revision, Revision> e : journalRanges.entrySet()) {
+            StringSort externalSort = newSorter();
+            StringSort invalidate = newSorter();
+            externalSorts.add(externalSort);
+            invalidateSorts.add(invalidate);
+            Revision from = e.getValue();
+            Revision to = e.getKey();
+            try {
+                futures.add(executor.submit(() -> {
+                    fillExternalChanges(externalSort, invalidate, Path.ROOT,
+                            from, to, docStore, consumer, null, null);
+                    externalSort.sort();
+                    invalidate.sort();
+                    return null;
+                }));
+            } catch (RejectedExecutionException ex) {
+                LOG.error("backgroundRead: Unable to read external changes from journal: " + ex, ex);
+                break;
+            }
+        }
+        stats.numJournalReaders = futures.size();
+        // wait for all readers, even if one of them failed. the
+        // StringSorts are closed when this method returns
+        boolean success = futures.size() == journalRanges.size();
+        boolean interrupted = false;
+        for (Future<Void> f : futures) {
+            while (true) {
+                try {
+                    f.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    LOG.error("backgroundRead: Exception while reading external changes from journal: " + ex.getCause(), ex.getCause());
+                    success = false;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return success;
+    }
+
+    private static void trackTimestamp(AtomicLong oldestTimestamp,
+                                       JournalEntry entry) {
+        // track timestamp of oldest journal entry
+        oldestTimestamp.set(Math.min(oldestTimestamp.get(),
+                entry.getRevisionTimestamp()));
     }
 
-    private void sortAndInvalidate(StringSort paths) throws IOException {
-        if (paths.isEmpty()) {
-            return;
+    private static boolean cacheInvalidationNeeded(List<StringSort> externalSorts,
+                                                   List<StringSort> invalidateSorts) {
+        for (StringSort sort : concat(externalSorts, invalidateSorts)) {
+            if (!sort.isEmpty()) {
+                return true;
+            }
         }
-        paths.sort();
-        invalidateCache(paths);
+        return false;
+    }
+
+    /**
+     * Merges the given sorted {@link StringSort}s into a single sorted
+     * {@link Iterable} without duplicates.
+     *
+     * @param sorts the sorted {@link StringSort}s.
+     * @return the merged paths.
+     */
+    static Iterable<String> mergeSorted(List<StringSort> sorts) {
+        return () -> {
+            List<Iterator<String>> iterators = new ArrayList<>();
+            for (StringSort sort : sorts) {
+                if (!sort.isEmpty()) {
+                    iterators.add(sort.iterator());
+                }
+            }
+            PeekingIterator<String> it = peekingIterator(
+                    Iterators.mergeSorted(iterators, Ordering.natural()));
+            return new AbstractIterator<String>() {
+                @Override
+                protected String computeNext() {
+                    if (!it.hasNext()) {
+                        return endOfData();
+                    }
+                    String next = it.next();
+                    while (it.hasNext() && it.peek().equals(next)) {
+                        it.next();
+                    }
+                    return next;
+                }
+            };
+        };
     }
 }
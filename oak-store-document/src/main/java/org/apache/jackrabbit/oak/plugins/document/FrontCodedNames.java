@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.jetbrains.annotations.NotNull;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * A list of names stored front coded in a single byte array. Each entry
+ * consists of the number of leading characters shared with the previous
+ * entry and the UTF-8 encoded remaining characters. Every
+ * {@link #BLOCK_SIZE} entries the shared prefix is reset, which means an
+ * entry is decoded by reading at most {@link #BLOCK_SIZE} entries from the
+ * start of its block. Sorted names, like the child node names of a node,
+ * usually share long prefixes and therefore need much less memory than the
+ * same names in an {@code ArrayList<String>}.
+ * <p>
+ * The list supports adding names and sorting, but not replacing or removing
+ * individual names. It is {@link RandomAccess} because {@link #get(int)}
+ * takes constant time, so {@code Collections.binarySearch()} works on
+ * sorted names. This class is not thread-safe.
+ */
+final class FrontCodedNames extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * The number of entries in a block.
+     */
+    static final int BLOCK_SIZE = 16;
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private static final int[] NO_BLOCKS = new int[0];
+
+    /**
+     * The encoded entries.
+     */
+    private byte[] data = NO_DATA;
+
+    /**
+     * The number of bytes used in {@link #data}.
+     */
+    private int length;
+
+    /**
+     * The offsets of the blocks in {@link #data}.
+     */
+    private int[] blocks = NO_BLOCKS;
+
+    private int size;
+
+    /**
+     * The last added name or {@code null} if unknown.
+     */
+    private String last;
+
+    /**
+     * Creates a list from the data returned by {@link #getData()}.
+     *
+     * @param data the encoded names.
+     * @return the list.
+     * @throws IllegalArgumentException if the data is malformed.
+     */
+    @NotNull
+    static FrontCodedNames fromData(@NotNull byte[] data) {
+        FrontCodedNames names = new FrontCodedNames();
+        names.data = data;
+        names.length = data.length;
+        int pos = 0;
+        while (pos < data.length) {
+            if (names.size % BLOCK_SIZE == 0) {
+                names.addBlock(pos);
+            }
+            pos = skipVarInt(data, pos);
+            long len = 0;
+            for (int shift = 0; ; shift += 7) {
+                checkArgument(pos < data.length && shift < 32, "Malformed data");
+                byte b = data[pos++];
+                len |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            pos += len;
+            checkArgument(pos <= data.length, "Malformed data");
+            names.size++;
+        }
+        names.compact();
+        return names;
+    }
+
+    @Override
+    public String get(int index) {
+        checkElementIndex(index, size);
+        int block = index / BLOCK_SIZE;
+        Reader reader = new Reader(blocks[block]);
+        String name = null;
+        for (int i = block * BLOCK_SIZE; i <= index; i++) {
+            name = reader.next();
+        }
+        return name;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(String name) {
+        int shared = 0;
+        if (size % BLOCK_SIZE == 0) {
+            addBlock(length);
+        } else {
+            shared = sharedPrefixLength(getLast(), name);
+        }
+        byte[] suffix = name.substring(shared).getBytes(UTF_8);
+        ensureCapacity(length + suffix.length + 10);
+        writeVarInt(shared);
+        writeVarInt(suffix.length);
+        System.arraycopy(suffix, 0, data, length, suffix.length);
+        length += suffix.length;
+        last = name;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        data = NO_DATA;
+        length = 0;
+        blocks = NO_BLOCKS;
+        size = 0;
+        last = null;
+        modCount++;
+    }
+
+    @Override
+    public void sort(Comparator<? super String> c) {
+        String[] names = toArray(new String[size]);
+        Arrays.sort(names, c);
+        clear();
+        for (String n : names) {
+            add(n);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            private final Reader reader = new Reader(0);
+
+            private final int expectedModCount = modCount;
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public String next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                index++;
+                return reader.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Releases unused capacity. Names can still be added afterwards.
+     */
+    void compact() {
+        if (data.length > length) {
+            data = Arrays.copyOf(data, length);
+        }
+        int numBlocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blocks.length > numBlocks) {
+            blocks = Arrays.copyOf(blocks, numBlocks);
+        }
+        last = null;
+    }
+
+    /**
+     * @return the encoded names, which can be passed to
+     *          {@link #fromData(byte[])}.
+     */
+    @NotNull
+    byte[] getData() {
+        return Arrays.copyOf(data, length);
+    }
+
+    /**
+     * @return the estimated memory used by this list in bytes.
+     */
+    int getMemory() {
+        int mem = 48 + 16 + data.length + 16 + blocks.length * 4;
+        if (last != null) {
+            mem += 40 + last.length() * 2;
+        }
+        return mem;
+    }
+
+    //------------------------------< internal >--------------------------------
+
+    private String getLast() {
+        if (last == null) {
+            last = get(size - 1);
+        }
+        return last;
+    }
+
+    private void addBlock(int offset) {
+        int block = size / BLOCK_SIZE;
+        if (block == blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(4, blocks.length + (blocks.length >> 1)));
+        }
+        blocks[block] = offset;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+        }
+    }
+
+    private void writeVarInt(int value) {
+        while ((value & ~0x7f) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private static int skipVarInt(byte[] data, int pos) {
+        for (int i = 0; i < 5; i++) {
+            checkArgument(pos < data.length, "Malformed data");
+            if (data[pos++] >= 0) {
+                return pos;
+            }
+        }
+        throw new IllegalArgumentException("Malformed data");
+    }
+
+    /**
+     * Returns the number of leading characters {@code a} and {@code b} have
+     * in common, without splitting a surrogate pair.
+     */
+    private static int sharedPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (i > 0 && Character.isHighSurrogate(a.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Decodes consecutive entries starting at the beginning of a block.
+     */
+    private final class Reader {
+
+        private final StringBuilder name = new StringBuilder();
+
+        private int pos;
+
+        Reader(int pos) {
+            this.pos = pos;
+        }
+
+        String next() {
+            int shared = readVarInt();
+            int len = readVarInt();
+            name.setLength(shared);
+            name.append(new String(data, pos, len, UTF_8));
+            pos += len;
+            return name.toString();
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
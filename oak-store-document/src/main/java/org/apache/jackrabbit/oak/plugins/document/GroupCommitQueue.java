@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+
+/**
+ * Groups the document updates of concurrent commits into a single call to
+ * {@link DocumentStore#createOrUpdate(Collection, List)}.
+ * <p>
+ * The first commit that arrives when no group is pending opens a new group
+ * and becomes its leader. Commits arriving while the group is pending join
+ * it, unless it would exceed the maximum number of updates or an update is
+ * for a document already in the group. While other groups are written, the
+ * leader waits at most the configured delay for them to complete or for its
+ * group to fill up, then writes all updates of the group with one call and
+ * hands the results to the other commits. A leader that arrives when no
+ * other group is written does not wait at all. A higher delay trades commit
+ * latency for fewer round trips, but a slow write never blocks other groups
+ * for longer than the delay. Commits that cannot join a pending group write
+ * their updates directly.
+ * <p>
+ * If the call for a group with more than one commit fails, each commit of
+ * the group retries its own updates individually. This is fine because the
+ * updates of a commit are idempotent until the commit root is written. The
+ * exception is propagated as is when the group only has the updates of the
+ * leader.
+ */
+final class GroupCommitQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommitQueue.class);
+
+    private final DocumentStore store;
+
+    private final int maxUpdates;
+
+    private final long maxDelayNanos;
+
+    /**
+     * The group that accepts updates, or {@code null} if there is none.
+     */
+    private Group pending;
+
+    /**
+     * The number of groups currently written.
+     */
+    private int writing;
+
+    /**
+     * @param store the document store.
+     * @param maxUpdates the maximum number of updates in a group.
+     * @param maxDelayMicros the maximum time in microseconds the leader of a
+     *          group waits for other commits to join while other groups are
+     *          written.
+     */
+    GroupCommitQueue(@NotNull DocumentStore store,
+                     int maxUpdates,
+                     long maxDelayMicros) {
+        checkArgument(maxUpdates > 0, "maxUpdates must be > 0 (was %s)", maxUpdates);
+        checkArgument(maxDelayMicros >= 0, "maxDelayMicros must be >= 0 (was %s)", maxDelayMicros);
+        this.store = checkNotNull(store);
+        this.maxUpdates = maxUpdates;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    }
+
+    /**
+     * Creates or updates the documents of the given update operations,
+     * possibly together with the updates of concurrent commits.
+     *
+     * @param updates the update operations of a commit. Each operation must
+     *          be for a different document.
+     * @return the documents before the update, in the same order as the
+     *          update operations. See
+     *          {@link DocumentStore#createOrUpdate(Collection, List)}.
+     * @throws DocumentStoreException if the update fails.
+     */
+    @NotNull
+    List<NodeDocument> createOrUpdate(@NotNull List<UpdateOp> updates)
+            throws DocumentStoreException {
+        Group group;
+        int offset;
+        boolean leader = false;
+        synchronized (this) {
+            if (pending == null) {
+                pending = new Group();
+                leader = true;
+            } else if (!pending.accepts(updates, maxUpdates)) {
+                LOG.debug("Cannot join pending group, writing {} updates directly", updates.size());
+                return store.createOrUpdate(NODES, updates);
+            }
+            group = pending;
+            offset = group.add(updates);
+            if (group.updates.size() >= maxUpdates) {
+                notifyAll();
+            }
+        }
+        if (leader) {
+            write(group);
+        }
+        List<NodeDocument> result = group.await(offset, updates.size());
+        if (result == null) {
+            // group failed, retry individually
+            result = store.createOrUpdate(NODES, updates);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of updates in the pending group.
+     */
+    synchronized int getNumPendingUpdates() {
+        return pending != null ? pending.updates.size() : 0;
+    }
+
+    private void write(Group group) {
+        synchronized (this) {
+            long deadline = System.nanoTime() + maxDelayNanos;
+            long remaining = maxDelayNanos;
+            boolean interrupted = false;
+            while (remaining > 0 && writing > 0 && group.updates.size() < maxUpdates) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            pending = null;
+            writing++;
+        }
+        try {
+            int numUpdates = group.updates.size();
+            LOG.debug("Writing group of {} commits with {} updates", group.numCommits, numUpdates);
+            List<NodeDocument> oldDocs = null;
+            try {
+                oldDocs = store.createOrUpdate(NODES, group.updates);
+            } catch (Throwable t) {
+                if (group.numCommits == 1) {
+                    // only the updates of the leader
+                    throw t;
+                }
+                LOG.warn("Group commit failed, will retry individually. " + t.getMessage());
+            } finally {
+                group.done(oldDocs);
+            }
+        } finally {
+            synchronized (this) {
+                writing--;
+                notifyAll();
+            }
+        }
+    }
+
+    private static final class Group {
+
+        private final List<UpdateOp> updates = Lists.newArrayList();
+
+        private final Set<String> ids = Sets.newHashSet();
+
+        private int numCommits;
+
+        private boolean done;
+
+        private List<NodeDocument> oldDocs;
+
+        /**
+         * Called with the monitor of the queue held.
+         */
+        boolean accepts(List<UpdateOp> ops, int maxUpdates) {
+            if (updates.size() + ops.size() > maxUpdates) {
+                return false;
+            }
+            for (UpdateOp op : ops) {
+                if (ids.contains(op.getId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Called with the monitor of the queue held.
+         */
+        int add(List<UpdateOp> ops) {
+            int offset = updates.size();
+            for (UpdateOp op : ops) {
+                updates.add(op);
+                ids.add(op.getId());
+            }
+            numCommits++;
+            return offset;
+        }
+
+        synchronized void done(List<NodeDocument> oldDocs) {
+            this.oldDocs = oldDocs;
+            this.done = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the group was written and returns the documents
+         * before the update for the given range of updates, or
+         * {@code null} if writing the group failed.
+         */
+        synchronized List<NodeDocument> await(int offset, int length) {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (oldDocs == null) {
+                return null;
+            }
+            return Lists.newArrayList(oldDocs.subList(offset, offset + length));
+        }
+    }
+}
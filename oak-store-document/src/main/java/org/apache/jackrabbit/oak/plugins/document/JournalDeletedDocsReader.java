@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.AbstractIterator;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.getModifiedInSecs;
+
+/**
+ * Finds documents of possibly deleted nodes with the paths recorded in the
+ * journal instead of a query on the {@link NodeDocument#DELETED_ONCE} index.
+ * <p>
+ * A document with a {@link NodeDocument#MODIFIED_IN_SECS} value in a given
+ * time interval was last changed by a commit at that time and the path of
+ * the document is contained in a journal entry with a revision that is not
+ * older than the commit. The entry is usually written with the next
+ * background update of the cluster node that made the commit, but may also
+ * be written much later:
+ * <ul>
+ *     <li>Changes of a persisted branch are recorded in a branch entry,
+ *          which is referenced by the entry written after the merge.</li>
+ *     <li>Changes of a cluster node that crashed are written to the journal
+ *          by the {@link LastRevRecoveryAgent} of another cluster node.</li>
+ * </ul>
+ * The journal of each cluster node is therefore read from the start of the
+ * time interval up to the current time, both extended by
+ * {@link #JOURNAL_SLACK_MS}.
+ * The journal is only considered complete when no cluster node needs
+ * recovery. The documents for the paths are then filtered with the same
+ * conditions as {@link VersionGCSupport#getPossiblyDeletedDocs(long, long)}.
+ */
+final class JournalDeletedDocsReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalDeletedDocsReader.class);
+
+    /**
+     * The time in milliseconds the journal is read before the time interval
+     * of the requested {@code _modified} values and after the current time.
+     * This accounts for the resolution of {@link NodeDocument#MODIFIED_IN_SECS}
+     * and the clock difference of the cluster nodes.
+     */
+    static final long JOURNAL_SLACK_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final DocumentStore store;
+
+    private final Clock clock;
+
+    private final int localClusterId;
+
+    private final long journalTailTimestamp;
+
+    /**
+     * @param store the document store.
+     * @param clock the clock to check the leases of the cluster nodes.
+     * @param localClusterId the id of the local cluster node.
+     * @param journalTail the oldest revision still present in the journal,
+     *          as maintained by the {@link JournalGarbageCollector}.
+     */
+    JournalDeletedDocsReader(@NotNull DocumentStore store,
+                             @NotNull Clock clock,
+                             int localClusterId,
+                             @NotNull Revision journalTail) {
+        this.store = store;
+        this.clock = clock;
+        this.localClusterId = localClusterId;
+        this.journalTailTimestamp = journalTail.getTimestamp();
+    }
+
+    /**
+     * Returns {@code true} if the journal contains all entries that are
+     * needed to find the documents modified at or after the given time. This
+     * is the case when the entries were not yet removed by the
+     * {@link JournalGarbageCollector} and no other cluster node needs
+     * recovery, which would write entries for past changes to the journal.
+     *
+     * @param fromModified the lower bound modified timestamp in milliseconds.
+     * @return whether the journal is complete for the time.
+     */
+    boolean isComplete(long fromModified) {
+        if (journalTailTimestamp > fromModified - JOURNAL_SLACK_MS) {
+            return false;
+        }
+        long now = clock.getTime();
+        for (ClusterNodeInfoDocument info : ClusterNodeInfoDocument.all(store)) {
+            if (info.getClusterId() != localClusterId && info.isRecoveryNeeded(now)) {
+                LOG.debug("Cluster node {} needs recovery, journal is not complete",
+                        info.getClusterId());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns documents that have a {@link NodeDocument#MODIFIED_IN_SECS}
+     * value within the given range and the {@link NodeDocument#DELETED_ONCE}
+     * flag set, based on the paths of changes in the journal. The journal
+     * is read once and the returned iterable must be closed with
+     * {@link Utils#closeIfCloseable(Object)}. All iterators obtained from
+     * the iterable share the paths read from the journal and each document
+     * is returned by only one of them. The iterators may be used by
+     * different threads concurrently.
+     *
+     * @param fromModified the lower bound modified timestamp (inclusive)
+     * @param toModified the upper bound modified timestamp (exclusive)
+     * @return matching documents.
+     * @throws IOException if reading the journal into a sorter fails.
+     */
+    @NotNull
+    Iterable<NodeDocument> getPossiblyDeletedDocs(long fromModified,
+                                                  long toModified)
+            throws IOException {
+        final long fromSecs = getModifiedInSecs(fromModified);
+        final long toSecs = getModifiedInSecs(toModified);
+        final StringSort paths = JournalEntry.newSorter();
+        final Iterator<String> it;
+        boolean success = false;
+        try {
+            int numEntries = 0;
+            long now = clock.getTime();
+            List<ClusterNodeInfoDocument> clusterNodes = ClusterNodeInfoDocument.all(store);
+            for (ClusterNodeInfoDocument info : clusterNodes) {
+                int clusterId = info.getClusterId();
+                Revision from = new Revision(fromModified - JOURNAL_SLACK_MS, 0, clusterId);
+                // a branch merge or a recovery may write the
+                // changes long after the modification
+                Revision to = new Revision(now + JOURNAL_SLACK_MS, 0, clusterId);
+                numEntries += JournalEntry.fillExternalChanges(paths, null, from, to, store);
+            }
+            paths.sort();
+            LOG.debug("Read {} journal entries of {} cluster nodes with {} paths for [{}, {})",
+                    numEntries, clusterNodes.size(), paths.getSize(),
+                    Utils.timestampToString(fromModified), Utils.timestampToString(toModified));
+            it = paths.getIds();
+            success = true;
+        } finally {
+            if (!success) {
+                paths.close();
+            }
+        }
+        final SharedPaths shared = new SharedPaths(it);
+        Iterable<NodeDocument> docs = () -> new AbstractIterator<NodeDocument>() {
+            @Override
+            protected NodeDocument computeNext() {
+                String p;
+                while ((p = shared.next()) != null) {
+                    NodeDocument doc = store.find(NODES, Utils.getIdFromPath(p));
+                    if (doc != null && doc.wasDeletedOnce()) {
+                        Long modified = doc.getModified();
+                        if (modified != null && modified >= fromSecs && modified < toSecs) {
+                            return doc;
+                        }
+                    }
+                }
+                return endOfData();
+            }
+        };
+        return CloseableIterable.wrap(docs, paths);
+    }
+
+    /**
+     * Hands out the distinct paths of a sorted iterator to multiple
+     * consumers.
+     */
+    private static final class SharedPaths {
+
+        private final Iterator<String> paths;
+
+        private String previous;
+
+        SharedPaths(Iterator<String> paths) {
+            this.paths = paths;
+        }
+
+        /**
+         * @return the next distinct path or {@code null} if there are no
+         *          more paths.
+         */
+        synchronized String next() {
+            while (paths.hasNext()) {
+                String p = paths.next();
+                if (!p.equals(previous)) {
+                    previous = p;
+                    return p;
+                }
+            }
+            return null;
+        }
+    }
+}
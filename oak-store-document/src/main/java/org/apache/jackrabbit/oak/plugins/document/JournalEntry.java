@@ -400,7 +400,7 @@ public final class JournalEntry extends Document {
         }
     }
 
-    private void addTo(ChangeSetBuilder changeSetBuilder) {
+    void addTo(ChangeSetBuilder changeSetBuilder) {
         String cs = (String) get(CHANGE_SET);
         ChangeSet set = null;
 
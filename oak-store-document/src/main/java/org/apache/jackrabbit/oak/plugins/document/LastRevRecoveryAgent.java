@@ -32,6 +32,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
@@ -45,6 +49,7 @@ import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.commons.TimeDurationFormatter;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.util.MapFactory;
+import org.apache.jackrabbit.oak.plugins.document.util.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.jetbrains.annotations.NotNull;
@@ -78,6 +83,15 @@ public class LastRevRecoveryAgent {
 
     private static final long LOGINTERVALMS = TimeUnit.MINUTES.toMillis(1);
 
+    private final LastRevRecoveryStats stats = new LastRevRecoveryStats();
+
+    /**
+     * The number of partitions of candidate documents recovered concurrently.
+     * With one, the candidates are recovered serially on the calling thread.
+     */
+    private int parallelism = SystemPropertySupplier.create(
+            "oak.documentMK.recoveryParallelism", 1).loggingTo(log).get();
+
     public LastRevRecoveryAgent(DocumentStore store,
                                 RevisionContext revisionContext,
                                 MissingLastRevSeeker seeker,
@@ -163,7 +177,8 @@ public class LastRevRecoveryAgent {
                 // process crashed and the recovery needs to go further back?
                 // go through branch commits before startTime and check if their
                 // merge revision is newer than startTime
-                Revision bc = getEarliestBranchCommitMergedAround(root, startTime, clusterId);
+                Revision bc = getEarliestBranchCommitMergedAround(root, startTime,
+                        clusterId, new CommitValueResolver(clusterId));
                 if (bc != null) {
                     startTime = bc.getTimestamp();
                     reason = "branchRev: " + bc.toString();
@@ -229,6 +244,44 @@ public class LastRevRecoveryAgent {
     public int recover(final Iterable<NodeDocument> suspects,
                        final int clusterId, final boolean dryRun)
             throws DocumentStoreException {
+        return recover(singletonList(suspects), clusterId, dryRun);
+    }
+
+    /**
+     * @return the progress of the recovery performed by this agent.
+     */
+    @NotNull
+    public LastRevRecoveryStatsMBean getStats() {
+        return stats;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Same as {@link #recover(Iterable, int, boolean)}, but with suspects in
+     * partitions, which are swept and scanned concurrently when the
+     * parallelism of this agent is greater than one.
+     */
+    private int recover(final List<Iterable<NodeDocument>> partitions,
+                        final int clusterId, final boolean dryRun)
+            throws DocumentStoreException {
+        stats.started(clusterId, partitions.size());
+        boolean success = false;
+        int size = 0;
+        try {
+            size = recoverPartitions(partitions, clusterId, dryRun);
+            success = true;
+            return size;
+        } finally {
+            stats.finished(size, success);
+        }
+    }
+
+    private int recoverPartitions(final List<Iterable<NodeDocument>> partitions,
+                                  final int clusterId, final boolean dryRun)
+            throws DocumentStoreException {
         // set a deadline if this is a self recovery. Self recovery does not
         // update the lease in a background thread and must terminate before
         // the lease acquired by the recovery lock expires.
@@ -241,6 +294,7 @@ public class LastRevRecoveryAgent {
         }
 
         NodeDocument rootDoc = Utils.getRootDocument(store);
+        final CommitValueResolver commitValues = new CommitValueResolver(clusterId);
 
         // first run a sweep
         final AtomicReference<Revision> sweepRev = new AtomicReference<>();
@@ -250,9 +304,8 @@ public class LastRevRecoveryAgent {
             // of the recovery agent.
             final RevisionContext context = new RecoveryContext(rootDoc,
                     revisionContext.getClock(), clusterId,
-                    revisionContext::getCommitValue);
-            final NodeDocumentSweeper sweeper = new NodeDocumentSweeper(context, true);
-            sweeper.sweep(suspects, new NodeDocumentSweepListener() {
+                    commitValues::getCommitValue);
+            final NodeDocumentSweepListener listener = new NodeDocumentSweepListener() {
                 @Override
                 public void sweepUpdate(Map<Path, UpdateOp> updates)
                         throws DocumentStoreException {
@@ -277,13 +330,27 @@ public class LastRevRecoveryAgent {
                                 "document invalidation.";
                         throw new DocumentStoreException(msg);
                     }
-                    sweepRev.set(Utils.max(sweepRev.get(), jRev));
+                    sweepRev.accumulateAndGet(jRev, Utils::max);
                     // now that journal entry is in place, perform the actual
                     // updates on the documents
                     store.createOrUpdate(NODES, newArrayList(updates.values()));
                     log.info("Sweeper updated {}", updates.keySet());
                 }
-            });
+            };
+            stats.phaseStarted(LastRevRecoveryStats.PHASE_SWEEP);
+            List<Callable<Void>> sweeps = new ArrayList<>();
+            for (final Iterable<NodeDocument> suspects : partitions) {
+                final NodeDocumentSweeper sweeper = new NodeDocumentSweeper(context, true);
+                sweeps.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        sweeper.sweep(suspects, listener);
+                        stats.partitionDone();
+                        return null;
+                    }
+                });
+            }
+            runConcurrently(sweeps, clusterId);
 
             if (sweepRev.get() != null) {
                 // One or more journal entries were created by the sweeper.
@@ -296,76 +363,29 @@ public class LastRevRecoveryAgent {
 
         // now deal with missing _lastRev updates
         UnsavedModifications unsaved = new UnsavedModifications();
-        UnsavedModifications unsavedParents = new UnsavedModifications();
+        final UnsavedModifications unsavedParents = new UnsavedModifications();
 
         //Map of known last rev of checked paths
-        Map<Path, Revision> knownLastRevOrModification = MapFactory.getInstance().create();
+        final Map<Path, Revision> knownLastRevOrModification = MapFactory.getInstance().create();
         final JournalEntry changes = JOURNAL.newDocument(store);
 
-        Clock clock = revisionContext.getClock();
-
-        long totalCount = 0;
-        long lastCount = 0;
-        long startOfScan = clock.getTime();
-        long lastLog = startOfScan;
-
-        for (NodeDocument doc : suspects) {
-            totalCount++;
-            lastCount++;
-
-            long now = clock.getTime();
-            long lastElapsed = now - lastLog;
-            if (lastElapsed >= LOGINTERVALMS) {
-                TimeDurationFormatter df = TimeDurationFormatter.forLogging();
-
-                long totalElapsed = now - startOfScan;
-                long totalRateMin = (totalCount * TimeUnit.MINUTES.toMillis(1)) / totalElapsed;
-                long lastRateMin = (lastCount * TimeUnit.MINUTES.toMillis(1)) / lastElapsed;
-
-                String message = String.format(
-                        "Recovery for cluster node [%d]: %d nodes scanned in %s (~%d/m) - last interval %d nodes in %s (~%d/m)",
-                        clusterId, totalCount, df.format(totalElapsed, TimeUnit.MILLISECONDS), totalRateMin, lastCount,
-                        df.format(lastElapsed, TimeUnit.MILLISECONDS), lastRateMin);
-
-                log.info(message);
-                lastLog = now;
-                lastCount = 0;
-            }
-
-            Revision currentLastRev = doc.getLastRev().get(clusterId);
-
-            // 1. determine last committed modification on document
-            Revision lastModifiedRev = determineLastModification(doc, clusterId);
-
-            Revision lastRevForParents = Utils.max(lastModifiedRev, currentLastRev);
-            // remember the higher of the two revisions. this is the
-            // most recent revision currently obtained from either a
-            // _lastRev entry or an explicit modification on the document
-            if (lastRevForParents != null) {
-                knownLastRevOrModification.put(doc.getPath(), lastRevForParents);
-            }
-
-            //If both currentLastRev and lostLastRev are null it means
-            //that no change is done by suspect cluster on this document
-            //so nothing needs to be updated. Probably it was only changed by
-            //other cluster nodes. If this node is parent of any child node which
-            //has been modified by cluster then that node roll up would
-            //add this node path to unsaved
-
-            //2. Update lastRev for parent paths aka rollup
-            if (lastRevForParents != null) {
-                Path path = doc.getPath();
-                changes.modified(path); // track all changes
-                while (true) {
-                    path = path.getParent();
-                    if (path == null) {
-                        break;
-                    }
-                    unsavedParents.put(path, lastRevForParents);
+        stats.phaseStarted(LastRevRecoveryStats.PHASE_SCAN);
+        List<Callable<Void>> scans = new ArrayList<>();
+        for (final Iterable<NodeDocument> suspects : partitions) {
+            scans.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    scan(suspects, clusterId, knownLastRevOrModification,
+                            unsavedParents, changes, commitValues);
+                    stats.partitionDone();
+                    return null;
                 }
-            }
+            });
         }
+        runConcurrently(scans, clusterId);
 
+        stats.phaseStarted(LastRevRecoveryStats.PHASE_UPDATE);
+        Clock clock = revisionContext.getClock();
         for (Path parentPath : unsavedParents.getPaths()) {
             Revision calcLastRev = unsavedParents.get(parentPath);
             Revision knownLastRev = knownLastRevOrModification.get(parentPath);
@@ -376,7 +396,7 @@ public class LastRevRecoveryAgent {
                 NodeDocument doc = findNearestAncestorOrSelf(parentPath, missingDocuments);
                 if (doc != null) {
                     Revision lastRev = doc.getLastRev().get(clusterId);
-                    Revision lastMod = determineLastModification(doc, clusterId);
+                    Revision lastMod = determineLastModification(doc, clusterId, commitValues);
                     knownLastRev = Utils.max(lastRev, lastMod);
 
                     if (!missingDocuments.isEmpty()
@@ -426,52 +446,62 @@ public class LastRevRecoveryAgent {
 
             //UnsavedModifications is designed to be used in concurrent
             //access mode. For recovery case there is no concurrent access
-            //involve so just pass a new lock instance
+            //involve so just pass a new lock instance.
+            //documents on the same depth are updated with concurrent
+            //batches when the parallelism is greater than one
 
             // the lock uses to do the persisting is a plain reentrant lock
             // thus it doesn't matter, where exactly the check is done
             // as to whether the recovered lastRev has already been
             // written to the journal.
-            unsaved.persist(store, new Supplier<Revision>() {
-                @Override
-                public Revision get() {
-                    return sweepRev.get();
-                }
-            }, new UnsavedModifications.Snapshot() {
-
-                @Override
-                public void acquiring(Revision mostRecent) {
-                    if (lastRootRev == null) {
-                        // this should never happen - when unsaved has no changes
-                        // that is reflected in the 'map' to be empty - in that
-                        // case 'persist()' quits early and never calls
-                        // acquiring() here.
-                        //
-                        // but even if it would occur - if we have no lastRootRev
-                        // then we cannot and probably don't have to persist anything
-                        return;
+            ExecutorService executor = DocumentNodeStore.createBackgroundExecutor(
+                    parallelism, workerName(clusterId));
+            try {
+                unsaved.persist(store, new Supplier<Revision>() {
+                    @Override
+                    public Revision get() {
+                        return sweepRev.get();
                     }
+                }, new UnsavedModifications.Snapshot() {
+
+                    @Override
+                    public void acquiring(Revision mostRecent) {
+                        if (lastRootRev == null) {
+                            // this should never happen - when unsaved has no changes
+                            // that is reflected in the 'map' to be empty - in that
+                            // case 'persist()' quits early and never calls
+                            // acquiring() here.
+                            //
+                            // but even if it would occur - if we have no lastRootRev
+                            // then we cannot and probably don't have to persist anything
+                            return;
+                        }
 
-                    final String id = JournalEntry.asId(lastRootRev); // lastRootRev never null at this point
-                    final JournalEntry existingEntry = store.find(Collection.JOURNAL, id);
-                    if (existingEntry != null) {
-                        // then the journal entry was already written - as can happen if
-                        // someone else (or the original instance itself) wrote the
-                        // journal entry, then died.
-                        // in this case, don't write it again.
-                        // hence: nothing to be done here. return.
-                        log.warn("Journal entry {} already exists", id);
-                        return;
-                    }
+                        final String id = JournalEntry.asId(lastRootRev); // lastRootRev never null at this point
+                        final JournalEntry existingEntry = store.find(Collection.JOURNAL, id);
+                        if (existingEntry != null) {
+                            // then the journal entry was already written - as can happen if
+                            // someone else (or the original instance itself) wrote the
+                            // journal entry, then died.
+                            // in this case, don't write it again.
+                            // hence: nothing to be done here. return.
+                            log.warn("Journal entry {} already exists", id);
+                            return;
+                        }
 
-                    // otherwise store a new journal entry now
-                    if (store.create(JOURNAL, singletonList(changes.asUpdateOp(lastRootRev)))) {
-                        log.info("Recovery created journal entry {}", id);
-                    } else {
-                        log.warn("Unable to create journal entry {} (already exists).", id);
+                        // otherwise store a new journal entry now
+                        if (store.create(JOURNAL, singletonList(changes.asUpdateOp(lastRootRev)))) {
+                            log.info("Recovery created journal entry {}", id);
+                        } else {
+                            log.warn("Unable to create journal entry {} (already exists).", id);
+                        }
                     }
+                }, new ReentrantLock(), executor, parallelism);
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
                 }
-            }, new ReentrantLock());
+            }
 
             log.info("Updated lastRev of [{}] documents while performing lastRev recovery for " +
                     "cluster node [{}]: {}", size, clusterId, updates);
@@ -482,6 +512,102 @@ public class LastRevRecoveryAgent {
 
     //--------------------------< internal >------------------------------------
 
+    /**
+     * Scans the suspects for the last modifications by the given clusterId
+     * and records the _lastRev updates required for their ancestors. This
+     * method may be called concurrently for partitions of the suspects.
+     *
+     * @param suspects the potential suspects.
+     * @param clusterId the cluster id for which _lastRev recovery needed.
+     * @param knownLastRevOrModification known last revisions of the
+     *          scanned paths.
+     * @param unsavedParents the _lastRev updates required for parents.
+     * @param changes the journal entry tracking all changes.
+     * @param commitValues resolves the commit values of changes.
+     */
+    private void scan(Iterable<NodeDocument> suspects,
+                      int clusterId,
+                      Map<Path, Revision> knownLastRevOrModification,
+                      UnsavedModifications unsavedParents,
+                      JournalEntry changes,
+                      CommitValueResolver commitValues) {
+        Clock clock = revisionContext.getClock();
+
+        long totalCount = 0;
+        long lastCount = 0;
+        long startOfScan = clock.getTime();
+        long lastLog = startOfScan;
+
+        for (NodeDocument doc : suspects) {
+            totalCount++;
+            lastCount++;
+            stats.documentScanned();
+
+            long now = clock.getTime();
+            long lastElapsed = now - lastLog;
+            if (lastElapsed >= LOGINTERVALMS) {
+                TimeDurationFormatter df = TimeDurationFormatter.forLogging();
+
+                long totalElapsed = now - startOfScan;
+                long totalRateMin = (totalCount * TimeUnit.MINUTES.toMillis(1)) / totalElapsed;
+                long lastRateMin = (lastCount * TimeUnit.MINUTES.toMillis(1)) / lastElapsed;
+
+                String message = String.format(
+                        "Recovery for cluster node [%d]: %d nodes scanned in %s (~%d/m) - last interval %d nodes in %s (~%d/m)",
+                        clusterId, totalCount, df.format(totalElapsed, TimeUnit.MILLISECONDS), totalRateMin, lastCount,
+                        df.format(lastElapsed, TimeUnit.MILLISECONDS), lastRateMin);
+
+                log.info(message);
+                lastLog = now;
+                lastCount = 0;
+            }
+
+            Revision currentLastRev = doc.getLastRev().get(clusterId);
+
+            // 1. determine last committed modification on document
+            Revision lastModifiedRev = determineLastModification(doc, clusterId, commitValues);
+
+            Revision lastRevForParents = Utils.max(lastModifiedRev, currentLastRev);
+            // remember the higher of the two revisions. this is the
+            // most recent revision currently obtained from either a
+            // _lastRev entry or an explicit modification on the document
+            if (lastRevForParents != null) {
+                knownLastRevOrModification.put(doc.getPath(), lastRevForParents);
+            }
+
+            //If both currentLastRev and lostLastRev are null it means
+            //that no change is done by suspect cluster on this document
+            //so nothing needs to be updated. Probably it was only changed by
+            //other cluster nodes. If this node is parent of any child node which
+            //has been modified by cluster then that node roll up would
+            //add this node path to unsaved
+
+            //2. Update lastRev for parent paths aka rollup
+            if (lastRevForParents != null) {
+                Path path = doc.getPath();
+                synchronized (changes) {
+                    changes.modified(path); // track all changes
+                }
+                while (true) {
+                    path = path.getParent();
+                    if (path == null) {
+                        break;
+                    }
+                    unsavedParents.put(path, lastRevForParents);
+                }
+            }
+        }
+    }
+
+    private <T> void runConcurrently(List<Callable<T>> tasks, int clusterId)
+            throws DocumentStoreException {
+        DocumentNodeStore.runConcurrently(tasks, parallelism, workerName(clusterId));
+    }
+
+    private static String workerName(int clusterId) {
+        return "LastRevRecoveryAgent worker (" + clusterId + ")";
+    }
+
     /**
      * Get the earliest branch commit before {@code timeMillis} that has been
      * merged after {@code timeMillis}. This method only considers branch
@@ -490,19 +616,21 @@ public class LastRevRecoveryAgent {
      * @param doc the document to check for branch commits.
      * @param timeMillis a time in milliseconds since start of the epoch.
      * @param clusterId a clusterId.
+     * @param commitValues resolves the commit values of changes.
      * @return earliest branch commit or {@code null} if there is none matching
      *          the criteria.
      */
     @Nullable
     private Revision getEarliestBranchCommitMergedAround(@NotNull NodeDocument doc,
                                                          long timeMillis,
-                                                         int clusterId) {
+                                                         int clusterId,
+                                                         @NotNull CommitValueResolver commitValues) {
         Revision earliest = null;
         for (Revision bc : doc.getLocalBranchCommits()) {
             if (bc.getClusterId() != clusterId) {
                 continue;
             }
-            String cv = revisionContext.getCommitValue(bc, doc);
+            String cv = commitValues.getCommitValue(bc, doc);
             if (isCommitted(cv)) {
                 Revision mergeRevision = resolveCommitRevision(bc, cv);
                 if (mergeRevision.getTimestamp() > timeMillis
@@ -607,14 +735,25 @@ public class LastRevRecoveryAgent {
             log.info("Recovering candidates modified after: [{}] for clusterId [{}] [{}]",
                     Utils.timestampToString(startTime), clusterId, info);
 
-            Iterable<NodeDocument> suspects = missingLastRevUtil.getCandidates(startTime);
+            List<Iterable<NodeDocument>> partitions = new ArrayList<>();
+            if (parallelism > 1) {
+                for (DocumentIdRange range : DocumentIdRange.partitions()) {
+                    partitions.add(missingLastRevUtil.getCandidates(
+                            startTime, range.getFromId(), range.getToId()));
+                }
+            } else {
+                partitions.add(missingLastRevUtil.getCandidates(startTime));
+            }
             try {
-                log.info("Performing Last Revision Recovery for clusterNodeId {}", clusterId);
-                int num = recover(suspects, clusterId);
+                log.info("Performing Last Revision Recovery for clusterNodeId {} " +
+                        "with {} partition(s)", clusterId, partitions.size());
+                int num = recover(partitions, clusterId, false);
                 success = true;
                 return num;
             } finally {
-                Utils.closeIfCloseable(suspects);
+                for (Iterable<NodeDocument> suspects : partitions) {
+                    Utils.closeIfCloseable(suspects);
+                }
             }
         } finally {
             missingLastRevUtil.releaseRecoveryLock(clusterId, success);
@@ -629,11 +768,14 @@ public class LastRevRecoveryAgent {
      * @param doc a document.
      * @param clusterId clusterId for which the last committed modification is
      *                  looked up.
+     * @param commitValues resolves the commit values of changes.
      * @return the commit revision of the last modification by {@code clusterId}
      *          to the given document.
      */
     @Nullable
-    private Revision determineLastModification(NodeDocument doc, int clusterId) {
+    private Revision determineLastModification(NodeDocument doc,
+                                               int clusterId,
+                                               CommitValueResolver commitValues) {
         ClusterPredicate cp = new ClusterPredicate(clusterId);
 
         Revision lastModified = null;
@@ -642,7 +784,7 @@ public class LastRevRecoveryAgent {
             // collect committed changes of this cluster node
             for (Map.Entry<Revision, String> entry : filterKeys(valueMap, cp).entrySet()) {
                 Revision rev = entry.getKey();
-                String cv = revisionContext.getCommitValue(rev, doc);
+                String cv = commitValues.getCommitValue(rev, doc);
                 if (isCommitted(cv)) {
                     lastModified = Utils.max(lastModified, resolveCommitRevision(rev, cv));
                     break;
@@ -710,5 +852,45 @@ public class LastRevRecoveryAgent {
             return clusterId == input.getClusterId();
         }
     }
-}
 
+    /**
+     * Resolves commit values of changes during a recovery. A commit root
+     * document may have been cached before the recovered cluster node
+     * committed a change. When a change of the recovered cluster node does
+     * not have a commit value on a commit root other than the document with
+     * the change, the commit root is read again without a cached copy. Each
+     * commit root is read again at most once per recovery.
+     */
+    private final class CommitValueResolver {
+
+        private final int clusterId;
+
+        private final Map<String, Optional<NodeDocument>> commitRoots = new ConcurrentHashMap<>();
+
+        CommitValueResolver(int clusterId) {
+            this.clusterId = clusterId;
+        }
+
+        /**
+         * @param changeRevision the revision of a change.
+         * @param doc the document with the change.
+         * @return the commit value or {@code null} if there is none.
+         */
+        @Nullable
+        String getCommitValue(@NotNull Revision changeRevision,
+                              @NotNull NodeDocument doc) {
+            String cv = revisionContext.getCommitValue(changeRevision, doc);
+            if (cv != null || changeRevision.getClusterId() != clusterId) {
+                return cv;
+            }
+            Path commitRootPath = doc.getCommitRootPath(changeRevision);
+            if (commitRootPath == null || commitRootPath.equals(doc.getPath())) {
+                return null;
+            }
+            Optional<NodeDocument> commitRoot = commitRoots.computeIfAbsent(
+                    Utils.getIdFromPath(commitRootPath),
+                    id -> Optional.ofNullable(store.find(NODES, id, 0)));
+            return commitRoot.map(root -> root.resolveCommitValue(changeRevision)).orElse(null);
+        }
+    }
+}
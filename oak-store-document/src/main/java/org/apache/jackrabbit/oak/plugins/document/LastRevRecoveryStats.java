@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the _lastRev recovery performed by a {@link LastRevRecoveryAgent}.
+ */
+class LastRevRecoveryStats implements LastRevRecoveryStatsMBean {
+
+    static final String PHASE_IDLE = "IDLE";
+    static final String PHASE_SWEEP = "SWEEP";
+    static final String PHASE_SCAN = "SCAN";
+    static final String PHASE_UPDATE = "UPDATE";
+
+    private final AtomicLong recoveries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // progress of the current or last recovery
+    private final AtomicInteger completedPartitions = new AtomicInteger();
+    private final AtomicLong scannedDocs = new AtomicLong();
+    private volatile int clusterId;
+    private volatile int partitions;
+    private volatile long updatedDocs;
+    private volatile long runStartNanos;
+    private volatile long runEndNanos;
+    private volatile String phase = PHASE_IDLE;
+
+    void started(int clusterId, int partitions) {
+        recoveries.incrementAndGet();
+        this.clusterId = clusterId;
+        this.partitions = partitions;
+        completedPartitions.set(0);
+        scannedDocs.set(0);
+        updatedDocs = 0;
+        runEndNanos = 0;
+        runStartNanos = System.nanoTime();
+    }
+
+    void phaseStarted(String phase) {
+        this.phase = phase;
+        if (!PHASE_UPDATE.equals(phase)) {
+            // only the sweep and scan are performed per partition
+            completedPartitions.set(0);
+        }
+    }
+
+    void partitionDone() {
+        completedPartitions.incrementAndGet();
+    }
+
+    void documentScanned() {
+        scannedDocs.incrementAndGet();
+    }
+
+    void finished(long updatedDocs, boolean success) {
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        this.updatedDocs = updatedDocs;
+        runEndNanos = System.nanoTime();
+        phase = PHASE_IDLE;
+    }
+
+    //---------------------< LastRevRecoveryStatsMBean >------------------------
+
+    @Override
+    public long getRecoveryCount() {
+        return recoveries.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public int getRecoveredClusterId() {
+        return clusterId;
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return partitions;
+    }
+
+    @Override
+    public int getCompletedPartitionCount() {
+        return completedPartitions.get();
+    }
+
+    @Override
+    public long getScannedDocCount() {
+        return scannedDocs.get();
+    }
+
+    @Override
+    public long getUpdatedDocCount() {
+        return updatedDocs;
+    }
+
+    @Override
+    public double getScannedDocsPerSecond() {
+        long start = runStartNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = runEndNanos;
+        long elapsed = (end != 0 ? end : System.nanoTime()) - start;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return scannedDocs.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+/**
+ * MBean exposing the progress of the _lastRev recovery performed by a
+ * DocumentNodeStore for other cluster nodes.
+ */
+public interface LastRevRecoveryStatsMBean {
+
+    String TYPE = "LastRevRecoveryStats";
+
+    /**
+     * @return the number of recoveries performed since startup.
+     */
+    long getRecoveryCount();
+
+    /**
+     * @return the number of failed recoveries since startup.
+     */
+    long getFailureCount();
+
+    /**
+     * @return the phase of the currently running recovery or {@code IDLE}
+     *          if none is running.
+     */
+    String getPhase();
+
+    /**
+     * @return the clusterId recovered by the current or last recovery or
+     *          zero if there was no recovery yet.
+     */
+    int getRecoveredClusterId();
+
+    /**
+     * @return the number of partitions of the current or last recovery.
+     */
+    int getPartitionCount();
+
+    /**
+     * @return the number of partitions completed by the sweep or scan phase
+     *          of the current or last recovery.
+     */
+    int getCompletedPartitionCount();
+
+    /**
+     * @return the number of candidate documents scanned by the current or
+     *          last recovery.
+     */
+    long getScannedDocCount();
+
+    /**
+     * @return the number of documents with a recovered _lastRev by the last
+     *          recovery.
+     */
+    long getUpdatedDocCount();
+
+    /**
+     * @return the average number of candidate documents scanned per second
+     *          by the current or last recovery.
+     */
+    double getScannedDocsPerSecond();
+}
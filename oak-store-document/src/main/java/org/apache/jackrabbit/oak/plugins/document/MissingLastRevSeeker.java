@@ -93,6 +93,31 @@ public class MissingLastRevSeeker {
         });
     }
 
+    /**
+     * Like {@link #getCandidates(long)}, but only returns candidates with an
+     * id within the given range. Both bounds of the range are exclusive.
+     *
+     * @param startTime the start time in milliseconds.
+     * @param fromId the lower bound of the id range (exclusive).
+     * @param toId the upper bound of the id range (exclusive).
+     * @return the candidates
+     */
+    @NotNull
+    public Iterable<NodeDocument> getCandidates(final long startTime,
+                                                @NotNull String fromId,
+                                                @NotNull String toId) {
+        Iterable<NodeDocument> nodes = getSelectedDocuments(store,
+                MODIFIED_IN_SECS, getModifiedInSecs(startTime), fromId, toId);
+        return Iterables.filter(nodes, new Predicate<NodeDocument>() {
+            @Override
+            public boolean apply(NodeDocument input) {
+                Long modified = (Long) input.get(MODIFIED_IN_SECS);
+                Long sdType = (Long) input.get(SD_TYPE);
+                return (modified != null && (modified >= getModifiedInSecs(startTime)) && sdType == null);
+            }
+        });
+    }
+
     /**
      * Acquire a recovery lock for the given cluster node info document. This
      * method may break a lock when it determines the cluster node holding the
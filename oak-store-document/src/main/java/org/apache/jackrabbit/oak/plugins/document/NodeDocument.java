@@ -60,6 +60,7 @@ import com.google.common.collect.Sets;
 import static com.google.common.base.Objects.equal;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.copyOf;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.mergeSorted;
@@ -360,6 +361,12 @@ public final class NodeDocument extends Document {
 
     private final long creationTime;
 
+    /**
+     * Keys of value maps where older revision entries were not read from
+     * the store. Empty if this is a complete document.
+     */
+    private Set<String> truncatedKeys = Collections.emptySet();
+
     NodeDocument(@NotNull DocumentStore store) {
         this(store, Revision.getCurrentTimestamp());
     }
@@ -397,6 +404,31 @@ public final class NodeDocument extends Document {
         return creationTime;
     }
 
+    /**
+     * Marks the value maps with the given keys as truncated. A truncated
+     * value map is missing older revision entries, because the document was
+     * read with a projection of its revision entries. Such a document must
+     * only be used with {@link #getNodeAtRevision(DocumentNodeStore,
+     * RevisionVector, Revision)}, which reads the complete document when
+     * the state at the read revision depends on missing entries.
+     * <p>
+     * This method must be called before the document is sealed.
+     *
+     * @param keys the keys of the truncated value maps.
+     */
+    public void markTruncated(@NotNull Set<String> keys) {
+        checkState(!isSealed(), "Document is sealed");
+        truncatedKeys = Collections.unmodifiableSet(new HashSet<>(keys));
+    }
+
+    /**
+     * @return whether this document was read with a projection of its
+     *      revision entries and some value maps are missing older entries.
+     */
+    public boolean isTruncated() {
+        return !truncatedKeys.isEmpty();
+    }
+
     /**
      * See also {@link #MODIFIED_IN_SECS}.
      *
@@ -922,6 +954,17 @@ public final class NodeDocument extends Document {
         LastRevs lastRevs = createLastRevs(readRevision,
                 nodeStore, branch, lastModified);
 
+        if (isTruncated() && !isCompleteAt(nodeStore, readRevision,
+                validRevisions, lastRevs)) {
+            // entries not included in this document are needed
+            // -> read the complete document
+            NodeDocument doc = store.find(NODES, getId());
+            if (doc == null) {
+                return null;
+            }
+            return doc.getNodeAtRevision(nodeStore, readRevision, lastModified);
+        }
+
         Revision min = getLiveRevision(nodeStore, readRevision, validRevisions, lastRevs);
         if (min == null) {
             // deleted
@@ -1022,6 +1065,38 @@ public final class NodeDocument extends Document {
         return new DocumentNodeState(nodeStore, path, readRevision, props, hasChildren(), lastRevision);
     }
 
+    /**
+     * Returns {@code true} if the truncated value maps of this document
+     * contain enough entries to read the node state at the given read
+     * revision. This is the case when each truncated value map of the
+     * {@link #DELETED} flag and of properties has a visible value within the
+     * entries present in this document. Entries of other value maps are only
+     * used to resolve the commit value of those entries and are always
+     * present for them.
+     *
+     * @param context the revision context.
+     * @param readRevision the read revision.
+     * @param validRevisions map of revision to commit value considered valid
+     *                       against the given readRevision.
+     * @param lastRevs to keep track of the most recent modification.
+     * @return whether the node state can be read from this document.
+     */
+    private boolean isCompleteAt(@NotNull RevisionContext context,
+                                 @NotNull RevisionVector readRevision,
+                                 @NotNull Map<Revision, String> validRevisions,
+                                 @NotNull LastRevs lastRevs) {
+        for (String key : truncatedKeys) {
+            if (!DELETED.equals(key) && !Utils.isPropertyName(key)) {
+                continue;
+            }
+            if (getLatestValue(context, getLocalMap(key).entrySet(),
+                    readRevision, validRevisions, lastRevs) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Get the earliest (oldest) revision where the node was alive at or before
      * the provided revision, if the node was alive at the given revision.
@@ -1699,7 +1774,7 @@ public final class NodeDocument extends Document {
      * @return the sweep revisions as a {@link RevisionVector}.
      */
     @NotNull
-    RevisionVector getSweepRevisions() {
+    public RevisionVector getSweepRevisions() {
         return new RevisionVector(transform(getLocalMap(SWEEP_REV).values(),
                 new Function<String, Revision>() {
                     @Override
@@ -2235,8 +2310,22 @@ public final class NodeDocument extends Document {
     }
     
     public static NodeDocument fromString(DocumentStore store, String s) {
+        return fromString(store, s, Revision.getCurrentTimestamp());
+    }
+
+    /**
+     * Creates a sealed document from its string representation as returned
+     * by {@link #asString()}.
+     *
+     * @param store the document store.
+     * @param s the string representation of the document.
+     * @param creationTime the time at which the original document object was
+     *          created. See {@link #getCreated()}.
+     * @return the document.
+     */
+    public static NodeDocument fromString(DocumentStore store, String s, long creationTime) {
         JsopTokenizer json = new JsopTokenizer(s);
-        NodeDocument doc = new NodeDocument(store);
+        NodeDocument doc = new NodeDocument(store, creationTime);
         while (true) {
             if (json.matches(JsopReader.END)) {
                 break;
@@ -206,7 +206,8 @@ public final class Path implements CacheValue, Comparable<Path> {
      * Creates a {@code Path} from a {@code String}.
      *
      * @param path the {@code String} to parse.
-     * @return the {@code Path} from the {@code String}.
+     * @return the {@code Path} from the {@code String}. The returned path is
+     *      interned when path interning is enabled.
      * @throws IllegalArgumentException if the {@code path} is the empty
      *      {@code String}.
      */
@@ -220,9 +221,9 @@ public final class Path implements CacheValue, Comparable<Path> {
         for (String name : PathUtils.elements(path)) {
             name = StringCache.get(name);
             if (p == null) {
-                p = new Path(name);
+                p = PathInterner.intern(new Path(name));
             } else {
-                p = new Path(p, StringCache.get(name));
+                p = PathInterner.child(p, name);
             }
         }
         if (p == null) {
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import org.apache.jackrabbit.oak.plugins.document.util.SystemPropertySupplier;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A global interner for {@link Path} instances. Interned paths are only
+ * weakly referenced and are garbage collected when no longer used elsewhere.
+ * <p>
+ * Paths are interned top down, which means the parent of an interned path
+ * is interned as well. The interned paths therefore form a trie, where equal
+ * paths and common ancestors are represented by the same instances. Equal
+ * interned paths are identical, which makes comparing them cheap, and their
+ * hash code is calculated only once.
+ * <p>
+ * Interning is disabled by default and enabled with the system property
+ * {@code oak.documentMK.internPaths}. When disabled, the methods of this
+ * class return the passed or a new path.
+ */
+final class PathInterner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PathInterner.class);
+
+    private static final Interner<Path> INTERNER = Interners.newWeakInterner();
+
+    private static boolean enabled = SystemPropertySupplier.create(
+            "oak.documentMK.internPaths", false).loggingTo(LOG).get();
+
+    private PathInterner() {
+    }
+
+    /**
+     * Returns the interned child path with the given name.
+     *
+     * @param parent the parent path. Should be interned.
+     * @param name the name of the child.
+     * @return the child path.
+     */
+    @NotNull
+    static Path child(@NotNull Path parent, @NotNull String name) {
+        return intern(new Path(parent, name));
+    }
+
+    /**
+     * Returns the canonical instance of the given path. The parent of the
+     * given path should already be interned, otherwise the returned path
+     * may still refer to a parent that is not interned.
+     *
+     * @param path the path to intern.
+     * @return the canonical instance of the path or the passed path if
+     *      interning is disabled.
+     */
+    @NotNull
+    static Path intern(@NotNull Path path) {
+        if (!enabled || path.isRoot()) {
+            return path;
+        }
+        return INTERNER.intern(path);
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled) {
+        PathInterner.enabled = enabled;
+    }
+}
@@ -18,6 +18,9 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.management.openmbean.CompositeData;
 
 import org.apache.jackrabbit.api.stats.TimeSeries;
@@ -56,6 +59,8 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
     static final String COUNTER = "COUNTER";
     static final String FAILURE_COUNTER = "FAILURE";
 
+    static final String PHASE_IDLE = "IDLE";
+
     private final StatisticsProvider provider;
 
     private final MeterStats readDoc;
@@ -76,6 +81,13 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
     private final CounterStats counter;
     private final CounterStats failureCounter;
 
+    // progress of the current or last run
+    private final AtomicLong runReadDoc = new AtomicLong();
+    private final AtomicLong runDeletedDoc = new AtomicLong();
+    private volatile long runStartNanos;
+    private volatile long runEndNanos;
+    private volatile String phase = PHASE_IDLE;
+
     RevisionGCStats(StatisticsProvider provider) {
         this.provider = provider;
 
@@ -103,25 +115,27 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
     @Override
     public void documentRead() {
         readDoc.mark();
+        runReadDoc.incrementAndGet();
     }
 
     @Override
     public void documentsDeleted(long numDocs) {
         deletedDoc.mark(numDocs);
-
+        runDeletedDoc.addAndGet(numDocs);
     }
 
     @Override
     public void leafDocumentsDeleted(long numDocs) {
         deletedDoc.mark(numDocs);
         deletedLeafDoc.mark(numDocs);
+        runDeletedDoc.addAndGet(numDocs);
     }
 
     @Override
     public void splitDocumentsDeleted(long numDocs) {
         deletedDoc.mark(numDocs);
         deletedSplitDoc.mark(numDocs);
-
+        runDeletedDoc.addAndGet(numDocs);
     }
 
     @Override
@@ -137,6 +151,15 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
     @Override
     public void started() {
         counter.inc();
+        runReadDoc.set(0);
+        runDeletedDoc.set(0);
+        runEndNanos = 0;
+        runStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void phaseStarted(String phase) {
+        this.phase = phase;
     }
 
     @Override
@@ -151,6 +174,8 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
         if (!stats.success) {
             failureCounter.inc();
         }
+        runEndNanos = System.nanoTime();
+        phase = PHASE_IDLE;
     }
 
 
@@ -222,6 +247,31 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
                 "Deleted once flags reset by RevisionGC");
     }
 
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public long getRunReadDocCount() {
+        return runReadDoc.get();
+    }
+
+    @Override
+    public long getRunDeletedDocCount() {
+        return runDeletedDoc.get();
+    }
+
+    @Override
+    public double getRunReadDocsPerSecond() {
+        return perSecond(runReadDoc.get());
+    }
+
+    @Override
+    public double getRunDeletedDocsPerSecond() {
+        return perSecond(runDeletedDoc.get());
+    }
+
 
     //----------------------------< internal >----------------------------------
 
@@ -240,6 +290,19 @@ class RevisionGCStats implements RevisionGCStatsCollector, RevisionGCStatsMBean
         return provider.getCounterStats(qualifiedName(name), METRICS_ONLY);
     }
 
+    private double perSecond(long count) {
+        long start = runStartNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = runEndNanos;
+        long elapsed = (end != 0 ? end : System.nanoTime()) - start;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
     private static String qualifiedName(String metricName) {
         return RGC + "." + metricName;
     }
@@ -41,4 +41,12 @@ public interface RevisionGCStatsCollector {
     void started();
 
     void finished(VersionGCStats stats);
+
+    /**
+     * Called when the revision garbage collection enters a phase.
+     *
+     * @param phase the name of the phase.
+     */
+    default void phaseStarted(String phase) {
+    }
 }
@@ -50,4 +50,34 @@ public interface RevisionGCStatsMBean {
     CompositeData getDeletedIntSplitDocHistory();
 
     CompositeData getResetDeletedFlagHistory();
+
+    /**
+     * @return the phase of the currently running revision garbage
+     *          collection or {@code IDLE} if none is running.
+     */
+    String getPhase();
+
+    /**
+     * @return the number of documents read by the current or last revision
+     *          garbage collection.
+     */
+    long getRunReadDocCount();
+
+    /**
+     * @return the number of documents deleted by the current or last
+     *          revision garbage collection.
+     */
+    long getRunDeletedDocCount();
+
+    /**
+     * @return the average number of documents read per second by the current
+     *          or last revision garbage collection.
+     */
+    double getRunReadDocsPerSecond();
+
+    /**
+     * @return the average number of documents deleted per second by the
+     *          current or last revision garbage collection.
+     */
+    double getRunDeletedDocsPerSecond();
 }
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.singletonList;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.JOURNAL;
+
+/**
+ * A diff cache that shares expensive diffs with other cluster nodes through
+ * the {@link Collection#JOURNAL} collection and delegates all other calls to
+ * another diff cache.
+ * <p>
+ * When the delegate does not have the changes for a given revision range and
+ * path, and the loader reports the diff as {@link Loader#isExpensive()
+ * expensive}, this cache first looks for an entry written by any cluster node
+ * (including this one before a restart) and only calls the loader if there
+ * is none. Other diffs are computed without a round trip to the store. Diffs that took at least {@link #MIN_LOAD_MILLIS} to compute and
+ * are not longer than {@link #VALUE_LIMIT} are then written as a new entry.
+ * <p>
+ * An entry has an ID with the prefix {@link #ID_PREFIX} followed by a hash of
+ * the key, which never overlaps with the ID ranges of regular journal
+ * entries. The {@link JournalEntry#MODIFIED} timestamp of an entry is set to
+ * the time it was written, which means the {@link JournalGarbageCollector}
+ * removes entries together with journal entries of the same age.
+ */
+class SharedDiffCache extends DiffCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedDiffCache.class);
+
+    /**
+     * Prefix of the IDs of diff cache entries in the journal collection.
+     */
+    static final String ID_PREFIX = "diff:";
+
+    /**
+     * Only diffs that took at least this long to compute are shared.
+     */
+    static final long MIN_LOAD_MILLIS = SystemPropertySupplier
+            .create("oak.documentMK.sharedDiffCache.minLoadMillis", 100L)
+            .loggingTo(LOG).get();
+
+    /**
+     * Diffs with a length of more than this limit are not shared.
+     */
+    static final int VALUE_LIMIT = SystemPropertySupplier
+            .create("oak.documentMK.sharedDiffCache.limit", 1024 * 1024)
+            .loggingTo(LOG).get();
+
+    /**
+     * The key of an entry, to detect hash collisions.
+     */
+    private static final String KEY = "_k";
+
+    /**
+     * The diff of an entry.
+     */
+    private static final String DIFF = "_d";
+
+    private final DocumentStore store;
+
+    private final Clock clock;
+
+    private final DiffCache delegate;
+
+    SharedDiffCache(@NotNull DocumentStore store,
+                    @NotNull Clock clock,
+                    @NotNull DiffCache delegate) {
+        this.store = checkNotNull(store);
+        this.clock = checkNotNull(clock);
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public String getChanges(@NotNull final RevisionVector from,
+                             @NotNull final RevisionVector to,
+                             @NotNull final Path path,
+                             @Nullable final Loader loader) {
+        if (loader == null) {
+            return delegate.getChanges(from, to, path, null);
+        }
+        return delegate.getChanges(from, to, path, new Loader() {
+            @Override
+            public String call() {
+                String key = asKey(from, to, path);
+                String id = asId(key);
+                if (loader.isExpensive()) {
+                    String diff = read(id, key);
+                    if (diff != null) {
+                        return diff;
+                    }
+                }
+                long start = clock.getTime();
+                String diff = loader.call();
+                long time = clock.getTime() - start;
+                if (time >= MIN_LOAD_MILLIS && diff.length() <= VALUE_LIMIT) {
+                    write(id, key, diff);
+                }
+                return diff;
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Entry newEntry(@NotNull RevisionVector from,
+                          @NotNull RevisionVector to,
+                          boolean local) {
+        return delegate.newEntry(from, to, local);
+    }
+
+    @NotNull
+    @Override
+    public Iterable<CacheStats> getStats() {
+        return delegate.getStats();
+    }
+
+    @Override
+    public void invalidateAll() {
+        delegate.invalidateAll();
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    @Nullable
+    private String read(String id, String key) {
+        try {
+            JournalEntry entry = store.find(JOURNAL, id);
+            if (entry != null && key.equals(entry.get(KEY))) {
+                LOG.debug("Found shared diff for {}", key);
+                return (String) entry.get(DIFF);
+            }
+        } catch (DocumentStoreException e) {
+            LOG.warn("Unable to read shared diff for {}: {}", key, e.getMessage());
+        }
+        return null;
+    }
+
+    private void write(String id, String key, String diff) {
+        UpdateOp op = new UpdateOp(id, true);
+        op.set(JournalEntry.MODIFIED, clock.getTime());
+        op.set(KEY, key);
+        op.set(DIFF, diff);
+        try {
+            if (store.create(JOURNAL, singletonList(op))) {
+                LOG.debug("Shared diff for {}", key);
+            }
+        } catch (DocumentStoreException e) {
+            LOG.warn("Unable to write shared diff for {}: {}", key, e.getMessage());
+        }
+    }
+
+    @NotNull
+    static String asKey(@NotNull RevisionVector from,
+                        @NotNull RevisionVector to,
+                        @NotNull Path path) {
+        return path + "@" + from + ".." + to;
+    }
+
+    @NotNull
+    static String asId(@NotNull String key) {
+        return ID_PREFIX + Hashing.sha256().hashString(key, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Records the progress of a sweep over partitions of the node document ids
+ * in the settings collection. A sweep interrupted by a shutdown or a crash
+ * can then resume with the partitions not yet completed, as long as it is
+ * restarted with the same key. The key identifies the parameters of the
+ * sweep, e.g. its start revision. The checkpoint is removed when the sweep
+ * finished.
+ */
+final class SweepCheckpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SweepCheckpoint.class);
+
+    private static final String KEY_PROPERTY = "key";
+
+    private static final String HEAD_PROPERTY = "head";
+
+    private static final String PARTITIONS_PROPERTY = "partitions";
+
+    private static final String DONE_PREFIX = "done-";
+
+    private final DocumentStore store;
+
+    private final String id;
+
+    private final Revision head;
+
+    private final Set<Integer> done;
+
+    private SweepCheckpoint(DocumentStore store,
+                            String id,
+                            Revision head,
+                            Set<Integer> done) {
+        this.store = store;
+        this.id = id;
+        this.head = head;
+        this.done = done;
+    }
+
+    /**
+     * Opens the checkpoint with the given id. The existing checkpoint is
+     * resumed if it has the same key and number of partitions. Otherwise a
+     * new checkpoint replaces it.
+     *
+     * @param store the document store.
+     * @param id the id of the checkpoint in the settings collection.
+     * @param key identifies the parameters of the sweep.
+     * @param head the head revision of the sweep. Only stored with a new
+     *          checkpoint.
+     * @param numPartitions the number of partitions.
+     * @return the checkpoint.
+     */
+    @NotNull
+    static SweepCheckpoint open(@NotNull DocumentStore store,
+                                @NotNull String id,
+                                @NotNull String key,
+                                @Nullable Revision head,
+                                int numPartitions) {
+        Document doc = store.find(Collection.SETTINGS, id, 0);
+        if (doc != null && key.equals(doc.get(KEY_PROPERTY))
+                && doc.get(PARTITIONS_PROPERTY) instanceof Number
+                && ((Number) doc.get(PARTITIONS_PROPERTY)).intValue() == numPartitions) {
+            Set<Integer> done = new HashSet<>();
+            for (int i = 0; i < numPartitions; i++) {
+                if (Boolean.TRUE.equals(doc.get(DONE_PREFIX + i))) {
+                    done.add(i);
+                }
+            }
+            Object h = doc.get(HEAD_PROPERTY);
+            Revision previousHead = h == null ? null : Revision.fromString(h.toString());
+            LOG.info("Resuming {} with {} of {} partitions done",
+                    id, done.size(), numPartitions);
+            return new SweepCheckpoint(store, id, previousHead, done);
+        }
+        if (doc != null) {
+            store.remove(Collection.SETTINGS, id);
+        }
+        UpdateOp op = new UpdateOp(id, true);
+        op.set(KEY_PROPERTY, key);
+        op.set(PARTITIONS_PROPERTY, numPartitions);
+        if (head != null) {
+            op.set(HEAD_PROPERTY, head.toString());
+        }
+        if (!store.create(Collection.SETTINGS, singletonList(op))) {
+            LOG.warn("Unable to create {}. Progress is not recorded", id);
+        }
+        return new SweepCheckpoint(store, id, head, new HashSet<Integer>());
+    }
+
+    /**
+     * @return the head revision stored with the checkpoint. This is the
+     *          head revision of the previous sweep when it was resumed.
+     */
+    @Nullable
+    Revision getHead() {
+        return head;
+    }
+
+    /**
+     * @return whether a previous sweep was resumed.
+     */
+    boolean isResumed() {
+        return !done.isEmpty();
+    }
+
+    /**
+     * @param partition the index of a partition.
+     * @return whether the partition was completed by a previous sweep.
+     */
+    boolean isDone(int partition) {
+        return done.contains(partition);
+    }
+
+    /**
+     * Records the given partition as completed.
+     *
+     * @param partition the index of the partition.
+     */
+    void done(int partition) {
+        UpdateOp op = new UpdateOp(id, false);
+        op.set(DONE_PREFIX + partition, true);
+        if (store.findAndUpdate(Collection.SETTINGS, op) == null) {
+            LOG.warn("Unable to record completed partition {} on {}", partition, id);
+        }
+    }
+
+    /**
+     * Removes the checkpoint once the sweep finished.
+     */
+    void remove() {
+        store.remove(Collection.SETTINGS, id);
+    }
+}
@@ -20,8 +20,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 import org.apache.jackrabbit.oak.plugins.document.util.MapFactory;
@@ -39,7 +47,9 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Commit.createUpdateOp;
@@ -57,6 +67,14 @@ class UnsavedModifications {
      */
     static final int BACKGROUND_MULTI_UPDATE_LIMIT = 100;
 
+    private static final Predicate<Map.Entry<Path, Revision>> NOT_ROOT =
+            new Predicate<Map.Entry<Path, Revision>>() {
+        @Override
+        public boolean apply(Map.Entry<Path, Revision> input) {
+            return !input.getKey().isRoot();
+        }
+    };
+
     private final ConcurrentMap<Path, Revision> map = MapFactory.getInstance().create();
 
     /**
@@ -146,6 +164,36 @@ class UnsavedModifications {
                                         @NotNull Supplier<Revision> sweepRevision,
                                         @NotNull Snapshot snapshot,
                                         @NotNull Lock lock) {
+        return persist(store, sweepRevision, snapshot, lock, null, 1);
+    }
+
+    /**
+     * Persist the pending changes to _lastRev to the given store. This method
+     * will persist a snapshot of the pending revisions and current sweep
+     * revision by acquiring the passed lock for a short period of time.
+     * <p>
+     * If an {@code executor} is passed, the documents on the same depth are
+     * updated with concurrent batches, with at most {@code maxInFlight}
+     * batches in flight. Documents are still updated depth by depth, deepest
+     * first, and the root document is updated last.
+     *
+     * @param store the document store.
+     * @param sweepRevision supplier for the current sweep revision.
+     * @param snapshot callback when the snapshot of the pending changes is
+     *                 acquired.
+     * @param lock the lock to acquire to get a consistent snapshot of the
+     *             revisions to write back.
+     * @param executor the executor for concurrent batches or {@code null}
+     *                 to update all documents on the calling thread.
+     * @param maxInFlight the maximum number of concurrent batches.
+     * @return stats about the write operation.
+     */
+    public BackgroundWriteStats persist(@NotNull DocumentStore store,
+                                        @NotNull Supplier<Revision> sweepRevision,
+                                        @NotNull Snapshot snapshot,
+                                        @NotNull Lock lock,
+                                        @Nullable Executor executor,
+                                        int maxInFlight) {
         BackgroundWriteStats stats = new BackgroundWriteStats();
         if (map.size() == 0) {
             return stats;
@@ -154,6 +202,7 @@ class UnsavedModifications {
         checkNotNull(sweepRevision);
         checkNotNull(snapshot);
         checkNotNull(lock);
+        checkArgument(maxInFlight > 0);
 
         Stopwatch sw = Stopwatch.createStarted();
         // get a copy of the map while holding the lock
@@ -171,31 +220,31 @@ class UnsavedModifications {
             lock.unlock();
         }
         stats.num = pending.size();
-        List<UpdateOp> updates = Lists.newArrayList();
-        Map<Path, Revision> pathToRevision = Maps.newHashMap();
-        for (Iterable<Map.Entry<Path, Revision>> batch : Iterables.partition(
-                pending.entrySet(), BACKGROUND_MULTI_UPDATE_LIMIT)) {
-            for (Map.Entry<Path, Revision> entry : batch) {
-                Path p = entry.getKey();
-                Revision r = entry.getValue();
-                if (p.isRoot()) {
-                    // update root individually at the end
-                    continue;
+        if (executor == null) {
+            for (Iterable<Map.Entry<Path, Revision>> batch : Iterables.partition(
+                    pending.entrySet(), BACKGROUND_MULTI_UPDATE_LIMIT)) {
+                // update root individually at the end
+                if (update(store, Iterables.filter(batch, NOT_ROOT))) {
+                    stats.calls++;
                 }
-                updates.add(newUpdateOp(p, r));
-                pathToRevision.put(entry.getKey(), r);
             }
-            if (!updates.isEmpty()) {
-                store.createOrUpdate(NODES, updates);
-                stats.calls++;
-                for (Map.Entry<Path, Revision> entry : pathToRevision.entrySet()) {
-                    map.remove(entry.getKey(), entry.getValue());
-                    LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
+            stats.writeParallelism = stats.calls > 0 ? 1 : 0;
+        } else {
+            // pending is sorted by depth, deepest first. update the
+            // documents on one level concurrently before moving on to
+            // their parents
+            List<Map.Entry<Path, Revision>> level = Lists.newArrayList();
+            for (Map.Entry<Path, Revision> entry : pending.entrySet()) {
+                if (!level.isEmpty() && level.get(0).getKey().getDepth()
+                        != entry.getKey().getDepth()) {
+                    updateConcurrently(store, level, executor, maxInFlight, stats);
+                    level.clear();
+                }
+                if (!entry.getKey().isRoot()) {
+                    level.add(entry);
                 }
-                // clean up for next batch
-                updates.clear();
-                pathToRevision.clear();
             }
+            updateConcurrently(store, level, executor, maxInFlight, stats);
         }
         // finally update remaining root document
         Revision rootRev = pending.get(Path.ROOT);
@@ -234,6 +283,112 @@ class UnsavedModifications {
         return map.toString();
     }
 
+    /**
+     * Updates the _lastRev of the documents in the given batch and removes
+     * the entries from the pending modifications.
+     *
+     * @param store the document store.
+     * @param batch the paths and revisions to update.
+     * @return {@code true} if the document store was called, {@code false}
+     *          if the batch is empty.
+     */
+    private boolean update(DocumentStore store,
+                           Iterable<Map.Entry<Path, Revision>> batch) {
+        List<UpdateOp> updates = Lists.newArrayList();
+        for (Map.Entry<Path, Revision> entry : batch) {
+            updates.add(newUpdateOp(entry.getKey(), entry.getValue()));
+        }
+        if (updates.isEmpty()) {
+            return false;
+        }
+        store.createOrUpdate(NODES, updates);
+        for (Map.Entry<Path, Revision> entry : batch) {
+            map.remove(entry.getKey(), entry.getValue());
+            LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
+        }
+        return true;
+    }
+
+    /**
+     * Updates the _lastRev of the documents in the given list with
+     * concurrent batches and waits until all batches are done. No more
+     * batches are started once a batch failed.
+     *
+     * @throws DocumentStoreException if a batch failed.
+     */
+    private void updateConcurrently(final DocumentStore store,
+                                    List<Map.Entry<Path, Revision>> entries,
+                                    Executor executor,
+                                    int maxInFlight,
+                                    BackgroundWriteStats stats)
+            throws DocumentStoreException {
+        List<List<Map.Entry<Path, Revision>>> batches =
+                Lists.partition(entries, BACKGROUND_MULTI_UPDATE_LIMIT);
+        if (batches.isEmpty()) {
+            return;
+        }
+        if (batches.size() == 1) {
+            update(store, batches.get(0));
+            stats.calls++;
+            stats.writeParallelism = Math.max(stats.writeParallelism, 1);
+            return;
+        }
+        final Semaphore permits = new Semaphore(maxInFlight);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<FutureTask<Void>> tasks = Lists.newArrayList();
+        for (final List<Map.Entry<Path, Revision>> batch : batches) {
+            permits.acquireUninterruptibly();
+            if (failed.get()) {
+                permits.release();
+                break;
+            }
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int n = inFlight.incrementAndGet();
+                    try {
+                        int max;
+                        while ((max = maxConcurrent.get()) < n
+                                && !maxConcurrent.compareAndSet(max, n)) {
+                            // retry
+                        }
+                        update(store, batch);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        inFlight.decrementAndGet();
+                        permits.release();
+                    }
+                    return null;
+                }
+            });
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            tasks.add(task);
+            stats.calls++;
+        }
+        DocumentStoreException failure = null;
+        for (FutureTask<Void> task : tasks) {
+            try {
+                getUninterruptibly(task);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = DocumentStoreException.convert(e.getCause());
+                }
+            }
+        }
+        stats.writeParallelism = Math.max(stats.writeParallelism, maxConcurrent.get());
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     private static UpdateOp newUpdateOp(Path path, Revision r) {
         UpdateOp updateOp = createUpdateOp(path, r, false);
         NodeDocument.setLastRev(updateOp, r);
@@ -29,20 +29,27 @@ public class VersionGCOptions {
     public final int maxIterations;
     public final long maxDurationMs;
     public final double delayFactor;
+    public final int parallelism;
+    public final double rateLimit;
+    public final boolean continuous;
 
     public VersionGCOptions() {
         this(100000, 100000, TimeUnit.MINUTES.toMillis(1),
-                0, TimeUnit.HOURS.toMillis(0), 0);
+                0, TimeUnit.HOURS.toMillis(0), 0, 1, 0, false);
     }
 
     private VersionGCOptions(int overflow, long collectLimit, long precisionMs,
-                             int maxIterations, long maxDurationMs, double delayFactor) {
+                             int maxIterations, long maxDurationMs, double delayFactor,
+                             int parallelism, double rateLimit, boolean continuous) {
         this.overflowToDiskThreshold = overflow;
         this.collectLimit = collectLimit;
         this.precisionMs = precisionMs;
         this.maxIterations = maxIterations;
         this.maxDurationMs = maxDurationMs;
         this.delayFactor = delayFactor;
+        this.parallelism = parallelism;
+        this.rateLimit = rateLimit;
+        this.continuous = continuous;
     }
 
     /**
@@ -52,7 +59,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withOverflowToDiskThreshold(int overflowToDiskThreshold) {
         return new VersionGCOptions(overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
     /**
@@ -65,7 +73,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withCollectLimit(long limit) {
         return new VersionGCOptions(this.overflowToDiskThreshold, limit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
     /**
@@ -79,7 +88,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withPrecisionMs(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor);
+                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
     /**
@@ -93,7 +103,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxDuration(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor);
+                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
     /**
@@ -106,7 +117,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxIterations(int max) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, max, this.delayFactor);
+                this.precisionMs, this.maxIterations, max, this.delayFactor,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
     /**
@@ -122,8 +134,62 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withDelayFactor(double f) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, f);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, f,
+                this.parallelism, this.rateLimit, this.continuous);
     }
 
-}
+    /**
+     * Set the number of threads used to collect and delete documents of
+     * deleted nodes. With a value greater than 1, the time interval of a run
+     * is split into buckets of {@code _modified} values, which are read and
+     * checked concurrently, and documents are deleted with concurrent
+     * batches. The default is 1, e.g. a single thread does all the work.
+     *
+     * @param parallelism the number of threads, must be at least 1
+     */
+    public VersionGCOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1 (was " + parallelism + ")");
+        }
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                parallelism, this.rateLimit, this.continuous);
+    }
+
+    /**
+     * Set the maximum number of documents per second the garbage collector
+     * deletes or updates when it removes documents of deleted nodes. This
+     * rate limits the writes to the database independent of the
+     * {@link #withParallelism(int) parallelism}. 0, e.g. no limit, is the
+     * default.
+     *
+     * @param docsPerSecond the maximum number of documents per second
+     */
+    public VersionGCOptions withRateLimit(double docsPerSecond) {
+        if (docsPerSecond < 0) {
+            throw new IllegalArgumentException("rate limit must be >= 0 (was " + docsPerSecond + ")");
+        }
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, docsPerSecond, this.continuous);
+    }
 
+    /**
+     * Enable or disable the continuous mode. In continuous mode the garbage
+     * collector trails the sweep revisions of the active cluster nodes and
+     * advances in increments of at most {@link #precisionMs}, repeating them
+     * until it caught up or {@link #maxDurationMs} is reached. Documents of
+     * deleted nodes are found with the paths recorded in the journal instead
+     * of a query on the {@code _deletedOnce} index, as long as the journal
+     * still covers the time interval of an increment. The mode is meant for
+     * a collector that is called often, e.g. every few minutes, combined with
+     * a {@link #withRateLimit(double) rate limit}. Disabled by default.
+     *
+     * @param continuous whether to run in continuous mode
+     */
+    public VersionGCOptions withContinuous(boolean continuous) {
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit, continuous);
+    }
+}
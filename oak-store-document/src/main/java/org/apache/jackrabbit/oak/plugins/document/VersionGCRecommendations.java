@@ -102,7 +102,13 @@ public class VersionGCRecommendations {
         scope = scope.notLaterThan(keep.fromMs);
 
         suggestedIntervalMs = settings.get(VersionGarbageCollector.SETTINGS_COLLECTION_REC_INTERVAL_PROP);
-        if (suggestedIntervalMs > 0) {
+        if (options.continuous) {
+            // advance in small increments, without counting candidates
+            if (options.precisionMs < scope.getDurationMs()) {
+                scope = scope.startAndDuration(options.precisionMs);
+                log.debug("continuous mode, scope now {}", scope);
+            }
+        } else if (suggestedIntervalMs > 0) {
             suggestedIntervalMs = Math.max(suggestedIntervalMs, options.precisionMs);
             if (suggestedIntervalMs < scope.getDurationMs()) {
                 scope = scope.startAndDuration(suggestedIntervalMs);
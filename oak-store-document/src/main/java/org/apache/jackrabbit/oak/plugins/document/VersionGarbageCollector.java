@@ -27,8 +27,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Function;
@@ -40,6 +47,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
 
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
@@ -74,6 +82,9 @@ public class VersionGarbageCollector {
     private static final int DELETE_BATCH_SIZE = 450;
     private static final int UPDATE_BATCH_SIZE = 450;
     private static final int PROGRESS_BATCH_SIZE = 10000;
+    // number of _modified buckets per thread when documents are collected
+    // concurrently, which balances the load of uneven buckets
+    private static final int BUCKETS_PER_THREAD = 4;
     private static final String STATUS_IDLE = "IDLE";
     private static final String STATUS_INITIALIZING = "INITIALIZING";
     private static final Logger log = LoggerFactory.getLogger(VersionGarbageCollector.class);
@@ -372,10 +383,13 @@ public class VersionGarbageCollector {
         private final List<GCPhase> phases = Lists.newArrayList();
         private final Map<GCPhase, Stopwatch> watches = Maps.newHashMap();
         private final AtomicBoolean canceled;
+        private final RevisionGCStatsCollector collector;
 
-        GCPhases(AtomicBoolean canceled, VersionGCStats stats, GCMonitor monitor) {
+        GCPhases(AtomicBoolean canceled, VersionGCStats stats, GCMonitor monitor,
+                 RevisionGCStatsCollector collector) {
             this.stats = stats;
             this.monitor = monitor;
+            this.collector = collector;
             this.elapsed = Stopwatch.createStarted();
             this.watches.put(GCPhase.NONE, Stopwatch.createStarted());
             this.watches.put(GCPhase.COLLECTING, stats.collectDeletedDocs);
@@ -448,6 +462,7 @@ public class VersionGarbageCollector {
             GCPhase p = current();
             if (p != GCPhase.NONE) {
                 monitor.updateStatus(p.name());
+                collector.phaseStarted(p.name());
             }
         }
     }
@@ -459,6 +474,7 @@ public class VersionGarbageCollector {
         private final AtomicBoolean cancel = new AtomicBoolean();
         private final GCMonitor monitor;
         private final Supplier<String> status;
+        private JournalDeletedDocsReader journal;
 
         GCJob(long maxRevisionAgeMillis,
               VersionGCOptions options,
@@ -491,9 +507,15 @@ public class VersionGarbageCollector {
         private VersionGCStats gc(long maxRevisionAgeInMillis) throws IOException {
             VersionGCStats stats = new VersionGCStats();
             stats.active.start();
+            if (options.continuous) {
+                maxRevisionAgeInMillis = trailSweepRevisions(maxRevisionAgeInMillis);
+                journal = new JournalDeletedDocsReader(ds, nodeStore.getClock(),
+                        nodeStore.getClusterId(),
+                        nodeStore.getJournalGarbageCollector().getTailRevision());
+            }
             VersionGCRecommendations rec = new VersionGCRecommendations(maxRevisionAgeInMillis, nodeStore.getCheckpoints(),
                     nodeStore.getClock(), versionStore, options, gcMonitor);
-            GCPhases phases = new GCPhases(cancel, stats, gcMonitor);
+            GCPhases phases = new GCPhases(cancel, stats, gcMonitor, gcStats);
             try {
                 if (rec.ignoreDueToCheckPoint) {
                     phases.stats.ignoredGCDueToCheckPoint = true;
@@ -521,6 +543,40 @@ public class VersionGarbageCollector {
             return stats;
         }
 
+        /**
+         * Returns the maximum revision age to use in continuous mode. The
+         * age is raised if needed so that the collection does not go beyond
+         * the oldest sweep revision of the active cluster nodes. All changes
+         * before a sweep revision are committed and written to the journal.
+         */
+        private long trailSweepRevisions(long maxRevisionAgeInMillis) {
+            RevisionVector sweepRevisions = nodeStore.getSweepRevisions();
+            long oldest = Long.MAX_VALUE;
+            for (ClusterNodeInfoDocument info : ClusterNodeInfoDocument.all(ds)) {
+                Revision r = sweepRevisions.getRevision(info.getClusterId());
+                if (info.isActive() && r != null) {
+                    oldest = Math.min(oldest, r.getTimestamp());
+                }
+            }
+            if (oldest == Long.MAX_VALUE) {
+                return maxRevisionAgeInMillis;
+            }
+            return Math.max(maxRevisionAgeInMillis, nodeStore.getClock().getTime() - oldest);
+        }
+
+        /**
+         * Returns the documents of possibly deleted nodes from the journal
+         * in continuous mode when it is complete for the time interval and from the
+         * {@link VersionGCSupport} otherwise.
+         */
+        private Iterable<NodeDocument> getPossiblyDeletedDocs(long fromMs, long toMs)
+                throws IOException {
+            if (journal != null && journal.isComplete(fromMs)) {
+                return journal.getPossiblyDeletedDocs(fromMs, toMs);
+            }
+            return versionStore.getPossiblyDeletedDocs(fromMs, toMs);
+        }
+
         private void collectSplitDocuments(GCPhases phases,
                                            RevisionVector sweepRevisions,
                                            VersionGCRecommendations rec) {
@@ -539,10 +595,16 @@ public class VersionGarbageCollector {
                                              VersionGCRecommendations rec)
                 throws IOException, LimitExceededException {
             int docsTraversed = 0;
-            DeletedDocsGC gc = new DeletedDocsGC(headRevision, cancel, options, monitor);
+            ExecutorService executor = options.parallelism > 1 ? createExecutor(options.parallelism) : null;
+            DeletedDocsGC gc = new DeletedDocsGC(headRevision, cancel, options, monitor, executor);
             try {
-                if (phases.start(GCPhase.COLLECTING)) {
-                    Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(rec.scope.fromMs, rec.scope.toMs);
+                if (executor != null) {
+                    if (phases.start(GCPhase.COLLECTING)) {
+                        collectDeletedDocumentsConcurrently(gc, executor, phases.stats, rec);
+                        phases.stop(GCPhase.COLLECTING);
+                    }
+                } else if (phases.start(GCPhase.COLLECTING)) {
+                    Iterable<NodeDocument> itr = getPossiblyDeletedDocs(rec.scope.fromMs, rec.scope.toMs);
                     try {
                         for (NodeDocument doc : itr) {
                             // continue with GC?
@@ -607,12 +669,160 @@ public class VersionGarbageCollector {
                 }
             } finally {
                 gc.close();
+                if (executor != null) {
+                    executor.shutdown();
+                }
             }
         }
+
+        /**
+         * Collects the documents of deleted nodes with multiple threads. When
+         * the journal is complete, it is read once for the time interval of
+         * the recommendation and the threads share the documents. Otherwise
+         * the time interval is split into buckets, which are read and checked
+         * concurrently. Batches of leaf documents and
+         * resurrected documents are processed by the thread that filled them,
+         * without submitting further tasks to the executor. The time spent is accounted to the {@link GCPhase#COLLECTING}
+         * phase.
+         */
+        private void collectDeletedDocumentsConcurrently(final DeletedDocsGC gc,
+                                                         ExecutorService executor,
+                                                         final VersionGCStats stats,
+                                                         final VersionGCRecommendations rec)
+                throws IOException, LimitExceededException {
+            final AtomicInteger docsTraversed = new AtomicInteger();
+            final AtomicBoolean limitExceeded = new AtomicBoolean();
+            final AtomicBoolean failed = new AtomicBoolean();
+            final Stopwatch sw = Stopwatch.createStarted();
+            final Iterable<NodeDocument> journalDocs = journal != null && journal.isComplete(rec.scope.fromMs)
+                    ? journal.getPossiblyDeletedDocs(rec.scope.fromMs, rec.scope.toMs) : null;
+            try {
+                List<TimeInterval> buckets;
+                if (journalDocs != null) {
+                    // the journal is read once and all threads
+                    // take the documents from the same iterable
+                    buckets = Collections.nCopies(options.parallelism, rec.scope);
+                    monitor.info("Collecting with {} threads from journal", options.parallelism);
+                } else {
+                    buckets = split(rec.scope, options.parallelism * BUCKETS_PER_THREAD);
+                    monitor.info("Collecting with {} threads from {} buckets", options.parallelism, buckets.size());
+                }
+                List<Future<Void>> futures = Lists.newArrayList();
+                for (final TimeInterval bucket : buckets) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            if (cancel.get() || limitExceeded.get() || failed.get()) {
+                                return null;
+                            }
+                            Iterable<NodeDocument> itr = journalDocs != null
+                                    ? journalDocs : getPossiblyDeletedDocs(bucket.fromMs, bucket.toMs);
+                            try {
+                                for (NodeDocument doc : itr) {
+                                    if (cancel.get() || limitExceeded.get() || failed.get()) {
+                                        break;
+                                    }
+                                    int n = docsTraversed.incrementAndGet();
+                                    if (n % PROGRESS_BATCH_SIZE == 0) {
+                                        monitor.info("Iterated through {} documents so far. {} found to be deleted",
+                                                n, gc.getNumDocuments());
+                                    }
+                                    gc.possiblyDeleted(doc);
+                                    if (rec.maxCollect > 0 && gc.getNumDocIdsToDelete() > rec.maxCollect) {
+                                        limitExceeded.set(true);
+                                        break;
+                                    }
+                                    if (gc.hasLeafBatch()) {
+                                        // delete inline, this thread must not
+                                        // wait for tasks on its own executor
+                                        gc.removeLeafDocuments(stats, null);
+                                    }
+                                    if (gc.hasRescurrectUpdateBatch()) {
+                                        gc.updateResurrectedDocuments(stats);
+                                    }
+                                }
+                            } catch (Exception e) {
+                                failed.set(true);
+                                throw e;
+                            } finally {
+                                if (itr != journalDocs) {
+                                    Utils.closeIfCloseable(itr);
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                Throwable failure = null;
+                for (Future<Void> f : futures) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    } catch (InterruptedException e) {
+                        failed.set(true);
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while collecting deleted documents", e);
+                    }
+                }
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure != null) {
+                    throw new IOException(failure);
+                }
+                if (limitExceeded.get()) {
+                    throw new LimitExceededException();
+                }
+                long elapsed = sw.elapsed(TimeUnit.MILLISECONDS);
+                monitor.info("Iterated through {} documents in {} ms ({} documents/s). {} found to be deleted",
+                        docsTraversed.get(), elapsed, elapsed == 0 ? docsTraversed.get() : docsTraversed.get() * 1000L / elapsed,
+                        gc.getNumDocuments());
+            } finally {
+                Utils.closeIfCloseable(journalDocs);
+            }
+        }
+    }
+
+    /**
+     * Splits the given time interval into at most {@code n} contiguous
+     * intervals of about the same duration.
+     */
+    @NotNull
+    static List<TimeInterval> split(@NotNull TimeInterval interval, int n) {
+        List<TimeInterval> result = Lists.newArrayList();
+        long duration = interval.getDurationMs();
+        long step = Math.max(1, (duration + n - 1) / n);
+        for (long from = interval.fromMs; from < interval.toMs; from += step) {
+            result.add(new TimeInterval(from, Math.min(interval.toMs, from + step)));
+        }
+        if (result.isEmpty()) {
+            result.add(interval);
+        }
+        return result;
+    }
+
+    @NotNull
+    private static ExecutorService createExecutor(int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "VersionGarbageCollector-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
     /**
-     * A helper class to remove document for deleted nodes.
+     * A helper class to remove document for deleted nodes. The methods used
+     * while documents are collected may be called concurrently when an
+     * executor is passed to the constructor, which is then also used to
+     * delete batches of documents concurrently.
      */
     private class DeletedDocsGC implements Closeable {
 
@@ -622,21 +832,24 @@ public class VersionGarbageCollector {
         private final List<String> resurrectedIds = Lists.newArrayList();
         private final StringSort docIdsToDelete;
         private final StringSort prevDocIdsToDelete;
-        private final Set<String> exclude = Sets.newHashSet();
+        private final Set<String> exclude = Sets.newConcurrentHashSet();
         private boolean sorted = false;
-        private final Stopwatch timer;
         private final VersionGCOptions options;
         private final GCMonitor monitor;
+        private final ExecutorService executor;
+        private final RateLimiter rateLimiter;
 
         public DeletedDocsGC(@NotNull RevisionVector headRevision,
                              @NotNull AtomicBoolean cancel,
                              @NotNull VersionGCOptions options,
-                             @NotNull GCMonitor monitor) {
+                             @NotNull GCMonitor monitor,
+                             @Nullable ExecutorService executor) {
             this.headRevision = checkNotNull(headRevision);
             this.cancel = checkNotNull(cancel);
-            this.timer = Stopwatch.createUnstarted();
             this.options = options;
             this.monitor = monitor;
+            this.executor = executor;
+            this.rateLimiter = options.rateLimit > 0 ? RateLimiter.create(options.rateLimit) : null;
             this.docIdsToDelete = newStringSort(options);
             this.prevDocIdsToDelete = newStringSort(options);
         }
@@ -646,10 +859,18 @@ public class VersionGarbageCollector {
          * identified as garbage via {@link #possiblyDeleted(NodeDocument)}.
          * This number does not include the previous documents.
          */
-        long getNumDocuments() {
+        synchronized long getNumDocuments() {
             return docIdsToDelete.getSize() + leafDocIdsToDelete.size();
         }
 
+        /**
+         * @return the number of non-leaf documents gathered so far that have
+         * been identified as garbage.
+         */
+        synchronized long getNumDocIdsToDelete() {
+            return docIdsToDelete.getSize();
+        }
+
         /**
          * Informs the GC that the given document is possibly deleted. The
          * implementation will check if the node still exists at the head
@@ -679,8 +900,11 @@ public class VersionGarbageCollector {
                 if (!doc.hasChildren() && !previousDocs.hasNext()) {
                     addLeafDocument(id);
                 } else {
-                    addDocument(id);
-                    addPreviousDocuments(previousDocs);
+                    List<String> previousIds = Lists.newArrayList(previousDocs);
+                    synchronized (this) {
+                        addDocument(id);
+                        addPreviousDocuments(previousIds.iterator());
+                    }
                 }
                 return true;
             } else {
@@ -700,34 +924,60 @@ public class VersionGarbageCollector {
         void removeDocuments(VersionGCStats stats) throws IOException {
             removeLeafDocuments(stats);
             stats.deletedDocGCCount += removeDeletedDocuments(
-                    getDocIdsToDelete(), getDocIdsToDeleteSize(), false, "(other)");
+                    getDocIdsToDelete(), getDocIdsToDeleteSize(), false, "(other)", executor);
             // FIXME: this is incorrect because that method also removes intermediate docs
             stats.splitDocGCCount += removeDeletedPreviousDocuments();
         }
 
-        boolean hasLeafBatch() {
+        synchronized boolean hasLeafBatch() {
             return leafDocIdsToDelete.size() >= DELETE_BATCH_SIZE;
         }
 
-        boolean hasRescurrectUpdateBatch() {
+        synchronized boolean hasRescurrectUpdateBatch() {
             return resurrectedIds.size() >= UPDATE_BATCH_SIZE;
         }
 
         void removeLeafDocuments(VersionGCStats stats) throws IOException {
+            removeLeafDocuments(stats, executor);
+        }
+
+        /**
+         * Removes the leaf documents collected so far.
+         *
+         * @param stats to track the number of removed documents.
+         * @param executor the executor to delete batches concurrently or
+         *          {@code null} to delete them on the calling thread. Must
+         *          be {@code null} when called by a task of the executor.
+         */
+        void removeLeafDocuments(VersionGCStats stats,
+                                 @Nullable ExecutorService executor)
+                throws IOException {
+            List<String> leafDocIds;
+            synchronized (this) {
+                leafDocIds = Lists.newArrayList(leafDocIdsToDelete);
+                leafDocIdsToDelete.clear();
+            }
             int removeCount = removeDeletedDocuments(
-                    getLeafDocIdsToDelete(), getLeafDocIdsToDeleteSize(), true, "(leaf)");
-            leafDocIdsToDelete.clear();
-            stats.deletedLeafDocGCCount += removeCount;
-            stats.deletedDocGCCount += removeCount;
+                    leafDocIds.iterator(), leafDocIds.size(), true, "(leaf)", executor);
+            synchronized (stats) {
+                stats.deletedLeafDocGCCount += removeCount;
+                stats.deletedDocGCCount += removeCount;
+            }
         }
 
         void updateResurrectedDocuments(VersionGCStats stats) throws IOException {
-            if (resurrectedIds.isEmpty()) {
-                return;
+            List<String> ids;
+            synchronized (this) {
+                if (resurrectedIds.isEmpty()) {
+                    return;
+                }
+                ids = Lists.newArrayList(resurrectedIds);
+                resurrectedIds.clear();
+            }
+            int updateCount = resetDeletedOnce(ids);
+            synchronized (stats) {
+                stats.updateResurrectedGCCount += updateCount;
             }
-            int updateCount = resetDeletedOnce(resurrectedIds);
-            resurrectedIds.clear();
-            stats.updateResurrectedGCCount += updateCount;
         }
 
         public void close() {
@@ -791,11 +1041,11 @@ public class VersionGarbageCollector {
             docIdsToDelete.add(id);
         }
 
-        private void addLeafDocument(String id) throws IOException {
+        private synchronized void addLeafDocument(String id) throws IOException {
             leafDocIdsToDelete.add(id);
         }
 
-        private void addNonDeletedDocument(String id) throws IOException {
+        private synchronized void addNonDeletedDocument(String id) throws IOException {
             resurrectedIds.add(id);
         }
 
@@ -818,14 +1068,6 @@ public class VersionGarbageCollector {
             return docIdsToDelete.getSize();
         }
 
-        private Iterator<String> getLeafDocIdsToDelete() throws IOException {
-            return leafDocIdsToDelete.iterator();
-        }
-
-        private long getLeafDocIdsToDeleteSize() {
-            return leafDocIdsToDelete.size();
-        }
-
         private void concurrentModification(NodeDocument doc) {
             Iterator<NodeDocument> it = doc.getAllPreviousDocs();
             while (it.hasNext()) {
@@ -846,81 +1088,142 @@ public class VersionGarbageCollector {
 
         private int removeDeletedDocuments(Iterator<String> docIdsToDelete,
                                            long numDocuments,
-                                           boolean leaves,
-                                           String label) throws IOException {
+                                           final boolean leaves,
+                                           String label,
+                                           @Nullable ExecutorService executor)
+                throws IOException {
             if (numDocuments == 0) {
                 return 0;
             }
             monitor.info("Proceeding to delete [{}] documents [{}]", numDocuments, label);
 
             Iterator<List<String>> idListItr = partition(docIdsToDelete, DELETE_BATCH_SIZE);
-            int deletedCount = 0;
+            final AtomicInteger deletedCount = new AtomicInteger();
+            final AtomicInteger recreatedCount = new AtomicInteger();
             int lastLoggedCount = 0;
-            int recreatedCount = 0;
             while (idListItr.hasNext() && !cancel.get()) {
-                Map<String, Long> deletionBatch = Maps.newLinkedHashMap();
-                for (String s : idListItr.next()) {
-                    Map.Entry<String, Long> parsed;
-                    try {
-                        parsed = parseEntry(s);
-                    } catch (IllegalArgumentException e) {
-                        monitor.warn("Invalid _modified suffix for {}", s);
-                        continue;
+                // with an executor, a number of batches equal to the
+                // parallelism is deleted concurrently
+                List<Map<String, Long>> batches = Lists.newArrayList();
+                do {
+                    Map<String, Long> deletionBatch = Maps.newLinkedHashMap();
+                    for (String s : idListItr.next()) {
+                        Map.Entry<String, Long> parsed;
+                        try {
+                            parsed = parseEntry(s);
+                        } catch (IllegalArgumentException e) {
+                            monitor.warn("Invalid _modified suffix for {}", s);
+                            continue;
+                        }
+                        deletionBatch.put(parsed.getKey(), parsed.getValue());
+                    }
+                    batches.add(deletionBatch);
+                } while (executor != null && batches.size() < options.parallelism && idListItr.hasNext());
+
+                if (batches.size() == 1) {
+                    removeBatch(batches.get(0), leaves, deletedCount, recreatedCount);
+                } else {
+                    List<Future<Void>> futures = Lists.newArrayList();
+                    for (final Map<String, Long> deletionBatch : batches) {
+                        futures.add(executor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                removeBatch(deletionBatch, leaves, deletedCount, recreatedCount);
+                                return null;
+                            }
+                        }));
                     }
-                    deletionBatch.put(parsed.getKey(), parsed.getValue());
+                    waitFor(futures);
                 }
 
-                if (log.isTraceEnabled()) {
-                    StringBuilder sb = new StringBuilder("Performing batch deletion of documents with following ids. \n");
-                    Joiner.on(LINE_SEPARATOR.value()).appendTo(sb, deletionBatch.keySet());
-                    log.trace(sb.toString());
+                int processed = deletedCount.get() + recreatedCount.get();
+                if (processed - lastLoggedCount >= PROGRESS_BATCH_SIZE) {
+                    lastLoggedCount = processed;
+                    double progress = lastLoggedCount * 1.0 / getNumDocuments() * 100;
+                    String msg = String.format("Deleted %d (%1.2f%%) documents so far", deletedCount.get(), progress);
+                    monitor.info(msg);
                 }
+            }
+            return deletedCount.get();
+        }
 
-                timer.reset().start();
-                try {
-                    int nRemoved = ds.remove(NODES, deletionBatch);
-
-                    if (nRemoved < deletionBatch.size()) {
-                        // some nodes were re-created while GC was running
-                        // find the document that still exist
-                        for (String id : deletionBatch.keySet()) {
-                            NodeDocument d = ds.find(NODES, id);
-                            if (d != null) {
-                                concurrentModification(d);
-                            }
+        private void removeBatch(Map<String, Long> deletionBatch,
+                                 boolean leaves,
+                                 AtomicInteger deletedCount,
+                                 AtomicInteger recreatedCount) {
+            if (deletionBatch.isEmpty()) {
+                return;
+            }
+            if (log.isTraceEnabled()) {
+                StringBuilder sb = new StringBuilder("Performing batch deletion of documents with following ids. \n");
+                Joiner.on(LINE_SEPARATOR.value()).appendTo(sb, deletionBatch.keySet());
+                log.trace(sb.toString());
+            }
+
+            acquire(deletionBatch.size());
+            Stopwatch timer = Stopwatch.createStarted();
+            try {
+                int nRemoved = ds.remove(NODES, deletionBatch);
+
+                if (nRemoved < deletionBatch.size()) {
+                    // some nodes were re-created while GC was running
+                    // find the document that still exist
+                    for (String id : deletionBatch.keySet()) {
+                        NodeDocument d = ds.find(NODES, id);
+                        if (d != null) {
+                            concurrentModification(d);
                         }
-                        recreatedCount += (deletionBatch.size() - nRemoved);
                     }
+                    recreatedCount.addAndGet(deletionBatch.size() - nRemoved);
+                }
 
-                    deletedCount += nRemoved;
-                    log.debug("Deleted [{}] documents so far", deletedCount);
-                    if (leaves) {
-                        gcStats.leafDocumentsDeleted(deletedCount);
-                    } else {
-                        gcStats.documentsDeleted(deletedCount);
-                    }
+                log.debug("Deleted [{}] documents so far", deletedCount.addAndGet(nRemoved));
+                if (leaves) {
+                    gcStats.leafDocumentsDeleted(nRemoved);
+                } else {
+                    gcStats.documentsDeleted(nRemoved);
+                }
+            } finally {
+                delayOnModifications(timer.stop().elapsed(TimeUnit.MILLISECONDS));
+            }
+        }
 
-                    if (deletedCount + recreatedCount - lastLoggedCount >= PROGRESS_BATCH_SIZE) {
-                        lastLoggedCount = deletedCount + recreatedCount;
-                        double progress = lastLoggedCount * 1.0 / getNumDocuments() * 100;
-                        String msg = String.format("Deleted %d (%1.2f%%) documents so far", deletedCount, progress);
-                        monitor.info(msg);
+        private void waitFor(List<Future<Void>> futures) throws IOException {
+            Throwable failure = null;
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
                     }
-                } finally {
-                    delayOnModifications(timer.stop().elapsed(TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while deleting documents", e);
                 }
             }
-            return deletedCount;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+
+        private void acquire(int permits) {
+            if (rateLimiter != null && permits > 0) {
+                rateLimiter.acquire(permits);
+            }
         }
 
         private int resetDeletedOnce(List<String> resurrectedDocuments) throws IOException {
             monitor.info("Proceeding to reset [{}] _deletedOnce flags", resurrectedDocuments.size());
 
             int updateCount = 0;
-            timer.reset().start();
+            Stopwatch timer = Stopwatch.createStarted();
             try {
                 for (String s : resurrectedDocuments) {
                     if (!cancel.get()) {
+                        acquire(1);
                         try {
                             Map.Entry<String, Long> parsed = parseEntry(s);
                             UpdateOp up = new UpdateOp(parsed.getKey(), false);
@@ -966,6 +1269,7 @@ public class VersionGarbageCollector {
                     log.debug(sb.toString());
                 }
 
+                acquire(deletionBatch.size());
                 ds.remove(NODES, deletionBatch);
 
                 log.debug("Deleted [{}] previous documents so far", deletedCount);
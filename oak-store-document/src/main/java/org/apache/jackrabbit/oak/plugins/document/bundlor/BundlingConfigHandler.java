@@ -21,27 +21,37 @@ package org.apache.jackrabbit.oak.plugins.document.bundlor;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.Executor;
 
 import com.google.common.collect.Iterables;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.document.util.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserverMBean;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.commit.Observable;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
 import org.apache.jackrabbit.oak.spi.commit.SubtreeEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
+import static org.apache.jackrabbit.oak.spi.nodetype.NodeTypeConstants.NT_OAK_UNSTRUCTURED;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 
 public class BundlingConfigHandler implements Observer, Closeable {
@@ -57,6 +67,10 @@ public class BundlingConfigHandler implements Observer, Closeable {
 
     private volatile BundledTypesRegistry registry = BundledTypesRegistry.NOOP;
 
+    private volatile BundlingStats stats = SystemPropertySupplier
+            .create("oak.documentMK.bundlingStats", false).loggingTo(log).get()
+            ? new BundlingStats() : null;
+
     private Editor changeDetector = new SubtreeEditor(new DefaultEditor() {
         @Override
         public void leave(NodeState before, NodeState after) throws CommitFailedException {
@@ -67,6 +81,10 @@ public class BundlingConfigHandler implements Observer, Closeable {
     @Override
     public synchronized void contentChanged(@NotNull NodeState root, @NotNull CommitInfo info) {
         EditorDiff.process(changeDetector, this.root, root);
+        BundlingStats s = stats;
+        if (s != null && this.root != EMPTY_NODE && !info.isExternal()) {
+            s.contentChanged(this.root, root, registry);
+        }
         this.root = root;
     }
 
@@ -100,6 +118,52 @@ public class BundlingConfigHandler implements Observer, Closeable {
         return registry;
     }
 
+    /**
+     * @return the bundling statistics or {@code null} if the collection of
+     *          statistics is disabled.
+     */
+    @Nullable
+    public BundlingStats getStats() {
+        return stats;
+    }
+
+    void setStats(@Nullable BundlingStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Adds the recommended bundling patterns of the statistics to the
+     * bundlor configuration of the given node store. Node types with an
+     * existing configuration are not changed. The patterns apply to nodes
+     * created after the configuration change.
+     *
+     * @param store the node store.
+     * @return the node types with added configuration.
+     * @throws CommitFailedException if the configuration cannot be changed.
+     */
+    @NotNull
+    public Set<String> applyRecommendations(@NotNull NodeStore store)
+            throws CommitFailedException {
+        BundlingStats s = stats;
+        NodeBuilder builder = store.getRoot().builder();
+        if (s == null || !builder.hasChildNode(JCR_SYSTEM)) {
+            return Collections.emptySet();
+        }
+        NodeBuilder bundlor = builder.getChildNode(JCR_SYSTEM);
+        for (String name : new String[]{DOCUMENT_NODE_STORE, BUNDLOR}) {
+            bundlor = bundlor.child(name);
+            if (!bundlor.hasProperty(JCR_PRIMARYTYPE)) {
+                bundlor.setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED, Type.NAME);
+            }
+        }
+        Set<String> applied = s.applyRecommendations(bundlor);
+        if (!applied.isEmpty()) {
+            store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            log.info("Added bundling configuration for {}", applied);
+        }
+        return applied;
+    }
+
     private void recreateRegistry(NodeState nodeState) {
         //TODO Any sanity checks
         registry = BundledTypesRegistry.from(nodeState);
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects statistics about child nodes written and read together with
+ * their parent and recommends bundling patterns based on them.
+ * <p>
+ * Writes are collected per primary type of newly added nodes, which do not
+ * have a bundling pattern yet. For each such node the relative paths of its
+ * descendants up to {@link #MAX_DEPTH} levels below, which were added with
+ * the node, are counted. A relative path is recommended for bundling when it
+ * was added together with at least {@code minRatio} of at least
+ * {@code minNodes} nodes of a type. Reads are collected per primary type of
+ * the parent for direct child nodes read from a separate document. They are
+ * used to report the expected reduction of document reads.
+ * <p>
+ * The number of tracked types and paths per type is limited.
+ */
+public class BundlingStats {
+
+    /**
+     * The maximum depth of relative paths considered for bundling.
+     */
+    static final int MAX_DEPTH = 2;
+
+    static final int MAX_TYPES = 1000;
+
+    static final int MAX_PATHS = 100;
+
+    private final int minNodes;
+
+    private final double minRatio;
+
+    private final ConcurrentMap<String, TypeStats> types = new ConcurrentHashMap<>();
+
+    /**
+     * Set while the statistics are collected from a diff, to ignore reads
+     * from the diff itself.
+     */
+    private final ThreadLocal<Boolean> collecting = new ThreadLocal<>();
+
+    public BundlingStats() {
+        this(100, 0.9);
+    }
+
+    BundlingStats(int minNodes, double minRatio) {
+        this.minNodes = minNodes;
+        this.minRatio = minRatio;
+    }
+
+    /**
+     * Records a read of a child node, which is not bundled with its parent.
+     *
+     * @param parent the parent node.
+     * @param name the name of the child node.
+     */
+    public void childNodeRead(@NotNull NodeState parent, @NotNull String name) {
+        if (collecting.get() != null || isHidden(name)) {
+            return;
+        }
+        TypeStats stats = getTypeStats(parent);
+        if (stats != null && (stats.reads.containsKey(name)
+                || stats.reads.size() < MAX_PATHS)) {
+            stats.reads.incrementAndGet(name);
+        }
+    }
+
+    /**
+     * Returns the recommended bundling patterns by node type.
+     *
+     * @return the recommended patterns.
+     */
+    @NotNull
+    public SortedMap<String, Set<String>> getRecommendations() {
+        SortedMap<String, Set<String>> recommendations = new TreeMap<>();
+        for (Map.Entry<String, TypeStats> e : types.entrySet()) {
+            Set<String> patterns = e.getValue().getPatterns();
+            if (!patterns.isEmpty()) {
+                recommendations.put(e.getKey(), patterns);
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Returns a report with a line for each node type with recommended
+     * bundling patterns. A line contains the number of added nodes of the
+     * type, the recommended patterns, the expected number of documents saved
+     * per added node and the number of reads of child nodes from separate
+     * documents that would be avoided.
+     *
+     * @return the report.
+     */
+    @NotNull
+    public List<String> getReport() {
+        List<String> report = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> e : getRecommendations().entrySet()) {
+            TypeStats stats = types.get(e.getKey());
+            long nodes = stats.nodes.get();
+            long added = 0;
+            long reads = 0;
+            for (String p : e.getValue()) {
+                added += stats.added.get(p);
+                reads += stats.reads.get(p);
+            }
+            report.add(String.format("%s: nodes=%d, patterns=%s, " +
+                            "documentsSavedPerNode=%.2f, documentReadsSaved=%d",
+                    e.getKey(), nodes, e.getValue(),
+                    nodes == 0 ? 0.0 : (double) added / nodes, reads));
+        }
+        return report;
+    }
+
+    /**
+     * Adds the recommended patterns to the given bundlor configuration for
+     * node types, which do not have a configuration yet.
+     *
+     * @param bundlor the bundlor configuration.
+     * @return the node types with added configuration.
+     */
+    @NotNull
+    public Set<String> applyRecommendations(@NotNull NodeBuilder bundlor) {
+        Set<String> applied = new TreeSet<>();
+        BundledTypesRegistry.BundledTypesRegistryBuilder builder =
+                new BundledTypesRegistry.BundledTypesRegistryBuilder(bundlor);
+        for (Map.Entry<String, Set<String>> e : getRecommendations().entrySet()) {
+            if (bundlor.hasChildNode(e.getKey())) {
+                continue;
+            }
+            builder.forType(e.getKey(), e.getValue().toArray(new String[0])).registry();
+            applied.add(e.getKey());
+        }
+        return applied;
+    }
+
+    /**
+     * Records the nodes added between the two given root states.
+     *
+     * @param before the root state before the change.
+     * @param after the root state after the change.
+     * @param registry the current bundling configuration. Nodes with a
+     *          bundlor in this registry are ignored.
+     */
+    void contentChanged(@NotNull NodeState before,
+                        @NotNull NodeState after,
+                        @NotNull BundledTypesRegistry registry) {
+        collecting.set(Boolean.TRUE);
+        try {
+            EditorDiff.process(new AddedNodesEditor(registry), before, after);
+        } finally {
+            collecting.remove();
+        }
+    }
+
+    //------------------------------< internal >--------------------------------
+
+    private void nodeAdded(NodeState node) {
+        TypeStats stats = getTypeStats(node);
+        if (stats == null) {
+            return;
+        }
+        stats.nodes.incrementAndGet();
+        collectAdded(stats, node, "", 1);
+    }
+
+    private void collectAdded(TypeStats stats,
+                              NodeState node,
+                              String path,
+                              int depth) {
+        for (ChildNodeEntry e : node.getChildNodeEntries()) {
+            String name = e.getName();
+            if (isHidden(name)) {
+                continue;
+            }
+            String p = PathUtils.concat(path, name);
+            if (!stats.added.containsKey(p)) {
+                if (stats.added.size() >= MAX_PATHS) {
+                    return;
+                }
+            }
+            stats.added.incrementAndGet(p);
+            if (depth < MAX_DEPTH) {
+                collectAdded(stats, e.getNodeState(), p, depth + 1);
+            }
+        }
+    }
+
+    @Nullable
+    private TypeStats getTypeStats(NodeState node) {
+        PropertyState ps = node.getProperty(JcrConstants.JCR_PRIMARYTYPE);
+        if (ps == null) {
+            return null;
+        }
+        String type = ps.getValue(Type.NAME);
+        if (JcrConstants.NT_FROZENNODE.equals(type)) {
+            // versioned nodes are bundled by their frozen type
+            return null;
+        }
+        TypeStats stats = types.get(type);
+        if (stats == null && types.size() < MAX_TYPES) {
+            TypeStats s = new TypeStats();
+            stats = types.putIfAbsent(type, s);
+            if (stats == null) {
+                stats = s;
+            }
+        }
+        return stats;
+    }
+
+    private static boolean isHidden(String name) {
+        return name.startsWith(":");
+    }
+
+    private final class AddedNodesEditor extends DefaultEditor {
+
+        private final BundledTypesRegistry registry;
+
+        AddedNodesEditor(BundledTypesRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) {
+            if (!isHidden(name) && registry.getBundlor(after) == null) {
+                nodeAdded(after);
+            }
+            return this;
+        }
+
+        @Override
+        public Editor childNodeChanged(String name,
+                                       NodeState before,
+                                       NodeState after) {
+            return this;
+        }
+    }
+
+    private final class TypeStats {
+
+        /**
+         * The number of added nodes of this type.
+         */
+        final AtomicLong nodes = new AtomicLong();
+
+        /**
+         * Number of times a relative path was added together with a node.
+         */
+        final AtomicLongMap<String> added = AtomicLongMap.create();
+
+        /**
+         * Number of reads of a child node from a separate document.
+         */
+        final AtomicLongMap<String> reads = AtomicLongMap.create();
+
+        Set<String> getPatterns() {
+            Set<String> patterns = new TreeSet<>();
+            long n = nodes.get();
+            if (n < minNodes) {
+                return patterns;
+            }
+            for (Map.Entry<String, Long> e : added.asMap().entrySet()) {
+                if (e.getValue() >= n * minRatio) {
+                    patterns.add(e.getKey());
+                }
+            }
+            return patterns;
+        }
+    }
+}
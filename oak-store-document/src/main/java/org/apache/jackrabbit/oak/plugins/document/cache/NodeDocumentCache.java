@@ -66,17 +66,40 @@ public class NodeDocumentCache implements Closeable {
 
     private final List<CacheChangesTracker> changeTrackers;
 
+    /**
+     * Optional off-heap tier for documents evicted from the
+     * {@link #nodeDocumentsCache}.
+     */
+    @Nullable
+    private final OffHeapDocumentCache offHeapCache;
+
     public NodeDocumentCache(@NotNull Cache<CacheValue, NodeDocument> nodeDocumentsCache,
                              @NotNull CacheStats nodeDocumentsCacheStats,
                              @NotNull Cache<StringValue, NodeDocument> prevDocumentsCache,
                              @NotNull CacheStats prevDocumentsCacheStats,
                              @NotNull NodeDocumentLocks locks) {
+        this(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache,
+                prevDocumentsCacheStats, locks, null);
+    }
+
+    /**
+     * Creates a new cache with an optional off-heap tier. The
+     * {@code offHeapCache} must be registered as eviction listener of the
+     * {@code nodeDocumentsCache}.
+     */
+    public NodeDocumentCache(@NotNull Cache<CacheValue, NodeDocument> nodeDocumentsCache,
+                             @NotNull CacheStats nodeDocumentsCacheStats,
+                             @NotNull Cache<StringValue, NodeDocument> prevDocumentsCache,
+                             @NotNull CacheStats prevDocumentsCacheStats,
+                             @NotNull NodeDocumentLocks locks,
+                             @Nullable OffHeapDocumentCache offHeapCache) {
         this.nodeDocumentsCache = nodeDocumentsCache;
         this.nodeDocumentsCacheStats = nodeDocumentsCacheStats;
         this.prevDocumentsCache = prevDocumentsCache;
         this.prevDocumentsCacheStats = prevDocumentsCacheStats;
         this.locks = locks;
         this.changeTrackers = new CopyOnWriteArrayList<CacheChangesTracker>();
+        this.offHeapCache = offHeapCache;
     }
 
     /**
@@ -91,6 +114,7 @@ public class NodeDocumentCache implements Closeable {
                 prevDocumentsCache.invalidate(new StringValue(key));
             } else {
                 nodeDocumentsCache.invalidate(new StringValue(key));
+                invalidateOffHeap(key);
             }
 
             internalMarkChanged(key);
@@ -126,12 +150,19 @@ public class NodeDocumentCache implements Closeable {
         for (Entry<String, ModificationStamp> e : modStamps.entrySet()) {
             String id = e.getKey();
             ModificationStamp stamp = e.getValue();
-            NodeDocument doc = getIfPresent(id);
-            if (doc == null) {
-                continue;
+            // documents in the off-heap tier are checked without
+            // moving them back to the on-heap cache
+            NodeDocument doc = getOnHeapIfPresent(id);
+            boolean outdated;
+            if (doc != null) {
+                outdated = !Objects.equal(stamp.modCount, doc.getModCount())
+                        || !Objects.equal(stamp.modified, doc.getModified());
+            } else {
+                outdated = offHeapCache != null
+                        && !isLeafPreviousDocId(id)
+                        && offHeapCache.isOutdated(id, stamp);
             }
-            if (!Objects.equal(stamp.modCount, doc.getModCount())
-                    || !Objects.equal(stamp.modified, doc.getModified())) {
+            if (outdated) {
                 invalidate(id);
                 invalidatedCount++;
             }
@@ -150,7 +181,16 @@ public class NodeDocumentCache implements Closeable {
         if (isLeafPreviousDocId(key)) {
             return prevDocumentsCache.getIfPresent(new StringValue(key));
         } else {
-            return nodeDocumentsCache.getIfPresent(new StringValue(key));
+            NodeDocument doc = nodeDocumentsCache.getIfPresent(new StringValue(key));
+            if (doc == null && offHeapCache != null) {
+                Lock lock = locks.acquire(key);
+                try {
+                    doc = loadFromOffHeap(key);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return doc;
         }
     }
 
@@ -184,6 +224,12 @@ public class NodeDocumentCache implements Closeable {
             if (isLeafPreviousDocId(key)) {
                 return prevDocumentsCache.get(new StringValue(key), wrappedLoader);
             } else {
+                if (offHeapCache != null) {
+                    NodeDocument doc = loadFromOffHeap(key);
+                    if (doc != null) {
+                        return doc;
+                    }
+                }
                 return nodeDocumentsCache.get(new StringValue(key), wrappedLoader);
             }
         } finally {
@@ -324,7 +370,11 @@ public class NodeDocumentCache implements Closeable {
      * @return keys stored in cache
      */
     public Iterable<CacheValue> keys() {
-        return Iterables.concat(nodeDocumentsCache.asMap().keySet(), prevDocumentsCache.asMap().keySet());
+        Iterable<CacheValue> keys = Iterables.concat(nodeDocumentsCache.asMap().keySet(), prevDocumentsCache.asMap().keySet());
+        if (offHeapCache != null) {
+            keys = Iterables.concat(keys, Iterables.transform(offHeapCache.keys(), StringValue::new));
+        }
+        return keys;
     }
 
     /**
@@ -338,8 +388,19 @@ public class NodeDocumentCache implements Closeable {
         return Lists.newArrayList(nodeDocumentsCacheStats, prevDocumentsCacheStats);
     }
 
+    /**
+     * @return the off-heap tier of this cache or {@code null} if disabled.
+     */
+    @Nullable
+    public OffHeapDocumentCache getOffHeapCache() {
+        return offHeapCache;
+    }
+
     @Override
     public void close() throws IOException {
+        if (offHeapCache != null) {
+            offHeapCache.clear();
+        }
         if (prevDocumentsCache instanceof Closeable) {
             ((Closeable) prevDocumentsCache).close();
         }
@@ -454,6 +515,49 @@ public class NodeDocumentCache implements Closeable {
 
     //----------------------------< internal >----------------------------------
 
+    @Nullable
+    private NodeDocument getOnHeapIfPresent(@NotNull String key) {
+        if (isLeafPreviousDocId(key)) {
+            return prevDocumentsCache.getIfPresent(new StringValue(key));
+        } else {
+            return nodeDocumentsCache.getIfPresent(new StringValue(key));
+        }
+    }
+
+    /**
+     * Moves the document with the given key from the off-heap tier back to
+     * the on-heap cache. The caller must hold the lock for the key.
+     *
+     * @param key the document key.
+     * @return the document or {@code null} if it is neither in the on-heap
+     *          nor in the off-heap cache.
+     */
+    @Nullable
+    private NodeDocument loadFromOffHeap(String key) {
+        StringValue k = new StringValue(key);
+        NodeDocument doc = nodeDocumentsCache.getIfPresent(k);
+        if (doc == null) {
+            doc = offHeapCache.take(key);
+            if (doc != null) {
+                nodeDocumentsCache.put(k, doc);
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Removes the document with the given key from the off-heap tier, if
+     * enabled. Must be called after the document was removed or replaced in
+     * the on-heap cache and while holding the lock for the key.
+     *
+     * @param key the document key.
+     */
+    private void invalidateOffHeap(String key) {
+        if (offHeapCache != null) {
+            offHeapCache.invalidate(key);
+        }
+    }
+
     /**
      * Marks the document as potentially changed.
      * 
@@ -488,6 +592,7 @@ public class NodeDocumentCache implements Closeable {
             prevDocumentsCache.put(new StringValue(doc.getId()), doc);
         } else {
             nodeDocumentsCache.put(new StringValue(doc.getId()), doc);
+            invalidateOffHeap(doc.getId());
         }
         for (CacheChangesTracker tracker : changeTrackers) {
             if (tracker == trackerToSkip) {
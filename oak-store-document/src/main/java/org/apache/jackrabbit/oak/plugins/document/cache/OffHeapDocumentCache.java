@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.ValueDataType;
+import org.h2.mvstore.WriteBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.cache.RemovalCause.COLLECTED;
+import static com.google.common.cache.RemovalCause.EXPIRED;
+import static com.google.common.cache.RemovalCause.SIZE;
+
+/**
+ * An off-heap tier for {@link NodeDocument}s evicted from the on-heap
+ * document cache. Documents are serialized with the persistent cache
+ * {@link ValueDataType} and are moved back to the on-heap cache when accessed
+ * again.
+ * <p>
+ * Each segment of the cache allocates direct byte buffers of
+ * {@link #SLAB_SIZE} (or the size of the segment if smaller) and appends
+ * serialized documents to the current slab. When all slabs are used, the
+ * oldest slab is reused and the documents still stored in it are evicted.
+ * This keeps the heap overhead per document to an offset and a length and
+ * the native memory is not fragmented. Documents larger than a slab are not
+ * kept in this cache.
+ * <p>
+ * This class does not synchronize with writers of the on-heap cache. The
+ * {@link NodeDocumentCache} is responsible for calling {@link #invalidate(String)}
+ * whenever it invalidates or replaces a document, while holding the lock for
+ * the document. Because evictions are reported by the on-heap cache while
+ * holding its segment lock, an eviction of a document can never overtake a
+ * subsequent invalidation of the same document.
+ */
+public class OffHeapDocumentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapDocumentCache.class);
+
+    private static final Set<RemovalCause> EVICTION_CAUSES = ImmutableSet.of(COLLECTED, EXPIRED, SIZE);
+
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * Initial size of the buffer used to serialize a document. The default
+     * size of a {@link WriteBuffer} is 1 MB, way too much for most documents.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * The size of a slab of direct memory: 4 MB.
+     */
+    static final int SLAB_SIZE = 4 * 1024 * 1024;
+
+    private final ValueDataType valueType;
+
+    private final Segment[] segments;
+
+    private final long maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong putCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a new off-heap document cache.
+     *
+     * @param store the document store used to de-serialize documents.
+     * @param maxSize the maximum number of bytes to keep off-heap.
+     */
+    public OffHeapDocumentCache(@NotNull DocumentStore store, long maxSize) {
+        checkArgument(maxSize > 0, "maxSize must be greater than zero");
+        this.valueType = new ValueDataType(null, store, CacheType.DOCUMENT);
+        this.maxSize = maxSize;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(Math.max(1, maxSize / SEGMENT_COUNT));
+        }
+        LOG.info("Off-heap document cache enabled with {} bytes", maxSize);
+    }
+
+    /**
+     * Returns an {@link EvictionListener} that moves documents evicted from
+     * the on-heap cache into this off-heap cache. The listener must only be
+     * registered with an on-heap cache that reports evictions while holding
+     * the lock of the affected cache segment.
+     *
+     * @param <K> the key type of the on-heap cache.
+     * @return the eviction listener.
+     */
+    public <K extends CacheValue> EvictionListener<K, NodeDocument> asEvictionListener() {
+        return (key, value, cause) -> {
+            if (value != null && EVICTION_CAUSES.contains(cause)) {
+                put(key.toString(), value);
+            }
+        };
+    }
+
+    /**
+     * Removes the document with the given key from this cache and returns it.
+     * This method is used when a document is moved back to the on-heap cache.
+     *
+     * @param key the document key.
+     * @return the document or {@code null} if there is no document with the
+     *          given key in this cache.
+     */
+    @Nullable
+    public NodeDocument take(@NotNull String key) {
+        ByteBuffer serialized = getSegment(key).take(key);
+        if (serialized == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return (NodeDocument) valueType.read(serialized);
+    }
+
+    /**
+     * Checks whether the document with the given key in this cache has a
+     * modification stamp different from the given one. The document is
+     * neither de-serialized nor moved back to the on-heap cache.
+     *
+     * @param key the document key.
+     * @param stamp the current modification stamp of the document.
+     * @return {@code true} if this cache contains the document and its
+     *          modification stamp is different, {@code false} otherwise.
+     */
+    public boolean isOutdated(@NotNull String key,
+                              @NotNull ModificationStamp stamp) {
+        Entry entry = getSegment(key).get(key);
+        return entry != null
+                && (!Objects.equal(stamp.modCount, entry.modCount)
+                || !Objects.equal(stamp.modified, entry.modified));
+    }
+
+    /**
+     * Removes the document with the given key from this cache.
+     *
+     * @param key the document key.
+     */
+    public void invalidate(@NotNull String key) {
+        getSegment(key).remove(key);
+    }
+
+    /**
+     * @return the keys of the documents currently in this cache.
+     */
+    @NotNull
+    public Iterable<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (Segment s : segments) {
+            s.collectKeys(keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Removes all documents from this cache.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        long size = 0;
+        for (Segment s : segments) {
+            size += s.getSize();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getPutCount() {
+        return putCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapDocumentCache{size=" + getSize() + ", maxSize=" + maxSize +
+                ", hits=" + hitCount + ", misses=" + missCount +
+                ", puts=" + putCount + ", evictions=" + evictionCount + "}";
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    void put(@NotNull String key, @NotNull NodeDocument doc) {
+        WriteBuffer writeBuffer = new WriteBuffer(INITIAL_BUFFER_SIZE);
+        valueType.write(writeBuffer, doc);
+        ByteBuffer serialized = writeBuffer.getBuffer();
+        serialized.flip();
+        evictionCount.addAndGet(getSegment(key).put(key, serialized,
+                doc.getModCount(), doc.getModified()));
+        putCount.incrementAndGet();
+    }
+
+    private Segment getSegment(String key) {
+        int hash = key.hashCode();
+        // spread the bits, the same way HashMap does
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * The location of a serialized document in the slabs of a segment with
+     * the modification stamp of the document.
+     */
+    private static final class Entry {
+
+        final int slab;
+
+        final int offset;
+
+        final int length;
+
+        final Long modCount;
+
+        final Long modified;
+
+        Entry(int slab, int offset, int length, Long modCount, Long modified) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            this.modCount = modCount;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * A segment of the cache, which appends documents to its slabs and
+     * evicts the documents of the oldest slab when it runs out of space.
+     */
+    private static final class Segment {
+
+        private final int slabSize;
+
+        private final ByteBuffer[] slabs;
+
+        /**
+         * The keys of the documents written to a slab. A key may be stale
+         * when the document was removed or written again to another slab.
+         */
+        private final List<List<String>> slabKeys;
+
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        private int currentSlab;
+
+        private int position;
+
+        private long size;
+
+        Segment(long maxSize) {
+            this.slabSize = (int) Math.min(SLAB_SIZE, maxSize);
+            int numSlabs = (int) Math.max(1, maxSize / slabSize);
+            this.slabs = new ByteBuffer[numSlabs];
+            this.slabKeys = new ArrayList<>(numSlabs);
+            for (int i = 0; i < numSlabs; i++) {
+                slabKeys.add(new ArrayList<>());
+            }
+        }
+
+        synchronized int put(String key,
+                             ByteBuffer serialized,
+                             Long modCount,
+                             Long modified) {
+            remove(key);
+            int length = serialized.remaining();
+            if (length > slabSize) {
+                // too large for this cache
+                return 1;
+            }
+            int evicted = 0;
+            if (position + length > slabSize) {
+                currentSlab = (currentSlab + 1) % slabs.length;
+                position = 0;
+                evicted = evict(currentSlab);
+            }
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            }
+            ByteBuffer slab = slabs[currentSlab].duplicate();
+            slab.position(position);
+            slab.put(serialized);
+            entries.put(key, new Entry(currentSlab, position, length, modCount, modified));
+            slabKeys.get(currentSlab).add(key);
+            position += length;
+            size += length;
+            return evicted;
+        }
+
+        /**
+         * Removes the document with the given key and returns a copy of the
+         * serialized document. The slab may be reused as soon as the lock
+         * of this segment is released, hence the copy.
+         */
+        synchronized ByteBuffer take(String key) {
+            Entry entry = remove(key);
+            if (entry == null) {
+                return null;
+            }
+            ByteBuffer slab = slabs[entry.slab].duplicate();
+            slab.position(entry.offset);
+            slab.limit(entry.offset + entry.length);
+            ByteBuffer copy = ByteBuffer.allocate(entry.length);
+            copy.put(slab);
+            copy.flip();
+            return copy;
+        }
+
+        synchronized Entry remove(String key) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                size -= entry.length;
+            }
+            return entry;
+        }
+
+        synchronized Entry get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void collectKeys(List<String> keys) {
+            keys.addAll(entries.keySet());
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            for (List<String> keys : slabKeys) {
+                keys.clear();
+            }
+            currentSlab = 0;
+            position = 0;
+            size = 0;
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+
+        private int evict(int slab) {
+            int evicted = 0;
+            List<String> keys = slabKeys.get(slab);
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.slab == slab) {
+                    remove(key);
+                    evicted++;
+                }
+            }
+            keys.clear();
+            return evicted;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.locks.Lock;
@@ -30,9 +31,9 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
-import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.JournalEntry;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
@@ -53,12 +54,13 @@ import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MODIFIED_I
 import static org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition.newEqualsCondition;
 import static org.apache.jackrabbit.oak.plugins.document.UpdateUtils.assertUnconditional;
 import static org.apache.jackrabbit.oak.plugins.document.UpdateUtils.checkConditions;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.call;
 
 /**
  * Emulates a MongoDB store (possibly consisting of multiple shards and
  * replicas).
  */
-public class MemoryDocumentStore implements DocumentStore {
+public class MemoryDocumentStore implements AsyncDocumentStore {
 
     /**
      * The 'nodes' collection.
@@ -263,6 +265,55 @@ public class MemoryDocumentStore implements DocumentStore {
         return internalCreateOrUpdate(collection, update, true);
     }
 
+    //--------------------------< AsyncDocumentStore >--------------------------
+    // operations on this store are cheap and are performed on the calling
+    // thread. the returned stages are already complete
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+                                                             String key,
+                                                             int maxCacheAge) {
+        return call(() -> find(collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+                                                                    String fromKey,
+                                                                    String toKey,
+                                                                    int limit) {
+        return call(() -> query(collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+                                                                     List<UpdateOp> updateOps) {
+        return call(() -> create(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+                                                                       UpdateOp update) {
+        return call(() -> createOrUpdate(collection, update));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                             List<UpdateOp> updateOps) {
+        return call(() -> createOrUpdate(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+                                                                      UpdateOp update) {
+        return call(() -> findAndUpdate(collection, update));
+    }
+
     /**
      * @return a copy of this document store.
      */
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Determines how many update operations are sent to MongoDB with a single
+ * bulk write. The number of operations in a bulk write is limited by the
+ * current bulk size and by the estimated size of the operations in bytes.
+ * <p>
+ * The bulk size is adjusted after each bulk write based on its latency. It
+ * is halved when a bulk write takes longer than the target latency and grows
+ * by a quarter when a full bulk write took less than half the target
+ * latency. The bulk size is fixed when the minimum and maximum bulk size are
+ * the same.
+ */
+final class AdaptiveBulkSize {
+
+    /**
+     * Estimated size in bytes of a revision in a key.
+     */
+    private static final int REVISION_SIZE = 24;
+
+    /**
+     * Estimated size in bytes of a non-string value.
+     */
+    private static final int VALUE_SIZE = 8;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final long maxBytes;
+
+    private final long targetNanos;
+
+    private final AtomicInteger size;
+
+    /**
+     * @param initialSize the initial bulk size.
+     * @param minSize the minimum bulk size.
+     * @param maxSize the maximum bulk size.
+     * @param maxBytes the maximum estimated size of the operations in a bulk
+     *          write in bytes. A bulk write always contains at least one
+     *          operation.
+     * @param targetMillis the target latency of a bulk write in milliseconds.
+     */
+    AdaptiveBulkSize(int initialSize,
+                     int minSize,
+                     int maxSize,
+                     long maxBytes,
+                     long targetMillis) {
+        checkArgument(minSize > 0, "minSize must be > 0 (was %s)", minSize);
+        checkArgument(maxSize >= minSize, "maxSize must be >= minSize (was %s)", maxSize);
+        checkArgument(maxBytes > 0, "maxBytes must be > 0 (was %s)", maxBytes);
+        checkArgument(targetMillis > 0, "targetMillis must be > 0 (was %s)", targetMillis);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.size = new AtomicInteger(Math.max(minSize, Math.min(maxSize, initialSize)));
+    }
+
+    /**
+     * @return the current bulk size.
+     */
+    int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Splits the given operations into batches for bulk writes. Each batch
+     * has at most the current bulk size operations and the estimated size of
+     * the operations in a batch does not exceed the maximum bytes, unless the
+     * batch only contains a single operation.
+     *
+     * @param ops the update operations.
+     * @return the batches.
+     */
+    @NotNull
+    List<List<UpdateOp>> partition(@NotNull List<UpdateOp> ops) {
+        int limit = size.get();
+        List<List<UpdateOp>> batches = new ArrayList<>();
+        List<UpdateOp> batch = new ArrayList<>();
+        long bytes = 0;
+        for (UpdateOp op : ops) {
+            long opBytes = estimateSize(op);
+            if (!batch.isEmpty()
+                    && (batch.size() >= limit || bytes + opBytes > maxBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+            batch.add(op);
+            bytes += opBytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Adjusts the bulk size after a bulk write completed.
+     *
+     * @param numOps the number of operations in the bulk write.
+     * @param elapsedNanos the time it took to perform the bulk write.
+     */
+    void done(int numOps, long elapsedNanos) {
+        if (minSize == maxSize) {
+            return;
+        }
+        int current = size.get();
+        int next;
+        if (elapsedNanos > targetNanos) {
+            next = Math.max(minSize, current / 2);
+        } else if (numOps >= current && elapsedNanos < targetNanos / 2) {
+            next = Math.min(maxSize, current + Math.max(1, current / 4));
+        } else {
+            return;
+        }
+        // another thread may have adjusted the size concurrently, in
+        // which case this adjustment is dropped
+        size.compareAndSet(current, next);
+    }
+
+    /**
+     * Estimates the size of the given update operation in bytes.
+     *
+     * @param op the update operation.
+     * @return the estimated size.
+     */
+    static long estimateSize(@NotNull UpdateOp op) {
+        long bytes = op.getId().length();
+        for (Map.Entry<Key, Operation> change : op.getChanges().entrySet()) {
+            Key key = change.getKey();
+            bytes += key.getName().length();
+            if (key.getRevision() != null) {
+                bytes += REVISION_SIZE;
+            }
+            Object value = change.getValue().value;
+            if (value instanceof String) {
+                bytes += ((String) value).length();
+            } else if (value != null) {
+                bytes += VALUE_SIZE;
+            }
+        }
+        return bytes;
+    }
+}
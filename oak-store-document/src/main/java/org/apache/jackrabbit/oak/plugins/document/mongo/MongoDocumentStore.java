@@ -25,17 +25,33 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -47,18 +63,21 @@ import com.mongodb.DBObject;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
+import com.mongodb.MongoCommandException;
 import com.mongodb.ReadPreference;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
-import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreStatsCollector;
 import org.apache.jackrabbit.oak.plugins.document.JournalEntry;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition;
@@ -74,6 +93,7 @@ import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
+import org.bson.BsonTimestamp;
 import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -108,6 +128,9 @@ import static com.google.common.base.Predicates.not;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Maps.filterKeys;
 import static com.google.common.collect.Sets.difference;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.util.Arrays.asList;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentStoreException.asDocumentStoreException;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.DELETED_ONCE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MODIFIED_IN_SECS;
@@ -122,7 +145,7 @@ import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoUtils.hasInd
 /**
  * A document store that uses MongoDB as the backend.
  */
-public class MongoDocumentStore implements DocumentStore {
+public class MongoDocumentStore implements AsyncDocumentStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(MongoDocumentStore.class);
     private static final PerfLogger PERFLOG = new PerfLogger(
@@ -140,6 +163,25 @@ public class MongoDocumentStore implements DocumentStore {
 
     public static final int IN_CLAUSE_BATCH_SIZE = 500;
 
+    /**
+     * Value maps that are always read completely by a projected read.
+     */
+    private static final List<String> PROJECTION_COMPLETE_MAPS = ImmutableList.of(
+            "_lastRev", "_prev", "_stalePrev", "_sweepRev");
+
+    /**
+     * Value maps with information about commits, which are projected
+     * depending on the entries kept in the other value maps.
+     */
+    private static final List<String> PROJECTION_COMMIT_MAPS = ImmutableList.of(
+            "_revisions", "_commitRoot", "_bc", "_collisions");
+
+    private static final String PROJECTION_TRUNCATED = "_projectionTruncated";
+
+    private static final String PROJECTION_SIZE = "_projectionSize";
+
+    private static final String PROJECTION_PROJECTED_SIZE = "_projectionProjectedSize";
+
     /**
      * A conflicting ID assignment on insert. Used by
      * {@link #sendBulkUpdate(Collection, java.util.Collection, Map)} for
@@ -205,6 +247,49 @@ public class MongoDocumentStore implements DocumentStore {
     private int bulkSize =
             Integer.getInteger("oak.mongo.bulkSize", 30);
 
+    /**
+     * The maximum number of documents to put into one bulk update. The
+     * number of documents is adjusted between one and this value based on
+     * the latency of bulk updates when it is greater than
+     * {@link #bulkSize}.
+     * <p>
+     * Default is {@link #bulkSize} (fixed bulk size).
+     */
+    private final int maxBulkSize =
+            Integer.getInteger("oak.mongo.maxBulkSize", bulkSize);
+
+    /**
+     * The maximum estimated size in bytes of the update operations in one
+     * bulk update.
+     * <p>
+     * Default is 8 MB.
+     */
+    private final long maxBulkBytes =
+            Long.getLong("oak.mongo.maxBulkBytes", 8 * 1024 * 1024);
+
+    /**
+     * The target latency in milliseconds of a bulk update when the bulk size
+     * is adjusted.
+     * <p>
+     * Default is 200.
+     */
+    private final long bulkTargetMillis =
+            Long.getLong("oak.mongo.bulkTargetMillis", 200);
+
+    /**
+     * The maximum number of bulk updates of a single
+     * {@link #createOrUpdate(Collection, List)} call in flight at the same
+     * time.
+     * <p>
+     * Default is 1 (bulk updates are sent one after another).
+     */
+    private final int bulkParallelism =
+            Integer.getInteger("oak.mongo.bulkParallelism", 1);
+
+    private final AdaptiveBulkSize bulkSizes;
+
+    private final BulkWriteStats bulkWriteStats = new BulkWriteStats();
+
     /**
      * How many times should be the bulk update request retries in case of
      * a conflict.
@@ -229,6 +314,86 @@ public class MongoDocumentStore implements DocumentStore {
     private final int acceptableLagMillis =
             Integer.getInteger("oak.mongo.acceptableLagMillis", 5000);
 
+    /**
+     * The number of threads performing asynchronous operations. The
+     * operations use the synchronous driver on these threads.
+     * <p>
+     * Default is 4.
+     */
+    private final int asyncThreads =
+            Integer.getInteger("oak.mongo.asyncThreads", 4);
+
+    /**
+     * The maximum number of documents read with a single query when
+     * documents are prefetched.
+     * <p>
+     * Default is 100.
+     */
+    private final int prefetchBatchSize =
+            Integer.getInteger("oak.mongo.prefetchBatchSize", 100);
+
+    /**
+     * Whether a document read for an already visible read revision may be
+     * served by a secondary that applied all changes visible at the read
+     * revision, even when the secondary did not catch up with more recent
+     * changes. This requires client sessions.
+     * <p>
+     * Default is false.
+     */
+    private final boolean causalSecondaryReads =
+            Boolean.getBoolean("oak.mongo.causalSecondaryReads");
+
+    /**
+     * Operation times associated with read revisions. The operation time of
+     * a read revision is the most recent operation time seen by a client
+     * session when a document was first read for the read revision. At that
+     * point all changes visible at the read revision were already written to
+     * or read from MongoDB.
+     */
+    private final Cache<RevisionVector, BsonTimestamp> readRevisionOperationTimes =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private final ReadRoutingStats readRoutingStats = new ReadRoutingStats();
+
+    /**
+     * Node documents with an estimated size in bytes equal or larger than
+     * this value are read with a projection of their revision entries when
+     * the document is read for a read revision. Only revision entries newer
+     * than the oldest sweep revision are read, with a fallback to the
+     * complete document when older entries are needed. This requires
+     * MongoDB 4.4 or newer.
+     * <p>
+     * Default is 0 (disabled).
+     */
+    private final int projectedReadMinSize =
+            Integer.getInteger("oak.mongo.projectedReadMinSize", 0);
+
+    /**
+     * Keys of node documents with a size equal or larger than
+     * {@link #projectedReadMinSize}.
+     */
+    private final Cache<String, Boolean> largeDocuments =
+            CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    /**
+     * Whether the MongoDB server supports reads with a projection of revision
+     * entries. Set to {@code false} when a projected read fails.
+     */
+    private volatile boolean projectionSupported = true;
+
+    /**
+     * Executor for asynchronous operations. An operation is performed by
+     * the calling thread when all threads are busy and the queue is full.
+     */
+    private final ThreadPoolExecutor asyncExecutor;
+
+    /**
+     * Executor for concurrent bulk updates or {@code null} if bulk updates
+     * are sent one after another.
+     */
+    @Nullable
+    private final ThreadPoolExecutor bulkExecutor;
+
     /**
      * Feature flag for use of MongoDB client sessions.
      */
@@ -280,6 +445,12 @@ public class MongoDocumentStore implements DocumentStore {
 
         this.nodeLocks = new StripedNodeDocumentLocks();
         this.nodesCache = builder.buildNodeDocumentCache(this, nodeLocks);
+        this.asyncExecutor = createExecutor("MongoDocumentStore async-", asyncThreads);
+        this.bulkExecutor = bulkParallelism > 1 ?
+                createExecutor("MongoDocumentStore bulk-", bulkParallelism) : null;
+        this.bulkSizes = new AdaptiveBulkSize(bulkSize,
+                maxBulkSize > bulkSize ? 1 : bulkSize,
+                Math.max(bulkSize, maxBulkSize), maxBulkBytes, bulkTargetMillis);
 
         LOG.info("Connected to MongoDB {} with maxReplicationLagMillis {}, " +
                 "maxDeltaForModTimeIdxSecs {}, disableIndexHint {}, " +
@@ -513,6 +684,337 @@ public class MongoDocumentStore implements DocumentStore {
         throw handleException(t, collection, key);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Document> T find(Collection<T> collection,
+                                       String key,
+                                       RevisionVector readRevision) {
+        if (collection != Collection.NODES) {
+            return find(collection, key);
+        }
+        NodeDocument doc = nodesCache.getIfPresent(key);
+        if (doc != null) {
+            stats.doneFindCached(collection, key);
+            return doc == NodeDocument.NULL ? null : (T) doc;
+        }
+        Revision bound = getProjectionBound(key);
+        if (bound != null) {
+            try {
+                return (T) findProjected(key, bound);
+            } catch (MongoCommandException e) {
+                // likely a MongoDB version without support for the
+                // operators used in the projection
+                projectionSupported = false;
+                LOG.warn("Read with projection of revision entries failed. " +
+                        "Disabling projected reads.", e);
+            }
+        }
+        if (!causalSecondaryReads || !withClientSession()
+                || client.getReplicaSetStatus() == null) {
+            return find(collection, key);
+        }
+        BsonTimestamp latest = sessionFactory.getOperationTime();
+        if (latest == null) {
+            readRoutingStats.defaultRouting.increment();
+            return find(collection, key);
+        }
+        BsonTimestamp operationTime = readRevisionOperationTimes.asMap()
+                .putIfAbsent(readRevision, latest);
+        if (operationTime == null || operationTime.equals(latest)) {
+            // regular read is causally consistent with the same operation time
+            readRoutingStats.defaultRouting.increment();
+            return find(collection, key);
+        }
+        long caughtUpMillis = TimeUnit.SECONDS.toMillis(operationTime.getTime() + 1);
+        if (status.getReplicaSetOldestLastWrite() < caughtUpMillis) {
+            // a secondary did not yet apply the changes visible at the
+            // read revision and the read would block
+            readRoutingStats.secondaryLagging.increment();
+            return find(collection, key);
+        }
+        try {
+            doc = findUncached(key, operationTime);
+            readRoutingStats.secondary.increment();
+            return (T) doc;
+        } catch (MongoException e) {
+            LOG.debug("Read of {} from secondary failed, using default read preference", key, e);
+            readRoutingStats.defaultRouting.increment();
+            return find(collection, key);
+        }
+    }
+
+    /**
+     * Returns the lower bound for revision entries of a projected read of the
+     * document with the given key. Revision entries with a timestamp older
+     * than the bound are not read. The bound is the oldest sweep revision of
+     * all cluster nodes. This method returns {@code null} if the document
+     * should be read completely, because it is not known to be large or the
+     * sweep revisions are not available.
+     *
+     * @param key the key of a node document.
+     * @return the bound or {@code null} if the document should be read
+     *      completely.
+     */
+    @Nullable
+    private Revision getProjectionBound(String key) {
+        if (projectedReadMinSize <= 0 || !projectionSupported
+                || largeDocuments.getIfPresent(key) == null) {
+            return null;
+        }
+        NodeDocument root = nodesCache.getIfPresent(Utils.getIdFromPath(Path.ROOT));
+        if (root == null || root == NodeDocument.NULL) {
+            return null;
+        }
+        Revision bound = null;
+        for (Revision r : root.getSweepRevisions()) {
+            if (bound == null || r.getTimestamp() < bound.getTimestamp()) {
+                bound = r;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Reads a node document with a projection of its revision entries. The
+     * returned document only contains revision entries with a timestamp
+     * equal or newer than the timestamp of the given bound. Value maps with
+     * missing entries are marked as truncated on the returned document. A
+     * truncated document is not put into the cache. See
+     * {@link NodeDocument#markTruncated(Set)}.
+     *
+     * @param key the key of the document to find.
+     * @param bound the lower bound for revision entries.
+     * @return the document or {@code null} if the document doesn't exist.
+     */
+    @Nullable
+    private NodeDocument findProjected(String key, Revision bound) {
+        log("findProjected", key, bound);
+        final Stopwatch watch = startWatch();
+        long savedBytes = 0;
+        try {
+            ReadPreference readPreference = getMongoReadPreference(
+                    Collection.NODES, null, getDefaultReadPreference(Collection.NODES));
+            MongoCollection<BasicDBObject> dbCollection =
+                    getDBCollection(Collection.NODES, readPreference);
+            List<Bson> pipeline = projectRevisions(key, bound.getTimestamp());
+            List<BasicDBObject> result = new ArrayList<>(1);
+            execute(session -> {
+                if (session != null) {
+                    dbCollection.aggregate(session, pipeline).into(result);
+                } else {
+                    dbCollection.aggregate(pipeline).into(result);
+                }
+                return null;
+            });
+            if (result.isEmpty()) {
+                return null;
+            }
+            BasicDBObject obj = result.get(0);
+            @SuppressWarnings("unchecked")
+            List<String> truncated = (List<String>) obj.remove(PROJECTION_TRUNCATED);
+            Number size = (Number) obj.remove(PROJECTION_SIZE);
+            Number projectedSize = (Number) obj.remove(PROJECTION_PROJECTED_SIZE);
+            if (size != null && projectedSize != null) {
+                savedBytes = Math.max(0, size.longValue() - projectedSize.longValue());
+            }
+            NodeDocument doc = convertFromDBObject(Collection.NODES, obj);
+            if (doc != null) {
+                if (truncated == null || truncated.isEmpty()) {
+                    // nothing to truncate, use regular reads
+                    largeDocuments.invalidate(key);
+                } else {
+                    doc.markTruncated(new HashSet<>(truncated));
+                }
+                doc.seal();
+            }
+            return doc;
+        } finally {
+            stats.doneFindProjected(watch.elapsed(TimeUnit.NANOSECONDS),
+                    Collection.NODES, key, savedBytes);
+        }
+    }
+
+    /**
+     * Creates an aggregation pipeline for the document with the given key,
+     * which removes older revision entries from the value maps of the
+     * document. A value map of changes (properties and {@code _deleted})
+     * keeps entries with a timestamp equal or newer than the given timestamp
+     * and the entries with the most recent timestamp older than the given
+     * timestamp. The value maps in {@link #PROJECTION_COMMIT_MAPS} keep
+     * entries with a timestamp equal or newer than the given timestamp and
+     * the entries with a timestamp kept for older changes. The value maps in
+     * {@link #PROJECTION_COMPLETE_MAPS} are never projected.
+     * <p>
+     * Revision keys are compared by their timestamp, which is the hex encoded
+     * part up to the first dash. A longer timestamp is newer, otherwise the
+     * lexicographic order applies.
+     * <p>
+     * The resulting document has additional fields with the names of the
+     * truncated value maps ({@link #PROJECTION_TRUNCATED}), the size of the
+     * complete document ({@link #PROJECTION_SIZE}) and the size of the
+     * projected document ({@link #PROJECTION_PROJECTED_SIZE}).
+     *
+     * @param key the key of the document.
+     * @param timestamp the timestamp of the oldest revision entries to keep.
+     * @return the aggregation pipeline.
+     */
+    private static List<Bson> projectRevisions(String key, long timestamp) {
+        String hex = Long.toHexString(timestamp);
+        BasicDBObject entries = new BasicDBObject("$objectToArray", "$$f.v");
+        BasicDBObject isObject = new BasicDBObject("$eq", asList(
+                new BasicDBObject("$type", "$$f.v"), "object"));
+        BasicDBObject isChangeMap = new BasicDBObject("$and", asList(isObject,
+                new BasicDBObject("$not", asList(new BasicDBObject("$in", asList("$$f.k",
+                        ImmutableList.builder().addAll(PROJECTION_COMPLETE_MAPS)
+                                .addAll(PROJECTION_COMMIT_MAPS).build()))))));
+        BasicDBObject isProjectedMap = new BasicDBObject("$and", asList(isObject,
+                new BasicDBObject("$not", asList(new BasicDBObject("$in",
+                        asList("$$f.k", PROJECTION_COMPLETE_MAPS))))));
+        // most recent timestamp older than the bound (m)
+        BasicDBObject mostRecentOlder = new BasicDBObject("$reduce",
+                new BasicDBObject("input", entries).append("initialValue", null)
+                        .append("in", new BasicDBObject("$let", new BasicDBObject("vars",
+                                new BasicDBObject("t", timestampOf("$$this.k")))
+                                .append("in", new BasicDBObject("$cond", asList(
+                                        new BasicDBObject("$and", asList(
+                                                new BasicDBObject("$ne", asList("$$t", null)),
+                                                isOlder("$$t", hex),
+                                                new BasicDBObject("$or", asList(
+                                                        new BasicDBObject("$eq", asList("$$value", null)),
+                                                        isOlder("$$value", "$$t"))))),
+                                        "$$t", "$$value"))))));
+        BasicDBObject withMostRecentOlder = new BasicDBObject("$map",
+                new BasicDBObject("input", new BasicDBObject("$objectToArray", "$$ROOT"))
+                        .append("as", "f")
+                        .append("in", new BasicDBObject("k", "$$f.k").append("v", "$$f.v")
+                                .append("m", new BasicDBObject("$cond", asList(
+                                        isChangeMap, mostRecentOlder, null)))));
+        BasicDBObject olderTimestamps = new BasicDBObject("$filter",
+                new BasicDBObject("input", new BasicDBObject("$map",
+                        new BasicDBObject("input", "$fields").append("as", "f")
+                                .append("in", "$$f.m")))
+                        .append("cond", new BasicDBObject("$ne", asList("$$this", null))));
+        // entries to keep
+        BasicDBObject keep = new BasicDBObject("$let", new BasicDBObject("vars",
+                new BasicDBObject("t", timestampOf("$$e.k")))
+                .append("in", new BasicDBObject("$or", asList(
+                        new BasicDBObject("$eq", asList("$$t", null)),
+                        new BasicDBObject("$not", asList(isOlder("$$t", hex))),
+                        new BasicDBObject("$cond", asList(
+                                new BasicDBObject("$in", asList("$$f.k", PROJECTION_COMMIT_MAPS)),
+                                new BasicDBObject("$in", asList("$$t", "$older")),
+                                new BasicDBObject("$eq", asList("$$t", "$$f.m"))))))));
+        BasicDBObject projected = new BasicDBObject("$filter",
+                new BasicDBObject("input", entries).append("as", "e").append("cond", keep));
+        // one entry per field with name (k), projected value (v)
+        // and whether the value was truncated (t)
+        BasicDBObject field = new BasicDBObject("$cond", asList(isProjectedMap,
+                new BasicDBObject("$let", new BasicDBObject("vars",
+                        new BasicDBObject("p", projected)).append("in",
+                        new BasicDBObject("k", "$$f.k")
+                                .append("v", new BasicDBObject("$arrayToObject", "$$p"))
+                                .append("t", new BasicDBObject("$lt", asList(
+                                        new BasicDBObject("$size", "$$p"),
+                                        new BasicDBObject("$size", entries)))))),
+                new BasicDBObject("k", "$$f.k").append("v", "$$f.v").append("t", false)));
+        BasicDBObject projectedFields = new BasicDBObject("$map",
+                new BasicDBObject("input", "$fields").append("as", "f").append("in", field));
+        BasicDBObject truncated = new BasicDBObject("$map",
+                new BasicDBObject("input", new BasicDBObject("$filter",
+                        new BasicDBObject("input", "$fields").append("as", "f")
+                                .append("cond", "$$f.t")))
+                        .append("as", "f").append("in", "$$f.k"));
+        BasicDBObject doc = new BasicDBObject("$arrayToObject", new BasicDBObject("$map",
+                new BasicDBObject("input", "$fields").append("as", "f")
+                        .append("in", new BasicDBObject("k", "$$f.k").append("v", "$$f.v"))));
+        return asList(
+                new BasicDBObject("$match", getByKeyQuery(key)),
+                new BasicDBObject("$addFields", new BasicDBObject(PROJECTION_SIZE,
+                        new BasicDBObject("$bsonSize", "$$ROOT"))),
+                new BasicDBObject("$project", new BasicDBObject("_id", 0)
+                        .append("fields", withMostRecentOlder)),
+                new BasicDBObject("$addFields", new BasicDBObject("older", olderTimestamps)),
+                new BasicDBObject("$project", new BasicDBObject("fields", projectedFields)),
+                new BasicDBObject("$replaceRoot", new BasicDBObject("newRoot",
+                        new BasicDBObject("$mergeObjects", asList(doc,
+                                new BasicDBObject(PROJECTION_TRUNCATED, truncated))))),
+                new BasicDBObject("$addFields", new BasicDBObject(PROJECTION_PROJECTED_SIZE,
+                        new BasicDBObject("$bsonSize", "$$ROOT")))
+        );
+    }
+
+    /**
+     * @param key an expression for a document key.
+     * @return an expression for the hex encoded timestamp of the given key
+     *      or {@code null} if the key is not a revision.
+     */
+    private static BasicDBObject timestampOf(String key) {
+        return new BasicDBObject("$let", new BasicDBObject("vars",
+                new BasicDBObject("d", new BasicDBObject("$indexOfCP", asList(key, "-"))))
+                .append("in", new BasicDBObject("$cond", asList(
+                        new BasicDBObject("$lt", asList("$$d", 1)),
+                        null,
+                        new BasicDBObject("$substrCP", asList(key, 1,
+                                new BasicDBObject("$subtract", asList("$$d", 1))))))));
+    }
+
+    /**
+     * @param a an expression for a hex encoded timestamp.
+     * @param b an expression for a hex encoded timestamp.
+     * @return an expression whether timestamp {@code a} is older than
+     *      timestamp {@code b}.
+     */
+    private static BasicDBObject isOlder(String a, String b) {
+        BasicDBObject lengthA = new BasicDBObject("$strLenCP", a);
+        BasicDBObject lengthB = new BasicDBObject("$strLenCP", b);
+        return new BasicDBObject("$or", asList(
+                new BasicDBObject("$lt", asList(lengthA, lengthB)),
+                new BasicDBObject("$and", asList(
+                        new BasicDBObject("$eq", asList(lengthA, lengthB)),
+                        new BasicDBObject("$lt", asList(a, b))))));
+    }
+
+    /**
+     * Reads a node document from a secondary with a client session at the
+     * given operation time. The document contains at least the changes up to
+     * the operation time, but may be older than the document in the cache.
+     * The document is therefore not put into the cache.
+     *
+     * @param key the key of the document to find.
+     * @param operationTime the operation time for the read.
+     * @return the document or {@code null} if the document doesn't exist.
+     */
+    @Nullable
+    private NodeDocument findUncached(String key, BsonTimestamp operationTime) {
+        log("findUncached", key, operationTime);
+        final Stopwatch watch = startWatch();
+        boolean docFound = false;
+        try {
+            ReadPreference readPreference = getConfiguredReadPreference(Collection.NODES);
+            if (!readPreference.isSlaveOk()) {
+                readPreference = ReadPreference.nearest();
+            }
+            MongoCollection<BasicDBObject> dbCollection =
+                    getDBCollection(Collection.NODES, readPreference);
+            List<BasicDBObject> result = new ArrayList<>(1);
+            try (ClientSession session = sessionFactory.createClientSession(operationTime)) {
+                dbCollection.find(session, getByKeyQuery(key)).into(result);
+            }
+            if (result.isEmpty()) {
+                return null;
+            }
+            docFound = true;
+            NodeDocument doc = convertFromDBObject(Collection.NODES, result.get(0));
+            if (doc != null) {
+                doc.seal();
+            }
+            return doc;
+        } finally {
+            stats.doneFindUncached(watch.elapsed(TimeUnit.NANOSECONDS),
+                    Collection.NODES, key, docFound, true);
+        }
+    }
+
     /**
      * Finds a document and performs a number of retries if the read fails with
      * an exception.
@@ -582,6 +1084,10 @@ public class MongoDocumentStore implements DocumentStore {
             T doc = convertFromDBObject(collection, result.get(0));
             if (doc != null) {
                 doc.seal();
+                if (collection == Collection.NODES && projectedReadMinSize > 0
+                        && doc.getMemory() >= projectedReadMinSize) {
+                    largeDocuments.put(key, Boolean.TRUE);
+                }
             }
             return doc;
         } finally {
@@ -1072,7 +1578,9 @@ public class MongoDocumentStore implements DocumentStore {
                 results.put(clone, null);
             }
 
-            Map<String, T> oldDocs = new HashMap<String, T>();
+            // bulk updates running concurrently share the old documents
+            Map<String, T> oldDocs = bulkExecutor != null ?
+                    new ConcurrentHashMap<String, T>() : new HashMap<String, T>();
             if (collection == Collection.NODES) {
                 oldDocs.putAll((Map<String, T>) getCachedNodes(operationsToCover.keySet()));
             }
@@ -1083,8 +1591,11 @@ public class MongoDocumentStore implements DocumentStore {
                     // in bulk mode wouldn't result in any performance gain
                     break;
                 }
-                for (List<UpdateOp> partition : Lists.partition(Lists.newArrayList(operationsToCover.values()), bulkSize)) {
-                    Map<UpdateOp, T> successfulUpdates = bulkUpdate(collection, partition, oldDocs);
+                // only the operations that failed in the previous round
+                // are left and retried
+                List<List<UpdateOp>> partitions = bulkSizes.partition(
+                        Lists.newArrayList(operationsToCover.values()));
+                for (Map<UpdateOp, T> successfulUpdates : bulkUpdates(collection, partitions, oldDocs)) {
                     results.putAll(successfulUpdates);
                     operationsToCover.values().removeAll(successfulUpdates.keySet());
                 }
@@ -1133,6 +1644,76 @@ public class MongoDocumentStore implements DocumentStore {
         return nodes;
     }
 
+    /**
+     * Performs a bulk update for each of the given partitions. The bulk
+     * updates are sent concurrently, with at most {@link #bulkParallelism}
+     * in flight, when a bulk executor is configured. The partitions must not
+     * have update operations for the same document.
+     *
+     * @param collection the collection.
+     * @param partitions the partitions of update operations.
+     * @param oldDocs the known old documents.
+     * @return the successful updates of each partition.
+     */
+    private <T extends Document> List<Map<UpdateOp, T>> bulkUpdates(Collection<T> collection,
+                                                                    List<List<UpdateOp>> partitions,
+                                                                    Map<String, T> oldDocs) {
+        List<Map<UpdateOp, T>> results = new ArrayList<>(partitions.size());
+        if (bulkExecutor == null || partitions.size() < 2) {
+            for (List<UpdateOp> partition : partitions) {
+                results.add(timedBulkUpdate(collection, partition, oldDocs));
+            }
+            return results;
+        }
+        Semaphore inFlight = new Semaphore(bulkParallelism);
+        List<Future<Map<UpdateOp, T>>> futures = new ArrayList<>(partitions.size());
+        for (List<UpdateOp> partition : partitions) {
+            inFlight.acquireUninterruptibly();
+            try {
+                futures.add(bulkExecutor.submit(() -> {
+                    try {
+                        return timedBulkUpdate(collection, partition, oldDocs);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                futures.add(immediateFailedFuture(new DocumentStoreException(
+                        "MongoDocumentStore is disposed", e)));
+                break;
+            }
+        }
+        // wait for all bulk updates before a failure is reported
+        RuntimeException failure = null;
+        for (Future<Map<UpdateOp, T>> f : futures) {
+            try {
+                results.add(getUninterruptibly(f));
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof RuntimeException ?
+                            (RuntimeException) cause : DocumentStoreException.convert(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private <T extends Document> Map<UpdateOp, T> timedBulkUpdate(Collection<T> collection,
+                                                                  List<UpdateOp> updateOperations,
+                                                                  Map<String, T> oldDocs) {
+        long start = System.nanoTime();
+        Map<UpdateOp, T> result = bulkUpdate(collection, updateOperations, oldDocs);
+        long elapsed = System.nanoTime() - start;
+        bulkSizes.done(updateOperations.size(), elapsed);
+        bulkWriteStats.done(updateOperations.size(), elapsed);
+        return result;
+    }
+
     private <T extends Document> Map<UpdateOp, T> bulkUpdate(Collection<T> collection,
                                                              List<UpdateOp> updateOperations,
                                                              Map<String, T> oldDocs) {
@@ -1283,6 +1864,89 @@ public class MongoDocumentStore implements DocumentStore {
         return doc;
     }
 
+    //--------------------------< AsyncDocumentStore >--------------------------
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+                                                             String key,
+                                                             int maxCacheAge) {
+        return async(() -> find(collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+                                                                    String fromKey,
+                                                                    String toKey,
+                                                                    int limit) {
+        return async(() -> query(collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+                                                                     List<UpdateOp> updateOps) {
+        return async(() -> create(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+                                                                       UpdateOp update) {
+        return async(() -> createOrUpdate(collection, update));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                             List<UpdateOp> updateOps) {
+        return async(() -> createOrUpdate(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+                                                                      UpdateOp update) {
+        return async(() -> findAndUpdate(collection, update));
+    }
+
+    private <T> CompletionStage<T> async(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, asyncExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> f = new CompletableFuture<>();
+            f.completeExceptionally(new DocumentStoreException(
+                    "MongoDocumentStore is disposed", e));
+            return f;
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(String namePrefix, int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads * 16),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NotNull Runnable r) {
+                        Thread t = new Thread(r, namePrefix + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Executor is shut down");
+                        }
+                        // back pressure: perform on the calling thread
+                        r.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public <T extends Document> boolean create(Collection<T> collection, List<UpdateOp> updateOps) {
         log("create", updateOps);
@@ -1554,8 +2218,39 @@ public class MongoDocumentStore implements DocumentStore {
         return Filters.eq(Document.ID, key);
     }
 
+    /**
+     * @return statistics about the routing of document reads for a read
+     *      revision.
+     */
+    @NotNull
+    ReadRoutingStats getReadRoutingStats() {
+        return readRoutingStats;
+    }
+
+    /**
+     * @return statistics about bulk updates performed by this store.
+     */
+    @NotNull
+    BulkWriteStats getBulkWriteStats() {
+        return bulkWriteStats;
+    }
+
+    /**
+     * @return the current number of update operations put into one bulk
+     *          update.
+     */
+    int getBulkSize() {
+        return bulkSizes.getSize();
+    }
+
     @Override
     public void dispose() {
+        // asynchronous operations may still issue bulk updates,
+        // shut down the bulk executor after them
+        shutdown(asyncExecutor, "Asynchronous operations");
+        if (bulkExecutor != null) {
+            shutdown(bulkExecutor, "Bulk updates");
+        }
         client.close();
         try {
             nodesCache.close();
@@ -1564,6 +2259,17 @@ public class MongoDocumentStore implements DocumentStore {
         }
     }
 
+    private static void shutdown(ThreadPoolExecutor executor, String name) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("{} did not complete within 10 seconds", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public Iterable<CacheStats> getCacheStats() {
         return nodesCache.getCacheStats();
@@ -1618,6 +2324,73 @@ public class MongoDocumentStore implements DocumentStore {
         return doc;
     }
 
+    @Override
+    public <T extends Document> void prefetch(Collection<T> collection,
+                                              Iterable<String> keys) {
+        if (collection != Collection.NODES) {
+            // only documents in the nodes collection are cached
+            return;
+        }
+        Set<String> uncached = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (nodesCache.getIfPresent(key) == null) {
+                uncached.add(key);
+            }
+        }
+        for (List<String> batch : Iterables.partition(uncached, prefetchBatchSize)) {
+            prefetchDocuments(batch);
+        }
+    }
+
+    /**
+     * Reads the node documents with the given keys with a single query and
+     * puts them into the cache.
+     *
+     * @param keys the keys of the documents to read.
+     */
+    private void prefetchDocuments(List<String> keys) {
+        log("prefetch", keys);
+        final Stopwatch watch = startWatch();
+        boolean isSlaveOk = false;
+        int resultSize = 0;
+        CacheChangesTracker tracker = nodesCache.registerTracker(new HashSet<>(keys));
+        try {
+            MongoCollection<BasicDBObject> dbCollection;
+            if (secondariesWithinAcceptableLag()) {
+                dbCollection = getDBCollection(Collection.NODES);
+                isSlaveOk = dbCollection.getReadPreference().isSlaveOk();
+            } else {
+                lagTooHigh();
+                dbCollection = getDBCollection(Collection.NODES)
+                        .withReadPreference(ReadPreference.primary());
+            }
+            List<NodeDocument> docs = new ArrayList<>(keys.size());
+            execute(session -> {
+                Bson query = Filters.in(Document.ID, keys);
+                FindIterable<BasicDBObject> result;
+                if (session != null) {
+                    result = dbCollection.find(session, query);
+                } else {
+                    result = dbCollection.find(query);
+                }
+                if (maxQueryTimeMS > 0) {
+                    result.maxTime(maxQueryTimeMS, TimeUnit.MILLISECONDS);
+                }
+                for (BasicDBObject o : result) {
+                    docs.add(convertFromDBObject(Collection.NODES, o));
+                }
+                return null;
+            });
+            resultSize = docs.size();
+            nodesCache.putNonConflictingDocs(tracker, docs);
+        } finally {
+            tracker.close();
+            stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), Collection.NODES,
+                    keys.get(0), keys.get(keys.size() - 1), false,
+                    resultSize, -1, isSlaveOk);
+        }
+    }
+
     @NotNull
     private static Bson createQueryForUpdate(String key,
                                              Map<Key, Condition> conditions) {
@@ -1897,6 +2670,84 @@ public class MongoDocumentStore implements DocumentStore {
         T call(@Nullable ClientSession session) throws DocumentStoreException;
     }
 
+    /**
+     * Cumulative statistics about the routing of document reads for a read
+     * revision.
+     */
+    static final class ReadRoutingStats {
+
+        private final LongAdder secondary = new LongAdder();
+
+        private final LongAdder secondaryLagging = new LongAdder();
+
+        private final LongAdder defaultRouting = new LongAdder();
+
+        /**
+         * @return the number of reads served by a secondary with the
+         *      operation time of the read revision.
+         */
+        long getSecondary() {
+            return secondary.sum();
+        }
+
+        /**
+         * @return the number of reads with the default read preference
+         *      because secondaries did not yet apply the changes visible at
+         *      the read revision.
+         */
+        long getSecondaryLagging() {
+            return secondaryLagging.sum();
+        }
+
+        /**
+         * @return the number of reads with the default read preference
+         *      because the operation time of the read revision is the most
+         *      recent one or a read from a secondary failed.
+         */
+        long getDefaultRouting() {
+            return defaultRouting.sum();
+        }
+    }
+
+    /**
+     * Cumulative statistics about bulk updates.
+     */
+    static final class BulkWriteStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder numOps = new LongAdder();
+
+        private final LongAdder nanos = new LongAdder();
+
+        void done(int ops, long elapsedNanos) {
+            count.increment();
+            numOps.add(ops);
+            nanos.add(elapsedNanos);
+        }
+
+        /**
+         * @return the number of bulk updates.
+         */
+        long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the number of update operations sent with bulk updates.
+         */
+        long getNumOps() {
+            return numOps.sum();
+        }
+
+        /**
+         * @return the time spent in bulk updates in nanoseconds.
+         */
+        long getNanos() {
+            return nanos.sum();
+        }
+    }
+
     private static class BulkUpdateResult {
 
         private final Set<String> failedUpdates;
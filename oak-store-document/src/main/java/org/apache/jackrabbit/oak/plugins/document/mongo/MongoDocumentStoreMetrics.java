@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document.mongo;
 
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.ImmutableList;
 import com.mongodb.BasicDBObject;
@@ -44,12 +45,21 @@ public final class MongoDocumentStoreMetrics implements Runnable {
             Collection.NODES, Collection.JOURNAL, Collection.CLUSTER_NODES, Collection.SETTINGS, Collection.BLOBS
     );
 
+    private final MongoDocumentStore store;
+
     private final MongoDatabase db;
 
     private final StatisticsProvider statsProvider;
 
+    private long lastBulkWrites;
+
+    private long lastBulkOps;
+
+    private long lastBulkNanos;
+
     public MongoDocumentStoreMetrics(MongoDocumentStore store,
                                      StatisticsProvider statsProvider) {
+        this.store = store;
         this.db = store.getDatabase();
         this.statsProvider = statsProvider;
     }
@@ -65,6 +75,8 @@ public final class MongoDocumentStoreMetrics implements Runnable {
 
     private void updateCounters() {
         LOG.debug("Updating counters");
+        updateBulkCounters();
+        updateReadRoutingCounters();
         try {
             Set<String> collectionNames = new TreeSet<>();
             db.listCollectionNames().into(collectionNames);
@@ -87,6 +99,47 @@ public final class MongoDocumentStoreMetrics implements Runnable {
         }
     }
 
+    /**
+     * Updates the counters for bulk updates. The average bulk size and the
+     * throughput are calculated from the bulk updates since the previous
+     * run. The throughput is the number of update operations per second
+     * spent in bulk updates.
+     */
+    private void updateBulkCounters() {
+        MongoDocumentStore.BulkWriteStats bulkStats = store.getBulkWriteStats();
+        long writes = bulkStats.getCount();
+        long ops = bulkStats.getNumOps();
+        long nanos = bulkStats.getNanos();
+        long deltaWrites = writes - lastBulkWrites;
+        long deltaOps = ops - lastBulkOps;
+        long deltaNanos = nanos - lastBulkNanos;
+        lastBulkWrites = writes;
+        lastBulkOps = ops;
+        lastBulkNanos = nanos;
+
+        updateCounter(getDBCounter("bulkSize"), store.getBulkSize());
+        updateCounter(getDBCounter("bulkWrites"), writes);
+        updateCounter(getDBCounter("bulkWriteOps"), ops);
+        if (deltaWrites > 0) {
+            updateCounter(getDBCounter("bulkWriteAvgOps"), deltaOps / deltaWrites);
+        }
+        if (deltaNanos > 0) {
+            updateCounter(getDBCounter("bulkWriteOpsPerSecond"),
+                    deltaOps * TimeUnit.SECONDS.toNanos(1) / deltaNanos);
+        }
+    }
+
+    /**
+     * Updates the counters for the routing of document reads for a read
+     * revision.
+     */
+    private void updateReadRoutingCounters() {
+        MongoDocumentStore.ReadRoutingStats routingStats = store.getReadRoutingStats();
+        updateCounter(getDBCounter("readRevision.secondary"), routingStats.getSecondary());
+        updateCounter(getDBCounter("readRevision.secondaryLagging"), routingStats.getSecondaryLagging());
+        updateCounter(getDBCounter("readRevision.default"), routingStats.getDefaultRouting());
+    }
+
     private void updateCounter(CounterStats counter, long value) {
         counter.inc(value - counter.getCount());
     }
@@ -27,6 +27,7 @@ import com.mongodb.session.ServerSession;
 import org.bson.BsonDocument;
 import org.bson.BsonTimestamp;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Factory for {@link ClientSession}s.
@@ -56,6 +57,33 @@ class MongoSessionFactory {
         return new TrackingClientSession(s);
     }
 
+    /**
+     * Creates a client session with the given operation time. Reads with the
+     * returned session are causally consistent with the write and read
+     * operations up to the given operation time, but not necessarily with
+     * more recent operations seen by sessions of this factory.
+     *
+     * @param operationTime the operation time for the session.
+     * @return the client session.
+     */
+    ClientSession createClientSession(@NotNull BsonTimestamp operationTime) {
+        ClientSession s = client.startSession(options);
+        synchronized (this) {
+            s.advanceClusterTime(clusterTime);
+        }
+        s.advanceOperationTime(operationTime);
+        return new TrackingClientSession(s);
+    }
+
+    /**
+     * @return the most recent operation time seen by a session created with
+     *      this factory or {@code null} if there is none yet.
+     */
+    @Nullable
+    synchronized BsonTimestamp getOperationTime() {
+        return operationTime;
+    }
+
     private class TrackingClientSession implements ClientSession {
 
         private final ClientSession session;
@@ -175,7 +203,7 @@ class MongoSessionFactory {
 
         @Override
         public void close() {
-            synchronized (this) {
+            synchronized (MongoSessionFactory.this) {
                 session.advanceClusterTime(clusterTime);
                 clusterTime = session.getClusterTime();
                 session.advanceOperationTime(operationTime);
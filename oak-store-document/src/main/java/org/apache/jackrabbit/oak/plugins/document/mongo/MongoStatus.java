@@ -211,6 +211,18 @@ public class MongoStatus implements ServerMonitorListener {
         return replicaSetStatus.getLagEstimate();
     }
 
+    /**
+     * Returns the time in milliseconds up to which all members of the replica
+     * set applied write operations. See
+     * {@link ReplicaSetStatus#getOldestLastWrite()}.
+     *
+     * @return the time of the oldest last write in milliseconds or zero if
+     *      currently unknown.
+     */
+    long getReplicaSetOldestLastWrite() {
+        return replicaSetStatus.getOldestLastWrite();
+    }
+
     //------------------------< ServerMonitorListener >-------------------------
 
     @Override
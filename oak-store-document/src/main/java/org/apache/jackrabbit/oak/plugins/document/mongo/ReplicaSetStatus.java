@@ -64,6 +64,8 @@ public class ReplicaSetStatus extends ServerMonitorListenerAdapter {
 
     private long lagEstimate = UNKNOWN_LAG;
 
+    private long oldestLastWrite = 0;
+
     @Override
     public void serverHeartbeatSucceeded(ServerHeartbeatSucceededEvent event) {
         synchronized (heartbeats) {
@@ -81,9 +83,23 @@ public class ReplicaSetStatus extends ServerMonitorListenerAdapter {
         return lagEstimate;
     }
 
+    /**
+     * Returns the time in milliseconds of the last write operation applied by
+     * the member of the replica set that is most behind. All members applied
+     * at least the write operations up to this time. The value may be
+     * somewhat out of date, but is never ahead of the replica set. This
+     * method returns zero if the value is currently unknown.
+     *
+     * @return the time of the oldest last write in milliseconds or zero.
+     */
+    public long getOldestLastWrite() {
+        return oldestLastWrite;
+    }
+
     private void updateLag() {
         if (!heartbeats.keySet().containsAll(members)) {
             lagEstimate = UNKNOWN_LAG;
+            oldestLastWrite = 0;
             return;
         }
 
@@ -112,6 +128,7 @@ public class ReplicaSetStatus extends ServerMonitorListenerAdapter {
         // have some fresh and some stale heartbeats with update times up to
         // heartbeatFreqMillis apart
         long uncertaintyMillis = newestUpdate - oldestUpdate;
+        oldestLastWrite = oldestWrite == Long.MAX_VALUE ? 0 : oldestWrite;
         estimatesPerMember.addFirst(Math.max(0, newestWrite - oldestWrite - uncertaintyMillis));
 
         // average estimates over up to number of members and remove old value
@@ -30,6 +30,7 @@ import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.util.RevisionsKey;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.StringDataType;
 
@@ -97,8 +98,9 @@ public enum CacheType {
 
         @Override
         public <V> void writeValue(WriteBuffer buffer, V value) {
-            String s = ((DocumentNodeState.Children) value).asString();
-            StringDataType.INSTANCE.write(buffer, s);
+            byte[] bytes = ((DocumentNodeState.Children) value).asBytes();
+            StringDataType.INSTANCE.write(buffer, BINARY_CHILDREN);
+            buffer.putVarInt(bytes.length).put(bytes);
         }
 
         @SuppressWarnings("unchecked")
@@ -106,7 +108,14 @@ public enum CacheType {
         public <V> V readValue(DocumentNodeStore store,
                                DocumentStore docStore,
                                ByteBuffer buffer) {
-            return (V) DocumentNodeState.Children.fromString(readString(buffer));
+            String s = readString(buffer);
+            if (BINARY_CHILDREN.equals(s)) {
+                byte[] bytes = new byte[DataUtils.readVarInt(buffer)];
+                buffer.get(bytes);
+                return (V) DocumentNodeState.Children.fromBytes(bytes);
+            }
+            // written as JSON by an older version
+            return (V) DocumentNodeState.Children.fromString(s);
         }
 
         @Override
@@ -168,29 +177,32 @@ public enum CacheType {
 
         @Override
         public <K> void writeKey(WriteBuffer buffer, K key) {
-            throw new UnsupportedOperationException();
+            String s = ((StringValue) key).asString();
+            StringDataType.INSTANCE.write(buffer, s);
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public <K> K readKey(ByteBuffer buffer) {
-            throw new UnsupportedOperationException();
+            return (K) StringValue.fromString(readString(buffer));
         }
 
         @Override
         public <K> int compareKeys(K a, K b) {
-            throw new UnsupportedOperationException();
+            return ((StringValue) a).asString().compareTo(((StringValue) b).asString());
         }
 
         @Override
         public <V> void writeValue(WriteBuffer buffer, V value) {
-            throw new UnsupportedOperationException();
+            DataTypeUtil.documentToBuffer((NodeDocument) value, buffer);
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public <V> V readValue(DocumentNodeStore store,
                                DocumentStore docStore,
                                ByteBuffer buffer) {
-            throw new UnsupportedOperationException();
+            return (V) DataTypeUtil.documentFromBuffer(docStore, buffer);
         }
 
         @Override
@@ -296,6 +308,12 @@ public enum CacheType {
             DocumentNodeStore store, DocumentStore docStore, ByteBuffer buffer);
     public abstract <K> boolean shouldCache(DocumentNodeStore store, K key);
 
+    /**
+     * Marks children written in binary format. Children in JSON format
+     * never start with this value.
+     */
+    private static final String BINARY_CHILDREN = "\u0000bin";
+
     private static String readString(ByteBuffer buffer) {
         return StringDataType.INSTANCE.read(buffer);
     }
@@ -25,7 +25,9 @@ import java.util.Map;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.NamePathRev;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
@@ -166,4 +168,28 @@ class DataTypeUtil {
         return new DocumentNodeState(store, p, rootRevision, props,
                 !noChildren, mem, lastRevision, false);
     }
+
+    static void documentToBuffer(NodeDocument doc, WriteBuffer buffer) {
+        if (doc == NodeDocument.NULL) {
+            booleanToBuffer(false, buffer);
+            return;
+        }
+        booleanToBuffer(true, buffer);
+        buffer.putVarLong(doc.getCreated());
+        buffer.putVarLong(doc.getLastCheckTime());
+        StringDataType.INSTANCE.write(buffer, doc.asString());
+    }
+
+    static NodeDocument documentFromBuffer(DocumentStore store,
+                                           ByteBuffer buffer) {
+        if (!booleanFromBuffer(buffer)) {
+            return NodeDocument.NULL;
+        }
+        long created = DataUtils.readVarLong(buffer);
+        long lastCheckTime = DataUtils.readVarLong(buffer);
+        NodeDocument doc = NodeDocument.fromString(store,
+                StringDataType.INSTANCE.read(buffer), created);
+        doc.markUpToDate(lastCheckTime);
+        return doc;
+    }
 }
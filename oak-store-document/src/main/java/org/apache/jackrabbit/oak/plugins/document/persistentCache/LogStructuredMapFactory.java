@@ -0,0 +1,930 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.ObjectDataType;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link MapFactory} backed by an append-only log. Every put, remove and
+ * clear is appended to the log and an in-memory open-addressing index per map
+ * points from the hash of the serialized key to the position of the latest
+ * record for that key. Space of overwritten entries is never reclaimed within
+ * a log. Instead the {@link PersistentCache} rotates generations once a log
+ * reaches its maximum size and drops the oldest generation as a whole.
+ * <p>
+ * The log is stored in a file, memory mapped in segments of
+ * {@link #SEGMENT_SIZE} bytes. Records never span a segment. The segment size
+ * is stored in the header and an existing log is always read with the segment
+ * size it was written with. When no file name is given, the segments are
+ * allocated in direct memory. The segments are unmapped when the store is
+ * closed. The index is rebuilt by scanning the log when the store is opened.
+ * Scanning stops at the first record with an invalid checksum, that is, a
+ * partially written record at the end of the log is ignored.
+ * <p>
+ * Header format:
+ * <pre>
+ * int magic
+ * int version
+ * int segment size
+ * </pre>
+ * Record format:
+ * <pre>
+ * int length of payload
+ * int CRC32 checksum of payload
+ * payload:
+ *   byte operation (PUT, REMOVE, CLEAR, MAP)
+ *   varInt map id
+ *   PUT: varInt key length, key, value
+ *   REMOVE: key
+ *   CLEAR: (empty)
+ *   MAP: map name (UTF-8)
+ * </pre>
+ */
+class LogStructuredMapFactory extends MapFactory {
+
+    static final int SEGMENT_SIZE = Integer.getInteger(
+            "oak.cache.log.segmentSize", 64 * 1024 * 1024);
+
+    private static final int MAGIC = 0x4F414B4C; // OAKL
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    static final int MIN_SEGMENT_SIZE = 1024;
+
+    /**
+     * Initial size of buffers for records and keys. Buffers grow as needed.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * Marks the end of the used space in a segment. The next record is
+     * at the start of the next segment.
+     */
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_MAP = 4;
+
+    private final String fileName;
+
+    private final boolean readOnly;
+
+    /**
+     * The segment size of a new log.
+     */
+    private final int configuredSegmentSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<WriteBuffer> keyBuffer = new ThreadLocal<WriteBuffer>() {
+        @Override
+        protected WriteBuffer initialValue() {
+            return new WriteBuffer(INITIAL_BUFFER_SIZE);
+        }
+    };
+
+    private RandomAccessFile file;
+
+    private List<ByteBuffer> segments;
+
+    /**
+     * The segment size of the open log.
+     */
+    private int segmentSize;
+
+    private Map<String, LogMap<?, ?>> maps;
+
+    private List<LogMap<?, ?>> mapsById;
+
+    /**
+     * The position where the next record is written to.
+     */
+    private long writePosition;
+
+    private boolean open;
+
+    /**
+     * Incremented whenever the store is opened. Maps of a previous epoch
+     * must not be used anymore, because their index is outdated.
+     */
+    private int epoch;
+
+    LogStructuredMapFactory(@Nullable String fileName, boolean readOnly) {
+        this(fileName, readOnly, SEGMENT_SIZE);
+    }
+
+    LogStructuredMapFactory(@Nullable String fileName,
+                            boolean readOnly,
+                            int segmentSize) {
+        checkArgument(segmentSize >= MIN_SEGMENT_SIZE,
+                "segmentSize must be at least %s", MIN_SEGMENT_SIZE);
+        this.fileName = fileName;
+        this.readOnly = readOnly;
+        this.configuredSegmentSize = segmentSize;
+    }
+
+    @Override
+    void openStore() {
+        lock.writeLock().lock();
+        try {
+            if (open) {
+                return;
+            }
+            segments = new ArrayList<>();
+            maps = new HashMap<>();
+            mapsById = new ArrayList<>();
+            writePosition = HEADER_SIZE;
+            segmentSize = configuredSegmentSize;
+            epoch++;
+            try {
+                if (fileName != null) {
+                    openFile();
+                } else {
+                    addSegment();
+                    writeHeader(segments.get(0));
+                }
+                open = true;
+            } catch (IOException e) {
+                // maps can not be opened until the store is re-opened
+                unmapSegments();
+                closeFile();
+                LOG.warn("Could not open the store " + fileName, e);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void closeStore() {
+        lock.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (file != null && !readOnly) {
+                for (ByteBuffer b : segments) {
+                    ((MappedByteBuffer) b).force();
+                }
+            }
+            unmapSegments();
+            if (file != null && !readOnly) {
+                // release the unused space of the last segment
+                try {
+                    file.setLength(writePosition);
+                } catch (IOException e) {
+                    LOG.warn("Could not truncate the store " + fileName, e);
+                }
+            }
+            closeFile();
+            segments = null;
+            maps = null;
+            mapsById = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            LogMap<?, ?> m = maps.get(name);
+            if (m == null) {
+                if (readOnly) {
+                    // map does not exist in this read-only log
+                    m = new LogMap<K, V>(this, -1);
+                } else {
+                    m = new LogMap<K, V>(this, mapsById.size());
+                    byte[] n = name.getBytes(StandardCharsets.UTF_8);
+                    WriteBuffer buff = newRecord(OP_MAP, m.id);
+                    buff.put(n);
+                    append(buff);
+                    mapsById.add(m);
+                }
+                maps.put(name, m);
+            }
+            if (m.keyType == null) {
+                m.setTypes(builder);
+            }
+            return (Map<K, V>) m;
+        } catch (RuntimeException e) {
+            LOG.warn("Could not open the map " + name + " in " + fileName, e);
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    long getFileSize() {
+        lock.readLock().lock();
+        try {
+            return open ? writePosition : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    <K> byte[] serializeKey(DataType keyType, K key) {
+        WriteBuffer buff = keyBuffer.get();
+        buff.clear();
+        keyType.write(buff, key);
+        ByteBuffer bb = buff.getBuffer();
+        byte[] bytes = new byte[bb.position()];
+        ((Buffer) bb).flip();
+        bb.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the value of the PUT record at the given position if its key
+     * matches the given key. The caller must hold the read lock.
+     */
+    @Nullable
+    Object readValueIfKeyMatches(long pos, byte[] key, DataType valueType) {
+        ByteBuffer record = record(pos);
+        record.get(); // op
+        DataUtils.readVarInt(record); // map id
+        int keyLength = DataUtils.readVarInt(record);
+        if (keyLength != key.length || !keyEquals(record, key)) {
+            return null;
+        }
+        return valueType.read(record);
+    }
+
+    /**
+     * Returns {@code true} if the key of the PUT record at the given
+     * position matches the given key. The caller must hold the read lock.
+     */
+    boolean keyMatches(long pos, byte[] key) {
+        ByteBuffer record = record(pos);
+        record.get(); // op
+        DataUtils.readVarInt(record); // map id
+        int keyLength = DataUtils.readVarInt(record);
+        return keyLength == key.length && keyEquals(record, key);
+    }
+
+    /**
+     * Reads the key and value of the PUT record at the given position. The
+     * caller must hold the read lock.
+     */
+    Map.Entry<Object, Object> readEntry(long pos,
+                                        DataType keyType,
+                                        DataType valueType) {
+        ByteBuffer record = record(pos);
+        record.get(); // op
+        DataUtils.readVarInt(record); // map id
+        int keyLength = DataUtils.readVarInt(record);
+        ByteBuffer key = record.duplicate();
+        ((Buffer) key).limit(key.position() + keyLength);
+        Object k = keyType.read(key);
+        ((Buffer) record).position(record.position() + keyLength);
+        return new AbstractMap.SimpleImmutableEntry<>(k, valueType.read(record));
+    }
+
+    WriteBuffer newRecord(byte op, int mapId) {
+        WriteBuffer buff = new WriteBuffer(INITIAL_BUFFER_SIZE);
+        // placeholder for length and checksum
+        buff.putInt(0).putInt(0);
+        buff.put(op);
+        buff.putVarInt(mapId);
+        return buff;
+    }
+
+    /**
+     * Appends the record and returns its position. The caller must hold the
+     * write lock.
+     */
+    long append(WriteBuffer record) {
+        checkOpen();
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read-only store " + fileName);
+        }
+        ByteBuffer bb = record.getBuffer();
+        int length = bb.position();
+        int payloadLength = length - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(bb.array(), bb.arrayOffset() + RECORD_HEADER_SIZE, payloadLength);
+        bb.putInt(0, payloadLength);
+        bb.putInt(4, (int) crc.getValue());
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Record too large: " + length);
+        }
+        int offset = (int) (writePosition % segmentSize);
+        if (offset + length > segmentSize) {
+            // does not fit into the current segment
+            if (offset + 4 <= segmentSize) {
+                segment(writePosition).putInt(offset, END_OF_SEGMENT);
+            }
+            writePosition += segmentSize - offset;
+            offset = 0;
+        }
+        while (writePosition / segmentSize >= segments.size()) {
+            try {
+                addSegment();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not extend the store " + fileName, e);
+            }
+        }
+        ByteBuffer target = segment(writePosition).duplicate();
+        ((Buffer) target).position(offset);
+        ((Buffer) bb).flip();
+        target.put(bb);
+        long pos = writePosition;
+        writePosition += length;
+        return pos;
+    }
+
+    void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("Store is closed: " + fileName);
+        }
+    }
+
+    void checkOpen(int mapEpoch) {
+        checkOpen();
+        if (mapEpoch != epoch) {
+            throw new IllegalStateException("Store was re-opened: " + fileName);
+        }
+    }
+
+    private boolean keyEquals(ByteBuffer record, byte[] key) {
+        int p = record.position();
+        for (int i = 0; i < key.length; i++) {
+            if (record.get(p + i) != key[i]) {
+                return false;
+            }
+        }
+        ((Buffer) record).position(p + key.length);
+        return true;
+    }
+
+    /**
+     * Returns a buffer positioned at the payload of the record at the given
+     * position and limited to the end of the payload.
+     */
+    private ByteBuffer record(long pos) {
+        ByteBuffer b = segment(pos).duplicate();
+        int offset = (int) (pos % segmentSize);
+        int length = b.getInt(offset);
+        ((Buffer) b).limit(offset + RECORD_HEADER_SIZE + length);
+        ((Buffer) b).position(offset + RECORD_HEADER_SIZE);
+        return b;
+    }
+
+    private ByteBuffer segment(long pos) {
+        return segments.get((int) (pos / segmentSize));
+    }
+
+    private void addSegment() throws IOException {
+        ByteBuffer b;
+        if (file == null) {
+            b = ByteBuffer.allocateDirect(segmentSize);
+        } else {
+            long start = (long) segments.size() * segmentSize;
+            b = file.getChannel().map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+        }
+        segments.add(b);
+    }
+
+    private void openFile() throws IOException {
+        file = new RandomAccessFile(new File(fileName), readOnly ? "r" : "rw");
+        FileChannel channel = file.getChannel();
+        int storedSegmentSize = readSegmentSize(file);
+        if (storedSegmentSize > 0) {
+            if (storedSegmentSize != configuredSegmentSize) {
+                LOG.info("Using segment size {} of the existing store {} instead of {}",
+                        storedSegmentSize, fileName, configuredSegmentSize);
+            }
+            segmentSize = storedSegmentSize;
+        } else if (readOnly) {
+            // not a log file (e.g. an MVStore file from a different
+            // configuration), treat as empty
+            return;
+        } else {
+            // new or unknown format: start with an empty log and
+            // drop the existing content
+            channel.truncate(0);
+        }
+        if (readOnly) {
+            long size = channel.size();
+            for (long start = 0; start < size; start += segmentSize) {
+                long len = Math.min(segmentSize, size - start);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, len));
+            }
+        } else {
+            long size = channel.size();
+            do {
+                addSegment();
+            } while ((long) segments.size() * segmentSize < size);
+        }
+        if (storedSegmentSize > 0) {
+            scan();
+        } else {
+            ByteBuffer first = segments.get(0);
+            writeHeader(first);
+            first.putInt(HEADER_SIZE, 0);
+        }
+    }
+
+    private void writeHeader(ByteBuffer first) {
+        first.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, segmentSize);
+    }
+
+    /**
+     * Reads the segment size from the header of the given file.
+     *
+     * @return the segment size or zero if the file is not a log file or the
+     *          segment size is invalid.
+     */
+    private static int readSegmentSize(RandomAccessFile raf) throws IOException {
+        if (raf.length() < HEADER_SIZE) {
+            return 0;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        raf.seek(0);
+        raf.readFully(header);
+        ByteBuffer b = ByteBuffer.wrap(header);
+        if (b.getInt() != MAGIC || b.getInt() != VERSION) {
+            return 0;
+        }
+        int size = b.getInt();
+        if (size < MIN_SEGMENT_SIZE) {
+            LOG.warn("Invalid segment size {} in the header of the store", size);
+            return 0;
+        }
+        return size;
+    }
+
+    /**
+     * Unmaps the memory mapped segments or frees the direct memory. The
+     * caller must hold the write lock.
+     */
+    private void unmapSegments() {
+        for (ByteBuffer b : segments) {
+            unmap(b);
+        }
+        segments.clear();
+    }
+
+    /**
+     * Scans the log and rebuilds the maps and their index.
+     */
+    private void scan() {
+        long pos = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (pos / segmentSize < segments.size()) {
+            ByteBuffer seg = segment(pos);
+            int offset = (int) (pos % segmentSize);
+            if (offset + RECORD_HEADER_SIZE > seg.limit()) {
+                if (seg.limit() < segmentSize) {
+                    // end of a truncated log
+                    break;
+                }
+                pos += segmentSize - offset;
+                continue;
+            }
+            int length = seg.getInt(offset);
+            if (length == END_OF_SEGMENT) {
+                pos += segmentSize - offset;
+                continue;
+            }
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > seg.limit()) {
+                break;
+            }
+            int checksum = seg.getInt(offset + 4);
+            ByteBuffer payload = seg.duplicate();
+            ((Buffer) payload).position(offset + RECORD_HEADER_SIZE);
+            ((Buffer) payload).limit(offset + RECORD_HEADER_SIZE + length);
+            crc.reset();
+            byte[] data = new byte[length];
+            payload.duplicate().get(data);
+            crc.update(data, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                LOG.info("Invalid record checksum at {} in {}; ignoring the remaining log", pos, fileName);
+                break;
+            }
+            replay(pos, payload);
+            pos += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = pos;
+    }
+
+    private void replay(long pos, ByteBuffer payload) {
+        byte op = payload.get();
+        int mapId = DataUtils.readVarInt(payload);
+        if (op == OP_MAP) {
+            byte[] n = new byte[payload.remaining()];
+            payload.get(n);
+            LogMap<?, ?> m = new LogMap<Object, Object>(this, mapId);
+            while (mapsById.size() <= mapId) {
+                mapsById.add(null);
+            }
+            mapsById.set(mapId, m);
+            maps.put(new String(n, StandardCharsets.UTF_8), m);
+            return;
+        }
+        LogMap<?, ?> m = mapId < mapsById.size() ? mapsById.get(mapId) : null;
+        if (m == null) {
+            return;
+        }
+        if (op == OP_CLEAR) {
+            m.index.clear();
+        } else if (op == OP_PUT) {
+            int keyLength = DataUtils.readVarInt(payload);
+            byte[] key = new byte[keyLength];
+            payload.get(key);
+            m.index.put(hash(key), pos, key);
+        } else if (op == OP_REMOVE) {
+            byte[] key = new byte[payload.remaining()];
+            payload.get(key);
+            m.index.remove(hash(key), key);
+        }
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close the store " + fileName, e);
+            }
+            file = null;
+        }
+    }
+
+    static int hash(byte[] key) {
+        // FNV-1a followed by a final mix
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h ^= b;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * An open-addressing hash index with linear probing, from the hash of a
+     * serialized key to the position of the record in the log. Keys are not
+     * kept in memory, but are compared against the key in the record.
+     * Not thread-safe.
+     */
+    final class Index {
+
+        private int[] hashes = new int[16];
+
+        /**
+         * Positions of the records. Zero means the slot is free.
+         */
+        private long[] positions = new long[16];
+
+        private int size;
+
+        long get(int hash, byte[] key) {
+            int mask = positions.length - 1;
+            for (int i = hash & mask; positions[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash && keyMatches(positions[i], key)) {
+                    return positions[i];
+                }
+            }
+            return 0;
+        }
+
+        void put(int hash, long pos, byte[] key) {
+            if ((size + 1) * 2 > positions.length) {
+                resize(positions.length * 2);
+            }
+            int mask = positions.length - 1;
+            int i = hash & mask;
+            for (; positions[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash && keyMatches(positions[i], key)) {
+                    positions[i] = pos;
+                    return;
+                }
+            }
+            hashes[i] = hash;
+            positions[i] = pos;
+            size++;
+        }
+
+        boolean remove(int hash, byte[] key) {
+            int mask = positions.length - 1;
+            int i = hash & mask;
+            for (; positions[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash && keyMatches(positions[i], key)) {
+                    break;
+                }
+            }
+            if (positions[i] == 0) {
+                return false;
+            }
+            // backward shift deletion
+            positions[i] = 0;
+            size--;
+            for (int j = (i + 1) & mask; positions[j] != 0; j = (j + 1) & mask) {
+                int home = hashes[j] & mask;
+                // move the entry at j to i if i lies cyclically in [home, j)
+                if ((j > i && (home <= i || home > j)) || (j < i && (home <= i && home > j))) {
+                    hashes[i] = hashes[j];
+                    positions[i] = positions[j];
+                    positions[j] = 0;
+                    i = j;
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            hashes = new int[16];
+            positions = new long[16];
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the positions of all records in this index.
+         */
+        long[] positions() {
+            long[] result = new long[size];
+            int n = 0;
+            for (long p : positions) {
+                if (p != 0) {
+                    result[n++] = p;
+                }
+            }
+            return result;
+        }
+
+        private void resize(int newLength) {
+            int[] oldHashes = hashes;
+            long[] oldPositions = positions;
+            hashes = new int[newLength];
+            positions = new long[newLength];
+            int mask = newLength - 1;
+            for (int k = 0; k < oldPositions.length; k++) {
+                if (oldPositions[k] != 0) {
+                    int i = oldHashes[k] & mask;
+                    while (positions[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    hashes[i] = oldHashes[k];
+                    positions[i] = oldPositions[k];
+                }
+            }
+        }
+    }
+
+    /**
+     * A map in a log structured store. {@link #put(Object, Object)} and
+     * {@link #remove(Object)} always return {@code null} to avoid reading
+     * the previous value. {@link #entrySet()} returns an unmodifiable
+     * snapshot, which reads all entries from the log.
+     */
+    static final class LogMap<K, V> extends AbstractMap<K, V> {
+
+        private final LogStructuredMapFactory store;
+
+        private final int id;
+
+        private final Index index;
+
+        private final int epoch;
+
+        private DataType keyType;
+
+        private DataType valueType;
+
+        LogMap(LogStructuredMapFactory store, int id) {
+            this.store = store;
+            this.id = id;
+            this.index = store.new Index();
+            this.epoch = store.epoch;
+        }
+
+        void setTypes(@Nullable MVMap.Builder<?, ?> builder) {
+            DataType k = builder == null ? null : builder.getKeyType();
+            DataType v = builder == null ? null : builder.getValueType();
+            // same defaults as MVMap
+            this.keyType = k == null ? new ObjectDataType() : k;
+            this.valueType = v == null ? new ObjectDataType() : v;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V get(Object key) {
+            byte[] k = store.serializeKey(keyType, key);
+            int hash = hash(k);
+            store.lock.readLock().lock();
+            try {
+                store.checkOpen(epoch);
+                long pos = index.get(hash, k);
+                if (pos == 0) {
+                    return null;
+                }
+                return (V) store.readValueIfKeyMatches(pos, k, valueType);
+            } finally {
+                store.lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            byte[] k = store.serializeKey(keyType, key);
+            int hash = hash(k);
+            store.lock.readLock().lock();
+            try {
+                store.checkOpen(epoch);
+                return index.get(hash, k) != 0;
+            } finally {
+                store.lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public V put(K key, V value) {
+            byte[] k = store.serializeKey(keyType, key);
+            WriteBuffer record = store.newRecord(OP_PUT, id);
+            record.putVarInt(k.length);
+            record.put(k);
+            valueType.write(record, value);
+            int hash = hash(k);
+            store.lock.writeLock().lock();
+            try {
+                store.checkOpen(epoch);
+                long pos = store.append(record);
+                index.put(hash, pos, k);
+            } finally {
+                store.lock.writeLock().unlock();
+            }
+            return null;
+        }
+
+        @Override
+        public V remove(Object key) {
+            byte[] k = store.serializeKey(keyType, key);
+            int hash = hash(k);
+            store.lock.writeLock().lock();
+            try {
+                store.checkOpen(epoch);
+                if (index.get(hash, k) == 0) {
+                    return null;
+                }
+                WriteBuffer record = store.newRecord(OP_REMOVE, id);
+                record.put(k);
+                store.append(record);
+                index.remove(hash, k);
+            } finally {
+                store.lock.writeLock().unlock();
+            }
+            return null;
+        }
+
+        @Override
+        public void clear() {
+            store.lock.writeLock().lock();
+            try {
+                store.checkOpen(epoch);
+                store.append(store.newRecord(OP_CLEAR, id));
+                index.clear();
+            } finally {
+                store.lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            store.lock.readLock().lock();
+            try {
+                return index.size();
+            } finally {
+                store.lock.readLock().unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            store.lock.readLock().lock();
+            try {
+                store.checkOpen(epoch);
+                Set<Entry<K, V>> entries = new LinkedHashSet<>();
+                for (long pos : index.positions()) {
+                    entries.add((Entry<K, V>) (Entry<?, ?>) store.readEntry(pos, keyType, valueType));
+                }
+                return Collections.unmodifiableSet(entries);
+            } finally {
+                store.lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "LogMap{id=" + id + ", size=" + size() + "}";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogStructuredMapFactory{" + fileName + ", size=" + getFileSize() + "}";
+    }
+
+    static boolean isLogFile(File f) {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            return readSegmentSize(raf) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Releases the memory of a direct or memory mapped buffer right away,
+     * instead of waiting for the buffer to be garbage collected. The buffer
+     * must not be accessed anymore.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Could not unmap buffer, it is released when garbage collected", e);
+        }
+    }
+}
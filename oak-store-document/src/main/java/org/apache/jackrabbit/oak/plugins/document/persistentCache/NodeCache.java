@@ -31,6 +31,11 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
@@ -92,15 +97,16 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
         keyType = new KeyDataType(type);
         valueType = new ValueDataType(docNodeStore, docStore, type);
         this.memCacheMetadata = new CacheMetadata<K>();
+        this.stats = new PersistentCacheStats(type, statisticsProvider);
         if (async) {
-            this.writeQueue = new CacheWriteQueue<K, V>(dispatcher, cache, map);
+            this.writeQueue = new CacheWriteQueue<K, V>(dispatcher, cache, map,
+                    stats, cache.getWriteWaitMillis());
             LOG.info("The persistent cache {} writes will be asynchronous", type);
         } else {
             this.writeQueue = null;
             this.memCacheMetadata.disable();
             LOG.info("The persistent cache {} writes will be synchronous", type);
         }
-        this.stats = new PersistentCacheStats(type, statisticsProvider);
     }
     
     @Override
@@ -126,43 +132,95 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
         stats.removeReadGeneration(generation);
     }
     
-    private V readIfPresent(K key) {
+    private V readIfPresent(final K key) {
+        ExecutorService executor = cache.getLookupExecutor();
+        if (executor == null) {
+            return found(key, lookup(key));
+        }
+        long start = System.nanoTime();
+        Future<Lookup<V>> f;
+        try {
+            f = executor.submit(new Callable<Lookup<V>>() {
+                @Override
+                public Lookup<V> call() {
+                    return lookup(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many pending lookups, treat as a miss
+            stats.markLookupRejected();
+            return null;
+        }
+        try {
+            // the metadata is only updated when the value is returned
+            return found(key, f.get(cache.getLookupTimeoutMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // the caller falls back to the document store
+            f.cancel(false);
+            stats.markLookupTimeout();
+            return null;
+        } catch (InterruptedException e) {
+            f.cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOG.warn("Lookup in the persistent cache {} failed", type, e.getCause());
+            return null;
+        } finally {
+            stats.updateLookupTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Updates the metadata of the in-memory cache for a value returned to
+     * the caller.
+     */
+    @Nullable
+    private V found(K key, @Nullable Lookup<V> lookup) {
+        if (lookup == null) {
+            return null;
+        }
+        if (lookup.persisted) {
+            // don't persist again on eviction
+            memCacheMetadata.putFromPersistenceAndIncrement(key);
+        } else {
+            // persist again during eviction
+            memCacheMetadata.increment(key);
+        }
+        return lookup.value;
+    }
+
+    @Nullable
+    private Lookup<V> lookup(K key) {
         return async ? asyncReadIfPresent(key) : syncReadIfPresent(key);
     }
 
-    private V syncReadIfPresent(K key) {
+    @Nullable
+    private Lookup<V> syncReadIfPresent(K key) {
         cache.switchGenerationIfNeeded();
         TimerStats.Context ctx = stats.startReadTimer();
         V v = map.get(key);
         ctx.stop();
-        if (v != null) {
-            memCacheMetadata.putFromPersistenceAndIncrement(key);
-        }
-        return v;
+        return v == null ? null : new Lookup<V>(v, true);
     }
 
-    private V asyncReadIfPresent(K key) {
+    @Nullable
+    private Lookup<V> asyncReadIfPresent(K key) {
         TimerStats.Context ctx = stats.startReadTimer();
         try {
             MultiGenerationMap.ValueWithGenerationInfo<V> v = map.readValue(key);
             if (v == null) {
                 return null;
             }
-            if (v.isCurrentGeneration() && !cache.needSwitch()) {
-                // don't persist again on eviction
-                memCacheMetadata.putFromPersistenceAndIncrement(key);
-            } else {
-                // persist again during eviction
-                memCacheMetadata.increment(key);
-            }
-            return v.getValue();
+            return new Lookup<V>(v.getValue(),
+                    v.isCurrentGeneration() && !cache.needSwitch());
         } finally {
             ctx.stop();
         }
     }
 
     private void broadcast(final K key, final V value) {
-        cache.broadcast(type, new Function<WriteBuffer, Void>() {
+        boolean queued = cache.broadcast(type, new Function<WriteBuffer, Void>() {
             @Override
             @Nullable
             public Void apply(@Nullable WriteBuffer buffer) {
@@ -176,6 +234,9 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
                 return null;
             }
         });
+        if (!queued) {
+            stats.markBroadcastDropped();
+        }
     }
 
     private void write(final K key, final V value) {
@@ -389,4 +450,26 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
     Map<K, V> getGenerationalMap() {
         return Collections.unmodifiableMap(map);
     }
+
+    CacheMetadata<K> getMemCacheMetadata() {
+        return memCacheMetadata;
+    }
+
+    /**
+     * A value read from the persistent cache.
+     */
+    private static final class Lookup<V> {
+
+        final V value;
+
+        /**
+         * Whether the value is persisted in the current generation.
+         */
+        final boolean persisted;
+
+        Lookup(V value, boolean persisted) {
+            this.value = value;
+            this.persisted = persisted;
+        }
+    }
 }
@@ -24,6 +24,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.cache.CacheValue;
@@ -42,6 +48,7 @@ import org.h2.mvstore.MVMap.Builder;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreTool;
 import org.h2.mvstore.WriteBuffer;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +65,10 @@ public class PersistentCache implements Broadcaster.Listener {
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
     private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final long COMPACTOR_INTERVAL_MS = Long.getLong(
+            "oak.cache.log.compactorInterval", 1000);
+    private static final int LOOKUP_QUEUE_SIZE = 1024;
+    private static final int BROADCAST_QUEUE_SIZE = 1024;
     
     private boolean cacheNodes = true;
     private boolean cacheChildren = true;
@@ -68,6 +79,10 @@ public class PersistentCache implements Broadcaster.Listener {
     private boolean compress = true;
     private boolean asyncCache = true;
     private boolean asyncDiffCache = false;
+    private boolean logStore;
+    private int lookupThreads;
+    private long lookupTimeoutMillis = 50;
+    private long writeWaitMillis;
     private HashMap<CacheType, GenerationCache> caches = 
             new HashMap<CacheType, GenerationCache>();
     
@@ -87,6 +102,11 @@ public class PersistentCache implements Broadcaster.Listener {
     private DynamicBroadcastConfig broadcastConfig;
     private CacheActionDispatcher writeDispatcher;
     private Thread writeDispatcherThread;
+    private volatile Thread compactorThread;
+    private ThreadPoolExecutor lookupExecutor;
+    private final BlockingQueue<ByteBuffer> broadcastQueue =
+            new ArrayBlockingQueue<ByteBuffer>(BROADCAST_QUEUE_SIZE);
+    private volatile Thread broadcastThread;
     
     {
         ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
@@ -146,6 +166,14 @@ public class PersistentCache implements Broadcaster.Listener {
                 asyncCache = false;
             } else if (p.equals("+asyncDiff")) {
                 asyncDiffCache = true;
+            } else if (p.equals("logStore")) {
+                logStore = true;
+            } else if (p.startsWith("lookupThreads=")) {
+                lookupThreads = Integer.parseInt(p.split("=")[1]);
+            } else if (p.startsWith("lookupTimeout=")) {
+                lookupTimeoutMillis = Long.parseLong(p.split("=")[1]);
+            } else if (p.startsWith("writeWait=")) {
+                writeWaitMillis = Long.parseLong(p.split("=")[1]);
             }
         }
         this.directory = dir;
@@ -209,6 +237,21 @@ public class PersistentCache implements Broadcaster.Listener {
             writeDispatcherThread = new Thread(writeDispatcher, "Oak CacheWriteQueue");
             writeDispatcherThread.setDaemon(true);
             writeDispatcherThread.start();
+
+            if (lookupThreads > 0) {
+                lookupExecutor = createLookupExecutor(lookupThreads);
+            }
+
+            if (logStore) {
+                compactorThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        runCompactor();
+                    }
+                }, "Oak PersistentCache Compactor");
+                compactorThread.setDaemon(true);
+                compactorThread.start();
+            }
         } catch (RuntimeException ex) {
             // OAK-8052: cleanup stores in case of failure
             LOG.error("Exception during PersistentCache instantiation for {}.", url);
@@ -239,6 +282,30 @@ public class PersistentCache implements Broadcaster.Listener {
             throw new IllegalArgumentException("Unknown broadcaster type " + broadcast);
         }
         broadcaster.addListener(this);
+        broadcastThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendBroadcasts();
+            }
+        }, "Oak PersistentCache Broadcast");
+        broadcastThread.setDaemon(true);
+        broadcastThread.start();
+    }
+
+    private static ThreadPoolExecutor createLookupExecutor(int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(LOOKUP_QUEUE_SIZE),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Oak PersistentCache Lookup-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
     
     private String getFileName(int generation) {
@@ -249,6 +316,11 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     private MapFactory createMapFactory(final int generation, final boolean readOnly) {
+        if (logStore) {
+            MapFactory f = new LogStructuredMapFactory(getFileName(generation), readOnly);
+            f.openStore();
+            return f;
+        }
         MapFactory f = new MapFactory() {
             
             final String fileName = getFileName(generation);
@@ -261,6 +333,13 @@ public class PersistentCache implements Broadcaster.Listener {
                 }
                 MVStore.Builder builder = new MVStore.Builder();
                 try {
+                    if (fileName != null && !readOnly
+                            && LogStructuredMapFactory.isLogFile(new File(fileName))) {
+                        // written with the logStore option, which is not
+                        // used anymore
+                        LOG.info("Removing log structured store " + fileName);
+                        new File(fileName).delete();
+                    }
                     if (compress) {
                         builder.compress();
                     }
@@ -368,12 +447,40 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     public void close() {
+        Thread compactor = compactorThread;
+        if (compactor != null) {
+            compactorThread = null;
+            compactor.interrupt();
+            try {
+                compactor.join();
+            } catch (InterruptedException e) {
+                LOG.error("Can't join the {}", compactor.getName(), e);
+            }
+        }
         writeDispatcher.stop();
         try {
             writeDispatcherThread.join();
         } catch (InterruptedException e) {
             LOG.error("Can't join the {}", writeDispatcherThread.getName(), e);
         }
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            try {
+                lookupExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                LOG.error("Can't terminate the lookup threads", e);
+            }
+        }
+        Thread sender = broadcastThread;
+        if (sender != null) {
+            broadcastThread = null;
+            sender.interrupt();
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                LOG.error("Can't join the {}", sender.getName(), e);
+            }
+        }
 
         if (writeStore != null) {
             writeStore.closeStore();
@@ -458,6 +565,14 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     public void switchGenerationIfNeeded() {
+        if (compactorThread != null) {
+            // generations are switched by the compactor thread
+            return;
+        }
+        switchGeneration();
+    }
+
+    private void switchGeneration() {
         if (!needSwitch()) {
             return;
         }
@@ -487,6 +602,28 @@ public class PersistentCache implements Broadcaster.Listener {
         }
     }
     
+    /**
+     * Periodically switches the generation in the background when the
+     * log structured store is used, so that threads reading from or writing
+     * to the cache never have to wait for a new generation to be created.
+     */
+    private void runCompactor() {
+        while (compactorThread == Thread.currentThread()) {
+            try {
+                switchGeneration();
+            } catch (RuntimeException e) {
+                exceptionCount++;
+                LOG.warn("Could not switch the generation of the persistent cache", e);
+            }
+            try {
+                Thread.sleep(COMPACTOR_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                // closed
+                return;
+            }
+        }
+    }
+
     boolean needSwitch() {
         long size = writeStore.getFileSize();
         if (size / 1024 / 1024 <= maxSizeMB) {
@@ -507,10 +644,17 @@ public class PersistentCache implements Broadcaster.Listener {
         return exceptionCount;
     }
 
-    void broadcast(CacheType type, Function<WriteBuffer, Void> writer) {
+    /**
+     * Serializes a broadcast message on the calling thread and queues it to
+     * be sent by the broadcast thread.
+     *
+     * @return {@code false} if the message was dropped because the queue is
+     *          full, {@code true} otherwise.
+     */
+    boolean broadcast(CacheType type, Function<WriteBuffer, Void> writer) {
         Broadcaster b = broadcaster;
         if (b == null) {
-            return;
+            return true;
         }
         WriteBuffer buff = writeBuffer.get();
         if (buff == null) {
@@ -529,7 +673,43 @@ public class PersistentCache implements Broadcaster.Listener {
         // write length
         byteBuff.putInt(0, length);
         ((Buffer)byteBuff).position(0);
-        b.send(byteBuff);
+        ByteBuffer message = ByteBuffer.allocate(length);
+        message.put(byteBuff);
+        ((Buffer)message).flip();
+        return broadcastQueue.offer(message);
+    }
+
+    private void sendBroadcasts() {
+        while (broadcastThread == Thread.currentThread()) {
+            ByteBuffer message;
+            try {
+                message = broadcastQueue.take();
+            } catch (InterruptedException e) {
+                // closed
+                return;
+            }
+            Broadcaster b = broadcaster;
+            if (b != null) {
+                b.send(message);
+            }
+        }
+    }
+
+    /**
+     * @return the executor for lookups in the persistent cache, or
+     *          {@code null} if lookups are done on the calling thread.
+     */
+    @Nullable
+    ExecutorService getLookupExecutor() {
+        return lookupExecutor;
+    }
+
+    long getLookupTimeoutMillis() {
+        return lookupTimeoutMillis;
+    }
+
+    long getWriteWaitMillis() {
+        return writeWaitMillis;
     }
     
     @Override
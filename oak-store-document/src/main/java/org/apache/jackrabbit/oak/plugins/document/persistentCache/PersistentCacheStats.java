@@ -32,6 +32,7 @@ import org.apache.jackrabbit.stats.TimeSeriesStatsUtil;
 import javax.management.openmbean.CompositeData;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -65,6 +66,13 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
     private static final String PUT_REJECTED_ENTRY_NOT_USED = "PUT_REJECTED_ENTRY_NOT_USED";
     private static final String PUT_REJECTED_FULL_QUEUE = "PUT_REJECTED_FULL_QUEUE";
     private static final String PUT_REJECTED_SECONDARY_CACHE = "PUT_REJECTED_SECONDARY_CACHE";
+    private static final String WRITES_DROPPED = "WRITES_DROPPED";
+    private static final String BROADCASTS_DROPPED = "BROADCASTS_DROPPED";
+    private static final String LOOKUP_TIMEOUTS = "LOOKUP_TIMEOUTS";
+    private static final String LOOKUP_REJECTED = "LOOKUP_REJECTED";
+    private static final String LOOKUP_TIMER = "LOOKUP_TIMER";
+    private static final String WRITE_QUEUE_TIMER = "WRITE_QUEUE_TIMER";
+    private static final String WRITE_TIMER = "WRITE_TIMER";
 
     private final StatisticsProvider statisticsProvider;
     private final String cacheName;
@@ -107,6 +115,20 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
 
     private final TimerStats readTimer;
 
+    private final MeterStats writesDroppedMeter;
+
+    private final MeterStats broadcastsDroppedMeter;
+
+    private final MeterStats lookupTimeoutMeter;
+
+    private final MeterStats lookupRejectedMeter;
+
+    private final TimerStats lookupTimer;
+
+    private final TimerStats writeQueueTimer;
+
+    private final TimerStats writeTimer;
+
     private final CounterStats usedSpaceByteCounter;
     private final TimeSeries usedSpaceByteCounterHistory;
 
@@ -211,6 +233,27 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
         putRejectedAsCachedInSecMeter = statisticsProvider.getMeter(statName, StatsOptions.DEFAULT);
         putRejectedAsCachedInSecHistory = getTimeSeries(statName);
 
+        statName = getStatName(WRITES_DROPPED, cacheName);
+        writesDroppedMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(BROADCASTS_DROPPED, cacheName);
+        broadcastsDroppedMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(LOOKUP_TIMEOUTS, cacheName);
+        lookupTimeoutMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(LOOKUP_REJECTED, cacheName);
+        lookupRejectedMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(LOOKUP_TIMER, cacheName);
+        lookupTimer = statisticsProvider.getTimer(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(WRITE_QUEUE_TIMER, cacheName);
+        writeQueueTimer = statisticsProvider.getTimer(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(WRITE_TIMER, cacheName);
+        writeTimer = statisticsProvider.getTimer(statName, StatsOptions.METRICS_ONLY);
+
         diskStats = new UsedSpaceTracker(usedSpaceByteCounter);
     }
 
@@ -260,6 +303,48 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
         putRejectedByFullQueueMeter.mark();
     }
 
+    /**
+     * Marks a write (put or invalidation) that was dropped, because the
+     * write queue was still full after waiting for it to drain.
+     */
+    public void markWriteDropped() {
+        writesDroppedMeter.mark();
+    }
+
+    public void markBroadcastDropped() {
+        broadcastsDroppedMeter.mark();
+    }
+
+    public void markLookupTimeout() {
+        lookupTimeoutMeter.mark();
+    }
+
+    public void markLookupRejected() {
+        lookupRejectedMeter.mark();
+    }
+
+    /**
+     * Records the time a caller waited for a lookup done by the lookup
+     * thread pool, including the time the lookup was queued.
+     */
+    public void updateLookupTime(long nanos) {
+        lookupTimer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time a write spent in the write queue.
+     */
+    public void updateWriteQueueTime(long nanos) {
+        writeQueueTimer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time it took to write to the persistent cache.
+     */
+    public void updateWriteTime(long nanos) {
+        writeTimer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
     public TimerStats.Context startReadTimer() {
         return this.readTimer.time();
     }
@@ -460,6 +545,8 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
                 .add("loadSuccessCount", getLoadSuccessCount())
                 .add("loadExceptionCount", getLoadExceptionCount())
                 .add("totalWeight", IOUtils.humanReadableByteCount(estimateCurrentWeight()))
+                .add("writesDropped", getWritesDroppedCount())
+                .add("lookupTimeouts", getLookupTimeoutCount())
                 .toString();
     }
 
@@ -494,6 +581,22 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
         // ignored
     }
 
+    public long getWritesDroppedCount() {
+        return writesDroppedMeter.getCount();
+    }
+
+    public long getBroadcastsDroppedCount() {
+        return broadcastsDroppedMeter.getCount();
+    }
+
+    public long getLookupTimeoutCount() {
+        return lookupTimeoutMeter.getCount();
+    }
+
+    public long getLookupRejectedCount() {
+        return lookupRejectedMeter.getCount();
+    }
+
     Counting getPutRejectedAsCachedInSecCounter() {
         return putRejectedAsCachedInSecMeter;
     }
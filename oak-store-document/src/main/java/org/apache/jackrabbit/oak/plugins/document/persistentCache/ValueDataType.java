@@ -33,7 +33,7 @@ public class ValueDataType implements DataType {
     private final DocumentStore docStore;
     private final CacheType type;
     
-    ValueDataType(DocumentNodeStore docNodeStore,
+    public ValueDataType(DocumentNodeStore docNodeStore,
                   DocumentStore docStore,
                   CacheType type) {
         this.docNodeStore = docNodeStore;
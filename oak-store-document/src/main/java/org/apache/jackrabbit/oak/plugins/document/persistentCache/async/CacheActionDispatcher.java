@@ -16,17 +16,22 @@
  */
 package org.apache.jackrabbit.oak.plugins.document.persistentCache.async;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * An asynchronous buffer of the CacheAction objects. The buffer only accepts
- * {@link #MAX_SIZE} number of elements. If the queue is already full, the new
- * elements are dropped.
+ * {@link #MAX_SIZE} number of elements. If the queue is already full, a
+ * producer may wait for a limited time until there is space again (see
+ * {@link #add(CacheAction, long)}). Otherwise new elements are dropped, or
+ * executed on the calling thread (see {@link #execute(CacheAction, Predicate)}).
  */
 public class CacheActionDispatcher implements Runnable {
 
@@ -59,6 +64,16 @@ public class CacheActionDispatcher implements Runnable {
      */
     private final Object monitor = new Object();
 
+    /**
+     * The action currently executed by the dispatcher or {@code null}.
+     */
+    private CacheAction current;
+
+    /**
+     * Actions to execute again after the {@link #current} action.
+     */
+    private List<CacheAction> afterCurrent = new ArrayList<>();
+
     private volatile boolean isRunning = true;
 
     public CacheActionDispatcher() {
@@ -72,16 +87,36 @@ public class CacheActionDispatcher implements Runnable {
     @Override
     public void run() {
         while (isRunning) {
-            try {
-                CacheAction action = queue.poll(10, TimeUnit.MILLISECONDS);
-                if (action != null && isRunning) {
-                    synchronized (monitor) {
-                        memory -= action.getMemory();
+            CacheAction action;
+            synchronized (monitor) {
+                action = queue.poll();
+                if (action == null) {
+                    try {
+                        monitor.wait(10);
+                    } catch (InterruptedException e) {
+                        LOG.debug("Interrupted the monitor.wait()", e);
                     }
+                    continue;
+                }
+                memory -= action.getMemory();
+                current = action;
+                // wake up producers waiting for space
+                monitor.notifyAll();
+            }
+            List<CacheAction> actions;
+            try {
+                if (isRunning) {
                     action.execute();
                 }
-            } catch (InterruptedException e) {
-                LOG.debug("Interrupted the queue.poll()", e);
+            } finally {
+                synchronized (monitor) {
+                    current = null;
+                    actions = afterCurrent;
+                    afterCurrent = new ArrayList<>();
+                }
+            }
+            for (CacheAction a : actions) {
+                a.execute();
             }
         }
     }
@@ -91,6 +126,9 @@ public class CacheActionDispatcher implements Runnable {
      */
     public void stop() {
         isRunning = false;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
     }
 
     /**
@@ -99,15 +137,70 @@ public class CacheActionDispatcher implements Runnable {
      * @param action to be added
      */
     boolean add(CacheAction action) {
+        return add(action, 0);
+    }
+
+    /**
+     * Tries to add new action. If the queue is full, waits at most the given
+     * time for the queue to drain.
+     *
+     * @param action to be added
+     * @param maxWaitMillis the maximum time to wait in milliseconds.
+     * @return {@code true} if the action was added, {@code false} if it was
+     *          dropped.
+     */
+    boolean add(CacheAction action, long maxWaitMillis) {
         int m = action.getMemory();
+        long end = System.currentTimeMillis() + maxWaitMillis;
+        synchronized (monitor) {
+            for (;;) {
+                // check if the queue reached memory limit and accepts action
+                if (memory + m <= maxMemory && queue.offer(action)) {
+                    memory += m;
+                    return true;
+                }
+                long wait = end - System.currentTimeMillis();
+                if (wait <= 0 || m > maxMemory || !isRunning) {
+                    return false;
+                }
+                try {
+                    monitor.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes the given action on the calling thread without waiting for
+     * space in the queue. The result is the same as if the action was added
+     * to the queue and executed right away: queued actions matching the
+     * {@code obsolete} predicate are removed, because the given action would
+     * supersede them. If the dispatcher executes an action at the same time,
+     * the given action is executed again by the dispatcher once the current
+     * action is done.
+     *
+     * @param action the action to execute.
+     * @param obsolete identifies queued actions superseded by the given action.
+     */
+    void execute(CacheAction action, Predicate<CacheAction> obsolete) {
         synchronized (monitor) {
-            // check if the queue reached memory limit and accepts action
-            if (memory + m <= maxMemory && queue.offer(action)) {
-                memory += m;
-                return true;
+            Iterator<CacheAction> it = queue.iterator();
+            while (it.hasNext()) {
+                CacheAction a = it.next();
+                if (obsolete.test(a)) {
+                    it.remove();
+                    memory -= a.getMemory();
+                }
+            }
+            if (current != null) {
+                afterCurrent.add(action);
             }
+            monitor.notifyAll();
         }
-        return false;
+        action.execute();
     }
 
     /**
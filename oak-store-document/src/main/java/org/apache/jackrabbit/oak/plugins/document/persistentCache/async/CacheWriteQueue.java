@@ -18,8 +18,13 @@ package org.apache.jackrabbit.oak.plugins.document.persistentCache.async;
 
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCacheStats;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.Sets.newHashSet;
 
 public class CacheWriteQueue<K extends CacheValue, V extends CacheValue> {
 
@@ -29,18 +34,69 @@ public class CacheWriteQueue<K extends CacheValue, V extends CacheValue> {
 
     private final Map<K, V> map;
 
+    private final PersistentCacheStats stats;
+
+    private final long maxWaitMillis;
+
     public CacheWriteQueue(CacheActionDispatcher dispatcher, PersistentCache cache, Map<K, V> map) {
+        this(dispatcher, cache, map, null, 0);
+    }
+
+    /**
+     * @param dispatcher the dispatcher executing the writes.
+     * @param cache the persistent cache.
+     * @param map the map to write to.
+     * @param stats the statistics to update or {@code null}.
+     * @param maxWaitMillis the maximum time in milliseconds a caller waits
+     *          for space in a full queue, before the write is dropped.
+     */
+    public CacheWriteQueue(CacheActionDispatcher dispatcher, PersistentCache cache, Map<K, V> map,
+                           @Nullable PersistentCacheStats stats, long maxWaitMillis) {
         this.dispatcher = dispatcher;
         this.cache = cache;
         this.map = map;
+        this.stats = stats;
+        this.maxWaitMillis = maxWaitMillis;
     }
 
     public boolean addPut(K key, V value) {
-        return dispatcher.add(new PutToCacheAction<K, V>(key, value, this));
+        return add(new PutToCacheAction<K, V>(key, value, this));
     }
 
+    /**
+     * Adds an invalidation to the queue. The invalidation is never dropped,
+     * because that would leave an outdated entry in the cache. If the queue
+     * is full, the caller waits at most the configured time for space. If
+     * there is still no space, the invalidation is performed on the calling
+     * thread and puts for the same keys still in the queue are removed,
+     * because they would otherwise write outdated values again.
+     *
+     * @param keys the keys to invalidate.
+     * @return {@code true} if the invalidation was queued, {@code false} if
+     *          it was performed on the calling thread.
+     */
     public boolean addInvalidate(Iterable<K> keys) {
-        return dispatcher.add(new InvalidateCacheAction<K, V>(keys, this));
+        InvalidateCacheAction<K, V> action = new InvalidateCacheAction<K, V>(keys, this);
+        if (dispatcher.add(action, maxWaitMillis)) {
+            return true;
+        }
+        Set<K> invalidated = newHashSet(keys);
+        dispatcher.execute(action, a -> a instanceof PutToCacheAction
+                && ((PutToCacheAction<?, ?>) a).isPutTo(map, invalidated));
+        return false;
+    }
+
+    private boolean add(CacheAction action) {
+        boolean added = dispatcher.add(action, maxWaitMillis);
+        if (!added && stats != null) {
+            stats.markWriteDropped();
+        }
+        return added;
+    }
+
+    @Nullable
+    PersistentCacheStats getStats() {
+        return stats;
     }
 
     PersistentCache getCache() {
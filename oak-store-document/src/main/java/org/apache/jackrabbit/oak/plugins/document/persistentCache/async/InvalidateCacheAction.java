@@ -22,6 +22,7 @@ import com.google.common.collect.Iterables;
 
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCacheStats;
 
 /**
  * An invalidate cache action.
@@ -36,6 +37,13 @@ class InvalidateCacheAction<K extends CacheValue, V extends CacheValue>
 
     private final Map<K, V> map;
 
+    private final PersistentCacheStats stats;
+
+    /**
+     * The time when this action was created, in nanoseconds.
+     */
+    private final long created = System.nanoTime();
+
     private final Iterable<K> keys;
 
     private int memory = 0;
@@ -44,15 +52,25 @@ class InvalidateCacheAction<K extends CacheValue, V extends CacheValue>
         this.keys = keys;
         this.cache = queue.getCache();
         this.map = queue.getMap();
+        this.stats = queue.getStats();
     }
 
     @Override
     public void execute() {
         if (map != null) {
+            long start = System.nanoTime();
             for (K key : keys) {
                 cache.switchGenerationIfNeeded();
                 map.remove(key);
             }
+            updateStats(start);
+        }
+    }
+
+    private void updateStats(long start) {
+        if (stats != null) {
+            stats.updateWriteQueueTime(start - created);
+            stats.updateWriteTime(System.nanoTime() - start);
         }
     }
 
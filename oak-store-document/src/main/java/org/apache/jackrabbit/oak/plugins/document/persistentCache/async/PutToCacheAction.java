@@ -17,9 +17,11 @@
 package org.apache.jackrabbit.oak.plugins.document.persistentCache.async;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCacheStats;
 
 /**
  * Put to cache action
@@ -34,6 +36,13 @@ class PutToCacheAction<K extends CacheValue, V extends CacheValue>
 
     private final Map<K, V> map;
 
+    private final PersistentCacheStats stats;
+
+    /**
+     * The time when this action was created, in nanoseconds.
+     */
+    private final long created = System.nanoTime();
+
     private final K key;
 
     private final V value;
@@ -43,16 +52,35 @@ class PutToCacheAction<K extends CacheValue, V extends CacheValue>
         this.value = value;
         this.cache = queue.getCache();
         this.map = queue.getMap();
+        this.stats = queue.getStats();
     }
 
     @Override
     public void execute() {
         if (map != null) {
+            long start = System.nanoTime();
             cache.switchGenerationIfNeeded();
             map.put(key, value);
+            updateStats(start);
         }
     }
 
+    private void updateStats(long start) {
+        if (stats != null) {
+            stats.updateWriteQueueTime(start - created);
+            stats.updateWriteTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param map a map.
+     * @param keys a set of keys.
+     * @return whether this action puts one of the keys to the given map.
+     */
+    boolean isPutTo(Map<?, ?> map, Set<?> keys) {
+        return this.map == map && keys.contains(key);
+    }
+
     @Override
     public int getMemory() {
         long mem = key.getMemory();
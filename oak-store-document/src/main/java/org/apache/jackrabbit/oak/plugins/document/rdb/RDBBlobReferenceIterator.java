@@ -43,8 +43,6 @@ public class RDBBlobReferenceIterator extends BlobReferenceIterator {
 
     @Override
     public Iterator<NodeDocument> getIteratorOverDocsWithBinaries() {
-        return this.documentStore
-                .queryAsIterable(Collection.NODES, null, null, Collections.emptyList(), WITH_BINARIES, Integer.MAX_VALUE, null)
-                .iterator();
+        return this.documentStore.queryAllAsIterable(Collection.NODES, Collections.emptyList(), WITH_BINARIES).iterator();
     }
 }
@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact binary encoding of the base data of a {@link Document}, stored in
+ * the BDATA column. Update operations are still appended as JSON to the DATA
+ * column, which then starts with the literal {@code "blob"}.
+ * <p>
+ * Layout (version 1):
+ * <ul>
+ * <li>two signature bytes {@code 0x00 0x4F}, which can neither start a JSON
+ * serialization nor a GZIP stream,</li>
+ * <li>the format version,</li>
+ * <li>a flags byte; if {@link #FLAG_DEFLATED} is set, the length of the
+ * uncompressed body follows as a varint and the body is deflated,</li>
+ * <li>the body: the number of entries as a varint, followed by the entries,
+ * each a string key and a value.</li>
+ * </ul>
+ * A value starts with a type tag. Integral numbers are zigzag varints and
+ * maps hold the number of entries followed by revision keys and values. A
+ * revision is stored as its timestamp, counter and cluster id (varints) and a
+ * branch flag, which avoids parsing revision strings when a document is read.
+ * <p>
+ * Strings are the varint length of their encoding followed by the bytes. They
+ * are encoded char by char like UTF-8 (each surrogate separately, as in
+ * CESU-8), so that any Java string, including one with unpaired surrogates,
+ * is preserved.
+ */
+final class RDBDocumentBinaryFormat {
+
+    static final int VERSION = 1;
+
+    static final int FLAG_DEFLATED = 1;
+
+    private static final byte[] SIGNATURE = { 0x00, 0x4F };
+
+    /**
+     * Bodies larger than this number of bytes are deflated.
+     */
+    private static final int DEFLATE_THRESHOLD = 4096;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_FALSE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_MAP = 6;
+
+    private RDBDocumentBinaryFormat() {
+    }
+
+    /**
+     * @return whether the given BDATA is in the binary format.
+     */
+    static boolean isBinary(byte[] bdata) {
+        return bdata != null && bdata.length >= SIGNATURE.length
+                && bdata[0] == SIGNATURE[0] && bdata[1] == SIGNATURE[1];
+    }
+
+    /**
+     * Encodes all non-column properties of the document.
+     */
+    @NotNull
+    static byte[] encode(@NotNull Document doc, @NotNull Set<String> columnProperties) {
+        Output body = new Output(1024);
+        int count = 0;
+        for (String key : doc.keySet()) {
+            if (!columnProperties.contains(key)) {
+                count++;
+            }
+        }
+        body.writeVarLong(count);
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            if (!columnProperties.contains(entry.getKey())) {
+                body.writeString(entry.getKey());
+                writeValue(body, entry.getValue());
+            }
+        }
+
+        Output out;
+        if (body.size > DEFLATE_THRESHOLD) {
+            out = new Output(body.size / 2 + 16);
+            out.writeHeader(FLAG_DEFLATED);
+            out.writeVarLong(body.size);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(body.buffer, 0, body.size);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.ensureCapacity(4096);
+                    out.size += deflater.deflate(out.buffer, out.size, out.buffer.length - out.size);
+                }
+            } finally {
+                deflater.end();
+            }
+        } else {
+            out = new Output(body.size + 4);
+            out.writeHeader(0);
+            out.writeBytes(body.buffer, 0, body.size);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the entries of the given BDATA into the document.
+     *
+     * @throws DocumentStoreException if the data is not in a supported
+     *      version of the binary format.
+     */
+    static void decode(@NotNull byte[] bdata, @NotNull Document doc) throws DocumentStoreException {
+        if (!isBinary(bdata) || bdata.length < SIGNATURE.length + 2) {
+            throw new DocumentStoreException("not in binary document format");
+        }
+        int version = bdata[SIGNATURE.length];
+        if (version != VERSION) {
+            throw new DocumentStoreException("unsupported binary document format version: " + version);
+        }
+        int flags = bdata[SIGNATURE.length + 1];
+        Input in = new Input(bdata, SIGNATURE.length + 2);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            byte[] body = new byte[(int) in.readVarLong()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bdata, in.pos, bdata.length - in.pos);
+                int len = 0;
+                while (len < body.length) {
+                    int n = inflater.inflate(body, len, body.length - len);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new DocumentStoreException("truncated binary document data");
+                    }
+                    len += n;
+                }
+            } catch (DataFormatException ex) {
+                throw new DocumentStoreException("corrupt binary document data", ex);
+            } finally {
+                inflater.end();
+            }
+            in = new Input(body, 0);
+        }
+        try {
+            long count = in.readVarLong();
+            for (long i = 0; i < count; i++) {
+                String key = in.readString();
+                doc.put(key, readValue(in));
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new DocumentStoreException("truncated binary document data", ex);
+        }
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_LONG);
+            long v = ((Number) value).longValue();
+            out.writeVarLong((v << 1) ^ (v >> 63));
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Map) {
+            out.writeByte(TYPE_MAP);
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                Object k = e.getKey();
+                Revision r = k instanceof Revision ? (Revision) k : Revision.fromString(k.toString());
+                out.writeVarLong(r.getTimestamp());
+                out.writeVarLong(r.getCounter());
+                out.writeVarLong(r.getClusterId());
+                out.writeByte(r.isBranch() ? 1 : 0);
+                writeValue(out, e.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("unexpected type: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(Input in) {
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_LONG:
+                long v = in.readVarLong();
+                return (v >>> 1) ^ -(v & 1);
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TYPE_STRING:
+                return in.readString();
+            case TYPE_MAP:
+                long count = in.readVarLong();
+                Map<Revision, Object> map = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+                for (long i = 0; i < count; i++) {
+                    long timestamp = in.readVarLong();
+                    int counter = (int) in.readVarLong();
+                    int clusterId = (int) in.readVarLong();
+                    boolean branch = in.readByte() != 0;
+                    map.put(new Revision(timestamp, counter, clusterId, branch), readValue(in));
+                }
+                return map;
+            default:
+                throw new DocumentStoreException("unexpected type in binary document data: " + type);
+        }
+    }
+
+    private static final class Output {
+
+        byte[] buffer;
+        int size;
+
+        Output(int capacity) {
+            buffer = new byte[Math.max(16, capacity)];
+        }
+
+        void ensureCapacity(int n) {
+            if (size + n > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + n));
+            }
+        }
+
+        void writeHeader(int flags) {
+            writeBytes(SIGNATURE, 0, SIGNATURE.length);
+            writeByte(VERSION);
+            writeByte(flags);
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+
+        void writeLong(long v) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeVarLong(long v) {
+            ensureCapacity(10);
+            while ((v & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[size++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            int len = s.length();
+            int bytes = 0;
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                bytes += c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+            }
+            writeVarLong(bytes);
+            ensureCapacity(bytes);
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buffer[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[size++] = (byte) (0xC0 | (c >> 6));
+                    buffer[size++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    buffer[size++] = (byte) (0xE0 | (c >> 12));
+                    buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buffer;
+        int pos;
+
+        Input(byte[] buffer, int pos) {
+            this.buffer = buffer;
+            this.pos = pos;
+        }
+
+        int readByte() {
+            return buffer[pos++] & 0xFF;
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (buffer[pos++] & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                int b = buffer[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+                shift += 7;
+            }
+        }
+
+        String readString() {
+            int len = (int) readVarLong();
+            if (len < 0 || pos + len > buffer.length) {
+                throw new ArrayIndexOutOfBoundsException(pos + len);
+            }
+            int end = pos + len;
+            char[] chars = new char[len];
+            int n = 0;
+            while (pos < end) {
+                int b = buffer[pos++] & 0xFF;
+                if (b < 0x80) {
+                    chars[n++] = (char) b;
+                } else if (b < 0xE0) {
+                    chars[n++] = (char) (((b & 0x1F) << 6) | (buffer[pos++] & 0x3F));
+                } else {
+                    chars[n++] = (char) (((b & 0x0F) << 12) | ((buffer[pos++] & 0x3F) << 6) | (buffer[pos++] & 0x3F));
+                }
+            }
+            return new String(chars, 0, n);
+        }
+    }
+}
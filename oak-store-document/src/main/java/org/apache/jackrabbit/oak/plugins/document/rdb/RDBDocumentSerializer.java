@@ -70,8 +70,38 @@ public class RDBDocumentSerializer {
 
     private static final RDBJSONSupport JSON = new RDBJSONSupport(true);
 
+    private final boolean binaryFormat;
+
     public RDBDocumentSerializer(DocumentStore store) {
+        this(store, false);
+    }
+
+    /**
+     * @param store the document store
+     * @param binaryFormat whether documents are written using the binary
+     *            format (see {@link #asBytes(Document, Set)}). Documents in
+     *            both formats can be read regardless of this setting.
+     */
+    public RDBDocumentSerializer(DocumentStore store, boolean binaryFormat) {
         this.store = store;
+        this.binaryFormat = binaryFormat;
+    }
+
+    /**
+     * @return whether documents are written using the binary format.
+     */
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    /**
+     * Serializes all non-column properties of the {@link Document} into the
+     * compact binary format stored in BDATA. See
+     * {@link RDBDocumentBinaryFormat} for the layout.
+     */
+    @NotNull
+    public byte[] asBytes(@NotNull Document doc, Set<String> columnProperties) {
+        return RDBDocumentBinaryFormat.encode(doc, columnProperties);
     }
 
     /**
@@ -182,7 +212,10 @@ public class RDBDocumentSerializer {
         // case #1: BDATA (blob) contains base data, DATA (string) contains
         // update operations
         try {
-            if (bdata != null && bdata.length != 0) {
+            if (RDBDocumentBinaryFormat.isBinary(bdata)) {
+                RDBDocumentBinaryFormat.decode(bdata, doc);
+                blobInUse = true;
+            } else if (bdata != null && bdata.length != 0) {
                 String s = fromBlobData(bdata);
                 json = new JsopTokenizer(s);
                 json.read('{');
@@ -191,7 +224,7 @@ public class RDBDocumentSerializer {
                 blobInUse = true;
             }
         } catch (Exception ex) {
-            throw asDocumentStoreException(ex, "parsing blob data as JSON");
+            throw asDocumentStoreException(ex, "parsing blob data");
         }
 
         json = new JsopTokenizer(charData);
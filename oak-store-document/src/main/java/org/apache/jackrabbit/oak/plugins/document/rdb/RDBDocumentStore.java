@@ -194,7 +194,11 @@ import com.google.common.collect.Sets;
  * <th>BDATA</th>
  * <td>blob</td>
  * <td>The document's JSON serialization (usually GZIPped, only used for "large"
- * documents).</td>
+ * documents), or its compact binary serialization (see
+ * {@link RDBDocumentBinaryFormat}, written for all documents when enabled with
+ * the system property
+ * {@code org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYFORMAT}).
+ * Update operations are appended to DATA in both cases.</td>
  * </tr>
  * </tbody>
  * </table>
@@ -840,6 +844,29 @@ public class RDBDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    public <T extends Document> void prefetch(Collection<T> collection, Iterable<String> keys) {
+        if (collection != Collection.NODES) {
+            return;
+        }
+        Set<String> uncached = new HashSet<String>();
+        for (String key : keys) {
+            if (nodesCache.getIfPresent(key) == null) {
+                uncached.add(key);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return;
+        }
+        CacheChangesTracker tracker = obtainTracker(collection, uncached);
+        try {
+            Map<String, T> docs = readDocumentsUncached(collection, uncached);
+            nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(new ArrayList<T>(docs.values())));
+        } finally {
+            tracker.close();
+        }
+    }
+
     private <T extends Document> T getIfCached(Collection<T> collection, String id, long modCount) {
         T doc = getIfCached(collection, id);
         if (doc != null && doc.getModCount() != null && doc.getModCount() == modCount) {
@@ -990,7 +1017,7 @@ public class RDBDocumentStore implements DocumentStore {
             new String[] { ID, NodeDocument.HAS_BINARY_FLAG, NodeDocument.DELETED_ONCE, COLLISIONSMODCOUNT, MODIFIED, MODCOUNT,
                     NodeDocument.SD_TYPE, NodeDocument.SD_MAX_REV_TIME_IN_SECS, VERSIONPROP }));
 
-    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(this);
+    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(this, BINARYFORMAT);
 
     private void initialize(DataSource ds, DocumentNodeStoreBuilder<?> builder, RDBOptions options) throws Exception {
         this.stats = builder.getDocumentStoreStatsCollector();
@@ -1037,7 +1064,7 @@ public class RDBDocumentStore implements DocumentStore {
         String dbUrl = md.getURL();
 
         this.dbInfo = RDBDocumentStoreDB.getValue(md.getDatabaseProductName());
-        this.db = new RDBDocumentStoreJDBC(this.dbInfo, this.ser, QUERYHITSLIMIT, QUERYTIMELIMIT);
+        this.db = new RDBDocumentStoreJDBC(this.dbInfo, this.ser, QUERYHITSLIMIT, QUERYTIMELIMIT, QUERYFETCHSIZE);
         this.metadata = ImmutableMap.<String,String>builder()
                 .put("type", "rdb")
                 .put("db", md.getDatabaseProductName())
@@ -1843,15 +1870,7 @@ public class RDBDocumentStore implements DocumentStore {
             final List<String> excludeKeyPatterns, final List<QueryCondition> conditions, final int limit, final String sortBy) {
 
         final RDBTableMetaData tmd = getTable(collection);
-        Set<String> allowedProps = Sets.intersection(INDEXEDPROPERTIES, tmd.getColumnProperties());
-        for (QueryCondition cond : conditions) {
-            if (!allowedProps.contains(cond.getPropertyName())) {
-                String message = "indexed property " + cond.getPropertyName() + " not supported, query was '" + cond
-                        + "'; supported properties are " + allowedProps;
-                LOG.info(message);
-                throw new UnsupportedIndexedPropertyException(message);
-            }
-        }
+        checkQueryConditions(tmd, conditions);
 
         final String from = collection == Collection.NODES && NodeDocument.MIN_ID_VALUE.equals(fromKey) ? null : fromKey;
         final String to = collection == Collection.NODES && NodeDocument.MAX_ID_VALUE.equals(toKey) ? null : toKey;
@@ -1889,6 +1908,56 @@ public class RDBDocumentStore implements DocumentStore {
         };
     }
 
+    /**
+     * Returns all documents of a collection that match the given conditions,
+     * in no particular order. For the nodes collection, the scan is
+     * partitioned into ranges of IDs (see {@link RDBParallelScanIterator}),
+     * which are read concurrently when enabled with the system property
+     * {@code org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QUERYPARALLELISM}.
+     */
+    protected <T extends Document> Iterable<T> queryAllAsIterable(final Collection<T> collection,
+            final List<String> excludeKeyPatterns, final List<QueryCondition> conditions) {
+
+        if (collection != Collection.NODES || QUERYPARALLELISM <= 1) {
+            return queryAsIterable(collection, null, null, excludeKeyPatterns, conditions, Integer.MAX_VALUE, null);
+        }
+
+        // fail early for unsupported conditions, not in a worker thread
+        checkQueryConditions(getTable(collection), conditions);
+
+        return new MyCloseableIterable<T>() {
+
+            Set<RDBParallelScanIterator<T>> returned = Sets.newHashSet();
+
+            @Override
+            public Iterator<T> iterator() {
+                RDBParallelScanIterator<T> it = new RDBParallelScanIterator<T>(RDBDocumentStore.this, collection,
+                        excludeKeyPatterns, conditions, QUERYPARALLELISM, QUERYFETCHSIZE);
+                returned.add(it);
+                return it;
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (RDBParallelScanIterator<T> it : returned) {
+                    it.close();
+                }
+            }
+        };
+    }
+
+    private void checkQueryConditions(RDBTableMetaData tmd, List<QueryCondition> conditions) {
+        Set<String> allowedProps = Sets.intersection(INDEXEDPROPERTIES, tmd.getColumnProperties());
+        for (QueryCondition cond : conditions) {
+            if (!allowedProps.contains(cond.getPropertyName())) {
+                String message = "indexed property " + cond.getPropertyName() + " not supported, query was '" + cond
+                        + "'; supported properties are " + allowedProps;
+                LOG.info(message);
+                throw new UnsupportedIndexedPropertyException(message);
+            }
+        }
+    }
+
     protected <T extends Document> long queryCount(final Collection<T> collection, String fromKey, String toKey,
             final List<String> excludeKeyPatterns, final List<QueryCondition> conditions) {
 
@@ -2068,7 +2137,7 @@ public class RDBDocumentStore implements DocumentStore {
             @NotNull UpdateOp update, Long oldmodcount) {
         Connection connection = null;
         RDBTableMetaData tmd = getTable(collection);
-        String data = null;
+        boolean rewrite = false;
         try {
             connection = this.ch.getRWConnection();
             Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
@@ -2102,18 +2171,19 @@ public class RDBDocumentStore implements DocumentStore {
                 }
             }
             if (!success && shouldRetry) {
-                data = ser.asString(document, tmd.getColumnOnlyProperties());
+                rewrite = true;
                 Object m = document.get(MODIFIED);
                 long modified = (m instanceof Long) ? ((Long)m).longValue() : 0;
-                success = db.update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount,
-                        oldmodcount, data);
+                success = db.update(connection, tmd, document, modified, hasBinary, deletedOnce, modcount, cmodcount,
+                        oldmodcount);
                 connection.commit();
             }
             return success;
         } catch (SQLException ex) {
             this.ch.rollbackConnection(connection);
             String addDiags = "";
-            if (data != null && RDBJDBCTools.matchesSQLState(ex, "22", "72")) {
+            if (rewrite && RDBJDBCTools.matchesSQLState(ex, "22", "72")) {
+                String data = ser.asString(document, tmd.getColumnOnlyProperties());
                 byte[] bytes = asBytes(data);
                 addDiags = String.format(" (DATA size in Java characters: %d, in octets: %d, computed character limit: %d)",
                         data.length(), bytes.length, tmd.getDataLimitInOctets() / CHAR2OCTETRATIO);
@@ -2208,6 +2278,12 @@ public class RDBDocumentStore implements DocumentStore {
     private static final boolean NOGZIP = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOGZIP", Boolean.FALSE).loggingTo(LOG).get();
 
+    // Whether to write documents using the binary format in the BDATA column
+    // (rows in JSON format can always be read)
+    private static final boolean BINARYFORMAT = SystemPropertySupplier
+            .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYFORMAT", Boolean.FALSE).loggingTo(LOG)
+            .get();
+
     // Whether to use append operations (string concatenation) in the DATA column
     private static final boolean NOAPPEND = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOAPPEND", Boolean.FALSE).loggingTo(LOG).get();
@@ -2227,6 +2303,17 @@ public class RDBDocumentStore implements DocumentStore {
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QUERYTIMELIMIT", 10000).loggingTo(LOG)
             .validateWith(value -> value > 0).get();
 
+    // Number of rows fetched per round trip when iterating over query results
+    private static final int QUERYFETCHSIZE = SystemPropertySupplier
+            .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QUERYFETCHSIZE", 100).loggingTo(LOG)
+            .validateWith(value -> value > 0).get();
+
+    // Number of ID ranges read concurrently by full scans of the nodes
+    // collection (default: 1, scans are not partitioned)
+    private static final int QUERYPARALLELISM = SystemPropertySupplier
+            .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QUERYPARALLELISM", 1).loggingTo(LOG)
+            .validateWith(value -> value > 0).get();
+
     // Whether to use JDBC batch commands for the createOrUpdate (default: true)
     private static final boolean BATCHUPDATES = SystemPropertySupplier
             .create(RDBDocumentStore.class.getName() + ".BATCHUPDATES", Boolean.TRUE).loggingTo(LOG)
@@ -62,6 +62,11 @@ public enum RDBDocumentStoreDB {
         public String getCurrentTimeStampInSecondsSyntax() {
             return "select unix_timestamp()";
         }
+
+        @Override
+        public INSERTIFABSENTSYNTAX getInsertIfAbsentSyntax() {
+            return INSERTIFABSENTSYNTAX.NOTEXISTS;
+        }
     },
 
     DERBY("Apache Derby") {
@@ -70,6 +75,11 @@ public enum RDBDocumentStoreDB {
             return RDBJDBCTools.versionCheck(md, 10, 11, description);
         }
 
+        @Override
+        public INSERTIFABSENTSYNTAX getInsertIfAbsentSyntax() {
+            return INSERTIFABSENTSYNTAX.MERGE;
+        }
+
         @Override
         public Map<String, String> getAdditionalStatistics(RDBConnectionHandler ch, String catalog, String tableName) {
             Map<String, String> result = new HashMap<String, String>();
@@ -157,6 +167,11 @@ public enum RDBDocumentStoreDB {
             return "select extract(epoch from now())::integer";
         }
 
+        @Override
+        public INSERTIFABSENTSYNTAX getInsertIfAbsentSyntax() {
+            return INSERTIFABSENTSYNTAX.ONCONFLICT;
+        }
+
         @Override
         public String getTableCreationStatement(String tableName, int schema) {
             return ("create table " + tableName
@@ -444,6 +459,13 @@ public enum RDBDocumentStoreDB {
             return FETCHFIRSTSYNTAX.LIMIT;
         }
 
+        @Override
+        public int getStreamingFetchSize(int fetchSize) {
+            // Connector/J only streams result sets with this special value,
+            // otherwise it reads the complete result into memory
+            return Integer.MIN_VALUE;
+        }
+
         @Override
         public PreparedStatementComponent getConcatQuery(final String appendData, final int dataOctetLimit) {
             return new PreparedStatementComponent() {
@@ -654,6 +676,19 @@ public enum RDBDocumentStoreDB {
         FETCHFIRST, LIMIT, TOP
     };
 
+    /**
+     * Syntax for inserting a row unless a row with the same ID exists:
+     * <ul>
+     * <li>{@code NONE}: not supported, a plain insert is used</li>
+     * <li>{@code ONCONFLICT}: {@code insert ... on conflict (ID) do nothing}</li>
+     * <li>{@code NOTEXISTS}: {@code insert ... select ... where not exists ...}</li>
+     * <li>{@code MERGE}: {@code merge ... when not matched then insert ...}</li>
+     * </ul>
+     */
+    public enum INSERTIFABSENTSYNTAX {
+        NONE, ONCONFLICT, NOTEXISTS, MERGE
+    };
+
     /**
      * Check the database brand and version
      */
@@ -668,6 +703,24 @@ public enum RDBDocumentStoreDB {
         return FETCHFIRSTSYNTAX.FETCHFIRST;
     }
 
+    /**
+     * Query syntax for inserting rows that do not exist yet
+     */
+    public INSERTIFABSENTSYNTAX getInsertIfAbsentSyntax() {
+        return INSERTIFABSENTSYNTAX.NONE;
+    }
+
+    /**
+     * Fetch size to use for result sets that are read incrementally
+     * 
+     * @param fetchSize
+     *            the configured number of rows to fetch per round trip
+     * @return the fetch size to pass to the JDBC driver
+     */
+    public int getStreamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
     /**
      * Query syntax for current time in ms since the epoch
      * 
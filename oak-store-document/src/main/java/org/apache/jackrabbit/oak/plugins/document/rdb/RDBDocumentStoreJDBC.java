@@ -35,6 +35,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -54,6 +55,7 @@ import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.RDBTableMetaData;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStoreDB.FETCHFIRSTSYNTAX;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStoreDB.INSERTIFABSENTSYNTAX;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBJDBCTools.PreparedStatementComponent;
 import org.apache.jackrabbit.oak.plugins.document.util.UTF8Encoder;
 import org.jetbrains.annotations.NotNull;
@@ -83,15 +85,24 @@ public class RDBDocumentStoreJDBC {
 
     private final RDBDocumentStoreDB dbInfo;
     private final RDBDocumentSerializer ser;
-    private final int queryHitsLimit, queryTimeLimit;
+    private final int queryHitsLimit, queryTimeLimit, queryFetchSize;
 
     private static final Long INITIALMODCOUNT = Long.valueOf(1);
+
+    // default number of rows fetched per round trip by result set iterators
+    private static final int DEFAULTQUERYFETCHSIZE = 100;
     
     public RDBDocumentStoreJDBC(RDBDocumentStoreDB dbInfo, RDBDocumentSerializer ser, int queryHitsLimit, int queryTimeLimit) {
+        this(dbInfo, ser, queryHitsLimit, queryTimeLimit, DEFAULTQUERYFETCHSIZE);
+    }
+
+    public RDBDocumentStoreJDBC(RDBDocumentStoreDB dbInfo, RDBDocumentSerializer ser, int queryHitsLimit, int queryTimeLimit,
+            int queryFetchSize) {
         this.dbInfo = dbInfo;
         this.ser = ser;
         this.queryHitsLimit = queryHitsLimit;
         this.queryTimeLimit = queryTimeLimit;
+        this.queryFetchSize = queryFetchSize;
     }
 
     public boolean appendingUpdate(Connection connection, RDBTableMetaData tmd, String id, Long modified,
@@ -250,45 +261,85 @@ public class RDBDocumentStoreJDBC {
     }
 
     public <T extends Document> Set<String> insert(Connection connection, RDBTableMetaData tmd, List<T> documents) throws SQLException {
+        return insert(connection, tmd, documents, INSERTIFABSENTSYNTAX.NONE);
+    }
+
+    /**
+     * Insert a list of documents using JDBC batches, skipping documents that
+     * already exist in the database. Unlike
+     * {@link #insert(Connection, RDBTableMetaData, List)}, an existing row
+     * does not cause the batch (and, depending on the database, the
+     * transaction) to fail, so all other documents of the batch are inserted.
+     * Uses a plain insert if the database does not support such a statement.
+     *
+     * @param connection JDBC connection
+     * @param tmd Table metadata
+     * @param documents List of documents to insert
+     * @return set containing ids of successfully inserted documents
+     * @throws SQLException
+     */
+    public <T extends Document> Set<String> insertIfAbsent(Connection connection, RDBTableMetaData tmd, List<T> documents)
+            throws SQLException {
+        return insert(connection, tmd, documents, this.dbInfo.getInsertIfAbsentSyntax());
+    }
+
+    private <T extends Document> Set<String> insert(Connection connection, RDBTableMetaData tmd, List<T> documents,
+            INSERTIFABSENTSYNTAX syntax) throws SQLException {
         int actualSchema = tmd.hasSplitDocs() ? 2 : 1;
-        PreparedStatement stmt = connection.prepareStatement(
-                "insert into " + tmd.getName() + "(ID, MODIFIED, HASBINARY, DELETEDONCE, MODCOUNT, CMODCOUNT, DSIZE, "
-                        + (tmd.hasVersion() ? "VERSION, " : "") 
-                        + (tmd.hasSplitDocs() ? "SDTYPE, SDMAXREVTIME, " : "")
-                        + "DATA, BDATA) " + "values (?, ?, ?, ?, ?, ?, ?, "
-                        + (tmd.hasVersion() ? (" " + actualSchema + ", ") : "")
-                        + (tmd.hasSplitDocs() ? "?, ?, " : "")
-                        + "?, ?)");
+        String columns = "ID, MODIFIED, HASBINARY, DELETEDONCE, MODCOUNT, CMODCOUNT, "
+                + (tmd.hasVersion() ? "VERSION, " : "")
+                + (tmd.hasSplitDocs() ? "SDTYPE, SDMAXREVTIME, " : "")
+                + "DSIZE, DATA, BDATA";
+        String values = "?, ?, ?, ?, ?, ?, "
+                + (tmd.hasVersion() ? (" " + actualSchema + ", ") : "")
+                + (tmd.hasSplitDocs() ? "?, ?, " : "")
+                + "?, ?, ?";
+        String sql;
+        switch (syntax) {
+            case ONCONFLICT:
+                sql = "insert into " + tmd.getName() + "(" + columns + ") values (" + values + ") on conflict (ID) do nothing";
+                break;
+            case NOTEXISTS:
+                sql = "insert into " + tmd.getName() + "(" + columns + ") select " + values + " from dual where not exists (select ID from "
+                        + tmd.getName() + " where ID = ?)";
+                break;
+            case MERGE:
+                sql = "merge into " + tmd.getName() + " using SYSIBM.SYSDUMMY1 on ID = ? when not matched then insert (" + columns
+                        + ") values (" + values + ")";
+                break;
+            default:
+                sql = "insert into " + tmd.getName() + "(" + columns + ") " + "values (" + values + ")";
+                break;
+        }
+        PreparedStatement stmt = connection.prepareStatement(sql);
 
         List<T> sortedDocs = sortDocuments(documents);
         int[] results;
         try {
             for (T document : sortedDocs) {
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                SerializedDocument data = serialize(tmd, document);
                 String id = document.getId();
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
                 Long cmodcount = (Long) document.get(COLLISIONSMODCOUNT);
 
                 int si = 1;
+                if (syntax == INSERTIFABSENTSYNTAX.MERGE) {
+                    setIdInStatement(tmd, stmt, si++, id);
+                }
                 setIdInStatement(tmd, stmt, si++, id);
                 stmt.setObject(si++, document.get(MODIFIED), Types.BIGINT);
                 stmt.setObject(si++, hasBinaryAsNullOrInteger(hasBinary), Types.SMALLINT);
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, document.get(MODCOUNT), Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
                 if (tmd.hasSplitDocs()) {
                     stmt.setObject(si++, document.get(NodeDocument.SD_TYPE));
                     stmt.setObject(si++, document.get(NodeDocument.SD_MAX_REV_TIME_IN_SECS));
                 }
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    setDataInStatement(tmd, stmt, si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
+                si = setSerializedDocumentInStatement(tmd, stmt, si, data);
+                if (syntax == INSERTIFABSENTSYNTAX.NOTEXISTS) {
+                    setIdInStatement(tmd, stmt, si++, id);
                 }
                 stmt.addBatch();
             }
@@ -300,17 +351,48 @@ public class RDBDocumentStoreJDBC {
             stmt.close();
         }
         Set<String> succesfullyInserted = new HashSet<String>();
+        Map<String, T> unknown = new HashMap<String, T>();
         for (int i = 0; i < results.length; i++) {
             int result = results[i];
-            if (result != 1 && result != Statement.SUCCESS_NO_INFO) {
+            if (result == Statement.SUCCESS_NO_INFO && syntax != INSERTIFABSENTSYNTAX.NONE) {
+                // a skipped row may be reported the same way
+                unknown.put(sortedDocs.get(i).getId(), sortedDocs.get(i));
+            } else if (result != 1 && result != Statement.SUCCESS_NO_INFO) {
                 LOG.debug("DB insert failed for {}: {}", tmd.getName(), sortedDocs.get(i).getId());
             } else {
                 succesfullyInserted.add(sortedDocs.get(i).getId());
             }
         }
+        if (!unknown.isEmpty()) {
+            succesfullyInserted.addAll(verifyInserted(connection, tmd, unknown));
+        }
         return succesfullyInserted;
     }
 
+    /**
+     * Reads back the rows of the given documents and returns the ids of those
+     * rows that contain the data written by this insert. The documents are
+     * serialized again, which is only necessary when the driver did not
+     * report an update count.
+     */
+    private <T extends Document> Set<String> verifyInserted(Connection connection, RDBTableMetaData tmd,
+            Map<String, T> documents) throws SQLException {
+        Set<String> inserted = new HashSet<String>();
+        List<RDBRow> rows = read(connection, tmd, new ArrayList<String>(documents.keySet()));
+        if (rows != null) {
+            for (RDBRow row : rows) {
+                SerializedDocument data = serialize(tmd, documents.get(row.getId()));
+                if (row.getModcount() == INITIALMODCOUNT && data.data.equals(row.getData())
+                        && Arrays.equals(data.bdata, row.getBdata())) {
+                    inserted.add(row.getId());
+                } else {
+                    LOG.debug("DB insert skipped for {}: {}", tmd.getName(), row.getId());
+                }
+            }
+        }
+        return inserted;
+    }
+
     /**
      * Update a list of documents using JDBC batches. Some of the updates may fail because of the concurrent
      * changes. The method returns a set of successfully updated documents. It's the caller responsibility
@@ -318,7 +400,8 @@ public class RDBDocumentStoreJDBC {
      * appropriate action.
      * <p>
      * If the {@code upsert} parameter is set to true, the method will also try to insert new documents, those
-     * which modcount equals to 1.
+     * which modcount equals to 1. New documents that already exist in the database are skipped without failing
+     * the batch (see {@link #insertIfAbsent(Connection, RDBTableMetaData, List)}).
      * <p>
      * The order of applying updates will be different than order of the passed list, so there shouldn't be two
      * updates related to the same document. An {@link IllegalArgumentException} will be thrown if there are.
@@ -350,7 +433,7 @@ public class RDBDocumentStoreJDBC {
                     continue; // This is a new document. We'll deal with the inserts later.
                 }
 
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                SerializedDocument data = serialize(tmd, document);
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
                 Long cmodcount = (Long) document.get(COLLISIONSMODCOUNT);
@@ -361,16 +444,7 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, modcount, Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
-
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    setDataInStatement(tmd, stmt, si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
-                }
+                si = setSerializedDocumentInStatement(tmd, stmt, si, data);
 
                 setIdInStatement(tmd, stmt, si++, document.getId());
                 stmt.setObject(si++, modcount - 1, Types.BIGINT);
@@ -423,7 +497,7 @@ public class RDBDocumentStoreJDBC {
             }
 
             if (!toBeInserted.isEmpty()) {
-                for (String id : insert(connection, tmd, toBeInserted)) {
+                for (String id : insertIfAbsent(connection, tmd, toBeInserted)) {
                     successfulUpdates.add(id);
                 }
             }
@@ -459,7 +533,7 @@ public class RDBDocumentStoreJDBC {
                             + excludeKeyPatterns + ", conditions=" + conditions + ", limit=" + limit)
                     : null);
             stmt = prepareQuery(connection, tmd, fields, minId,
-                    maxId, excludeKeyPatterns, conditions, limit, "ID");
+                    maxId, excludeKeyPatterns, conditions, limit, "ID", limit != Integer.MAX_VALUE ? limit : 0);
             rs = stmt.executeQuery();
             while (rs.next() && result.size() < limit) {
                 int field = 1;
@@ -534,7 +608,7 @@ public class RDBDocumentStoreJDBC {
         long result = -1;
         String selector = aggregate + "(" + ("*".equals(field) ? "*" : INDEXED_PROP_MAPPING.get(field)) + ")";
         try {
-            stmt = prepareQuery(connection, tmd, selector, minId, maxId, excludeKeyPatterns, conditions, Integer.MAX_VALUE, null);
+            stmt = prepareQuery(connection, tmd, selector, minId, maxId, excludeKeyPatterns, conditions, Integer.MAX_VALUE, null, 0);
             rs = stmt.executeQuery();
 
             result = rs.next() ? rs.getLong(1) : -1;
@@ -587,7 +661,11 @@ public class RDBDocumentStoreJDBC {
                 } else {
                     fields = "ID, MODIFIED, MODCOUNT, CMODCOUNT, HASBINARY, DELETEDONCE, DATA, BDATA";
                 }
-                this.stmt = prepareQuery(connection, tmd, fields, minId, maxId, excludeKeyPatterns, conditions, limit, sortBy);
+                // read the result set incrementally, so that the memory used
+                // does not depend on the number of rows
+                int fetchSize = dbInfo.getStreamingFetchSize(Math.min(limit, queryFetchSize));
+                this.stmt = prepareQuery(connection, tmd, fields, minId, maxId, excludeKeyPatterns, conditions, limit, sortBy,
+                        fetchSize);
                 this.rs = stmt.executeQuery();
                 this.next = internalNext();
                 this.message = String.format("Query on %s with params minid '%s' maxid '%s' excludeKeyPatterns %s conditions %s.",
@@ -695,7 +773,8 @@ public class RDBDocumentStoreJDBC {
 
     @NotNull
     private PreparedStatement prepareQuery(Connection connection, RDBTableMetaData tmd, String columns, String minId, String maxId,
-            List<String> excludeKeyPatterns, List<QueryCondition> conditions, int limit, String sortBy) throws SQLException {
+            List<String> excludeKeyPatterns, List<QueryCondition> conditions, int limit, String sortBy, int fetchSize)
+            throws SQLException {
 
         StringBuilder selectClause = new StringBuilder();
 
@@ -731,7 +810,8 @@ public class RDBDocumentStoreJDBC {
             }
         }
 
-        PreparedStatement stmt = connection.prepareStatement(query.toString());
+        PreparedStatement stmt = connection.prepareStatement(query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
 
         int si = 1;
         if (minId != null) {
@@ -748,8 +828,8 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, o);
             }
         }
-        if (limit != Integer.MAX_VALUE) {
-            stmt.setFetchSize(limit);
+        if (fetchSize != 0) {
+            stmt.setFetchSize(fetchSize);
         }
         return stmt;
     }
@@ -913,6 +993,22 @@ public class RDBDocumentStoreJDBC {
 
     public boolean update(Connection connection, RDBTableMetaData tmd, String id, Long modified, Number hasBinary,
             Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, String data) throws SQLException {
+        return update(connection, tmd, id, modified, hasBinary, deletedOnce, modcount, cmodcount, oldmodcount,
+                serialize(tmd, data));
+    }
+
+    /**
+     * Rewrites the row of the given document, using the binary format when
+     * enabled in the {@link RDBDocumentSerializer}.
+     */
+    public boolean update(Connection connection, RDBTableMetaData tmd, Document document, Long modified, Number hasBinary,
+            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount) throws SQLException {
+        return update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount, oldmodcount,
+                serialize(tmd, document));
+    }
+
+    private boolean update(Connection connection, RDBTableMetaData tmd, String id, Long modified, Number hasBinary,
+            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, SerializedDocument data) throws SQLException {
 
         StringBuilder t = new StringBuilder();
         t.append("update " + tmd.getName() + " set ");
@@ -930,16 +1026,7 @@ public class RDBDocumentStoreJDBC {
             stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
             stmt.setObject(si++, modcount, Types.BIGINT);
             stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-            stmt.setObject(si++, data.length(), Types.BIGINT);
-
-            if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                setDataInStatement(tmd, stmt, si++, data);
-                stmt.setBinaryStream(si++, null, 0);
-            } else {
-                setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                byte[] bytes = asBytes(data);
-                stmt.setBytes(si++, bytes);
-            }
+            si = setSerializedDocumentInStatement(tmd, stmt, si, data);
 
             setIdInStatement(tmd, stmt, si++, id);
 
@@ -1063,6 +1150,51 @@ public class RDBDocumentStoreJDBC {
         }
     }
 
+    /**
+     * A document serialized into the DSIZE, DATA and BDATA columns.
+     */
+    private static final class SerializedDocument {
+
+        final long size;
+        final String data;
+        final byte[] bdata;
+
+        SerializedDocument(long size, String data, byte[] bdata) {
+            this.size = size;
+            this.data = data;
+            this.bdata = bdata;
+        }
+    }
+
+    private SerializedDocument serialize(RDBTableMetaData tmd, Document document) {
+        if (this.ser.isBinaryFormat()) {
+            byte[] bytes = this.ser.asBytes(document, tmd.getColumnOnlyProperties());
+            return new SerializedDocument(bytes.length, "\"blob\"", bytes);
+        } else {
+            return serialize(tmd, this.ser.asString(document, tmd.getColumnOnlyProperties()));
+        }
+    }
+
+    private static SerializedDocument serialize(RDBTableMetaData tmd, String data) {
+        if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
+            return new SerializedDocument(data.length(), data, null);
+        } else {
+            return new SerializedDocument(data.length(), "\"blob\"", asBytes(data));
+        }
+    }
+
+    private static int setSerializedDocumentInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int si,
+            SerializedDocument document) throws SQLException {
+        stmt.setObject(si++, document.size, Types.BIGINT);
+        setDataInStatement(tmd, stmt, si++, document.data);
+        if (document.bdata == null) {
+            stmt.setBinaryStream(si++, null, 0);
+        } else {
+            stmt.setBytes(si++, document.bdata);
+        }
+        return si;
+    }
+
     private static void setIdInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int idx, String id) throws SQLException {
         try {
             if (tmd.isIdBinary()) {
@@ -67,8 +67,23 @@ public class RDBMissingLastRevSeeker extends MissingLastRevSeeker {
             List<QueryCondition> conditions = new ArrayList<>();
             conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(startTime)));
             conditions.add(new QueryCondition(NodeDocument.SD_TYPE, "is null"));
-            return store.queryAsIterable(Collection.NODES, null, null, RDBDocumentStore.EMPTY_KEY_PATTERN, conditions,
-                    Integer.MAX_VALUE, null);
+            return store.queryAllAsIterable(Collection.NODES, RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
+        }
+    }
+
+    @Override
+    @NotNull
+    public Iterable<NodeDocument> getCandidates(final long startTime,
+                                                @NotNull String fromId,
+                                                @NotNull String toId) {
+        if (MODE == 1) {
+            return super.getCandidates(startTime, fromId, toId);
+        } else {
+            List<QueryCondition> conditions = new ArrayList<>();
+            conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(startTime)));
+            conditions.add(new QueryCondition(NodeDocument.SD_TYPE, "is null"));
+            return store.queryAsIterable(Collection.NODES, fromId, toId, RDBDocumentStore.EMPTY_KEY_PATTERN,
+                    conditions, Integer.MAX_VALUE, null);
         }
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterates over all documents of a collection that match a set of query
+ * conditions, reading ranges of IDs concurrently.
+ * <p>
+ * The ID space is partitioned by the depth prefix of the document IDs (see
+ * {@link #getIdRanges()}). A fixed number of worker threads each take the
+ * next unread range, stream its rows with a separate query and hand the
+ * documents over through a bounded queue, so memory usage does not depend on
+ * the size of the collection. Documents are returned in no particular order.
+ */
+class RDBParallelScanIterator<T extends Document> extends AbstractIterator<T> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RDBParallelScanIterator.class);
+
+    // depth prefixes for which a separate range is created; IDs with larger
+    // depths are still covered by the neighbouring ranges
+    private static final int MAXDEPTH = 50;
+
+    private static final long OFFERTIMEOUTMS = 100;
+
+    private static final Object DONE = new Object();
+
+    private final Queue<String[]> ranges;
+    private final BlockingQueue<Object> queue;
+    private final ExecutorService executor;
+    private final int workers;
+    private final String description;
+    private final long start = System.currentTimeMillis();
+    private int finished;
+    private long count;
+    private volatile boolean closed;
+
+    RDBParallelScanIterator(final RDBDocumentStore store, final Collection<T> collection, final List<String> excludeKeyPatterns,
+            final List<QueryCondition> conditions, int parallelism, int fetchSize) {
+        this.ranges = new ConcurrentLinkedQueue<String[]>(getIdRanges());
+        this.workers = Math.min(parallelism, this.ranges.size());
+        this.queue = new ArrayBlockingQueue<Object>(this.workers * fetchSize);
+        this.description = String.format("Scan on %s with params excludeKeyPatterns %s conditions %s", collection,
+                excludeKeyPatterns, conditions);
+        final String threadName = "RDBDocumentStore scan " + collection + " #";
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, threadName + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (int i = 0; i < this.workers; i++) {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    scan(store, collection, excludeKeyPatterns, conditions);
+                }
+            });
+        }
+        // threads terminate once all ranges have been read
+        this.executor.shutdown();
+    }
+
+    /**
+     * Returns the ID ranges a scan is partitioned into. Each range is an
+     * array of the exclusive lower and upper bound, where {@code null} means
+     * unbounded. The ranges are contiguous and cover all valid document IDs
+     * (which never end with the ':' after the depth prefix).
+     */
+    @NotNull
+    static List<String[]> getIdRanges() {
+        List<String> bounds = new ArrayList<String>();
+        for (int depth = 0; depth < MAXDEPTH; depth++) {
+            bounds.add(depth + ":");
+        }
+        Collections.sort(bounds);
+        List<String[]> result = new ArrayList<String[]>();
+        String lower = null;
+        for (String upper : bounds) {
+            result.add(new String[] { lower, upper });
+            lower = upper;
+        }
+        result.add(new String[] { lower, null });
+        return result;
+    }
+
+    @Override
+    protected T computeNext() {
+        while (finished < workers) {
+            Object o;
+            try {
+                o = queue.take();
+            } catch (InterruptedException ex) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new DocumentStoreException("Interrupted while waiting for: " + description, ex);
+            }
+            if (o == DONE) {
+                finished++;
+            } else if (o instanceof Throwable) {
+                close();
+                throw DocumentStoreException.convert((Throwable) o, description);
+            } else {
+                count++;
+                @SuppressWarnings("unchecked")
+                T doc = (T) o;
+                return doc;
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} using {} threads -> {} results in {}ms", description, workers, count,
+                    System.currentTimeMillis() - start);
+        }
+        return endOfData();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        // unblock workers waiting for space in the queue
+        queue.clear();
+    }
+
+    private void scan(RDBDocumentStore store, Collection<T> collection, List<String> excludeKeyPatterns,
+            List<QueryCondition> conditions) {
+        Object result = DONE;
+        try {
+            String[] range;
+            while (!closed && (range = ranges.poll()) != null) {
+                Iterable<T> docs = store.queryAsIterable(collection, range[0], range[1], excludeKeyPatterns, conditions,
+                        Integer.MAX_VALUE, null);
+                try {
+                    for (T doc : docs) {
+                        if (!offer(doc)) {
+                            break;
+                        }
+                    }
+                } finally {
+                    Utils.closeIfCloseable(docs);
+                }
+            }
+        } catch (Throwable t) {
+            result = t;
+        }
+        offer(result);
+    }
+
+    private boolean offer(Object o) {
+        try {
+            while (!queue.offer(o, OFFERTIMEOUTMS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return false;
+                }
+            }
+            return !closed;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
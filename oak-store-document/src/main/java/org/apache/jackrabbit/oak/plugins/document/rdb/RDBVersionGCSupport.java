@@ -81,7 +81,7 @@ public class RDBVersionGCSupport extends VersionGCSupport {
         if (MODE == 1) {
             return getIterator(RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
         } else {
-            return store.queryAsIterable(Collection.NODES, null, null, RDBDocumentStore.EMPTY_KEY_PATTERN, conditions, Integer.MAX_VALUE, null);
+            return store.queryAllAsIterable(Collection.NODES, RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
         }
     }
 
@@ -139,20 +139,17 @@ public class RDBVersionGCSupport extends VersionGCSupport {
             conditions1.add(new QueryCondition(NodeDocument.SD_MAX_REV_TIME_IN_SECS, "<=", NodeDocument.getModifiedInSecs(oldestRevTimeStamp)));
             conditions1.add(new QueryCondition(RDBDocumentStore.VERSIONPROP, ">=", 2));
             name1 = "version 2 query";
-            it1 = store.queryAsIterable(Collection.NODES, null, null, Collections.emptyList(), conditions1,
-                    Integer.MAX_VALUE, null);
+            it1 = store.queryAllAsIterable(Collection.NODES, Collections.emptyList(), conditions1);
 
             List<QueryCondition> conditions2 = new ArrayList<QueryCondition>();
             conditions2.add(new QueryCondition(RDBDocumentStore.VERSIONPROP, "null or <", 2));
-            it2 = store.queryAsIterable(Collection.NODES, null, null, excludeKeyPatterns, conditions2,
-                    Integer.MAX_VALUE, null);
+            it2 = store.queryAllAsIterable(Collection.NODES, excludeKeyPatterns, conditions2);
             name2 = "version <2 fallback on " + excludeKeyPatterns;
         } catch (UnsupportedIndexedPropertyException ex) {
             // this will happen if we query a table that doesn't have the SD*
             // columns - create a new query without the constraint, and let the
             // Java code filter the results
-            it1 = store.queryAsIterable(Collection.NODES, null, null, excludeKeyPatterns, Collections.emptyList(),
-                    Integer.MAX_VALUE, null);
+            it1 = store.queryAllAsIterable(Collection.NODES, excludeKeyPatterns, Collections.emptyList());
             it2 = Collections.emptySet();
             name1 = "version <2 fallback on " + excludeKeyPatterns;
             name2 = "";
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Utility methods to call {@link AsyncDocumentStore} methods on any
+ * {@link DocumentStore}. If the store does not implement
+ * {@link AsyncDocumentStore}, the operation is performed on the calling
+ * thread and the returned stage is already complete.
+ */
+public final class AsyncDocumentStores {
+
+    private AsyncDocumentStores() {
+    }
+
+    /**
+     * @param store a document store.
+     * @return {@code true} if the given store performs operations
+     *          asynchronously; {@code false} otherwise.
+     */
+    public static boolean isAsync(@NotNull DocumentStore store) {
+        return store instanceof AsyncDocumentStore
+                && ((AsyncDocumentStore) store).isAsync();
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<T> findAsync(@NotNull DocumentStore store,
+                                                                    Collection<T> collection,
+                                                                    String key,
+                                                                    int maxCacheAge) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).findAsync(collection, key, maxCacheAge);
+        }
+        return call(() -> store.find(collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<List<T>> queryAsync(@NotNull DocumentStore store,
+                                                                           Collection<T> collection,
+                                                                           String fromKey,
+                                                                           String toKey,
+                                                                           int limit) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).queryAsync(collection, fromKey, toKey, limit);
+        }
+        return call(() -> store.query(collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<Boolean> createAsync(@NotNull DocumentStore store,
+                                                                            Collection<T> collection,
+                                                                            List<UpdateOp> updateOps) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).createAsync(collection, updateOps);
+        }
+        return call(() -> store.create(collection, updateOps));
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<T> createOrUpdateAsync(@NotNull DocumentStore store,
+                                                                              Collection<T> collection,
+                                                                              UpdateOp update) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).createOrUpdateAsync(collection, update);
+        }
+        return call(() -> store.createOrUpdate(collection, update));
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(@NotNull DocumentStore store,
+                                                                                    Collection<T> collection,
+                                                                                    List<UpdateOp> updateOps) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).createOrUpdateAsync(collection, updateOps);
+        }
+        return call(() -> store.createOrUpdate(collection, updateOps));
+    }
+
+    @NotNull
+    public static <T extends Document> CompletionStage<T> findAndUpdateAsync(@NotNull DocumentStore store,
+                                                                             Collection<T> collection,
+                                                                             UpdateOp update) {
+        if (store instanceof AsyncDocumentStore) {
+            return ((AsyncDocumentStore) store).findAndUpdateAsync(collection, update);
+        }
+        return call(() -> store.findAndUpdate(collection, update));
+    }
+
+    /**
+     * Performs the given operation on the calling thread.
+     *
+     * @param operation the operation.
+     * @return a completed stage with the result of the operation or a stage
+     *          completed exceptionally with the exception thrown by the
+     *          operation.
+     */
+    @NotNull
+    public static <T> CompletableFuture<T> call(@NotNull Supplier<T> operation) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        try {
+            f.complete(operation.get());
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
+    /**
+     * Waits for the given stage to complete and returns its result.
+     *
+     * @param stage the stage.
+     * @return the result of the stage.
+     * @throws DocumentStoreException if the stage completed exceptionally.
+     */
+    public static <T> T await(@NotNull CompletionStage<T> stage)
+            throws DocumentStoreException {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw DocumentStoreException.convert(unwrap(e));
+        }
+    }
+
+    /**
+     * Returns the cause of a {@link CompletionException} or
+     * {@link ExecutionException}, which is how {@link CompletableFuture}
+     * reports the exception of a stage.
+     *
+     * @param t a throwable.
+     * @return the cause of {@code t} if it is a wrapper exception, otherwise
+     *          {@code t}.
+     */
+    @NotNull
+    public static Throwable unwrap(@NotNull Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException)
+                && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
@@ -20,13 +20,16 @@ package org.apache.jackrabbit.oak.plugins.document.util;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.ClusterNodeInfo;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.jetbrains.annotations.NotNull;
@@ -37,7 +40,7 @@ import org.jetbrains.annotations.NotNull;
  * <p>
  * @see "https://issues.apache.org/jira/browse/OAK-2739 for more details"
  */
-public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
+public final class LeaseCheckDocumentStoreWrapper implements AsyncDocumentStore {
 
     private final DocumentStore delegate;
     private final ClusterNodeInfo clusterNodeInfo;
@@ -57,6 +60,20 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    /**
+     * Performs the lease check on the calling thread, before an asynchronous
+     * operation is issued.
+     *
+     * @return a stage that is completed exceptionally if the lease check
+     *          failed.
+     */
+    private CompletionStage<Void> leaseCheck() {
+        return AsyncDocumentStores.call(() -> {
+            performLeaseCheck();
+            return null;
+        });
+    }
+
     @Override
     public final <T extends Document> T find(Collection<T> collection, String key) {
         performLeaseCheck();
@@ -70,6 +87,13 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    public final <T extends Document> T find(Collection<T> collection, String key,
+            RevisionVector readRevision) {
+        performLeaseCheck();
+        return delegate.find(collection, key, readRevision);
+    }
+
     @Override
     public final <T extends Document> List<T> query(Collection<T> collection,
             String fromKey, String toKey, int limit) {
@@ -141,6 +165,61 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.findAndUpdate(collection, update);
     }
 
+    //----------------------------< AsyncDocumentStore >------------------------
+
+    @Override
+    public final boolean isAsync() {
+        return AsyncDocumentStores.isAsync(delegate);
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+            String key, int maxCacheAge) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.findAsync(
+                delegate, collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+            String fromKey, String toKey, int limit) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.queryAsync(
+                delegate, collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.createAsync(
+                delegate, collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+            UpdateOp update) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.createOrUpdateAsync(
+                delegate, collection, update));
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.createOrUpdateAsync(
+                delegate, collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public final <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+            UpdateOp update) {
+        return leaseCheck().thenCompose(v -> AsyncDocumentStores.findAndUpdateAsync(
+                delegate, collection, update));
+    }
+
     @Override
     public final CacheInvalidationStats invalidateCache() {
         performLeaseCheck();
@@ -180,6 +259,13 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.getIfCached(collection, key);
     }
 
+    @Override
+    public final <T extends Document> void prefetch(Collection<T> collection,
+            Iterable<String> keys) {
+        performLeaseCheck();
+        delegate.prefetch(collection, keys);
+    }
+
     @Override
     public final void setReadWriteMode(String readWriteMode) {
         performLeaseCheck();
@@ -19,13 +19,16 @@ package org.apache.jackrabbit.oak.plugins.document.util;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.jetbrains.annotations.NotNull;
@@ -35,7 +38,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Implements a <code>DocumentStore</code> wrapper and logs all calls.
  */
-public class LoggingDocumentStoreWrapper implements DocumentStore {
+public class LoggingDocumentStoreWrapper implements AsyncDocumentStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(LoggingDocumentStoreWrapper.class);
 
@@ -100,6 +103,24 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    public <T extends Document> T find(final Collection<T> collection,
+                                       final String key,
+                                       final RevisionVector readRevision) {
+        try {
+            logMethod("find", collection, key, readRevision);
+            return logResult(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return store.find(collection, key, readRevision);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
@@ -267,6 +288,70 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    //----------------------------< AsyncDocumentStore >------------------------
+
+    @Override
+    public boolean isAsync() {
+        return AsyncDocumentStores.isAsync(store);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+                                                             String key,
+                                                             int maxCacheAge) {
+        logMethod("findAsync", collection, key, maxCacheAge);
+        return logResultAsync(AsyncDocumentStores.findAsync(
+                store, collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+                                                                    String fromKey,
+                                                                    String toKey,
+                                                                    int limit) {
+        logMethod("queryAsync", collection, fromKey, toKey, limit);
+        return logResultAsync(AsyncDocumentStores.queryAsync(
+                store, collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+                                                                     List<UpdateOp> updateOps) {
+        logMethod("createAsync", collection, updateOps);
+        return logResultAsync(AsyncDocumentStores.createAsync(
+                store, collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+                                                                       UpdateOp update) {
+        logMethod("createOrUpdateAsync", collection, update);
+        return logResultAsync(AsyncDocumentStores.createOrUpdateAsync(
+                store, collection, update));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                             List<UpdateOp> updateOps) {
+        logMethod("createOrUpdateAsync", collection, updateOps);
+        return logResultAsync(AsyncDocumentStores.createOrUpdateAsync(
+                store, collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+                                                                      UpdateOp update) {
+        logMethod("findAndUpdateAsync", collection, update);
+        return logResultAsync(AsyncDocumentStores.findAndUpdateAsync(
+                store, collection, update));
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         try {
@@ -328,6 +413,24 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    public <T extends Document> void prefetch(final Collection<T> collection,
+                                              final Iterable<String> keys) {
+        try {
+            logMethod("prefetch", collection, keys);
+            logResult(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    store.prefetch(collection, keys);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @Override
     public void setReadWriteMode(String readWriteMode) {
         try {
@@ -418,6 +521,19 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         return result;
     }
 
+    private <T> CompletionStage<T> logResultAsync(CompletionStage<T> stage) {
+        long time = System.nanoTime();
+        return stage.whenComplete((result, t) -> {
+            long elapsed = System.nanoTime() - time;
+            if (t == null) {
+                log("// " + (elapsed / 1000) + " us\t" + quote(result));
+            } else {
+                log("// " + (elapsed / 1000) + " us\t// exception: "
+                        + AsyncDocumentStores.unwrap(t).toString());
+            }
+        });
+    }
+
     private void log(String message) {
         String out = this.logThread ? (Thread.currentThread() + " " + message) : message;
         if (DEBUG) {
@@ -24,6 +24,7 @@ import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.jetbrains.annotations.NotNull;
@@ -50,6 +51,12 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    public synchronized <T extends Document> T find(final Collection<T> collection, final String key,
+            final RevisionVector readRevision) {
+        return store.find(collection, key, readRevision);
+    }
+
     @Override
     @NotNull
     public synchronized <T extends Document> List<T> query(final Collection<T> collection, final String fromKey,
@@ -132,6 +139,12 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.getIfCached(collection, key);
     }
 
+    @Override
+    public synchronized <T extends Document> void prefetch(final Collection<T> collection,
+                                                           final Iterable<String> keys) {
+        store.prefetch(collection, keys);
+    }
+
     @Override
     public synchronized void setReadWriteMode(String readWriteMode) {
         store.setReadWriteMode(readWriteMode);
@@ -22,14 +22,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.jetbrains.annotations.NotNull;
@@ -39,7 +42,7 @@ import org.jetbrains.annotations.Nullable;
  * A DocumentStore wrapper that can be used to log and also time DocumentStore
  * calls.
  */
-public class TimingDocumentStoreWrapper implements DocumentStore {
+public class TimingDocumentStoreWrapper implements AsyncDocumentStore {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("base.debug", "true"));
     private static final AtomicInteger NEXT_ID = new AtomicInteger();
@@ -139,6 +142,23 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @Nullable
+    public <T extends Document> T find(Collection<T> collection, String key,
+                                       RevisionVector readRevision) {
+        try {
+            long start = now();
+            T result = base.find(collection, key, readRevision);
+            updateAndLogTimes("find3", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "find3 " + collection + " " + key);
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -314,6 +334,94 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    //----------------------------< AsyncDocumentStore >------------------------
+
+    @Override
+    public boolean isAsync() {
+        return AsyncDocumentStores.isAsync(base);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAsync(Collection<T> collection,
+                                                             String key,
+                                                             int maxCacheAge) {
+        long start = now();
+        return AsyncDocumentStores.findAsync(base, collection, key, maxCacheAge)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("findAsync", start, 0, size(result));
+                    }
+                });
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> queryAsync(Collection<T> collection,
+                                                                    String fromKey,
+                                                                    String toKey,
+                                                                    int limit) {
+        long start = now();
+        return AsyncDocumentStores.queryAsync(base, collection, fromKey, toKey, limit)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("queryAsync", start, 0, size(result));
+                    }
+                });
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<Boolean> createAsync(Collection<T> collection,
+                                                                     List<UpdateOp> updateOps) {
+        long start = now();
+        return AsyncDocumentStores.createAsync(base, collection, updateOps)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("createAsync", start, 0, 0);
+                    }
+                });
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> createOrUpdateAsync(Collection<T> collection,
+                                                                       UpdateOp update) {
+        long start = now();
+        return AsyncDocumentStores.createOrUpdateAsync(base, collection, update)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("createOrUpdateAsync", start, 0, size(result));
+                    }
+                });
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                             List<UpdateOp> updateOps) {
+        long start = now();
+        return AsyncDocumentStores.createOrUpdateAsync(base, collection, updateOps)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("createOrUpdateAsync", start, 0, size(result));
+                    }
+                });
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletionStage<T> findAndUpdateAsync(Collection<T> collection,
+                                                                      UpdateOp update) {
+        long start = now();
+        return AsyncDocumentStores.findAndUpdateAsync(base, collection, update)
+                .whenComplete((result, t) -> {
+                    if (t == null) {
+                        updateAndLogTimes("findAndUpdateAsync", start, 0, size(result));
+                    }
+                });
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         try {
@@ -372,6 +480,17 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    public <T extends Document> void prefetch(Collection<T> collection, Iterable<String> keys) {
+        try {
+            long start = now();
+            base.prefetch(collection, keys);
+            updateAndLogTimes("prefetch", start, 0, 0);
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     public void setReadWriteMode(String readWriteMode) {
         try {
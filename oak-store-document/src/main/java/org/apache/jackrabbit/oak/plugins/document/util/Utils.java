@@ -69,6 +69,15 @@ public class Utils {
 
     private static String MODULE_VERSION = null;
 
+    // must be a power of 2
+    private static final int ID_CACHE_SIZE = 4096;
+
+    /**
+     * Recently used ids by path. An entry is replaced when another path with
+     * the same index is used.
+     */
+    private static final PathAndId[] ID_CACHE = new PathAndId[ID_CACHE_SIZE];
+
     /**
      * Approximate length of a Revision string.
      */
@@ -283,15 +292,36 @@ public class Utils {
         return depth + ":" + path;
     }
 
+    /**
+     * Returns the id of the document for the given path. Recently used ids
+     * are cached, which means a repeated call with the same or an equal path
+     * usually returns the cached id without creating new objects.
+     *
+     * @param path the path of a document.
+     * @return the id of the document.
+     */
     public static String getIdFromPath(@NotNull Path path) {
         checkNotNull(path);
+        int index = path.hashCode() & (ID_CACHE_SIZE - 1);
+        PathAndId cached = ID_CACHE[index];
+        if (cached != null && cached.path.equals(path)) {
+            return cached.id;
+        }
+        String id = createIdFromPath(path);
+        ID_CACHE[index] = new PathAndId(path, id);
+        return id;
+    }
+
+    private static String createIdFromPath(Path path) {
         int depth = getIdDepth(path);
         Path parent = path.getParent();
         if (parent != null && isLongPath(path)) {
             byte[] hash = createSHA256Digest(parent.toString());
             return createHashedId(depth, hash, path.getName());
         }
-        return depth + ":" + path;
+        StringBuilder sb = new StringBuilder(path.length() + 4);
+        sb.append(depth).append(':');
+        return path.toStringBuilder(sb).toString();
     }
 
     private static String createHashedId(int depth, byte[] hash, String name) {
@@ -720,9 +750,37 @@ public class Utils {
         return internalGetSelectedDocuments(store, indexedProperty, startValue, DEFAULT_BATCH_SIZE);
     }
 
+    /**
+     * Like {@link #getSelectedDocuments(DocumentStore, String, long)}, but
+     * only returns documents with an id within the given range.
+     *
+     * @param store a {@link DocumentStore}.
+     * @param indexedProperty the name of the indexed property.
+     * @param startValue the lower bound value for the indexed property
+     *                   (inclusive).
+     * @param fromId the lower bound of the id range (exclusive).
+     * @param toId the upper bound of the id range (exclusive).
+     * @return an {@link Iterable} over all documents in the id range
+     *         matching the condition
+     */
+    public static Iterable<NodeDocument> getSelectedDocuments(
+            DocumentStore store, String indexedProperty, long startValue,
+            String fromId, String toId) {
+        return internalGetSelectedDocuments(store, indexedProperty, startValue,
+                fromId, toId, DEFAULT_BATCH_SIZE);
+    }
+
     private static Iterable<NodeDocument> internalGetSelectedDocuments(
             final DocumentStore store, final String indexedProperty,
             final long startValue, final int batchSize) {
+        return internalGetSelectedDocuments(store, indexedProperty, startValue,
+                NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE, batchSize);
+    }
+
+    private static Iterable<NodeDocument> internalGetSelectedDocuments(
+            final DocumentStore store, final String indexedProperty,
+            final long startValue, final String fromId, final String toId,
+            final int batchSize) {
         if (batchSize < 2) {
             throw new IllegalArgumentException("batchSize must be > 1");
         }
@@ -731,7 +789,7 @@ public class Utils {
             public Iterator<NodeDocument> iterator() {
                 return new AbstractIterator<NodeDocument>() {
 
-                    private String startId = NodeDocument.MIN_ID_VALUE;
+                    private String startId = fromId;
 
                     private Iterator<NodeDocument> batch = nextBatch();
 
@@ -755,8 +813,8 @@ public class Utils {
 
                     private Iterator<NodeDocument> nextBatch() {
                         List<NodeDocument> result = indexedProperty == null ? store.query(Collection.NODES, startId,
-                                NodeDocument.MAX_ID_VALUE, batchSize) : store.query(Collection.NODES, startId,
-                                NodeDocument.MAX_ID_VALUE, indexedProperty, startValue, batchSize);
+                                toId, batchSize) : store.query(Collection.NODES, startId,
+                                toId, indexedProperty, startValue, batchSize);
                         return result.iterator();
                     }
                 };
@@ -1062,4 +1120,16 @@ public class Utils {
             throw new DocumentStoreException(msg);
         }
     }
+
+    private static final class PathAndId {
+
+        private final Path path;
+
+        private final String id;
+
+        PathAndId(Path path, String id) {
+            this.path = path;
+            this.id = id;
+        }
+    }
 }
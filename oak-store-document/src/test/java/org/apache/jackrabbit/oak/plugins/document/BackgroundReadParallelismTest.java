@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.commit.SimpleCommitContext;
+import org.apache.jackrabbit.oak.spi.observation.ChangeSet;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+import static org.apache.jackrabbit.oak.plugins.document.JournalEntry.newSorter;
+import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BackgroundReadParallelismTest {
+
+    private static final int NUM_CLUSTER_NODES = 4;
+
+    @Rule
+    public final DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final List<DocumentNodeStore> stores = Lists.newArrayList();
+
+    private final List<CommitInfo> externalChanges = Lists.newArrayList();
+
+    private DocumentNodeStore ns1;
+
+    @Before
+    public void setUp() {
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        for (int i = 1; i <= NUM_CLUSTER_NODES; i++) {
+            stores.add(builderProvider.newBuilder()
+                    .setAsyncDelay(0)
+                    .setDocumentStore(store)
+                    .setLeaseCheckMode(LeaseCheckMode.DISABLED)
+                    .setBackgroundReadParallelism(NUM_CLUSTER_NODES)
+                    .setClusterId(i)
+                    .getNodeStore());
+        }
+        for (DocumentNodeStore ns : stores) {
+            ns.runBackgroundOperations();
+        }
+        ns1 = stores.get(0);
+        assertNotNull(ns1.getBackgroundReadExecutor());
+        ns1.addObserver((root, info) -> {
+            if (info.isExternal()) {
+                externalChanges.add(info);
+            }
+        });
+    }
+
+    @Test
+    public void defaultParallelism() {
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0).getNodeStore();
+        assertNull(ns.getBackgroundReadExecutor());
+    }
+
+    @Test
+    public void externalChangesFromAllClusterNodes() throws Exception {
+        for (DocumentNodeStore ns : stores.subList(1, NUM_CLUSTER_NODES)) {
+            int clusterId = ns.getClusterId();
+            NodeBuilder builder = ns.getRoot().builder();
+            builder.child("node-" + clusterId).setProperty("p" + clusterId, "v");
+            ns.merge(builder, new EditorHook(new ChangeCollectorProvider()), newCommitInfo());
+            ns.runBackgroundOperations();
+        }
+
+        externalChanges.clear();
+        RevisionVector before = ns1.getHeadRevision();
+        ns1.runBackgroundReadOperations();
+        RevisionVector after = ns1.getHeadRevision();
+
+        NodeState root = ns1.getRoot();
+        for (DocumentNodeStore ns : stores.subList(1, NUM_CLUSTER_NODES)) {
+            int clusterId = ns.getClusterId();
+            assertTrue(root.getChildNode("node-" + clusterId).hasProperty("p" + clusterId));
+        }
+
+        assertEquals(1, externalChanges.size());
+        CommitContext cc = (CommitContext) externalChanges.get(0).getInfo().get(CommitContext.NAME);
+        ChangeSet cs = (ChangeSet) cc.get(ChangeSet.COMMIT_CONTEXT_OBSERVATION_CHANGESET);
+        assertNotNull(cs);
+        assertFalse(cs.anyOverflow());
+        assertThat(cs.getPropertyNames(), containsInAnyOrder("p2", "p3", "p4"));
+
+        // external changes must be available in the diff cache
+        String changes = ns1.getDiffCache().getChanges(before, after, Path.ROOT, null);
+        assertNotNull(changes);
+        for (DocumentNodeStore ns : stores.subList(1, NUM_CLUSTER_NODES)) {
+            assertTrue(changes.contains("node-" + ns.getClusterId()));
+        }
+    }
+
+    @Test
+    public void invalidateCachedDocuments() throws Exception {
+        NodeBuilder builder = ns1.getRoot().builder();
+        for (DocumentNodeStore ns : stores) {
+            builder.child("node-" + ns.getClusterId()).setProperty("p", 0L);
+        }
+        merge(ns1, builder);
+        ns1.runBackgroundOperations();
+        for (DocumentNodeStore ns : stores) {
+            ns.runBackgroundReadOperations();
+        }
+
+        for (int round = 1; round <= 3; round++) {
+            for (DocumentNodeStore ns : stores.subList(1, NUM_CLUSTER_NODES)) {
+                builder = ns.getRoot().builder();
+                builder.child("node-" + ns.getClusterId()).setProperty("p", (long) round);
+                merge(ns, builder);
+                ns.runBackgroundOperations();
+            }
+            ns1.runBackgroundReadOperations();
+            for (DocumentNodeStore ns : stores.subList(1, NUM_CLUSTER_NODES)) {
+                NodeState node = ns1.getRoot().getChildNode("node-" + ns.getClusterId());
+                assertEquals(round, node.getProperty("p").getValue(LONG).longValue());
+            }
+        }
+    }
+
+    @Test
+    public void mergeSorted() throws Exception {
+        StringSort s1 = sort("/a", "/c", "/d");
+        StringSort s2 = sort();
+        StringSort s3 = sort("/b", "/c", "/e");
+        try {
+            List<String> merged = Lists.newArrayList(
+                    ExternalChange.mergeSorted(ImmutableList.of(s1, s2, s3)));
+            assertEquals(ImmutableList.of("/a", "/b", "/c", "/d", "/e"), merged);
+        } finally {
+            s1.close();
+            s2.close();
+            s3.close();
+        }
+    }
+
+    private static StringSort sort(String... paths) throws Exception {
+        StringSort sort = newSorter();
+        for (String p : paths) {
+            sort.add(p);
+        }
+        sort.sort();
+        return sort;
+    }
+
+    private static CommitInfo newCommitInfo() {
+        Map<String, Object> info = ImmutableMap.<String, Object>of(
+                CommitContext.NAME, new SimpleCommitContext());
+        return new CommitInfo(CommitInfo.OAK_UNKNOWN, CommitInfo.OAK_UNKNOWN, info);
+    }
+}
@@ -189,6 +189,37 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertNull(nd);
     }
 
+    @Test
+    public void testPrefetch() {
+        String base = this.getClass().getName() + ".testPrefetch";
+
+        List<String> ids = new ArrayList<String>();
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 10; i++) {
+            String id = base + "-" + i;
+            super.ds.remove(Collection.NODES, id);
+            UpdateOp up = new UpdateOp(id, true);
+            up.set("p", (long) i);
+            ops.add(up);
+            ids.add(id);
+        }
+        assertTrue(super.ds.create(Collection.NODES, ops));
+        removeMe.addAll(ids);
+
+        super.ds.invalidateCache();
+        List<String> keys = new ArrayList<String>(ids);
+        keys.add(base + "-missing");
+        super.ds.prefetch(Collection.NODES, keys);
+
+        for (String id : ids) {
+            NodeDocument nd = super.ds.getIfCached(Collection.NODES, id);
+            assertNotNull("document not prefetched: " + id, nd);
+        }
+        assertNull(super.ds.getIfCached(Collection.NODES, base + "-missing"));
+        // prefetch from a collection that is not cached must not fail
+        super.ds.prefetch(Collection.SETTINGS, Collections.singletonList(base));
+    }
+
     @Test
     public void testCreateOrUpdateWithoutIdInUpdateOp() {
         String id = this.getClass().getName() + ".testCreateOrUpdateWithoutIdInUpdateOp";
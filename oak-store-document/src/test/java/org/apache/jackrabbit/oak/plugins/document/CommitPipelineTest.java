@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getIdFromPath;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CommitPipelineTest {
+
+    private static final String BATCH_SIZE = "oak.documentMK.createOrUpdateBatchSize";
+
+    private static final int NUM_NODES = 50;
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private String batchSize;
+
+    private PipelinedStore store;
+
+    private DocumentNodeStore ns;
+
+    @Before
+    public void setUp() {
+        batchSize = System.getProperty(BATCH_SIZE);
+        System.setProperty(BATCH_SIZE, "10");
+        store = new PipelinedStore();
+        ns = builderProvider.newBuilder().setAsyncDelay(0)
+                .setDocumentStore(store).getNodeStore();
+    }
+
+    @After
+    public void tearDown() {
+        if (batchSize != null) {
+            System.setProperty(BATCH_SIZE, batchSize);
+        } else {
+            System.clearProperty(BATCH_SIZE);
+        }
+        store.executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentBatches() throws Exception {
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < NUM_NODES; i++) {
+            builder.child("node-" + i).setProperty("p", i);
+        }
+        merge(ns, builder);
+
+        assertTrue("batches must overlap, but max in flight was "
+                + store.maxInFlight.get(), store.maxInFlight.get() > 1);
+        NodeState root = ns.getRoot();
+        for (int i = 0; i < NUM_NODES; i++) {
+            assertTrue(root.getChildNode("node-" + i).exists());
+        }
+    }
+
+    @Test
+    public void concurrentBatchesInBranchCommit() throws Exception {
+        // use a separate store, where the changes of the builder are
+        // persisted with branch commits
+        PipelinedStore branchStore = new PipelinedStore();
+        try {
+            DocumentNodeStore ns2 = builderProvider.newBuilder().setAsyncDelay(0)
+                    .setUpdateLimit(NUM_NODES).setDocumentStore(branchStore).getNodeStore();
+            NodeBuilder builder = ns2.getRoot().builder();
+            for (int i = 0; i < NUM_NODES * 2; i++) {
+                builder.child("node-" + i).setProperty("p", i);
+            }
+            merge(ns2, builder);
+
+            assertTrue(branchStore.maxInFlight.get() > 1);
+            // journal entries of the branch commits must be written
+            assertFalse(branchStore.query(Collection.JOURNAL,
+                    "0", "z", Integer.MAX_VALUE).isEmpty());
+            NodeState root = ns2.getRoot();
+            for (int i = 0; i < NUM_NODES * 2; i++) {
+                assertTrue(root.getChildNode("node-" + i).exists());
+            }
+        } finally {
+            branchStore.executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedBatch() throws Exception {
+        store.failOn = getIdFromPath("/node-" + (NUM_NODES - 1));
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < NUM_NODES; i++) {
+            builder.child("node-" + i).setProperty("p", i);
+        }
+        try {
+            merge(ns, builder);
+            fail("merge must fail");
+        } catch (CommitFailedException e) {
+            // expected
+        }
+        store.failOn = null;
+
+        NodeState root = ns.getRoot();
+        for (int i = 0; i < NUM_NODES; i++) {
+            assertFalse(root.getChildNode("node-" + i).exists());
+        }
+        // changes are rolled back and do not conflict with a new commit
+        builder = ns.getRoot().builder();
+        for (int i = 0; i < NUM_NODES; i++) {
+            builder.child("node-" + i).setProperty("p", i);
+        }
+        merge(ns, builder);
+        assertTrue(ns.getRoot().getChildNode("node-0").exists());
+    }
+
+    /**
+     * A store that writes batches of documents asynchronously, with a delay,
+     * and keeps track of the number of batches in flight.
+     */
+    private static final class PipelinedStore extends MemoryDocumentStore {
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        volatile String failOn;
+
+        @NotNull
+        @Override
+        public <T extends Document> CompletionStage<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                                 List<UpdateOp> updateOps) {
+            if (collection != NODES) {
+                return super.createOrUpdateAsync(collection, updateOps);
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                int n = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(n, Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(50);
+                    for (UpdateOp op : updateOps) {
+                        if (op.getId().equals(failOn)) {
+                            throw new DocumentStoreException("failure on " + failOn);
+                        }
+                    }
+                    return createOrUpdate(collection, updateOps);
+                } catch (InterruptedException e) {
+                    throw new DocumentStoreException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }, executor);
+        }
+    }
+}
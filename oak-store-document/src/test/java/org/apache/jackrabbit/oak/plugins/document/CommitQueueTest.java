@@ -25,6 +25,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
@@ -183,6 +184,66 @@ public class CommitQueueTest {
         assertNoExceptions();
     }
 
+    @Test
+    public void manyConcurrentCommits() throws Exception {
+        final CommitQueue queue = new CommitQueue(DummyRevisionContext.INSTANCE);
+        final AtomicBoolean inCallback = new AtomicBoolean();
+        final AtomicInteger numDone = new AtomicInteger();
+
+        final CommitQueue.Callback c = new CommitQueue.Callback() {
+            private Revision before = Revision.newRevision(1);
+
+            @Override
+            public void headOfQueue(@NotNull Revision r) {
+                if (!inCallback.compareAndSet(false, true)) {
+                    exceptions.add(new Exception("Concurrent head of queue: " + r));
+                }
+                if (StableRevisionComparator.INSTANCE.compare(r, before) <= 0) {
+                    exceptions.add(new Exception(
+                            "Inconsistent revision sequence. Before: " +
+                                    before + ", after: " + r));
+                }
+                before = r;
+                numDone.incrementAndGet();
+                inCallback.set(false);
+            }
+        };
+
+        // many more writers than cores to provoke contention on the queue
+        int numWriters = 64;
+        final AtomicInteger numCanceled = new AtomicInteger();
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < numWriters; i++) {
+            final Random random = new Random(i);
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+                            Revision r = queue.createRevision();
+                            if (random.nextInt(5) == 0) {
+                                queue.canceled(r);
+                                numCanceled.incrementAndGet();
+                            } else {
+                                queue.done(r, c);
+                            }
+                        }
+                    } catch (Exception e) {
+                        exceptions.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        assertNoExceptions();
+        assertEquals(numWriters * COMMITS_PER_WRITER, numDone.get() + numCanceled.get());
+    }
+
     // OAK-2868
     @Test
     public void branchCommitMustNotBlockTrunkCommit() throws Exception {
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentIdRangeTest {
+
+    @Test
+    public void partitions() {
+        List<DocumentIdRange> ranges = DocumentIdRange.partitions();
+        assertEquals(NodeDocument.MIN_ID_VALUE, ranges.get(0).getFromId());
+        assertEquals(NodeDocument.MAX_ID_VALUE, ranges.get(ranges.size() - 1).getToId());
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i - 1).getToId(), ranges.get(i).getFromId());
+        }
+        StringBuilder path = new StringBuilder();
+        for (int depth = 0; depth < 120; depth++) {
+            String p = path.length() == 0 ? "/" : path.toString();
+            assertPartitioned(ranges, Utils.getIdFromPath(p));
+            assertPartitioned(ranges, Utils.getPreviousIdFor(Path.fromString(p),
+                    Revision.newRevision(1), 0));
+            path.append("/node-").append(depth);
+        }
+    }
+
+    @Test
+    public void depthsBelowLimitInSeparatePartitions() {
+        List<DocumentIdRange> ranges = DocumentIdRange.partitions();
+        assertEquals(DocumentIdRange.PARTITIONED_DEPTH_LIMIT, ranges.size());
+        Set<DocumentIdRange> seen = new HashSet<>();
+        StringBuilder path = new StringBuilder();
+        for (int depth = 0; depth < DocumentIdRange.PARTITIONED_DEPTH_LIMIT; depth++) {
+            String p = path.length() == 0 ? "/" : path.toString();
+            DocumentIdRange range = getRange(ranges, Utils.getIdFromPath(p));
+            assertTrue("depth " + depth + " shares " + range, seen.add(range));
+            path.append("/node-").append(depth);
+        }
+    }
+
+    private static DocumentIdRange getRange(List<DocumentIdRange> ranges,
+                                            String id) {
+        for (DocumentIdRange r : ranges) {
+            if (r.contains(id)) {
+                return r;
+            }
+        }
+        throw new AssertionError("no range for " + id);
+    }
+
+    private static void assertPartitioned(List<DocumentIdRange> ranges,
+                                          String id) {
+        int count = 0;
+        for (DocumentIdRange r : ranges) {
+            if (r.contains(id)) {
+                count++;
+            }
+        }
+        assertEquals(id, 1, count);
+    }
+}
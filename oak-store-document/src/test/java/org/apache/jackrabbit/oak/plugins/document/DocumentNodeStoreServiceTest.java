@@ -278,6 +278,45 @@ public class DocumentNodeStoreServiceTest {
         assertEquals(delayFactor, dns.getVersionGarbageCollector().getOptions().delayFactor, 0.001);
     }
 
+    @Test
+    public void revisionGcParallelismAndRateLimit() {
+        Map<String, Object> config = newConfig(repoHome);
+        config.put("versionGCParallelism", 4);
+        config.put("versionGCRateLimit", 500.0);
+        MockOsgi.setConfigForPid(context.bundleContext(), PID, config);
+        MockOsgi.activate(service, context.bundleContext());
+        Runnable rgcJob = null;
+        for (Runnable r : context.getServices(Runnable.class, null)) {
+            if (r.getClass().equals(DocumentNodeStoreService.RevisionGCJob.class)) {
+                rgcJob = r;
+            }
+        }
+        assertNotNull(rgcJob);
+        rgcJob.run();
+        DocumentNodeStore dns = context.getService(DocumentNodeStore.class);
+        VersionGCOptions options = dns.getVersionGarbageCollector().getOptions();
+        assertEquals(4, options.parallelism);
+        assertEquals(500.0, options.rateLimit, 0.001);
+    }
+
+    @Test
+    public void revisionGcContinuous() {
+        Map<String, Object> config = newConfig(repoHome);
+        config.put("versionGCContinuous", true);
+        MockOsgi.setConfigForPid(context.bundleContext(), PID, config);
+        MockOsgi.activate(service, context.bundleContext());
+        Runnable rgcJob = null;
+        for (Runnable r : context.getServices(Runnable.class, null)) {
+            if (r.getClass().equals(DocumentNodeStoreService.RevisionGCJob.class)) {
+                rgcJob = r;
+            }
+        }
+        assertNotNull(rgcJob);
+        rgcJob.run();
+        DocumentNodeStore dns = context.getService(DocumentNodeStore.class);
+        assertTrue(dns.getVersionGarbageCollector().getOptions().continuous);
+    }
+
     @NotNull
     private static MongoDocumentStore getMongoDocumentStore(DocumentNodeStore s) {
         try {
@@ -23,6 +23,7 @@ import java.lang.management.ManagementFactory;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
@@ -63,6 +64,18 @@ public class DocumentNodeStoreStatsTest {
         assertEquals(7, getMeter(DocumentNodeStoreStats.BGW_NUM_WRITES_RATE).getCount());
     }
 
+    @Test
+    public void backgroundSplit() {
+        BackgroundWriteStats writeStats = new BackgroundWriteStats();
+        writeStats.splitCandidates = 3;
+        writeStats.splitMaxDocSize = 4096;
+        stats.doneBackgroundUpdate(writeStats);
+        Snapshot s = getHistogram(DocumentNodeStoreStats.BGW_SPLIT_CANDIDATES).getSnapshot();
+        assertEquals(3, s.getMax());
+        s = getHistogram(DocumentNodeStoreStats.BGW_SPLIT_MAX_DOC_SIZE).getSnapshot();
+        assertEquals(4096, s.getMax());
+    }
+
     @Test
     public void leaseUpdate() {
         stats.doneLeaseUpdate(47);
@@ -90,6 +103,10 @@ public class DocumentNodeStoreStatsTest {
         return statsProvider.getRegistry().getMeters().get(name);
     }
 
+    private Histogram getHistogram(String name) {
+        return statsProvider.getRegistry().getHistograms().get(name);
+    }
+
     private Timer getTimer(String name) {
         return statsProvider.getRegistry().getTimers().get(name);
     }
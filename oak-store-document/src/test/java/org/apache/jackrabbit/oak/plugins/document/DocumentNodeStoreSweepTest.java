@@ -280,6 +280,66 @@ public class DocumentNodeStoreSweepTest {
         assertEquals(startValue, modified.longValue());
     }
 
+    @Test
+    public void partitionedSweep() throws Exception {
+        ns.dispose();
+        ns = createDocumentNodeStore(0, 4);
+
+        createUncommittedChanges();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo");
+        merge(ns, builder);
+        ns.runBackgroundUpdateOperations();
+
+        ns.runBackgroundSweepOperation();
+        assertCleanStore();
+        assertNull(store.find(Collection.SETTINGS, getCheckpointId()));
+    }
+
+    @Test
+    public void partitionedSweepResume() throws Exception {
+        ns.dispose();
+        ns = createDocumentNodeStore(0, 4);
+
+        createUncommittedChanges();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo");
+        merge(ns, builder);
+        ns.runBackgroundUpdateOperations();
+
+        // sweep of the partition with the uncommitted changes fails
+        store.fail().on(Collection.JOURNAL).after(0).once();
+        try {
+            ns.runBackgroundSweepOperation();
+            fail("must fail with DocumentStoreException");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        store.fail().never();
+
+        // other partitions are recorded as done
+        Document doc = store.find(Collection.SETTINGS, getCheckpointId());
+        assertNotNull(doc);
+        List<DocumentIdRange> ranges = DocumentIdRange.partitions();
+        SweepCheckpoint checkpoint = SweepCheckpoint.open(store, getCheckpointId(),
+                (String) doc.get("key"), null, ranges.size());
+        assertTrue(checkpoint.isResumed());
+        String id = getIdFromPath("/node-0");
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i).toString(),
+                    !ranges.get(i).contains(id), checkpoint.isDone(i));
+        }
+
+        // resume with remaining partition
+        ns.runBackgroundSweepOperation();
+        assertCleanStore();
+        assertNull(store.find(Collection.SETTINGS, getCheckpointId()));
+    }
+
+    private String getCheckpointId() {
+        return DocumentNodeStore.SWEEP_CHECKPOINT_ID_PREFIX + ns.getClusterId();
+    }
+
     private void assertNodeExists(String path) {
         NodeState n = ns.getRoot();
         for (String name : PathUtils.elements(path)) {
@@ -330,9 +390,15 @@ public class DocumentNodeStoreSweepTest {
     }
 
     private DocumentNodeStore createDocumentNodeStore(int clusterId) {
+        return createDocumentNodeStore(clusterId, 1);
+    }
+
+    private DocumentNodeStore createDocumentNodeStore(int clusterId,
+                                                      int sweepParallelism) {
         return builderProvider.newBuilder().setDocumentStore(store)
                 // use lenient mode because tests use a virtual clock
                 .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setSweepParallelism(sweepParallelism)
                 .setClusterId(clusterId).clock(clock).setAsyncDelay(0)
                 .getNodeStore();
     }
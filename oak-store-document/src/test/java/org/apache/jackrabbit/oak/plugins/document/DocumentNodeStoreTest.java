@@ -71,6 +71,7 @@ import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -2413,6 +2414,100 @@ public class DocumentNodeStoreTest {
         System.clearProperty("oak.disableJournalDiff");
     }
 
+    @Test
+    public void diffManyBatched() throws Exception {
+        // make sure diffMany is used and not the journal diff
+        System.setProperty("oak.disableJournalDiff", "true");
+        try {
+            Clock clock = new Clock.Virtual();
+            clock.waitUntil(System.currentTimeMillis());
+            Revision.setClock(clock);
+            final AtomicInteger numQueries = new AtomicInteger();
+            MemoryDocumentStore ds = new MemoryDocumentStore() {
+                @NotNull
+                @Override
+                public <T extends Document> List<T> query(Collection<T> collection,
+                                                          String fromKey,
+                                                          String toKey,
+                                                          String indexedProperty,
+                                                          long startValue,
+                                                          int limit) {
+                    if (indexedProperty != null) {
+                        numQueries.incrementAndGet();
+                    }
+                    return super.query(collection, fromKey, toKey, indexedProperty, startValue, limit);
+                }
+            };
+            DocumentNodeStore ns = builderProvider.newBuilder().clock(clock)
+                    .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                    .setDocumentStore(ds).setAsyncDelay(0).getNodeStore();
+            ns.setDiffManyChildrenBatchSize(7);
+
+            NodeBuilder builder = ns.getRoot().builder();
+            NodeBuilder test = builder.child("test");
+            for (int i = 0; i < DocumentMK.MANY_CHILDREN_THRESHOLD * 2; i++) {
+                test.child("node-" + i);
+            }
+            merge(ns, builder);
+
+            clock.waitUntil(clock.getTime() + TimeUnit.HOURS.toMillis(1));
+
+            builder = ns.getRoot().builder();
+            builder.child("foo");
+            NodeState beforeTest = merge(ns, builder).getChildNode("test");
+
+            // change, add and remove children in two commits, the second
+            // one with modifications not yet written back by the background
+            // update
+            builder = ns.getRoot().builder();
+            test = builder.child("test");
+            for (int i = 0; i < 25; i++) {
+                test.child("node-" + i).setProperty("p", i);
+            }
+            merge(ns, builder);
+            ns.runBackgroundOperations();
+            builder = ns.getRoot().builder();
+            test = builder.child("test");
+            for (int i = 0; i < 5; i++) {
+                test.child("new-" + i);
+                test.child("node-" + (50 + i)).remove();
+            }
+            NodeState afterTest = merge(ns, builder).getChildNode("test");
+
+            numQueries.set(0);
+            ns.invalidateNodeChildrenCache();
+            final List<String> added = Lists.newArrayList();
+            final List<String> changed = Lists.newArrayList();
+            final List<String> deleted = Lists.newArrayList();
+            afterTest.compareAgainstBaseState(beforeTest, new DefaultNodeStateDiff() {
+                @Override
+                public boolean childNodeAdded(String name, NodeState after) {
+                    added.add(name);
+                    return true;
+                }
+
+                @Override
+                public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+                    changed.add(name);
+                    return true;
+                }
+
+                @Override
+                public boolean childNodeDeleted(String name, NodeState before) {
+                    deleted.add(name);
+                    return true;
+                }
+            });
+            assertEquals(5, added.size());
+            assertEquals(25, changed.size());
+            assertEquals(5, deleted.size());
+            // 35 modified documents read in batches of 7
+            assertEquals(6, numQueries.get());
+        } finally {
+            System.clearProperty("oak.disableJournalDiff");
+        }
+    }
+
     // OAK-2620
     @Test
     public void nonBlockingReset() throws Exception {
@@ -4045,6 +4140,31 @@ public class DocumentNodeStoreTest {
         }
     }
 
+    @Test
+    public void readNodeWithReadRevision() throws Exception {
+        Map<String, RevisionVector> readRevisions = new ConcurrentHashMap<>();
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key,
+                                               RevisionVector readRevision) {
+                readRevisions.put(key, readRevision);
+                return super.find(collection, key, readRevision);
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0).setDocumentStore(store).build();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo").child("bar");
+        merge(ns, builder);
+
+        ns.getNodeCache().invalidateAll();
+        readRevisions.clear();
+        DocumentNodeState root = ns.getRoot();
+        assertTrue(root.getChildNode("foo").getChildNode("bar").exists());
+        assertEquals(root.getRootRevision(), readRevisions.get(Utils.getIdFromPath("/foo/bar")));
+    }
+
     // Tests for OAK-9300
     @Test
     public void createCheckpointAfterDispose() {
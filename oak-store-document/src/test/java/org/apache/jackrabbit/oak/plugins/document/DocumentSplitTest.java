@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 
@@ -66,6 +68,7 @@ import static org.apache.jackrabbit.oak.plugins.memory.BinaryPropertyState.binar
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.either;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -1098,6 +1101,64 @@ public class DocumentSplitTest extends BaseDocumentMKTest {
         assertThat(ns.getSplitCandidates(), empty());
     }
 
+    @Test
+    public void splitLargestFirst() throws Exception {
+        splitLargestFirst(1);
+    }
+
+    @Test
+    public void splitLargestFirstConcurrently() throws Exception {
+        splitLargestFirst(4);
+    }
+
+    private void splitLargestFirst(int parallelism) throws Exception {
+        final List<String> updated = Collections.synchronizedList(new ArrayList<String>());
+        DocumentStore store = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                               List<UpdateOp> updateOps) {
+                for (UpdateOp op : updateOps) {
+                    updated.add(op.getId());
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+        };
+        DocumentNodeStore ns = new DocumentMK.Builder().setDocumentStore(store)
+                .setBackgroundWriteParallelism(parallelism)
+                .setAsyncDelay(0).getNodeStore();
+        try {
+            int numNodes = 5;
+            for (int i = 0; i <= NodeDocument.NUM_REVS_THRESHOLD; i++) {
+                NodeBuilder builder = ns.getRoot().builder();
+                for (int j = 0; j < numNodes; j++) {
+                    // later nodes get larger values and documents
+                    builder.child("n" + j).setProperty("p",
+                            Strings.repeat("x", (j + 1) * 100) + i);
+                }
+                merge(ns, builder);
+            }
+            List<String> expected = new ArrayList<>();
+            for (int j = numNodes - 1; j >= 0; j--) {
+                expected.add(Utils.getIdFromPath("/n" + j));
+            }
+            assertThat(ns.getSplitCandidates(), hasItems(expected.toArray(new String[0])));
+
+            updated.clear();
+            ns.runBackgroundOperations();
+            assertThat(ns.getSplitCandidates(), empty());
+            List<String> mainDocUpdates = new ArrayList<>(updated);
+            mainDocUpdates.retainAll(expected);
+            assertEquals(expected, mainDocUpdates);
+            for (String id : expected) {
+                NodeDocument doc = store.find(NODES, id);
+                assertNotNull(doc);
+                assertFalse(doc.getPreviousRanges().isEmpty());
+            }
+        } finally {
+            ns.dispose();
+        }
+    }
+
     private static class TestRevisionContext implements RevisionContext {
 
         private final RevisionContext rc;
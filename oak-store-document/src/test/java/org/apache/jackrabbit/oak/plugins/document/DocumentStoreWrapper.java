@@ -47,6 +47,13 @@ public class DocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    public <T extends Document> T find(Collection<T> collection,
+                                       String key,
+                                       RevisionVector readRevision) {
+        return store.find(collection, key, readRevision);
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -144,6 +151,12 @@ public class DocumentStoreWrapper implements DocumentStore {
         return store.getIfCached(collection, key);
     }
 
+    @Override
+    public <T extends Document> void prefetch(Collection<T> collection,
+                                              Iterable<String> keys) {
+        store.prefetch(collection, keys);
+    }
+
     @Override
     public void setReadWriteMode(String readWriteMode) {
         store.setReadWriteMode(readWriteMode);
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrontCodedNamesTest {
+
+    @Test
+    public void empty() {
+        FrontCodedNames names = new FrontCodedNames();
+        assertEquals(0, names.size());
+        assertFalse(names.iterator().hasNext());
+        assertEquals(0, FrontCodedNames.fromData(names.getData()).size());
+    }
+
+    @Test
+    public void addAndGet() {
+        List<String> expected = names(1000);
+        FrontCodedNames names = new FrontCodedNames();
+        names.addAll(expected);
+        assertEquals(expected, names);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), names.get(i));
+        }
+        assertEquals(expected, Lists.newArrayList(names));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, Collections.binarySearch(names, expected.get(i)));
+        }
+        assertTrue(Collections.binarySearch(names, "node-") < 0);
+    }
+
+    @Test
+    public void unicode() {
+        List<String> expected = Lists.newArrayList(
+                "\u00e4", "\u00e4\u00f6", "\ud83d\ude00", "\ud83d\ude01",
+                "a\ud83d\ude00b", "a\ud83d\ude01", "", "\u4e2d\u6587");
+        FrontCodedNames names = new FrontCodedNames();
+        names.addAll(expected);
+        assertEquals(expected, names);
+        assertEquals(expected, FrontCodedNames.fromData(names.getData()));
+    }
+
+    @Test
+    public void sort() {
+        List<String> expected = names(100);
+        List<String> shuffled = Lists.newArrayList(expected);
+        Collections.shuffle(shuffled);
+        FrontCodedNames names = new FrontCodedNames();
+        names.addAll(shuffled);
+        assertEquals(shuffled, names);
+        Collections.sort(names);
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void compactAndAdd() {
+        List<String> expected = names(50);
+        FrontCodedNames names = new FrontCodedNames();
+        names.addAll(expected.subList(0, 20));
+        names.compact();
+        names.addAll(expected.subList(20, 50));
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void lessMemory() {
+        List<String> expected = names(10000);
+        DocumentNodeState.Children children = new DocumentNodeState.Children();
+        children.children.addAll(expected);
+        long memory = 0;
+        for (String n : expected) {
+            memory += 48 + n.length() * 2;
+        }
+        assertTrue(children.getMemory() < memory / 4);
+    }
+
+    @Test
+    public void childrenAsBytes() {
+        DocumentNodeState.Children children = new DocumentNodeState.Children();
+        children.children.addAll(names(100));
+        children.hasMore = true;
+        DocumentNodeState.Children c = DocumentNodeState.Children.fromBytes(children.asBytes());
+        assertEquals(children.children, c.children);
+        assertTrue(c.hasMore);
+        assertEquals(children.asString(), c.asString());
+    }
+
+    @Test
+    public void persistentCache() {
+        DocumentNodeState.Children children = new DocumentNodeState.Children();
+        children.children.addAll(names(100));
+        WriteBuffer wb = new WriteBuffer(1024);
+        CacheType.CHILDREN.writeValue(wb, children);
+        DocumentNodeState.Children c = CacheType.CHILDREN.readValue(null, null, readBufferFrom(wb));
+        assertEquals(children.children, c.children);
+        assertFalse(c.hasMore);
+
+        // children written as JSON by an older version
+        wb = new WriteBuffer(1024);
+        StringDataType.INSTANCE.write(wb, children.asString());
+        c = CacheType.CHILDREN.readValue(null, null, readBufferFrom(wb));
+        assertEquals(children.children, c.children);
+    }
+
+    private static List<String> names(int num) {
+        List<String> names = Lists.newArrayList();
+        for (int i = 0; i < num; i++) {
+            names.add(String.format("node-%08d", i));
+        }
+        return names;
+    }
+
+    private static ByteBuffer readBufferFrom(WriteBuffer wb) {
+        ByteBuffer rb = wb.getBuffer();
+        rb.rewind();
+        return rb;
+    }
+}
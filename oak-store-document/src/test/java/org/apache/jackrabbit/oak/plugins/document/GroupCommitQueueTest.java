@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class GroupCommitQueueTest {
+
+    private static final long MAX_DELAY_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private volatile boolean failGroups;
+
+    private final DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+        @Override
+        public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                           List<UpdateOp> updateOps) {
+            if (calls.incrementAndGet() == 1) {
+                // block the first call until the test continues
+                blocked.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new DocumentStoreException(e);
+                }
+            }
+            if (failGroups && updateOps.size() > 1) {
+                throw new DocumentStoreException("failure");
+            }
+            return super.createOrUpdate(collection, updateOps);
+        }
+    };
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void groupConcurrentCommits() throws Exception {
+        final GroupCommitQueue queue = new GroupCommitQueue(store, 100, MAX_DELAY_MICROS);
+        Future<List<NodeDocument>> first = submit(queue, "1:/a");
+        blocked.await();
+        // these join a pending group while the first call is blocked
+        List<Future<List<NodeDocument>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            futures.add(submit(queue, "1:/b" + i));
+        }
+        waitForQueued(queue, 10);
+        unblock.countDown();
+        assertNull(first.get().get(0));
+        for (Future<List<NodeDocument>> f : futures) {
+            assertNull(f.get().get(0));
+        }
+        assertEquals(2, calls.get());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(store.find(NODES, "1:/b" + i));
+        }
+        // updates to existing documents return the previous document
+        List<NodeDocument> oldDocs = queue.createOrUpdate(singletonList(newUpdateOp("1:/b0")));
+        assertNotNull(oldDocs.get(0));
+        assertEquals("1:/b0", oldDocs.get(0).getId());
+    }
+
+    @Test
+    public void sameDocumentNotInGroup() throws Exception {
+        final GroupCommitQueue queue = new GroupCommitQueue(store, 100, MAX_DELAY_MICROS);
+        Future<List<NodeDocument>> first = submit(queue, "1:/a");
+        blocked.await();
+        Future<List<NodeDocument>> second = submit(queue, "1:/b");
+        waitForQueued(queue, 1);
+        // cannot join the group with 1:/b and is written directly
+        assertNull(queue.createOrUpdate(singletonList(newUpdateOp("1:/b"))).get(0));
+        unblock.countDown();
+        first.get();
+        // document was created by the direct call
+        assertNotNull(second.get().get(0));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void retryIndividually() throws Exception {
+        final GroupCommitQueue queue = new GroupCommitQueue(store, 100, MAX_DELAY_MICROS);
+        Future<List<NodeDocument>> first = submit(queue, "1:/a");
+        blocked.await();
+        List<Future<List<NodeDocument>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            futures.add(submit(queue, "1:/b" + i));
+        }
+        waitForQueued(queue, 5);
+        // call with the group of five commits fails
+        failGroups = true;
+        unblock.countDown();
+        first.get();
+        for (Future<List<NodeDocument>> f : futures) {
+            f.get();
+        }
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(store.find(NODES, "1:/b" + i));
+        }
+        // one call for each commit, one for the failed group
+        assertEquals(7, calls.get());
+    }
+
+    @Test
+    public void slowWriteDoesNotBlock() throws Exception {
+        final GroupCommitQueue queue = new GroupCommitQueue(store, 100, 0);
+        Future<List<NodeDocument>> first = submit(queue, "1:/a");
+        blocked.await();
+        // does not wait for the blocked group
+        assertNull(submit(queue, "1:/b").get(10, TimeUnit.SECONDS).get(0));
+        unblock.countDown();
+        assertNull(first.get().get(0));
+        assertEquals(2, calls.get());
+    }
+
+    private Future<List<NodeDocument>> submit(final GroupCommitQueue queue,
+                                              final String id) {
+        return executor.submit(new Callable<List<NodeDocument>>() {
+            @Override
+            public List<NodeDocument> call() {
+                return queue.createOrUpdate(singletonList(newUpdateOp(id)));
+            }
+        });
+    }
+
+    private static void waitForQueued(GroupCommitQueue queue, int num)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (queue.getNumPendingUpdates() < num && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+        assertEquals(num, queue.getNumPendingUpdates());
+    }
+
+    @NotNull
+    private static UpdateOp newUpdateOp(String id) {
+        UpdateOp op = new UpdateOp(id, true);
+        op.set("p", "v");
+        return op;
+    }
+}
@@ -21,6 +21,10 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import com.google.common.collect.Iterables;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -40,10 +44,27 @@ import static org.junit.Assert.fail;
 
 public class LastRevRecoveryAgentTest extends AbstractTwoNodeTest {
 
+    private final Map<String, AtomicInteger> uncachedReads = new ConcurrentHashMap<>();
+
     public LastRevRecoveryAgentTest(DocumentStoreFixture fixture) {
         super(fixture);
     }
 
+    @Override
+    protected DocumentStore customize(DocumentStore store) {
+        return new DocumentStoreWrapper(store) {
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key,
+                                               int maxCacheAge) {
+                if (collection == NODES && maxCacheAge == 0) {
+                    uncachedReads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                }
+                return super.find(collection, key, maxCacheAge);
+            }
+        };
+    }
+
     @Test
     public void testIsRecoveryRequired() throws Exception{
         //1. Create base structure /x/y
@@ -85,6 +106,50 @@ public class LastRevRecoveryAgentTest extends AbstractTwoNodeTest {
         disposeQuietly(ds2);
     }
 
+    @Test
+    public void testPartitionedRecovery() throws Exception {
+        NodeBuilder b1 = ds1.getRoot().builder();
+        b1.child("x").child("y");
+        b1.child("u").child("v");
+        merge(ds1, b1);
+        ds1.runBackgroundOperations();
+        ds2.runBackgroundOperations();
+
+        // changes on multiple depths in C2
+        NodeBuilder b2 = ds2.getRoot().builder();
+        b2.child("x").child("y").child("z").child("a").setProperty("foo", "bar");
+        b2.child("x").setProperty("foo", "bar");
+        b2.child("u").child("v").child("w");
+        merge(ds2, b2);
+        Revision lastRev2 = ds2.getHeadRevision().getRevision(c2Id);
+
+        long leaseTime = ds1.getClusterInfo().getLeaseTime();
+        ds1.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + leaseTime + 10);
+        ds1.getClusterInfo().renewLease();
+
+        LastRevRecoveryAgent agent = ds1.getLastRevRecoveryAgent();
+        agent.setParallelism(4);
+        LastRevRecoveryStatsMBean stats = agent.getStats();
+        assertEquals(0, stats.getRecoveryCount());
+        assertTrue(agent.recover(c2Id) > 0);
+
+        for (String p : new String[]{"/x/y", "/u/v", "/u", "/"}) {
+            assertEquals(p, lastRev2, getDocument(ds1, p).getLastRev().get(c2Id));
+        }
+        assertEquals(1, stats.getRecoveryCount());
+        assertEquals(0, stats.getFailureCount());
+        assertEquals(LastRevRecoveryStats.PHASE_IDLE, stats.getPhase());
+        assertEquals(c2Id, stats.getRecoveredClusterId());
+        assertEquals(DocumentIdRange.partitions().size(), stats.getPartitionCount());
+        assertEquals(stats.getPartitionCount(), stats.getCompletedPartitionCount());
+        assertTrue(stats.getScannedDocCount() > 0);
+        assertTrue(stats.getUpdatedDocCount() > 0);
+
+        // dispose ds2 quietly because it may now throw an exception
+        disposeQuietly(ds2);
+    }
+
     //OAK-5337
     @Test
     public void testSelfRecovery() throws Exception{
@@ -205,6 +270,44 @@ public class LastRevRecoveryAgentTest extends AbstractTwoNodeTest {
         disposeQuietly(ds2);
     }
 
+    @Test
+    public void noUncachedReadForUnmergedBranch() throws Exception {
+        NodeBuilder b1 = ds1.getRoot().builder();
+        b1.child("x");
+        merge(ds1, b1);
+        ds1.runBackgroundOperations();
+        ds2.runBackgroundOperations();
+
+        NodeBuilder b2 = ds2.getRoot().builder();
+        b2.child("x").setProperty("p", "v");
+        merge(ds2, b2);
+        Revision lastRev2 = ds2.getHeadRevision().getRevision(c2Id);
+
+        // unmerged branch commit with /x as commit root of the new children
+        b2 = ds2.getRoot().builder();
+        b2.child("x").setProperty("q", "v");
+        for (int i = 0; i < 50; i++) {
+            b2.child("x").child("c" + i);
+        }
+        TestUtils.persistToBranch(b2);
+
+        long leaseTime = ds1.getClusterInfo().getLeaseTime();
+        ds1.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + leaseTime + 10);
+        ds1.getClusterInfo().renewLease();
+
+        uncachedReads.clear();
+        assertTrue(ds1.getLastRevRecoveryAgent().recover(c2Id) > 0);
+
+        assertEquals(lastRev2, getDocument(ds1, "/").getLastRev().get(c2Id));
+        // changes of the unmerged branch have a commit value and
+        // the commit root is not read again without cache
+        assertTrue(uncachedReads.toString(), uncachedReads.isEmpty());
+
+        // dispose ds2 quietly because it may now throw an exception
+        disposeQuietly(ds2);
+    }
+
     @Test
     public void dryRun() throws Exception {
         //1. Create base structure /x/y
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.mongodb.MongoClient;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getIdFromPath;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares projected reads of a large document on MongoDB with a full read
+ * of the same document.
+ */
+public class MongoProjectedReadTest extends AbstractMongoConnectionTest {
+
+    private static final String PROJECTED_READ_MIN_SIZE = "oak.mongo.projectedReadMinSize";
+
+    private final Clock clock = new Clock.Virtual();
+
+    @Override
+    public void setUpConnection() throws Exception {
+        clock.waitUntil(System.currentTimeMillis());
+        // read when the store is created
+        System.setProperty(PROJECTED_READ_MIN_SIZE, "1024");
+        try {
+            super.setUpConnection();
+        } finally {
+            System.clearProperty(PROJECTED_READ_MIN_SIZE);
+        }
+    }
+
+    @Override
+    protected DocumentMK.Builder newBuilder(MongoClient client, String dbName) throws Exception {
+        return super.newBuilder(client, dbName).setAsyncDelay(0);
+    }
+
+    @Override
+    protected Clock getTestClock() {
+        return clock;
+    }
+
+    @Test
+    public void projectedReadOfLargeDocument() throws Exception {
+        DocumentNodeStore ns = mk.getNodeStore();
+        DocumentStore store = ns.getDocumentStore();
+        String id = getIdFromPath("/test");
+        String value = Strings.repeat("x", 100);
+
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("test").setProperty("q", "old");
+        merge(ns, builder);
+        List<RevisionVector> headRevs = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            clock.waitUntil(clock.getTime() + 1000);
+            builder = ns.getRoot().builder();
+            builder.child("test").setProperty("p", value + i);
+            merge(ns, builder);
+            headRevs.add(ns.getHeadRevision());
+        }
+        // move the sweep revision past the changes
+        clock.waitUntil(clock.getTime() + 1000);
+        ns.runBackgroundOperations();
+        ns.runBackgroundSweepOperation();
+        clock.waitUntil(clock.getTime() + 1000);
+        builder = ns.getRoot().builder();
+        builder.child("test").setProperty("p", "new");
+        merge(ns, builder);
+        ns.runBackgroundOperations();
+        RevisionVector head = ns.getHeadRevision();
+
+        // full reads, the root with the sweep revisions must be cached
+        assertNotNull(store.find(NODES, getIdFromPath("/"), 0));
+        NodeDocument full = store.find(NODES, id, 0);
+        assertNotNull(full);
+        assertFalse(full.isTruncated());
+
+        store.invalidateCache(NODES, id);
+        NodeDocument projected = store.find(NODES, id, head);
+        assertNotNull(projected);
+        assertTrue(projected.isTruncated());
+        assertThat(projected.getLocalMap("p").size(), lessThan(full.getLocalMap("p").size()));
+        assertEquals(full.getLocalMap("q"), projected.getLocalMap("q"));
+        assertThat(projected.getLocalRevisions().size(), lessThan(full.getLocalRevisions().size()));
+        assertEquals(full.getLastRev(), projected.getLastRev());
+
+        // node state at head and older revisions must be the same
+        assertSameState(ns, full, projected, head);
+        for (RevisionVector r : headRevs) {
+            assertSameState(ns, full, projected, r);
+        }
+    }
+
+    private static void assertSameState(DocumentNodeStore ns,
+                                        NodeDocument full,
+                                        NodeDocument projected,
+                                        RevisionVector readRevision) {
+        DocumentNodeState expected = full.getNodeAtRevision(ns, readRevision, null);
+        DocumentNodeState actual = projected.getNodeAtRevision(ns, readRevision, null);
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(expected.getLastRevision(), actual.getLastRevision());
+        for (PropertyState p : expected.getProperties()) {
+            assertEquals(p, actual.getProperty(p.getName()));
+        }
+        assertEquals(expected.getPropertyCount(), actual.getPropertyCount());
+    }
+}
@@ -43,6 +43,7 @@ import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.stats.Clock;
 import org.junit.Test;
 
 import static com.google.common.collect.Maps.newLinkedHashMap;
@@ -1076,6 +1077,114 @@ public class NodeDocumentTest {
         ns.dispose();
     }
 
+    @Test
+    public void getNodeAtRevisionTruncated() throws Exception {
+        final String id = getIdFromPath("/test");
+        final List<String> reads = Lists.newArrayList();
+        MemoryDocumentStore store = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key) {
+                if (collection == NODES && id.equals(key)) {
+                    reads.add(key);
+                }
+                return super.find(collection, key);
+            }
+        };
+        Clock clock = new Clock.Virtual();
+        clock.waitUntil(System.currentTimeMillis());
+        Revision.setClock(clock);
+        try {
+            DocumentNodeStore ns = new DocumentMK.Builder().setDocumentStore(store)
+                    .setAsyncDelay(0).clock(clock).getNodeStore();
+            NodeBuilder builder = ns.getRoot().builder();
+            builder.child("test").setProperty("q", "old");
+            merge(ns, builder);
+            List<RevisionVector> headRevs = Lists.newArrayList();
+            for (int i = 0; i < 10; i++) {
+                builder = ns.getRoot().builder();
+                clock.waitUntil(clock.getTime() + 1000);
+                builder.child("test").setProperty("p", i);
+                merge(ns, builder);
+                headRevs.add(ns.getHeadRevision());
+            }
+            NodeDocument doc = store.find(NODES, id);
+            assertNotNull(doc);
+            Revision bound = headRevs.get(5).getRevision(ns.getClusterId());
+            NodeDocument truncated = truncate(store, doc, bound.getTimestamp());
+            assertTrue(truncated.isTruncated());
+            reads.clear();
+
+            // node state at head is available from truncated document
+            RevisionVector head = ns.getHeadRevision();
+            DocumentNodeState state = truncated.getNodeAtRevision(ns, head, null);
+            assertNotNull(state);
+            assertEquals(9L, (long) state.getProperty("p").getValue(Type.LONG));
+            assertEquals("old", state.getProperty("q").getValue(Type.STRING));
+            assertTrue(reads.isEmpty());
+
+            // older node state requires complete document
+            state = truncated.getNodeAtRevision(ns, headRevs.get(1), null);
+            assertNotNull(state);
+            assertEquals(1L, (long) state.getProperty("p").getValue(Type.LONG));
+            assertEquals("old", state.getProperty("q").getValue(Type.STRING));
+            assertEquals(1, reads.size());
+
+            ns.dispose();
+        } finally {
+            Revision.resetClockToDefault();
+            ClusterNodeInfo.resetClockToDefault();
+        }
+    }
+
+    /**
+     * Creates a copy of the given document with a projection of its revision
+     * entries like {@code MongoDocumentStore} does for large documents.
+     */
+    @SuppressWarnings("unchecked")
+    private static NodeDocument truncate(DocumentStore store,
+                                         NodeDocument doc,
+                                         long timestamp) {
+        NodeDocument copy = new NodeDocument(store);
+        doc.deepCopy(copy);
+        Map<String, Long> mostRecentOlder = newLinkedHashMap();
+        for (String key : copy.keySet()) {
+            if (!key.equals("_deleted") && !Utils.isPropertyName(key)) {
+                continue;
+            }
+            for (Revision r : copy.getLocalMap(key).keySet()) {
+                Long ts = mostRecentOlder.get(key);
+                if (r.getTimestamp() < timestamp
+                        && (ts == null || r.getTimestamp() > ts)) {
+                    mostRecentOlder.put(key, r.getTimestamp());
+                }
+            }
+        }
+        Set<String> truncated = newHashSet();
+        for (String key : copy.keySet()) {
+            Set<Long> keep;
+            if (mostRecentOlder.containsKey(key)) {
+                keep = Collections.singleton(mostRecentOlder.get(key));
+            } else if (key.equals("_revisions") || key.equals("_commitRoot")
+                    || key.equals("_bc") || key.equals(COLLISIONS)) {
+                keep = newHashSet(mostRecentOlder.values());
+            } else {
+                continue;
+            }
+            Iterator<Revision> it = ((Map<Revision, Object>) copy.get(key)).keySet().iterator();
+            while (it.hasNext()) {
+                Revision r = it.next();
+                if (r.getTimestamp() < timestamp && !keep.contains(r.getTimestamp())) {
+                    it.remove();
+                    truncated.add(key);
+                }
+            }
+        }
+        copy.markTruncated(truncated);
+        copy.seal();
+        return copy;
+    }
+
     private DocumentNodeStore createTestStore(int numChanges) throws Exception {
         return createTestStore(new MemoryDocumentStore(), 0, numChanges);
     }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prints the number of bytes allocated per read on a read-heavy load with
+ * path interning disabled and enabled.
+ */
+public class PathAllocationPerformance {
+
+    private static final int NUM_NODES = 100;
+
+    private static final int ITERATIONS = 100;
+
+    @Test
+    public void allocation() throws Exception {
+        final MemoryDocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns = new DocumentMK.Builder()
+                .setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < NUM_NODES; i++) {
+            NodeBuilder child = builder.child("node-" + i);
+            for (int j = 0; j < NUM_NODES; j++) {
+                child.child("node-" + j);
+                paths.add("/node-" + i + "/node-" + j);
+            }
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.dispose();
+
+        boolean enabled = PathInterner.isEnabled();
+        try {
+            for (boolean intern : new boolean[]{false, true}) {
+                PathInterner.setEnabled(intern);
+                final DocumentNodeStore reader = new DocumentMK.Builder()
+                        .setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+                try {
+                    System.out.println("intern paths: " + intern);
+                    // warm up
+                    traverse(reader);
+                    lookup(paths);
+                    measure("traverse", paths.size(), new Runnable() {
+                        @Override
+                        public void run() {
+                            traverse(reader);
+                        }
+                    });
+                    measure("lookup", paths.size(), new Runnable() {
+                        @Override
+                        public void run() {
+                            lookup(paths);
+                        }
+                    });
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } finally {
+            PathInterner.setEnabled(enabled);
+        }
+    }
+
+    private static void traverse(DocumentNodeStore ns) {
+        NodeState root = ns.getRoot();
+        for (int i = 0; i < NUM_NODES; i++) {
+            NodeState child = root.getChildNode("node-" + i);
+            for (int j = 0; j < NUM_NODES; j++) {
+                assertTrue(child.getChildNode("node-" + j).exists());
+            }
+        }
+    }
+
+    private static void lookup(List<String> paths) {
+        for (String p : paths) {
+            Path path = Path.fromString(p);
+            for (int i = 0; i < 4; i++) {
+                assertTrue(Utils.getIdFromPath(path).length() > 0);
+            }
+        }
+    }
+
+    private static void measure(String name, int reads, Runnable r) {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = bean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            r.run();
+        }
+        time = System.nanoTime() - time;
+        bytes = bean.getThreadAllocatedBytes(threadId) - bytes;
+        long ops = (long) reads * ITERATIONS;
+        System.out.format("%s: %d bytes/read, %d ns/read%n",
+                name, bytes / ops, time / ops);
+    }
+}
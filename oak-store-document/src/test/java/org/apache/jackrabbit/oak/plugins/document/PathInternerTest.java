@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PathInternerTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final boolean enabled = PathInterner.isEnabled();
+
+    @After
+    public void after() {
+        PathInterner.setEnabled(enabled);
+    }
+
+    @Test
+    public void disabled() {
+        PathInterner.setEnabled(false);
+        Path p1 = Path.fromString("/foo/bar");
+        Path p2 = Path.fromString("/foo/bar");
+        assertEquals(p1, p2);
+        assertNotSame(p1, p2);
+        assertNotSame(p1.getParent(), p2.getParent());
+    }
+
+    @Test
+    public void fromString() {
+        PathInterner.setEnabled(true);
+        Path p1 = Path.fromString("/foo/bar");
+        Path p2 = Path.fromString("/foo/bar");
+        assertSame(p1, p2);
+        assertSame(p1.getParent(), Path.fromString("/foo/baz").getParent());
+        assertSame(Path.fromString("foo/bar"), Path.fromString("foo/bar"));
+        assertSame(Path.ROOT, Path.fromString("/"));
+    }
+
+    @Test
+    public void child() {
+        PathInterner.setEnabled(true);
+        Path parent = Path.fromString("/foo");
+        Path child = PathInterner.child(parent, "bar");
+        assertSame(parent, child.getParent());
+        assertSame(child, Path.fromString("/foo/bar"));
+        assertSame(child, PathInterner.child(parent, "bar"));
+        assertSame(child, PathInterner.intern(new Path(parent, "bar")));
+    }
+
+    @Test
+    public void childNode() throws Exception {
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo").child("bar");
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.dispose();
+
+        // read with a new node store and empty caches
+        PathInterner.setEnabled(true);
+        ns = builderProvider.newBuilder().setDocumentStore(store).getNodeStore();
+
+        DocumentNodeState foo = (DocumentNodeState) ns.getRoot().getChildNode("foo");
+        DocumentNodeState bar = (DocumentNodeState) foo.getChildNode("bar");
+        assertSame(Path.fromString("/foo"), foo.getPath());
+        assertSame(foo.getPath(), bar.getPath().getParent());
+        for (ChildNodeEntry entry : ns.getRoot().getChildNodeEntries()) {
+            assertSame(foo.getPath(), ((DocumentNodeState) entry.getNodeState()).getPath());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getIdFromPath;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private PrefetchingStore store;
+
+    private DocumentNodeStore ns;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new PrefetchingStore();
+        ns = builderProvider.newBuilder().setAsyncDelay(0)
+                .setDocumentStore(store).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("a").child("b").child("c");
+        builder.child("a").child("b").child("d");
+        builder.child("x");
+        for (int i = 0; i < 10; i++) {
+            builder.child("y").child("node-" + i);
+        }
+        merge(ns, builder);
+        store.prefetched.clear();
+    }
+
+    @Test
+    public void prefetchPaths() {
+        NodeState root = ns.getRoot();
+        ns.getNodeCache().invalidateAll();
+
+        ns.prefetch(ImmutableList.of("/a/b/c", "/a/b/d", "/x", "/missing"), root);
+
+        assertEquals(1, store.prefetched.size());
+        List<String> expected = Lists.newArrayList();
+        for (String p : new String[]{"/", "/a", "/a/b", "/a/b/c", "/a/b/d", "/x", "/missing"}) {
+            expected.add(getIdFromPath(p));
+        }
+        assertThat(store.prefetched.get(0), containsInAnyOrder(expected.toArray()));
+
+        // node states must be in the node cache
+        Set<Path> cached = Sets.newHashSet();
+        for (PathRev key : ns.getNodeCache().asMap().keySet()) {
+            cached.add(key.getPath());
+        }
+        for (String p : new String[]{"/a", "/a/b", "/a/b/c", "/a/b/d", "/x"}) {
+            assertTrue(p + " not in node cache", cached.contains(Path.fromString(p)));
+        }
+    }
+
+    @Test
+    public void prefetchChildren() {
+        NodeState y = ns.getRoot().getChildNode("y");
+        // children are now in the children cache
+        assertEquals(10, Lists.newArrayList(y.getChildNodeEntries()).size());
+
+        ns.getNodeCache().invalidateAll();
+        store.evicted = true;
+        List<String> names = Lists.newArrayList();
+        for (ChildNodeEntry e : y.getChildNodeEntries()) {
+            names.add(e.getName());
+        }
+        assertEquals(10, names.size());
+
+        // children must be read with a single prefetch
+        assertEquals(1, store.prefetched.size());
+        assertEquals(10, store.prefetched.get(0).size());
+        for (String name : names) {
+            assertTrue(store.prefetched.get(0).contains(getIdFromPath("/y/" + name)));
+        }
+    }
+
+    @Test
+    public void prefetchChildrenDisabled() {
+        ns.setDisablePrefetchChildren(true);
+        assertNoPrefetchOfChildren();
+    }
+
+    @Test
+    public void prefetchChildrenShortList() {
+        ns.setPrefetchChildrenMinSize(11);
+        assertNoPrefetchOfChildren();
+    }
+
+    @Test
+    public void prefetchWithCachedChildren() {
+        NodeState y = ns.getRoot().getChildNode("y");
+        assertEquals(10, Lists.newArrayList(y.getChildNodeEntries()).size());
+        ns.getNodeCache().invalidateAll();
+        // documents are still cached, no prefetch necessary
+        Lists.newArrayList(y.getChildNodeEntries());
+        assertTrue(store.prefetched.isEmpty());
+    }
+
+    private void assertNoPrefetchOfChildren() {
+        NodeState y = ns.getRoot().getChildNode("y");
+        assertEquals(10, Lists.newArrayList(y.getChildNodeEntries()).size());
+        ns.getNodeCache().invalidateAll();
+        store.evicted = true;
+        assertEquals(10, Lists.newArrayList(y.getChildNodeEntries()).size());
+        assertTrue(store.prefetched.isEmpty());
+    }
+
+    /**
+     * A store that records the keys passed to prefetch and can simulate
+     * documents evicted from the cache.
+     */
+    private static final class PrefetchingStore extends MemoryDocumentStore {
+
+        final List<List<String>> prefetched = Lists.newArrayList();
+
+        boolean evicted;
+
+        @Override
+        public <T extends Document> T getIfCached(Collection<T> collection, String key) {
+            if (evicted) {
+                return null;
+            }
+            return super.getIfCached(collection, key);
+        }
+
+        @Override
+        public <T extends Document> void prefetch(Collection<T> collection,
+                                                  Iterable<String> keys) {
+            prefetched.add(Lists.newArrayList(keys));
+        }
+    }
+}
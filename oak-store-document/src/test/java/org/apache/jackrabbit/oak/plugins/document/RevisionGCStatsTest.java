@@ -105,6 +105,31 @@ public class RevisionGCStatsTest {
         assertEquals(count + 1, stats.getResetDeletedFlagCount());
     }
 
+    @Test
+    public void runProgress() {
+        assertEquals(RevisionGCStats.PHASE_IDLE, stats.getPhase());
+        stats.started();
+        stats.phaseStarted("COLLECTING");
+        assertEquals("COLLECTING", stats.getPhase());
+        for (int i = 0; i < 3; i++) {
+            stats.documentRead();
+        }
+        stats.leafDocumentsDeleted(2);
+        stats.splitDocumentsDeleted(5);
+        assertEquals(3, stats.getRunReadDocCount());
+        assertEquals(7, stats.getRunDeletedDocCount());
+        assertTrue(stats.getRunReadDocsPerSecond() > 0);
+        assertTrue(stats.getRunDeletedDocsPerSecond() > 0);
+
+        stats.finished(new VersionGCStats());
+        assertEquals(RevisionGCStats.PHASE_IDLE, stats.getPhase());
+        // counts of the last run are kept until the next run starts
+        assertEquals(3, stats.getRunReadDocCount());
+        stats.started();
+        assertEquals(0, stats.getRunReadDocCount());
+        assertEquals(0, stats.getRunDeletedDocCount());
+    }
+
     @Test
     public void timers() {
         VersionGCStats vgcs = new VersionGCStats();
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.JOURNAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharedDiffCacheTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final MemoryDocumentStore store = new MemoryDocumentStore();
+
+    private final Clock clock = new Clock.Virtual();
+
+    private final RevisionVector from = new RevisionVector(Revision.newRevision(1));
+
+    private final RevisionVector to = new RevisionVector(Revision.newRevision(1));
+
+    private final Path path = Path.fromString("/foo");
+
+    @Before
+    public void before() throws Exception {
+        clock.waitUntil(System.currentTimeMillis());
+    }
+
+    @Test
+    public void shareExpensiveDiff() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("^\"bar\":{}", newCache().getChanges(from, to, path,
+                loader(loads, SharedDiffCache.MIN_LOAD_MILLIS)));
+        assertEquals(1, loads.get());
+        assertNotNull(store.find(JOURNAL, SharedDiffCache.asId(
+                SharedDiffCache.asKey(from, to, path))));
+
+        // another cache on the same store does not call the loader
+        assertEquals("^\"bar\":{}", newCache().getChanges(from, to, path,
+                loader(loads, 0)));
+        assertEquals(1, loads.get());
+
+        // entry is removed with journal entries of the same age
+        clock.waitUntil(clock.getTime() + 1);
+        store.remove(JOURNAL, JournalEntry.MODIFIED, 0, clock.getTime());
+        assertEquals("^\"bar\":{}", newCache().getChanges(from, to, path,
+                loader(loads, 0)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void doNotShareCheapDiff() {
+        AtomicInteger loads = new AtomicInteger();
+        newCache().getChanges(from, to, path, loader(loads, 0));
+        assertNull(store.find(JOURNAL, SharedDiffCache.asId(
+                SharedDiffCache.asKey(from, to, path))));
+        newCache().getChanges(from, to, path, loader(loads, 0));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void readSharedOnlyForExpensiveDiff() {
+        AtomicInteger loads = new AtomicInteger();
+        newCache().getChanges(from, to, path,
+                loader(loads, SharedDiffCache.MIN_LOAD_MILLIS));
+        assertNotNull(store.find(JOURNAL, SharedDiffCache.asId(
+                SharedDiffCache.asKey(from, to, path))));
+        assertEquals(1, loads.get());
+
+        // a cheap diff is computed without reading the shared entry
+        AtomicInteger reads = new AtomicInteger();
+        DocumentStore counting = new DocumentStoreWrapper(store) {
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key) {
+                if (collection == JOURNAL) {
+                    reads.incrementAndGet();
+                }
+                return super.find(collection, key);
+            }
+        };
+        DiffCache cache = new SharedDiffCache(counting, clock,
+                new MemoryDiffCache(builderProvider.newBuilder()));
+        cache.getChanges(from, to, path, cheapLoader(loads));
+        assertEquals(2, loads.get());
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    public void journalUnaffected() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder().setAsyncDelay(0)
+                .setDocumentStore(store).setSharedDiffCache(true).build();
+        assertTrue(ns.getDiffCache() instanceof SharedDiffCache);
+        DocumentNodeState before = ns.getRoot();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo");
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.runBackgroundOperations();
+        // put a shared entry into the journal collection
+        newCache().getChanges(from, to, path, loader(new AtomicInteger(), SharedDiffCache.MIN_LOAD_MILLIS));
+        // reading external changes from the journal is not affected
+        StringSort paths = JournalEntry.newSorter();
+        try {
+            JournalEntry.fillExternalChanges(paths, null, before.getRootRevision().getRevision(ns.getClusterId()),
+                    ns.getHeadRevision().getRevision(ns.getClusterId()), store);
+            assertEquals(2, paths.getSize());
+        } finally {
+            paths.close();
+        }
+    }
+
+    private SharedDiffCache newCache() {
+        DocumentNodeStoreBuilder<?> builder = builderProvider.newBuilder();
+        return new SharedDiffCache(store, clock, new MemoryDiffCache(builder));
+    }
+
+    private DiffCache.Loader loader(final AtomicInteger loads,
+                                    final long millis) {
+        return new DiffCache.Loader() {
+            @Override
+            public String call() {
+                loads.incrementAndGet();
+                try {
+                    clock.waitUntil(clock.getTime() + millis);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return "^\"bar\":{}";
+            }
+        };
+    }
+
+    private DiffCache.Loader cheapLoader(final AtomicInteger loads) {
+        return new DiffCache.Loader() {
+            @Override
+            public String call() {
+                loads.incrementAndGet();
+                return "^\"bar\":{}";
+            }
+
+            @Override
+            public boolean isExpensive() {
+                return false;
+            }
+        };
+    }
+}
@@ -98,6 +98,43 @@ public class Sweep2Test {
         assertFalse(isSweep2Necessary(ns2));
     }
 
+    @Test
+    public void testPartitionedSweep2Resume() throws Exception {
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        FailingDocumentStore fStore = new FailingDocumentStore(store, 42);
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setClusterId(1)
+                .setDocumentStore(fStore).build();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("a").child("b").child("c");
+        persistToBranch(builder);
+        merge(ns, builder);
+        DocumentNodeStore ns2 = Sweep2TestHelper.applyPre18Aging(fStore,
+                withSweepParallelism(builderProvider, 4), 2);
+        assertEquals(4, Sweep2TestHelper.scanForMissingBranchCommits(ns).size());
+        Sweep2TestHelper.removeSweep2Status(fStore);
+
+        // fails the sweep2 of one partition
+        fStore.fail().on(Collection.JOURNAL).after(0).once();
+        try {
+            ns2.forceBackgroundSweep2(Collections.emptyList());
+            fail("Should have thrown a DocumentStoreException");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        // the other partitions are swept and recorded as done
+        assertEquals(1, Sweep2TestHelper.scanForMissingBranchCommits(ns).size());
+        SweepCheckpoint checkpoint = SweepCheckpoint.open(store,
+                DocumentNodeStore.SWEEP2_CHECKPOINT_ID, "[]", null,
+                DocumentIdRange.partitions().size());
+        assertTrue(checkpoint.isResumed());
+
+        ns2.forceBackgroundSweep2(Collections.emptyList());
+        assertEquals(0, Sweep2TestHelper.scanForMissingBranchCommits(ns).size());
+        assertNull(store.find(Collection.SETTINGS, DocumentNodeStore.SWEEP2_CHECKPOINT_ID));
+    }
+
     /**
      * Another test for case 3 : a pre-1.8 repo was previously upgraded to 1.8, now comes OAK-9176
      * (This time with branch commits that are fine)
@@ -705,6 +742,15 @@ public class Sweep2Test {
         return Sweep2StatusDocument.forceReleaseSweep2LockAndMarkSwept(store, clusterId);
     }
 
+    private DocumentMKBuilderProvider withSweepParallelism(DocumentMKBuilderProvider builderProvider, int parallelism) {
+        return new DocumentMKBuilderProvider() {
+            @Override
+            public Builder newBuilder() {
+                return super.newBuilder().setAsyncDelay(0).setSweepParallelism(parallelism);
+            }
+        };
+    }
+
     private DocumentMKBuilderProvider withAsyncDelay(DocumentMKBuilderProvider builderProvider, int asyncDelay) {
         return new DocumentMKBuilderProvider() {
             @Override
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SweepCheckpointTest {
+
+    private static final String ID = "sweepCheckpoint-1";
+
+    private final DocumentStore store = new MemoryDocumentStore();
+
+    @Test
+    public void resume() {
+        Revision head = Revision.newRevision(1);
+        SweepCheckpoint checkpoint = SweepCheckpoint.open(store, ID, "key", head, 3);
+        assertFalse(checkpoint.isResumed());
+        assertEquals(head, checkpoint.getHead());
+        checkpoint.done(1);
+
+        Revision newHead = Revision.newRevision(1);
+        checkpoint = SweepCheckpoint.open(store, ID, "key", newHead, 3);
+        assertTrue(checkpoint.isResumed());
+        assertFalse(checkpoint.isDone(0));
+        assertTrue(checkpoint.isDone(1));
+        assertFalse(checkpoint.isDone(2));
+        // head of the previous sweep
+        assertEquals(head, checkpoint.getHead());
+
+        checkpoint.remove();
+        assertNull(store.find(Collection.SETTINGS, ID));
+    }
+
+    @Test
+    public void differentKey() {
+        SweepCheckpoint.open(store, ID, "key", null, 3).done(1);
+        Revision head = Revision.newRevision(1);
+        SweepCheckpoint checkpoint = SweepCheckpoint.open(store, ID, "other", head, 3);
+        assertFalse(checkpoint.isResumed());
+        assertFalse(checkpoint.isDone(1));
+        assertEquals(head, checkpoint.getHead());
+        // new checkpoint records progress
+        checkpoint.done(2);
+        assertTrue(SweepCheckpoint.open(store, ID, "other", null, 3).isDone(2));
+    }
+
+    @Test
+    public void differentPartitions() {
+        SweepCheckpoint.open(store, ID, "key", null, 3).done(1);
+        SweepCheckpoint checkpoint = SweepCheckpoint.open(store, ID, "key", null, 4);
+        assertFalse(checkpoint.isResumed());
+        assertFalse(checkpoint.isDone(1));
+        assertNull(checkpoint.getHead());
+    }
+}
@@ -16,19 +16,45 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.apache.jackrabbit.oak.plugins.document.UnsavedModifications.BACKGROUND_MULTI_UPDATE_LIMIT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class UnsavedModificationsTest {
 
+    private static final int NUM_PARENTS = 10;
+
+    private static final int NUM_CHILDREN = 1000;
+
     @Rule
     public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
 
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
     @Test
     public void persistWithoutFind() throws Exception {
         CountingDocumentStore store = new CountingDocumentStore(new MemoryDocumentStore());
@@ -41,4 +67,104 @@ public class UnsavedModificationsTest {
         ns.runBackgroundUpdateOperations();
         assertEquals(0, store.getNumFindCalls(Collection.CLUSTER_NODES));
     }
+
+    @Test
+    public void persistConcurrently() throws Exception {
+        final CountDownLatch concurrentCalls = new CountDownLatch(2);
+        final List<Integer> depths = Lists.newArrayList();
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                              List<UpdateOp> updateOps) {
+                synchronized (depths) {
+                    depths.add(Utils.getDepthFromId(updateOps.get(0).getId()));
+                }
+                // wait until another batch is in flight
+                concurrentCalls.countDown();
+                try {
+                    concurrentCalls.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+        };
+        UnsavedModifications mods = newModifications(store);
+        BackgroundWriteStats stats = persist(mods, store, 2);
+        assertEquals(NUM_PARENTS + NUM_CHILDREN, stats.num);
+        assertEquals(NUM_CHILDREN / BACKGROUND_MULTI_UPDATE_LIMIT + 1, stats.calls);
+        assertEquals(2, stats.writeParallelism);
+        assertTrue(mods.getPaths().isEmpty());
+        // children must be updated before their parents
+        assertEquals(Integer.valueOf(1), depths.get(depths.size() - 1));
+        for (int i = 0; i < depths.size() - 1; i++) {
+            assertEquals(Integer.valueOf(2), depths.get(i));
+        }
+        for (int i = 0; i < NUM_CHILDREN; i++) {
+            NodeDocument doc = store.find(Collection.NODES, Utils.getIdFromPath(childPath(i)));
+            assertNotNull(doc);
+            assertEquals(1, doc.getLastRev().size());
+        }
+    }
+
+    @Test
+    public void persistConcurrentlyWithFailure() throws Exception {
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                              List<UpdateOp> updateOps) {
+                for (UpdateOp op : updateOps) {
+                    if (op.getId().equals(Utils.getIdFromPath(childPath(NUM_CHILDREN - 1)))) {
+                        throw new DocumentStoreException("failure");
+                    }
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+        };
+        UnsavedModifications mods = newModifications(store);
+        try {
+            persist(mods, store, 4);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        // parents must not be updated
+        for (int i = 0; i < NUM_PARENTS; i++) {
+            Path p = Path.fromString("/parent-" + i);
+            assertNotNull(mods.get(p));
+            NodeDocument doc = store.find(Collection.NODES, Utils.getIdFromPath(p));
+            assertNotNull(doc);
+            assertTrue(doc.getLastRev().isEmpty());
+        }
+        assertNotNull(mods.get(childPath(NUM_CHILDREN - 1)));
+    }
+
+    private BackgroundWriteStats persist(UnsavedModifications mods,
+                                         DocumentStore store,
+                                         int maxInFlight) {
+        return mods.persist(store, Suppliers.<Revision>ofInstance(null),
+                UnsavedModifications.Snapshot.IGNORE, new ReentrantLock(),
+                executor, maxInFlight);
+    }
+
+    private static UnsavedModifications newModifications(DocumentStore store) {
+        UnsavedModifications mods = new UnsavedModifications();
+        Revision r = Revision.newRevision(1);
+        for (int i = 0; i < NUM_PARENTS; i++) {
+            mods.put(Path.fromString("/parent-" + i), r);
+        }
+        for (int i = 0; i < NUM_CHILDREN; i++) {
+            mods.put(childPath(i), r);
+        }
+        List<UpdateOp> ops = Lists.newArrayList();
+        for (Path p : mods.getPaths()) {
+            ops.add(new UpdateOp(Utils.getIdFromPath(p), true));
+        }
+        assertTrue(store.create(Collection.NODES, ops));
+        return mods;
+    }
+
+    private static Path childPath(int i) {
+        return Path.fromString("/parent-" + (i % NUM_PARENTS) + "/child-" + i);
+    }
 }
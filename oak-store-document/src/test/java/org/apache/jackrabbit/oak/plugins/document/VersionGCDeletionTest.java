@@ -37,6 +37,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -216,6 +217,361 @@ public class VersionGCDeletionTest {
         }
     }
 
+    @Test
+    public void deleteConcurrently() throws Exception{
+        int noOfDocsToDelete = 2000;
+        DocumentStore ts = new MemoryDocumentStore();
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i).child("b"+i);
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        long maxAge = 1; //hours
+        long delta = TimeUnit.MINUTES.toMillis(10);
+
+        // remove the nodes at different times, which spreads the
+        // documents over the _modified buckets
+        for (int i = 0; i < noOfDocsToDelete; i += 100) {
+            NodeBuilder b2 = store.getRoot().builder();
+            for (int j = i; j < i + 100; j++) {
+                b2.child("x").child("a"+j).remove();
+            }
+            store.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+        }
+
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge*2) + delta);
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withOverflowToDiskThreshold(100)
+                .withParallelism(4).withRateLimit(1000000));
+
+        VersionGCStats stats = gc.gc(maxAge * 2, HOURS);
+        assertEquals(noOfDocsToDelete * 2, stats.deletedDocGCCount);
+        assertEquals(noOfDocsToDelete, stats.deletedLeafDocGCCount);
+
+        assertNotNull(ts.find(Collection.NODES, "1:/x"));
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "3:/x/a"+i+"/b"+i));
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
+    @Test(timeout = 120000)
+    public void deleteLeavesConcurrently() throws Exception{
+        // many more leaves than a delete batch, spread over all buckets
+        int noOfDocsToDelete = 20000;
+        DocumentStore ts = new MemoryDocumentStore();
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i);
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        long maxAge = 1; //hours
+        long delta = TimeUnit.MINUTES.toMillis(10);
+
+        int chunk = 1000;
+        for (int i = 0; i < noOfDocsToDelete; i += chunk) {
+            NodeBuilder b2 = store.getRoot().builder();
+            for (int j = i; j < i + chunk; j++) {
+                b2.child("x").child("a"+j).remove();
+            }
+            store.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+        }
+
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge*2) + delta);
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        // the threads delete the leaf batches while they are collecting.
+        // a batch may then exceed the delete batch size, but must not
+        // wait for tasks on the executor used for collecting
+        gc.setOptions(gc.getOptions().withParallelism(4).withRateLimit(1000000));
+
+        VersionGCStats stats = gc.gc(maxAge * 2, HOURS);
+        assertEquals(noOfDocsToDelete, stats.deletedDocGCCount);
+        assertEquals(noOfDocsToDelete, stats.deletedLeafDocGCCount);
+
+        assertNotNull(ts.find(Collection.NODES, "1:/x"));
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
+    @Test
+    public void deleteContinuously() throws Exception{
+        int noOfDocsToDelete = 500;
+        DeletedOnceQueryCounter ts = new DeletedOnceQueryCounter(new MemoryDocumentStore());
+        AtomicInteger deletedOnceQueries = ts.queries;
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        long maxAge = 1; //hours
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withContinuous(true).withRateLimit(1000000));
+        // initial run determines where collection starts
+        gc.gc(maxAge, HOURS);
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i).child("b"+i);
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        for (int i = 0; i < noOfDocsToDelete; i += 100) {
+            NodeBuilder b2 = store.getRoot().builder();
+            for (int j = i; j < i + 100; j++) {
+                b2.child("x").child("a"+j).remove();
+            }
+            store.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+        }
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge) + MINUTES.toMillis(10));
+        deletedOnceQueries.set(0);
+        // collection stops at the sweep revision, which may not
+        // cover the last removal yet, depending on the resolution
+        // of the _modified values
+        VersionGCStats stats = gc.gc(maxAge, HOURS);
+        assertTrue(stats.iterationCount > 1);
+        int deleted = stats.deletedDocGCCount;
+
+        store.runBackgroundOperations();
+        stats = gc.gc(maxAge, HOURS);
+        deleted += stats.deletedDocGCCount;
+        assertEquals(noOfDocsToDelete * 2, deleted);
+        assertEquals(0, deletedOnceQueries.get());
+
+        assertNotNull(ts.find(Collection.NODES, "1:/x"));
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "3:/x/a"+i+"/b"+i));
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
+    @Test
+    public void deleteContinuouslyConcurrently() throws Exception{
+        int noOfDocsToDelete = 500;
+        DeletedOnceQueryCounter ts = new DeletedOnceQueryCounter(new MemoryDocumentStore());
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        long maxAge = 1; //hours
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withContinuous(true)
+                .withParallelism(4).withRateLimit(1000000));
+        // initial run determines where collection starts
+        gc.gc(maxAge, HOURS);
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i).child("b"+i);
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        NodeBuilder b2 = store.getRoot().builder();
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            b2.child("x").child("a"+i).remove();
+        }
+        store.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+        store.runBackgroundOperations();
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge) + MINUTES.toMillis(10));
+        ts.queries.set(0);
+        ts.journalQueries.set(0);
+        VersionGCStats stats = gc.gc(maxAge, HOURS);
+        assertEquals(noOfDocsToDelete * 2, stats.deletedDocGCCount);
+        assertEquals(0, ts.queries.get());
+        // the journal of each cluster node is read once per
+        // increment, not once per bucket. reading a range of the
+        // journal takes up to two queries for this number of entries
+        int clusterNodes = ClusterNodeInfoDocument.all(ts).size();
+        assertTrue("journal queries: " + ts.journalQueries.get(),
+                ts.journalQueries.get() <= 2 * stats.iterationCount * clusterNodes);
+
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "3:/x/a"+i+"/b"+i));
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
+    @Test
+    public void deleteContinuouslyWithBranch() throws Exception{
+        int noOfDocsToDelete = 100;
+        DeletedOnceQueryCounter ts = new DeletedOnceQueryCounter(new MemoryDocumentStore());
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .setUpdateLimit(10)
+                .getNodeStore();
+
+        long maxAge = 1; //hours
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withContinuous(true).withRateLimit(1000000));
+        // initial run determines where collection starts
+        gc.gc(maxAge, HOURS);
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i);
+        }
+        merge(store, b1);
+        store.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + MINUTES.toMillis(10));
+
+        // removals are persisted in a branch and merged much later
+        NodeBuilder b2 = store.getRoot().builder();
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            b2.child("x").child("a"+i).remove();
+        }
+        NodeDocument doc = ts.find(Collection.NODES, "2:/x/a0");
+        assertNotNull(doc);
+        assertTrue(doc.wasDeletedOnce());
+        // unrelated change in between
+        clock.waitUntil(clock.getTime() + MINUTES.toMillis(5));
+        NodeBuilder b3 = store.getRoot().builder();
+        b3.child("y");
+        merge(store, b3);
+        store.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(3));
+        merge(store, b2);
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge) + MINUTES.toMillis(10));
+        store.runBackgroundOperations();
+        ts.queries.set(0);
+        // the journal entry written after the merge is hours
+        // younger than the documents modified in the branch
+        VersionGCStats stats = gc.gc(maxAge, HOURS);
+        int deleted = stats.deletedDocGCCount;
+        assertEquals(noOfDocsToDelete - 1, deleted);
+
+        // the last removal was committed with the merge
+        store.runBackgroundOperations();
+        stats = gc.gc(maxAge, HOURS);
+        deleted += stats.deletedDocGCCount;
+        assertEquals(noOfDocsToDelete, deleted);
+        assertEquals(0, ts.queries.get());
+
+        assertNotNull(ts.find(Collection.NODES, "1:/x"));
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
+    @Test
+    public void deleteContinuouslyWithRecovery() throws Exception{
+        int noOfDocsToDelete = 100;
+        DocumentStore ms = new MemoryDocumentStore();
+        DeletedOnceQueryCounter ts = new DeletedOnceQueryCounter(ms);
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ts)
+                .setClusterId(1)
+                .setAsyncDelay(0)
+                .getNodeStore();
+        FailingDocumentStore fs = new FailingDocumentStore(ms);
+        DocumentNodeStore store2 = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(fs)
+                .setClusterId(2)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        long maxAge = 1; //hours
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withContinuous(true).withRateLimit(1000000));
+        // initial run determines where collection starts
+        gc.gc(maxAge, HOURS);
+
+        NodeBuilder b1 = store.getRoot().builder();
+        NodeBuilder xb = b1.child("x");
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            xb.child("a"+i);
+        }
+        merge(store, b1);
+        store.runBackgroundOperations();
+        store2.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+
+        // second cluster node removes the nodes and crashes
+        // before it writes the journal entry
+        NodeBuilder b2 = store2.getRoot().builder();
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            b2.child("x").child("a"+i).remove();
+        }
+        merge(store2, b2);
+        fs.fail().after(0).eternally();
+        try {
+            store2.dispose();
+            fail("dispose must fail");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge) + MINUTES.toMillis(10));
+        store.renewClusterIdLease();
+        ts.queries.set(0);
+        // journal is incomplete until the second cluster node is recovered
+        VersionGCStats stats = gc.gc(maxAge, HOURS);
+        int deleted = stats.deletedDocGCCount;
+        assertTrue(ts.queries.get() > 0);
+
+        // recovery writes the journal entry for the removals
+        assertTrue(store.getLastRevRecoveryAgent().recover(2) > 0);
+        store.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + MINUTES.toMillis(1));
+        store.runBackgroundOperations();
+        ts.queries.set(0);
+        stats = gc.gc(maxAge, HOURS);
+        deleted += stats.deletedDocGCCount;
+        assertEquals(noOfDocsToDelete, deleted);
+        assertEquals(0, ts.queries.get());
+
+        assertNotNull(ts.find(Collection.NODES, "1:/x"));
+        for (int i = 0; i < noOfDocsToDelete; i++){
+            assertNull(ts.find(Collection.NODES, "2:/x/a"+i));
+        }
+    }
+
     @Test
     public void gcWithPathsHavingNewLine() throws Exception{
         int noOfDocsToDelete = 200;
@@ -398,6 +754,43 @@ public class VersionGCDeletionTest {
         store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
     }
 
+    private static class DeletedOnceQueryCounter extends DocumentStoreWrapper {
+
+        final AtomicInteger queries = new AtomicInteger();
+
+        final AtomicInteger journalQueries = new AtomicInteger();
+
+        DeletedOnceQueryCounter(DocumentStore store) {
+            super(store);
+        }
+
+        @NotNull
+        @Override
+        public <T extends Document> List<T> query(Collection<T> collection,
+                                                  String fromKey,
+                                                  String toKey,
+                                                  int limit) {
+            if (collection == Collection.JOURNAL) {
+                journalQueries.incrementAndGet();
+            }
+            return super.query(collection, fromKey, toKey, limit);
+        }
+
+        @NotNull
+        @Override
+        public <T extends Document> List<T> query(Collection<T> collection,
+                                                  String fromKey,
+                                                  String toKey,
+                                                  String indexedProperty,
+                                                  long startValue,
+                                                  int limit) {
+            if (NodeDocument.DELETED_ONCE.equals(indexedProperty)) {
+                queries.incrementAndGet();
+            }
+            return super.query(collection, fromKey, toKey, indexedProperty, startValue, limit);
+        }
+    }
+
     private static class TestDocumentStore extends MemoryDocumentStore {
         boolean throwException;
         @Override
@@ -34,6 +34,7 @@ import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
@@ -103,6 +104,25 @@ public class VersionGCTest {
         Revision.resetClockToDefault();
     }
 
+    @Test
+    public void splitTimeInterval() {
+        TimeInterval interval = new TimeInterval(1000, 2001);
+        List<TimeInterval> buckets = VersionGarbageCollector.split(interval, 4);
+        assertEquals(4, buckets.size());
+        long from = interval.fromMs;
+        for (TimeInterval b : buckets) {
+            assertEquals(from, b.fromMs);
+            assertTrue(b.toMs > b.fromMs);
+            from = b.toMs;
+        }
+        assertEquals(interval.toMs, from);
+
+        // an interval shorter than the number of buckets
+        assertEquals(2, VersionGarbageCollector.split(new TimeInterval(0, 2), 4).size());
+        // an empty interval
+        assertEquals(1, VersionGarbageCollector.split(new TimeInterval(5, 5), 4).size());
+    }
+
     @Test
     public void failParallelGC() throws Exception {
         // block gc call
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMKBuilderProvider;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BundlingStatsTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final BundlingStats stats = new BundlingStats(10, 0.9);
+
+    @Test
+    public void recommendPatterns() {
+        NodeState before = EMPTY_NODE.builder().getNodeState();
+        NodeBuilder builder = before.builder();
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder asset = newNode(builder.child("test").child("a" + i), "app:Asset");
+            asset.child("jcr:content").child("metadata");
+            asset.child("other-" + i);
+            asset.child(":hidden");
+            if (i % 2 == 0) {
+                asset.child("jcr:content").child("renditions").child("original");
+            }
+        }
+        stats.contentChanged(before, builder.getNodeState(), BundledTypesRegistry.NOOP);
+
+        assertEquals(ImmutableMap.of("app:Asset", ImmutableSet.of("jcr:content", "jcr:content/metadata")),
+                stats.getRecommendations());
+        List<String> report = stats.getReport();
+        assertEquals(1, report.size());
+        assertTrue(report.get(0), report.get(0).contains("documentsSavedPerNode=2.00"));
+    }
+
+    @Test
+    public void tooFewNodes() {
+        NodeState before = EMPTY_NODE.builder().getNodeState();
+        NodeBuilder builder = before.builder();
+        for (int i = 0; i < 5; i++) {
+            newNode(builder.child("a" + i), "app:Asset").child("jcr:content");
+        }
+        stats.contentChanged(before, builder.getNodeState(), BundledTypesRegistry.NOOP);
+        assertTrue(stats.getRecommendations().isEmpty());
+    }
+
+    @Test
+    public void configuredTypeIgnored() {
+        BundledTypesRegistry registry = BundledTypesRegistry.builder()
+                .forType("app:Asset", "jcr:content").buildRegistry();
+        NodeState before = EMPTY_NODE.builder().getNodeState();
+        NodeBuilder builder = before.builder();
+        for (int i = 0; i < 20; i++) {
+            newNode(builder.child("a" + i), "app:Asset").child("jcr:content");
+        }
+        stats.contentChanged(before, builder.getNodeState(), registry);
+        assertTrue(stats.getRecommendations().isEmpty());
+    }
+
+    @Test
+    public void applyToNewContent() throws Exception {
+        DocumentNodeStore store = builderProvider.newBuilder()
+                .setAsyncDelay(0).getNodeStore();
+        store.getBundlingConfigHandler().setStats(stats);
+        NodeBuilder builder = store.getRoot().builder();
+        new InitialContent().initialize(builder);
+        BundlingConfigInitializer.INSTANCE.initialize(builder);
+        merge(store, builder);
+
+        for (int i = 0; i < 20; i++) {
+            builder = store.getRoot().builder();
+            newNode(builder.child("test").child("a" + i), "app:Asset")
+                    .child("jcr:content").setProperty("p", i);
+            merge(store, builder);
+        }
+        for (int i = 0; i < 20; i++) {
+            NodeState asset = store.getRoot().getChildNode("test").getChildNode("a" + i);
+            assertTrue(asset.getChildNode("jcr:content").exists());
+        }
+        assertEquals(Collections.singleton("jcr:content"),
+                stats.getRecommendations().get("app:Asset"));
+        String report = null;
+        for (String line : stats.getReport()) {
+            if (line.startsWith("app:Asset:")) {
+                report = line;
+            }
+        }
+        assertNotNull(report);
+        assertTrue(report, report.contains("documentReadsSaved=20"));
+
+        assertEquals(Collections.singleton("app:Asset"),
+                store.getBundlingConfigHandler().applyRecommendations(store));
+        // already applied
+        assertTrue(store.getBundlingConfigHandler().applyRecommendations(store).isEmpty());
+
+        builder = store.getRoot().builder();
+        newNode(builder.child("test").child("b"), "app:Asset")
+                .child("jcr:content").setProperty("p", 0);
+        merge(store, builder);
+        assertNotNull(store.getDocumentStore().find(Collection.NODES,
+                Utils.getIdFromPath("/test/b")));
+        assertNull(store.getDocumentStore().find(Collection.NODES,
+                Utils.getIdFromPath("/test/b/jcr:content")));
+        assertNotNull(store.getDocumentStore().find(Collection.NODES,
+                Utils.getIdFromPath("/test/a0/jcr:content")));
+    }
+
+    private static NodeBuilder newNode(NodeBuilder builder, String type) {
+        builder.setProperty(JCR_PRIMARYTYPE, type, Type.NAME);
+        return builder;
+    }
+
+    private static void merge(DocumentNodeStore store, NodeBuilder builder)
+            throws CommitFailedException {
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.collect.Iterables;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getKeyLowerLimit;
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getKeyUpperLimit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapDocumentCacheTest {
+
+    private static final int NUM_DOCS = 100;
+
+    private DocumentStore ds;
+
+    private OffHeapDocumentCache offHeap;
+
+    private NodeDocumentCache cache;
+
+    @Before
+    public void before() {
+        ds = new MemoryDocumentStore();
+        offHeap = new OffHeapDocumentCache(ds, 1024 * 1024);
+        Cache<CacheValue, NodeDocument> nodeDocumentsCache = CacheLIRS.<CacheValue, NodeDocument>newBuilder()
+                .maximumSize(10)
+                .evictionCallback(offHeap.<CacheValue>asEvictionListener()::evicted)
+                .build();
+        Cache<StringValue, NodeDocument> prevDocumentsCache = new CacheLIRS<StringValue, NodeDocument>(10);
+        cache = new NodeDocumentCache(nodeDocumentsCache, Mockito.mock(CacheStats.class),
+                prevDocumentsCache, Mockito.mock(CacheStats.class),
+                new StripedNodeDocumentLocks(), offHeap);
+    }
+
+    @Test
+    public void evictedDocumentsMovedOffHeap() {
+        Map<String, NodeDocument> docs = putDocs();
+        assertTrue(offHeap.getPutCount() > 0);
+        assertTrue(offHeap.getSize() > 0);
+        for (Map.Entry<String, NodeDocument> e : docs.entrySet()) {
+            NodeDocument doc = cache.getIfPresent(e.getKey());
+            assertNotNull("missing " + e.getKey(), doc);
+            assertEquals(e.getValue().getModCount(), doc.getModCount());
+            assertEquals(e.getValue().get("prop"), doc.get("prop"));
+            assertEquals(e.getValue().getCreated(), doc.getCreated());
+        }
+        assertTrue(offHeap.getHitCount() > 0);
+    }
+
+    @Test
+    public void invalidate() {
+        Map<String, NodeDocument> docs = putDocs();
+        String id = Iterables.getFirst(offHeap.keys(), null);
+        assertNotNull(id);
+        cache.invalidate(id);
+        assertNull(cache.getIfPresent(id));
+        for (String key : docs.keySet()) {
+            cache.invalidate(key);
+        }
+        assertEquals(0, offHeap.getSize());
+        assertTrue(Iterables.isEmpty(cache.keys()));
+    }
+
+    @Test
+    public void putReplacesOffHeapDocument() {
+        putDocs();
+        String id = Iterables.getFirst(offHeap.keys(), null);
+        assertNotNull(id);
+        NodeDocument newer = createDoc(id, 2);
+        cache.put(newer);
+        assertSame(newer, cache.getIfPresent(id));
+        assertTrue(Iterables.isEmpty(Iterables.filter(offHeap.keys(), id::equals)));
+    }
+
+    @Test
+    public void invalidateOutdated() {
+        putDocs();
+        String id = Iterables.getFirst(offHeap.keys(), null);
+        assertNotNull(id);
+        Map<String, ModificationStamp> stamps = new HashMap<>();
+        stamps.put(id, new ModificationStamp(2, 0));
+        assertEquals(1, cache.invalidateOutdated(stamps));
+        assertNull(cache.getIfPresent(id));
+    }
+
+    @Test
+    public void invalidateOutdatedKeepsOffHeapDocument() {
+        putDocs();
+        String id = Iterables.getFirst(offHeap.keys(), null);
+        assertNotNull(id);
+        long hits = offHeap.getHitCount();
+        Map<String, ModificationStamp> stamps = new HashMap<>();
+        stamps.put(id, new ModificationStamp(1, 0));
+        assertEquals(0, cache.invalidateOutdated(stamps));
+        // neither moved back on-heap nor removed
+        assertEquals(hits, offHeap.getHitCount());
+        assertTrue(Iterables.contains(offHeap.keys(), id));
+    }
+
+    @Test
+    public void cachedNullDocument() throws Exception {
+        String id = "1:/missing";
+        cache.get(id, () -> NodeDocument.NULL);
+        putDocs();
+        assertSame(NodeDocument.NULL, cache.getIfPresent(id));
+    }
+
+    @Test
+    public void trackerAfterOffHeapLoad() {
+        putDocs();
+        String id = Iterables.getFirst(offHeap.keys(), null);
+        assertNotNull(id);
+        Path parent = Path.ROOT;
+        CacheChangesTracker tracker = cache.registerTracker(
+                getKeyLowerLimit(parent), getKeyUpperLimit(parent));
+        assertNotNull(cache.getIfPresent(id));
+        cache.invalidate(id);
+        assertTrue(tracker.mightBeenAffected(id));
+        tracker.close();
+    }
+
+    @Test
+    public void reuseOldestSlab() {
+        // a single segment with a single slab of 64 kB
+        OffHeapDocumentCache small = new OffHeapDocumentCache(ds, 16 * 64 * 1024);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i, 1);
+            small.put(doc.getId(), doc);
+            ids.add(doc.getId());
+        }
+        assertTrue(small.getEvictionCount() > 0);
+        assertTrue(small.getSize() <= small.getMaxSize());
+        // most recent document is still there
+        NodeDocument doc = small.take(ids.get(ids.size() - 1));
+        assertNotNull(doc);
+        assertEquals("value-" + ids.get(ids.size() - 1), doc.get("prop"));
+        // first one was evicted
+        assertNull(small.take(ids.get(0)));
+        assertEquals(Iterables.size(small.keys()) + small.getEvictionCount() + 1, ids.size());
+    }
+
+    @Test
+    public void documentLargerThanSlab() {
+        OffHeapDocumentCache small = new OffHeapDocumentCache(ds, 16 * 1024);
+        NodeDocument doc = createDoc("1:/large", 1);
+        doc.put("prop", Strings.repeat("x", 2048));
+        small.put(doc.getId(), doc);
+        assertEquals(1, small.getEvictionCount());
+        assertEquals(0, small.getSize());
+        assertNull(small.take(doc.getId()));
+    }
+
+    @Test
+    public void enabledWithBuilder() {
+        DocumentMK.Builder builder = new DocumentMK.Builder()
+                .memoryCacheSize(1024 * 1024)
+                .setOffHeapDocumentCacheSize(16 * 1024 * 1024);
+        NodeDocumentCache cache = builder.buildNodeDocumentCache(ds, new StripedNodeDocumentLocks());
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i, 1);
+            cache.put(doc);
+            ids.add(doc.getId());
+        }
+        // the first document was evicted from the on-heap cache
+        NodeDocumentCache onHeapOnly = new DocumentMK.Builder()
+                .memoryCacheSize(1024 * 1024)
+                .buildNodeDocumentCache(ds, new StripedNodeDocumentLocks());
+        for (String id : ids) {
+            onHeapOnly.put(createDoc(id, 1));
+        }
+        assertNull(onHeapOnly.getIfPresent(ids.get(0)));
+        // but is read from the off-heap tier
+        for (String id : ids) {
+            NodeDocument doc = cache.getIfPresent(id);
+            assertNotNull("missing " + id, doc);
+            assertEquals("value-" + id, doc.get("prop"));
+        }
+    }
+
+    private Map<String, NodeDocument> putDocs() {
+        Map<String, NodeDocument> docs = new HashMap<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i, 1);
+            cache.put(doc);
+            docs.put(doc.getId(), doc);
+        }
+        return docs;
+    }
+
+    private NodeDocument createDoc(String id, long modCount) {
+        NodeDocument doc = Collection.NODES.newDocument(ds);
+        doc.put(NodeDocument.ID, id);
+        doc.put(NodeDocument.MOD_COUNT, modCount);
+        doc.put(NodeDocument.MODIFIED_IN_SECS, 0L);
+        doc.put("prop", "value-" + id);
+        return doc;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Strings;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBulkSizeTest {
+
+    private static final long TARGET_MILLIS = 100;
+
+    @Test
+    public void partitionBySize() {
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(3, 3, 3, Long.MAX_VALUE, TARGET_MILLIS);
+        List<List<UpdateOp>> batches = sizes.partition(newOps(7, 0));
+        assertEquals(3, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(3, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+    }
+
+    @Test
+    public void partitionByBytes() {
+        List<UpdateOp> ops = newOps(10, 1000);
+        long opSize = AdaptiveBulkSize.estimateSize(ops.get(0));
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(100, 100, 100, opSize * 4, TARGET_MILLIS);
+        List<List<UpdateOp>> batches = sizes.partition(ops);
+        assertEquals(3, batches.size());
+        assertEquals(4, batches.get(0).size());
+        assertEquals(4, batches.get(1).size());
+        assertEquals(2, batches.get(2).size());
+    }
+
+    @Test
+    public void partitionLargeOperation() {
+        // a single operation exceeding the limit is still sent
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(10, 10, 10, 1, TARGET_MILLIS);
+        List<List<UpdateOp>> batches = sizes.partition(newOps(2, 100));
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+    }
+
+    @Test
+    public void shrinkOnSlowWrite() {
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(32, 4, 64, Long.MAX_VALUE, TARGET_MILLIS);
+        sizes.done(32, millis(TARGET_MILLIS * 2));
+        assertEquals(16, sizes.getSize());
+        sizes.done(16, millis(TARGET_MILLIS * 2));
+        sizes.done(8, millis(TARGET_MILLIS * 2));
+        sizes.done(4, millis(TARGET_MILLIS * 2));
+        assertEquals(4, sizes.getSize());
+    }
+
+    @Test
+    public void growOnFastWrite() {
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(32, 4, 64, Long.MAX_VALUE, TARGET_MILLIS);
+        // bulk write with less operations than the bulk size
+        sizes.done(10, millis(1));
+        assertEquals(32, sizes.getSize());
+        // full bulk write within target, but not fast enough to grow
+        sizes.done(32, millis(TARGET_MILLIS * 3 / 4));
+        assertEquals(32, sizes.getSize());
+        sizes.done(32, millis(1));
+        assertEquals(40, sizes.getSize());
+        for (int i = 0; i < 10; i++) {
+            sizes.done(sizes.getSize(), millis(1));
+        }
+        assertEquals(64, sizes.getSize());
+    }
+
+    @Test
+    public void fixedSize() {
+        AdaptiveBulkSize sizes = new AdaptiveBulkSize(30, 30, 30, Long.MAX_VALUE, TARGET_MILLIS);
+        sizes.done(30, millis(TARGET_MILLIS * 10));
+        assertEquals(30, sizes.getSize());
+        sizes.done(30, millis(1));
+        assertEquals(30, sizes.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxSize() {
+        new AdaptiveBulkSize(10, 10, 5, Long.MAX_VALUE, TARGET_MILLIS);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static List<UpdateOp> newOps(int num, int valueLength) {
+        List<UpdateOp> ops = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            UpdateOp op = new UpdateOp("1:/node-" + i, false);
+            op.set("p", Strings.repeat("x", valueLength));
+            ops.add(op);
+        }
+        return ops;
+    }
+}
@@ -80,6 +80,18 @@ public class MongoDocumentStoreMetricsTest extends AbstractMongoConnectionTest {
 
             metrics.run();
             assertEquals(11, getCount("MongoDB.nodes.count"));
+
+            updates.clear();
+            for (int i = 0; i < 10; i++) {
+                UpdateOp op = new UpdateOp("id-" + i, false);
+                op.set("p", i);
+                updates.add(op);
+            }
+            store.createOrUpdate(Collection.NODES, updates);
+            metrics.run();
+            assertEquals(store.getBulkSize(), getCount("MongoDB.bulkSize"));
+            assertThat(getCount("MongoDB.bulkWrites"), greaterThan(0L));
+            assertEquals(10, getCount("MongoDB.bulkWriteOps"));
         } finally {
             store.dispose();
         }
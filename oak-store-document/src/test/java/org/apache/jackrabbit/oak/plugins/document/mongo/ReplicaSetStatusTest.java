@@ -98,6 +98,23 @@ public class ReplicaSetStatusTest {
 
     }
 
+    @Test
+    public void oldestLastWrite() {
+        ReplicaSetStatus status = new ReplicaSetStatus();
+        assertEquals(0, status.getOldestLastWrite());
+        status.serverHeartbeatSucceeded(newEvent(0, 0, 1000));
+        status.serverHeartbeatSucceeded(newEvent(1, 0, 800));
+        assertEquals(0, status.getOldestLastWrite());
+        status.serverHeartbeatSucceeded(newEvent(2, 50, 1000));
+        assertEquals(800, status.getOldestLastWrite());
+
+        status.serverHeartbeatSucceeded(newEvent(1, 5000, 4800));
+        assertEquals(1000, status.getOldestLastWrite());
+        status.serverHeartbeatSucceeded(newEvent(0, 5000, 5000));
+        status.serverHeartbeatSucceeded(newEvent(2, 5000, 4900));
+        assertEquals(4800, status.getOldestLastWrite());
+    }
+
     private ServerHeartbeatSucceededEvent newEvent(int connectionIndex, long localTime, long lastWriteDate) {
         ConnectionDescription description = connections.get(connectionIndex);
         BsonDocument reply = new BsonDocument("localTime", new BsonDateTime(localTime));
@@ -20,21 +20,30 @@ package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.junit.LogCustomizer;
+import org.apache.jackrabbit.oak.plugins.document.MemoryDiffCache.Key;
 import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
 import org.junit.Test;
 import org.slf4j.event.Level;
 
@@ -146,5 +155,99 @@ public class CacheTest {
             cache.close();
         }
     }
-    
+
+    @Test
+    public void lookupTimeout() throws Exception {
+        FileUtils.deleteDirectory(new File("target/cacheTest"));
+        PersistentCache pCache = new PersistentCache("target/cacheTest,lookupThreads=1,lookupTimeout=10");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CacheLIRS<Key, StringValue> cache = new CacheLIRS.Builder<Key, StringValue>().
+                    maximumSize(10).build();
+            Cache<Key, StringValue> map = pCache.wrap(null, null, cache, CacheType.DIFF,
+                    new DefaultStatisticsProvider(executor));
+            Key k = new Key(Path.fromString("/test"),
+                    RevisionVector.fromString("r1-0-1"), RevisionVector.fromString("r2-0-1"));
+            map.put(k, new StringValue("value"));
+
+            // read from the persistent cache with the lookup threads
+            cache.invalidateAll();
+            assertEquals("value", map.getIfPresent(k).toString());
+
+            // block the lookup thread, lookups must time out
+            cache.invalidateAll();
+            pCache.getLookupExecutor().submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    blocked.await();
+                    return null;
+                }
+            });
+            assertNull(map.getIfPresent(k));
+            PersistentCacheStats stats = PersistentCache.getPersistentCacheStats(map);
+            assertEquals(1, stats.getLookupTimeoutCount());
+        } finally {
+            blocked.countDown();
+            pCache.close();
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    @Test
+    public void lookupTimeoutDoesNotUpdateMetadata() throws Exception {
+        FileUtils.deleteDirectory(new File("target/cacheTest"));
+        PersistentCache pCache = new PersistentCache("target/cacheTest,+asyncDiff,lookupThreads=1,lookupTimeout=10");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CacheLIRS<Key, StringValue> cache = new CacheLIRS.Builder<Key, StringValue>().
+                    maximumSize(10).build();
+            Cache<Key, StringValue> map = pCache.wrap(null, null, cache, CacheType.DIFF,
+                    new DefaultStatisticsProvider(executor));
+            NodeCache<Key, StringValue> nodeCache = (NodeCache<Key, StringValue>) map;
+            Key k = new Key(Path.fromString("/test"),
+                    RevisionVector.fromString("r1-0-1"), RevisionVector.fromString("r2-0-1"));
+            StringValue v = new StringValue("value");
+            map.put(k, v);
+            // entry was used, the eviction writes it asynchronously
+            map.getIfPresent(k);
+            nodeCache.evicted(k, v, RemovalCause.SIZE);
+            long end = System.currentTimeMillis() + 10000;
+            while (nodeCache.getGenerationalMap().get(k) == null
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            CacheMetadata<Key> metadata = nodeCache.getMemCacheMetadata();
+
+            // block the lookup thread, the lookup times out
+            cache.invalidateAll();
+            metadata.remove(k);
+            pCache.getLookupExecutor().submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    blocked.await();
+                    return null;
+                }
+            });
+            assertNull(map.getIfPresent(k));
+            blocked.countDown();
+            // wait until the timed out lookup completed
+            pCache.getLookupExecutor().submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            }).get();
+            assertNull(metadata.remove(k));
+
+            // a successful lookup updates the metadata
+            assertEquals("value", map.getIfPresent(k).toString());
+            assertTrue(metadata.remove(k).isReadFromPersistentCache());
+        } finally {
+            blocked.countDown();
+            pCache.close();
+            new ExecutorCloser(executor).close();
+        }
+    }
 }
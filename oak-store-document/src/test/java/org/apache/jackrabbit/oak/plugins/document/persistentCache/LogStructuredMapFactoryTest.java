@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.h2.mvstore.MVMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStructuredMapFactoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void putGetRemove() {
+        LogStructuredMapFactory f = new LogStructuredMapFactory(null, false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", new MVMap.Builder<String, String>());
+        for (int i = 0; i < 1000; i++) {
+            m.put("key-" + i, "value-" + i);
+        }
+        assertEquals(1000, m.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("value-" + i, m.get("key-" + i));
+        }
+        m.put("key-1", "updated");
+        assertEquals("updated", m.get("key-1"));
+        for (int i = 0; i < 1000; i += 2) {
+            m.remove("key-" + i);
+        }
+        assertEquals(500, m.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? null : (i == 1 ? "updated" : "value-" + i), m.get("key-" + i));
+        }
+        m.clear();
+        assertEquals(0, m.size());
+        assertNull(m.get("key-1"));
+        assertTrue(f.getFileSize() > 0);
+        f.closeStore();
+    }
+
+    @Test
+    public void multipleMaps() {
+        LogStructuredMapFactory f = new LogStructuredMapFactory(null, false);
+        f.openStore();
+        Map<String, String> m1 = f.openMap("m1", null);
+        Map<String, String> m2 = f.openMap("m2", null);
+        m1.put("a", "1");
+        m2.put("a", "2");
+        assertEquals("1", m1.get("a"));
+        assertEquals("2", m2.get("a"));
+        m1.clear();
+        assertNull(m1.get("a"));
+        assertEquals("2", m2.get("a"));
+        f.closeStore();
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        String fileName = new File(folder.getRoot(), "cache-0.data").getAbsolutePath();
+        LogStructuredMapFactory f = new LogStructuredMapFactory(fileName, false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        for (int i = 0; i < 100; i++) {
+            m.put("key-" + i, "value-" + i);
+        }
+        m.remove("key-0");
+        long size = f.getFileSize();
+        f.closeStore();
+
+        f = new LogStructuredMapFactory(fileName, true);
+        f.openStore();
+        assertEquals(size, f.getFileSize());
+        m = f.openMap("test", null);
+        assertNull(m.get("key-0"));
+        for (int i = 1; i < 100; i++) {
+            assertEquals("value-" + i, m.get("key-" + i));
+        }
+        assertNull(f.openMap("other", null).get("key-1"));
+        f.closeStore();
+    }
+
+    @Test
+    public void ignorePartialRecord() throws Exception {
+        File file = new File(folder.getRoot(), "cache-0.data");
+        LogStructuredMapFactory f = new LogStructuredMapFactory(file.getAbsolutePath(), false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        long pos = f.getFileSize();
+        m.put("b", "2");
+        f.closeStore();
+
+        // corrupt the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(pos + 10);
+            raf.write(0xff);
+        }
+        f.openStore();
+        m = f.openMap("test", null);
+        assertEquals("1", m.get("a"));
+        assertNull(m.get("b"));
+        assertEquals(pos, f.getFileSize());
+        m.put("c", "3");
+        assertEquals("3", m.get("c"));
+        f.closeStore();
+    }
+
+    @Test
+    public void reopenWithDifferentSegmentSize() throws Exception {
+        String fileName = new File(folder.getRoot(), "cache-0.data").getAbsolutePath();
+        int segmentSize = LogStructuredMapFactory.MIN_SEGMENT_SIZE;
+        LogStructuredMapFactory f = new LogStructuredMapFactory(fileName, false, segmentSize);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        for (int i = 0; i < 100; i++) {
+            m.put("key-" + i, "value-" + i);
+        }
+        // records span multiple segments
+        assertTrue(f.getFileSize() > 2 * segmentSize);
+        f.closeStore();
+
+        for (boolean readOnly : new boolean[]{true, false}) {
+            f = new LogStructuredMapFactory(fileName, readOnly, 2 * segmentSize);
+            f.openStore();
+            m = f.openMap("test", null);
+            for (int i = 0; i < 100; i++) {
+                assertEquals("value-" + i, m.get("key-" + i));
+            }
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void truncateOnClose() throws Exception {
+        File file = new File(folder.getRoot(), "cache-0.data");
+        LogStructuredMapFactory f = new LogStructuredMapFactory(file.getAbsolutePath(), false);
+        f.openStore();
+        f.openMap("test", null).put("a", "1");
+        long size = f.getFileSize();
+        f.closeStore();
+        assertEquals(size, file.length());
+    }
+
+    @Test
+    public void overwriteNonLogFile() throws Exception {
+        File file = new File(folder.getRoot(), "cache-0.data");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(new byte[64 * 1024]);
+        }
+        assertFalse(LogStructuredMapFactory.isLogFile(file));
+        LogStructuredMapFactory f = new LogStructuredMapFactory(file.getAbsolutePath(), false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        long size = f.getFileSize();
+        f.closeStore();
+        assertTrue(LogStructuredMapFactory.isLogFile(file));
+        assertEquals(size, file.length());
+
+        f.openStore();
+        assertEquals("1", f.openMap("test", null).get("a"));
+        f.closeStore();
+    }
+
+    @Test
+    public void entrySet() {
+        LogStructuredMapFactory f = new LogStructuredMapFactory(null, false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            m.put("key-" + i, "value-" + i);
+            expected.put("key-" + i, "value-" + i);
+        }
+        m.remove("key-0");
+        expected.remove("key-0");
+        assertEquals(expected, m);
+        assertEquals(m, expected);
+        assertEquals(expected.hashCode(), m.hashCode());
+        Map<String, String> copy = new HashMap<>();
+        copy.putAll(m);
+        assertEquals(expected, copy);
+        f.closeStore();
+    }
+
+    @Test
+    public void mapOfPreviousEpoch() {
+        LogStructuredMapFactory f = new LogStructuredMapFactory(null, false);
+        f.openStore();
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        f.reopenStoreIfNeeded(f.getOpenCount());
+        try {
+            m.get("a");
+            throw new AssertionError("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        f.closeStore();
+    }
+
+    @Test
+    public void generationRotation() throws Exception {
+        File dir = folder.newFolder();
+        PersistentCache pCache = new PersistentCache(dir.getAbsolutePath() + ",size=1,logStore");
+        try {
+            CacheMap<String, String> map = pCache.openMap(0, "test", null);
+            String value = new String(new char[100 * 1024]);
+            for (int i = 0; i < 30; i++) {
+                map.put("key-" + i, value);
+            }
+            assertTrue(pCache.needSwitch());
+            // the compactor thread switches the generation in the background
+            long end = System.currentTimeMillis() + 10000;
+            while (pCache.needSwitch() && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertFalse(pCache.needSwitch());
+            assertTrue(new File(dir, "cache-1.data").exists());
+            assertEquals(0, pCache.getExceptionCount());
+        } finally {
+            pCache.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.cache.Cache;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMKBuilderProvider;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the performance of the persistent cache {@link NodeCache} get and
+ * put operations backed by the default MVStore and by the log structured
+ * store.
+ * <p>
+ * These tests are disabled by default due to their long running time. On the command line
+ * specify {@code -DPersistentCachePerformanceTest=true} to enable them.
+ */
+@RunWith(Parameterized.class)
+public class PersistentCachePerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentCachePerformanceTest.class);
+    private static final boolean ENABLED = Boolean.getBoolean(PersistentCachePerformanceTest.class.getSimpleName());
+
+    private static final int NUM_NODES = 1000;
+    private static final int NUM_ENTRIES = 200000;
+    private static final int NUM_READS = 1000000;
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder(new File("target"));
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final String name;
+    private final String options;
+
+    private DocumentNodeStore ns;
+    private PersistentCache pCache;
+    private Cache<PathRev, DocumentNodeState> cache;
+    private List<DocumentNodeState> nodes = new ArrayList<>();
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        assumeTrue(ENABLED);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> stores() {
+        List<Object[]> stores = new ArrayList<>();
+        stores.add(new Object[] {"MVStore", ""});
+        stores.add(new Object[] {"LogStore", ",logStore"});
+        return stores;
+    }
+
+    public PersistentCachePerformanceTest(String name, String options) {
+        this.name = name;
+        this.options = options;
+    }
+
+    @Before
+    public void before() throws Exception {
+        ns = builderProvider.newBuilder()
+                .setDocumentStore(new MemoryDocumentStore())
+                .setAsyncDelay(0).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < NUM_NODES; i++) {
+            test.child("node-" + i).setProperty("p", "value-" + i);
+        }
+        NodeState root = ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        for (int i = 0; i < NUM_NODES; i++) {
+            nodes.add((DocumentNodeState) root.getChildNode("test").getChildNode("node-" + i));
+        }
+        pCache = new PersistentCache(tempFolder.newFolder().getAbsolutePath() + ",-async" + options);
+        // small in-memory cache, most reads go to the persistent cache
+        CacheLIRS<PathRev, DocumentNodeState> base = new CacheLIRS.Builder<PathRev, DocumentNodeState>()
+                .maximumSize(16).build();
+        cache = pCache.wrap(ns, ns.getDocumentStore(), base, CacheType.NODE);
+    }
+
+    @After
+    public void after() {
+        if (pCache != null) {
+            pCache.close();
+        }
+    }
+
+    @Test
+    public void putAndGet() {
+        long time = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            cache.put(key(i), nodes.get(i % NUM_NODES));
+        }
+        time = System.nanoTime() - time;
+        LOG.info("{}: {} puts in {} ms ({} ops/s)", name, NUM_ENTRIES,
+                time / 1000000, NUM_ENTRIES * 1000000000L / time);
+
+        Random r = new Random(42);
+        time = System.nanoTime();
+        for (int i = 0; i < NUM_READS; i++) {
+            assertNotNull(cache.getIfPresent(key(r.nextInt(NUM_ENTRIES))));
+        }
+        time = System.nanoTime() - time;
+        LOG.info("{}: {} gets in {} ms ({} ops/s)", name, NUM_READS,
+                time / 1000000, NUM_READS * 1000000000L / time);
+    }
+
+    private PathRev key(int i) {
+        DocumentNodeState n = nodes.get(i % NUM_NODES);
+        return new PathRev(n.getPath(), new RevisionVector(new Revision(i / NUM_NODES + 1, 0, 1)));
+    }
+}
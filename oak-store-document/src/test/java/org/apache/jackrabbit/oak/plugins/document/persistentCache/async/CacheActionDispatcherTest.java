@@ -31,6 +31,9 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.junit.Test;
@@ -149,6 +152,90 @@ public class CacheActionDispatcherTest {
         assertFalse(dispatcher.add(big));
     }
 
+    @Test
+    public void backpressure() throws Exception {
+        CacheAction a = new DummyCacheWriteAction("id", 0);
+        CacheActionDispatcher dispatcher = new CacheActionDispatcher(a.getMemory());
+        assertTrue(dispatcher.add(a));
+
+        // queue is full and not drained
+        long time = currentTimeMillis();
+        assertFalse(dispatcher.add(new DummyCacheWriteAction("id", 0), 50));
+        assertTrue(currentTimeMillis() - time >= 50);
+
+        // must succeed once the queue is drained
+        Thread t = new Thread(dispatcher);
+        t.start();
+        try {
+            assertTrue(dispatcher.add(new DummyCacheWriteAction("id", 0), 10000));
+        } finally {
+            dispatcher.stop();
+            t.join();
+        }
+    }
+
+    @Test
+    public void executeRemovesObsolete() {
+        DummyCacheWriteAction a = new DummyCacheWriteAction("a", 0);
+        DummyCacheWriteAction b = new DummyCacheWriteAction("b", 0);
+        CacheActionDispatcher dispatcher = new CacheActionDispatcher(a.getMemory() + b.getMemory());
+        assertTrue(dispatcher.add(a));
+        assertTrue(dispatcher.add(b));
+
+        // queue is full and not drained, must not wait
+        DummyCacheWriteAction c = new DummyCacheWriteAction("c", 0);
+        assertFalse(dispatcher.add(c, 0));
+        dispatcher.execute(c, action -> action == a);
+        assertTrue(c.finished);
+        assertFalse(a.finished);
+        assertEquals(1, dispatcher.queue.size());
+        assertEquals(b.getMemory(), dispatcher.getMemory());
+    }
+
+    @Test
+    public void executeAgainAfterCurrent() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        CacheAction blocking = new DummyCacheWriteAction("blocking", 0) {
+            @Override
+            public void execute() {
+                started.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    fail("Interrupted");
+                }
+            }
+        };
+        final AtomicInteger executed = new AtomicInteger();
+        CacheAction counting = new DummyCacheWriteAction("counting", 0) {
+            @Override
+            public void execute() {
+                executed.incrementAndGet();
+            }
+        };
+        CacheActionDispatcher dispatcher = new CacheActionDispatcher();
+        Thread t = new Thread(dispatcher);
+        t.start();
+        try {
+            assertTrue(dispatcher.add(blocking));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // executed on the calling thread while the dispatcher is busy
+            dispatcher.execute(counting, action -> false);
+            assertEquals(1, executed.get());
+            done.countDown();
+            // and executed again after the current action
+            for (int i = 0; i < 100 && executed.get() < 2; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, executed.get());
+        } finally {
+            done.countDown();
+            dispatcher.stop();
+            t.join();
+        }
+    }
+
     private DummyCacheWriteAction createWriteAction(String id) {
         return new DummyCacheWriteAction(id);
     }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the serialization and deserialization throughput of the JSON and
+ * the binary document format of the {@link RDBDocumentSerializer}.
+ * <p>
+ * These tests are disabled by default due to their long running time. On the
+ * command line specify {@code -DRDBDocumentSerializerPerformanceTest=true} to
+ * enable them.
+ */
+public class RDBDocumentSerializerPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RDBDocumentSerializerPerformanceTest.class);
+    private static final boolean ENABLED = Boolean.getBoolean(RDBDocumentSerializerPerformanceTest.class.getSimpleName());
+
+    private static final Set<String> COLUMNS = Collections.singleton(NodeDocument.ID);
+    private static final long DURATION = TimeUnit.SECONDS.toNanos(5);
+
+    private final DocumentStore store = new MemoryDocumentStore();
+    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(store);
+
+    @Before
+    public void before() {
+        assumeTrue(ENABLED);
+    }
+
+    @Test
+    public void smallDocument() {
+        run("small document", createDocument(5, 10));
+    }
+
+    @Test
+    public void largeDocument() {
+        run("large document", createDocument(20, 500));
+    }
+
+    private void run(String name, NodeDocument doc) {
+        String json = ser.asString(doc, COLUMNS);
+        final RDBRow jsonRow = json.length() < 16384 / RDBDocumentStore.CHAR2OCTETRATIO
+                ? new RDBRow(doc.getId(), 0L, false, 1L, 1L, 0L, 2L, 0L, 0L, json, null)
+                : new RDBRow(doc.getId(), 0L, false, 1L, 1L, 0L, 2L, 0L, 0L, "\"blob\"", RDBDocumentStore.asBytes(json));
+        byte[] bytes = ser.asBytes(doc, COLUMNS);
+        final RDBRow binaryRow = new RDBRow(doc.getId(), 0L, false, 1L, 1L, 0L, 2L, 0L, 0L, "\"blob\"", bytes);
+        assertEquals(ser.fromRow(Collection.NODES, jsonRow).keySet(), ser.fromRow(Collection.NODES, binaryRow).keySet());
+
+        LOG.info("{}: JSON {} chars (BDATA {} bytes), binary {} bytes", name, json.length(),
+                jsonRow.getBdata() == null ? 0 : jsonRow.getBdata().length, bytes.length);
+        measure(name, "serialize JSON", () -> {
+            String s = ser.asString(doc, COLUMNS);
+            return s.length() < 16384 / RDBDocumentStore.CHAR2OCTETRATIO ? s.length() : RDBDocumentStore.asBytes(s).length;
+        });
+        measure(name, "serialize binary", () -> ser.asBytes(doc, COLUMNS).length);
+        measure(name, "deserialize JSON", () -> ser.fromRow(Collection.NODES, jsonRow).keySet().size());
+        measure(name, "deserialize binary", () -> ser.fromRow(Collection.NODES, binaryRow).keySet().size());
+    }
+
+    private static void measure(String name, String operation, Operation op) {
+        // warm up
+        long end = System.nanoTime() + DURATION / 5;
+        while (System.nanoTime() < end) {
+            op.run();
+        }
+        long ops = 0;
+        long sink = 0;
+        long start = System.nanoTime();
+        end = start + DURATION;
+        long now;
+        do {
+            sink += op.run();
+            ops++;
+            now = System.nanoTime();
+        } while (now < end);
+        double perSecond = ops * (double) TimeUnit.SECONDS.toNanos(1) / (now - start);
+        LOG.info("{}: {} {} ops/s ({})", name, operation, String.format("%.0f", perSecond), sink);
+    }
+
+    private NodeDocument createDocument(int numProperties, int numRevisions) {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(NodeDocument.ID, "2:/foo/bar");
+        long timestamp = 1600000000000L;
+        Map<Revision, Object> revisions = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        for (int p = 0; p < numProperties; p++) {
+            Map<Revision, Object> values = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+            for (int r = 0; r < numRevisions; r++) {
+                Revision rev = new Revision(timestamp + p * numRevisions + r, 0, 1 + r % 3);
+                values.put(rev, "\"value-" + p + "-" + r + "\"");
+                revisions.put(rev, "c");
+            }
+            doc.put("prop" + p, values);
+        }
+        doc.put("_revisions", revisions);
+        return doc;
+    }
+
+    private interface Operation {
+        long run();
+    }
+}
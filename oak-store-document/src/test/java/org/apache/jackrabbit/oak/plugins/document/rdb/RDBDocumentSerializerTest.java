@@ -26,8 +26,12 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
@@ -35,6 +39,8 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -231,4 +237,101 @@ public class RDBDocumentSerializerTest {
         } catch (DocumentStoreException expected) {
         }
     }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(NodeDocument.ID, "_foo");
+        doc.put("s", "string \u20ac\uD834\uDD1E");
+        doc.put("x", "broken surrogate \ud800");
+        doc.put("b", true);
+        doc.put("l", -123456789012L);
+        doc.put("d", 123.45);
+        doc.put("n", null);
+        Map<Revision, Object> revs = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        revs.put(new Revision(1234567890123L, 0, 1), "c");
+        revs.put(new Revision(1234567890124L, 5, 2, true), "c-r1-0-1");
+        doc.put("_revisions", revs);
+        Set<String> columns = Collections.singleton(NodeDocument.ID);
+
+        byte[] bytes = this.ser.asBytes(doc, columns);
+        assertTrue(RDBDocumentBinaryFormat.isBinary(bytes));
+        RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", bytes);
+        NodeDocument read = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("_foo", read.getId());
+        assertEquals("string \u20ac\uD834\uDD1E", read.get("s"));
+        assertEquals("broken surrogate \ud800", read.get("x"));
+        assertEquals(Boolean.TRUE, read.get("b"));
+        assertEquals(-123456789012L, read.get("l"));
+        assertEquals(123.45, read.get("d"));
+        assertTrue(read.keySet().contains("n"));
+        assertNull(read.get("n"));
+        assertEquals(revs, read.get("_revisions"));
+        // same as reading the JSON serialization
+        row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, this.ser.asString(doc, columns), null);
+        NodeDocument fromJson = this.ser.fromRow(Collection.NODES, row);
+        assertEquals(fromJson.keySet(), read.keySet());
+        for (String key : fromJson.keySet()) {
+            assertEquals(fromJson.get(key), read.get(key));
+        }
+    }
+
+    @Test
+    public void testBinaryDeflated() {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(NodeDocument.ID, "_foo");
+        Map<Revision, Object> revs = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        for (int i = 0; i < 1000; i++) {
+            revs.put(new Revision(1234567890123L + i, 0, 1), "\"value-" + i + "\"");
+        }
+        doc.put("prop", revs);
+
+        byte[] bytes = this.ser.asBytes(doc, Collections.singleton(NodeDocument.ID));
+        assertEquals(RDBDocumentBinaryFormat.FLAG_DEFLATED, bytes[3] & RDBDocumentBinaryFormat.FLAG_DEFLATED);
+        RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", bytes);
+        NodeDocument read = this.ser.fromRow(Collection.NODES, row);
+        assertEquals(revs, read.get("prop"));
+    }
+
+    @Test
+    public void testBinaryAndDiff() {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put("m1", 2L);
+        doc.put("m2", 2L);
+        byte[] bytes = this.ser.asBytes(doc, Collections.<String>emptySet());
+        RDBRow row = new RDBRow("_foo", 1L, false, 1l, 2l, 3l, 0L, 0L, 0L,
+                "\"blob\", [[\"=\", \"foo\", \"bar\"],[\"M\", \"m1\", 1],[\"M\", \"m2\", 3]]", bytes);
+        NodeDocument read = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("bar", read.get("foo"));
+        assertEquals(2L, read.get("m1"));
+        assertEquals(3L, read.get("m2"));
+    }
+
+    @Test
+    public void testBinaryUnsupportedVersion() {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put("foo", "bar");
+        byte[] bytes = this.ser.asBytes(doc, Collections.<String>emptySet());
+        bytes[2] = RDBDocumentBinaryFormat.VERSION + 1;
+        try {
+            RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", bytes);
+            this.ser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
+
+    @Test
+    public void testBinaryTruncated() {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put("foo", "bar");
+        byte[] bytes = this.ser.asBytes(doc, Collections.<String>emptySet());
+        try {
+            RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"",
+                    Arrays.copyOf(bytes, bytes.length - 2));
+            this.ser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
 }
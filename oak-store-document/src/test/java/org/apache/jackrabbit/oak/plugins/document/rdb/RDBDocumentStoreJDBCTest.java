@@ -470,6 +470,127 @@ public class RDBDocumentStoreJDBCTest extends AbstractDocumentStoreTest {
         }
 }
 
+    @Test
+    public void insertIfAbsent() throws SQLException {
+        String baseName = this.getClass().getName() + "." + name.getMethodName();
+        String existing = baseName + "-1";
+        insertTestResource(existing);
+
+        List<NodeDocument> docs = new ArrayList<NodeDocument>();
+        for (int i = 1; i <= 3; i++) {
+            String id = baseName + "-" + i;
+            if (i > 1) {
+                super.ds.remove(Collection.NODES, id);
+                removeMe.add(id);
+            }
+            NodeDocument doc = Collection.NODES.newDocument(super.ds);
+            doc.put(NodeDocument.ID, id);
+            doc.put(NodeDocument.MOD_COUNT, 1L);
+            doc.put("prop", "value-" + i);
+            docs.add(doc);
+        }
+
+        RDBTableMetaData tmd = ((RDBDocumentStore) super.ds).getTable(Collection.NODES);
+        Connection con = super.rdbDataSource.getConnection();
+        con.setReadOnly(false);
+        try {
+            Set<String> inserted = jdbc.insertIfAbsent(con, tmd, docs);
+            con.commit();
+            assertEquals(of(baseName + "-2", baseName + "-3"), inserted);
+        } finally {
+            con.close();
+        }
+
+        super.ds.invalidateCache();
+        // existing document must not be overwritten
+        NodeDocument doc = super.ds.find(Collection.NODES, existing);
+        assertNotNull(doc);
+        assertNull(doc.get("prop"));
+        for (int i = 2; i <= 3; i++) {
+            doc = super.ds.find(Collection.NODES, baseName + "-" + i);
+            assertNotNull(doc);
+            assertEquals("value-" + i, doc.get("prop"));
+        }
+    }
+
+    @Test
+    public void bulkUpsertWithExistingDocument() {
+        String baseName = this.getClass().getName() + "." + name.getMethodName();
+        String existing = baseName + "-0";
+        insertTestResource(existing);
+        // make sure the bulk update does not know about the existing document
+        super.ds.invalidateCache();
+
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 5; i++) {
+            String id = baseName + "-" + i;
+            if (i > 0) {
+                super.ds.remove(Collection.NODES, id);
+                removeMe.add(id);
+            }
+            UpdateOp op = new UpdateOp(id, true);
+            op.set("prop", "value-" + i);
+            ops.add(op);
+        }
+        List<NodeDocument> result = super.ds.createOrUpdate(Collection.NODES, ops);
+        assertEquals(5, result.size());
+        // previous state of the existing document
+        assertNotNull(result.get(0));
+        for (int i = 1; i < 5; i++) {
+            assertNull(result.get(i));
+        }
+
+        super.ds.invalidateCache();
+        for (int i = 0; i < 5; i++) {
+            NodeDocument doc = super.ds.find(Collection.NODES, baseName + "-" + i);
+            assertNotNull(doc);
+            assertEquals("value-" + i, doc.get("prop"));
+        }
+        assertEquals(2L, super.ds.find(Collection.NODES, existing).getModCount().longValue());
+    }
+
+    @Test
+    public void binaryFormat() throws SQLException {
+        String id = this.getClass().getName() + "." + name.getMethodName();
+        super.ds.remove(Collection.NODES, id);
+        removeMe.add(id);
+        RDBDocumentStoreJDBC binaryJdbc = new RDBDocumentStoreJDBC(dbInfo, new RDBDocumentSerializer(super.ds, true), 100, 10000);
+
+        NodeDocument doc = Collection.NODES.newDocument(super.ds);
+        doc.put(NodeDocument.ID, id);
+        doc.put(NodeDocument.MOD_COUNT, 1L);
+        doc.put(NodeDocument.MODIFIED_IN_SECS, 10L);
+        doc.put("prop", "value");
+
+        RDBTableMetaData tmd = ((RDBDocumentStore) super.ds).getTable(Collection.NODES);
+        Connection con = super.rdbDataSource.getConnection();
+        con.setReadOnly(false);
+        try {
+            assertEquals(of(id), binaryJdbc.insert(con, tmd, Collections.singletonList(doc)));
+            con.commit();
+            RDBRow row = binaryJdbc.read(con, tmd, Collections.singletonList(id)).get(0);
+            assertEquals("\"blob\"", row.getData());
+            assertTrue(RDBDocumentBinaryFormat.isBinary(row.getBdata()));
+        } finally {
+            con.close();
+        }
+
+        // update operations are appended to a document in binary format
+        super.ds.invalidateCache();
+        UpdateOp op = new UpdateOp(id, false);
+        op.set("foo", "bar");
+        op.set(NodeDocument.MODIFIED_IN_SECS, 20L);
+        assertNotNull(super.ds.findAndUpdate(Collection.NODES, op));
+
+        super.ds.invalidateCache();
+        NodeDocument read = super.ds.find(Collection.NODES, id);
+        assertNotNull(read);
+        assertEquals("value", read.get("prop"));
+        assertEquals("bar", read.get("foo"));
+        assertEquals(20L, read.getModified().longValue());
+        assertEquals(2L, read.getModCount().longValue());
+    }
+
     private void insertTestResource(String id) {
         super.ds.remove(Collection.NODES, id);
         UpdateOp op = new UpdateOp(id, true);
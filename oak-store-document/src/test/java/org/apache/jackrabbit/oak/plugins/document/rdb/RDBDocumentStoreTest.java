@@ -21,6 +21,7 @@ import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getIdFromPat
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -251,4 +252,59 @@ public class RDBDocumentStoreTest extends AbstractDocumentStoreTest {
             }
         }
     }
+
+    @Test
+    public void testParallelScan() {
+        if (ds instanceof RDBDocumentStore) {
+            RDBDocumentStore rds = (RDBDocumentStore) ds;
+            long modified = System.currentTimeMillis();
+            Set<String> expected = Sets.newHashSet();
+            StringBuilder path = new StringBuilder();
+            // documents at many depths (including ones with more than one
+            // digit and a long path), some of them not matching the query
+            for (int depth = 1; depth <= 60; depth++) {
+                path.append("/testParallelScan-").append(depth);
+                String id = getIdFromPath(path.toString());
+                UpdateOp up = new UpdateOp(id, true);
+                up.set(NodeDocument.MODIFIED_IN_SECS, modified);
+                up.set(NodeDocument.DELETED_ONCE, depth % 3 != 0);
+                assertTrue("document with " + id + " not created", ds.create(Collection.NODES, Collections.singletonList(up)));
+                removeMe.add(id);
+                if (depth % 3 != 0) {
+                    expected.add(id);
+                }
+            }
+
+            List<QueryCondition> conditions = new ArrayList<QueryCondition>();
+            conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "=", modified));
+            conditions.add(new QueryCondition(NodeDocument.DELETED_ONCE, "=", 1));
+            Set<String> ids = Sets.newHashSet();
+            try (RDBParallelScanIterator<NodeDocument> it = new RDBParallelScanIterator<NodeDocument>(rds, Collection.NODES,
+                    RDBDocumentStore.EMPTY_KEY_PATTERN, conditions, 4, 2)) {
+                while (it.hasNext()) {
+                    assertTrue("duplicate result", ids.add(it.next().getId()));
+                }
+            }
+            assertEquals(expected, ids);
+
+            // closing before all results have been read must not block
+            try (RDBParallelScanIterator<NodeDocument> it = new RDBParallelScanIterator<NodeDocument>(rds, Collection.NODES,
+                    RDBDocumentStore.EMPTY_KEY_PATTERN, conditions, 4, 1)) {
+                assertTrue(it.hasNext());
+                it.next();
+            }
+        }
+    }
+
+    @Test
+    public void testParallelScanIdRanges() {
+        List<String[]> ranges = RDBParallelScanIterator.getIdRanges();
+        assertNull(ranges.get(0)[0]);
+        assertNull(ranges.get(ranges.size() - 1)[1]);
+        for (int i = 1; i < ranges.size(); i++) {
+            // ranges are contiguous and ordered
+            assertEquals(ranges.get(i - 1)[1], ranges.get(i)[0]);
+            assertTrue(ranges.get(i - 1)[1].compareTo(ranges.get(i)[1] == null ? "\uffff" : ranges.get(i)[1]) < 0);
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.CountingDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.await;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.createOrUpdateAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.findAndUpdateAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.findAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.isAsync;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStores.queryAsync;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDocumentStoresTest {
+
+    @Test
+    public void asyncStores() {
+        DocumentStore store = new MemoryDocumentStore();
+        assertTrue(isAsync(store));
+        assertTrue(isAsync(new LeaseCheckDocumentStoreWrapper(store, null)));
+        assertTrue(isAsync(new TimingDocumentStoreWrapper(store)));
+        assertTrue(isAsync(new LoggingDocumentStoreWrapper(store)));
+        assertFalse(isAsync(ReadOnlyDocumentStoreWrapperFactory.getInstance(store)));
+        // wrappers around a store that is not async
+        DocumentStore sync = new CountingDocumentStore(store);
+        assertFalse(isAsync(sync));
+        assertFalse(isAsync(new LeaseCheckDocumentStoreWrapper(sync, null)));
+        assertFalse(isAsync(new TimingDocumentStoreWrapper(sync)));
+        assertFalse(isAsync(new LoggingDocumentStoreWrapper(sync)));
+        assertFalse(isAsync(new TimingDocumentStoreWrapper(
+                new LeaseCheckDocumentStoreWrapper(sync, null))));
+    }
+
+    @Test
+    public void memoryDocumentStore() {
+        operations(new MemoryDocumentStore());
+    }
+
+    @Test
+    public void wrappers() {
+        DocumentStore store = new MemoryDocumentStore();
+        store = new TimingDocumentStoreWrapper(store);
+        store = new LeaseCheckDocumentStoreWrapper(store, null);
+        operations(store);
+    }
+
+    @Test
+    public void syncStore() {
+        // a store that does not implement AsyncDocumentStore
+        operations(new CountingDocumentStore(new MemoryDocumentStore()));
+    }
+
+    @Test
+    public void exceptionalCompletion() {
+        DocumentStore store = new TimingDocumentStoreWrapper(new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T createOrUpdate(Collection<T> collection,
+                                                         UpdateOp update) {
+                throw new DocumentStoreException("failure");
+            }
+        });
+        UpdateOp op = new UpdateOp("1:/foo", true);
+        CompletionStage<NodeDocument> stage = createOrUpdateAsync(store, NODES, op);
+        try {
+            await(stage);
+            fail("must fail with DocumentStoreException");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+    }
+
+    private static void operations(DocumentStore store) {
+        List<UpdateOp> ops = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            UpdateOp op = new UpdateOp("1:/node-" + i, true);
+            op.set("p", (long) i);
+            ops.add(op);
+        }
+        List<NodeDocument> before = await(createOrUpdateAsync(store, NODES, ops));
+        assertEquals(3, before.size());
+        for (NodeDocument doc : before) {
+            assertNull(doc);
+        }
+
+        NodeDocument doc = await(findAsync(store, NODES, "1:/node-1", 0));
+        assertNotNull(doc);
+        assertEquals(1L, doc.get("p"));
+        assertNull(await(findAsync(store, NODES, "1:/missing", 0)));
+
+        List<NodeDocument> docs = await(queryAsync(store, NODES, "1:/", "1:/z", 10));
+        assertEquals(3, docs.size());
+
+        UpdateOp update = new UpdateOp("1:/missing", false);
+        update.set("p", 4L);
+        assertNull(await(findAndUpdateAsync(store, NODES, update)));
+        update = new UpdateOp("1:/node-2", false);
+        update.set("p", 4L);
+        doc = await(findAndUpdateAsync(store, NODES, update));
+        assertNotNull(doc);
+        assertEquals(2L, doc.get("p"));
+        assertEquals(4L, store.find(NODES, "1:/node-2").get("p"));
+    }
+}
@@ -121,6 +121,23 @@ public class UtilsTest {
         assertEquals("1:/foo", Utils.getParentId("2:/foo/bar"));
     }
 
+    @Test
+    public void getIdFromPathCached() {
+        Path p = Path.fromString("/foo/bar");
+        String id = Utils.getIdFromPath(p);
+        assertEquals("2:/foo/bar", id);
+        assertSame(id, Utils.getIdFromPath(p));
+        assertSame(id, Utils.getIdFromPath(Path.fromString("/foo/bar")));
+        assertEquals(Utils.getIdFromPath("/foo/bar"), id);
+        assertEquals("0:/", Utils.getIdFromPath(Path.ROOT));
+        assertEquals("1:foo/bar", Utils.getIdFromPath(Path.fromString("foo/bar")));
+        assertEquals("0:foo", Utils.getIdFromPath(Path.fromString("foo")));
+
+        Path longPath = Path.fromString(PathUtils.concat("/"+Strings.repeat("p", Utils.PATH_LONG + 1), "foo"));
+        assertEquals(Utils.getIdFromPath(longPath.toString()), Utils.getIdFromPath(longPath));
+        assertEquals(Utils.getIdFromPath(longPath.toString()), Utils.getIdFromPath(longPath));
+    }
+
     @Test
     public void getDepthFromId() throws Exception{
         assertEquals(1, Utils.getDepthFromId("1:/x"));